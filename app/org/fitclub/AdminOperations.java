@@ -1,439 +1,467 @@
 package org.fitclub;
 
-import java.sql.*;
+import org.fitclub.FitClubService.AvailabilityUpdate;
+import org.fitclub.FitClubService.ClassSeriesReport;
+import org.fitclub.FitClubService.FreeSlot;
+import org.fitclub.FitClubService.GroupClass;
+import org.fitclub.FitClubService.Room;
+import org.fitclub.FitClubService.SeriesOccurrence;
+import org.fitclub.FitClubService.TimeWindow;
+import org.fitclub.FitClubService.TrainerInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
-// Handles all Admin-related database operations
+// Console front end for Admin operations (business logic lives in FitClubService)
 public class AdminOperations {
 
     // Operation: Create Group Class (Book Room for Class)
     // Admin creates a new group class with room, trainer, date/time assignment
     // Validates room availability, trainer availability, capacity limits
-    // Edge Case -> Room double-booked (trigger fires), Class capacity exceeds room capacity (trigger fires),
-    //              Trainer not available at that time (manual validation)
-    public static void createGroupClass(Connection conn, Scanner scanner) {
+    // Edge Case -> Room double-booked or trainer busy (exclusion constraints), Class capacity exceeds room
+    //              capacity (trigger fires), Trainer not available at that time (checked by the insert);
+    //              the times the room and trainer are both free that day are offered instead
+    public static void createGroupClass(FitClubService service, Scanner scanner) {
         System.out.println("\n========================================");
         System.out.println("        CREATE NEW GROUP CLASS");
         System.out.println("========================================");
 
-        try {
-            // Step 1: Class Name
-            System.out.print("\nEnter class name (e.g., 'Morning Yoga'): ");
-            String className = scanner.nextLine().trim();
+        // Step 1: Class Name
+        System.out.print("\nEnter class name (e.g., 'Morning Yoga'): ");
+        String className = scanner.nextLine().trim();
 
-            if (className.isEmpty()) {
-                System.out.println("ERROR: Class name cannot be empty.");
-                return;
-            }
-
-            // Step 2: Date
-            System.out.print("Enter class date (YYYY-MM-DD): ");
-            String dateString = scanner.nextLine().trim();
-            Date classDate;
+        if (className.isEmpty()) {
+            System.out.println("ERROR: Class name cannot be empty.");
+            return;
+        }
 
-            try {
-                classDate = Date.valueOf(dateString);
-
-                // Ensure date is not in the past
-                if (classDate.before(new Date(System.currentTimeMillis()))) {
-                    System.out.println("ERROR: Cannot create class in the past.");
-                    return;
-                }
-            } catch (IllegalArgumentException e) {
-                System.out.println("ERROR: Invalid date format. Use YYYY-MM-DD");
-                return;
-            }
+        // Step 2: Date
+        System.out.print("Enter class date (YYYY-MM-DD): ");
+        String dateString = scanner.nextLine().trim();
+        LocalDate classDate;
 
-            // Step 3: Time
-            System.out.print("Enter start time (HH:MM in 24-hour format): ");
-            String startTimeStr = scanner.nextLine().trim();
-            Time startTime;
+        try {
+            classDate = LocalDate.parse(dateString);
 
-            try {
-                startTime = Time.valueOf(startTimeStr + ":00");
-            } catch (IllegalArgumentException e) {
-                System.out.println("ERROR: Invalid time format. Use HH:MM");
+            // Ensure date is not in the past
+            if (classDate.isBefore(LocalDate.now())) {
+                System.out.println("ERROR: Cannot create class in the past.");
                 return;
             }
+        } catch (DateTimeParseException e) {
+            System.out.println("ERROR: Invalid date format. Use YYYY-MM-DD");
+            return;
+        }
 
-            System.out.print("Enter end time (HH:MM in 24-hour format): ");
-            String endTimeStr = scanner.nextLine().trim();
-            Time endTime;
+        // Step 3: Time
+        System.out.print("Enter start time (HH:MM in 24-hour format): ");
+        LocalTime startTime = readTime(scanner);
+        if (startTime == null) {
+            return;
+        }
 
-            try {
-                endTime = Time.valueOf(endTimeStr + ":00");
-            } catch (IllegalArgumentException e) {
-                System.out.println("ERROR: Invalid time format. Use HH:MM");
-                return;
-            }
+        System.out.print("Enter end time (HH:MM in 24-hour format): ");
+        LocalTime endTime = readTime(scanner);
+        if (endTime == null) {
+            return;
+        }
 
-            if (!startTime.before(endTime)) {
-                System.out.println("ERROR: End time must be after start time.");
-                return;
-            }
+        if (!startTime.isBefore(endTime)) {
+            System.out.println("ERROR: End time must be after start time.");
+            return;
+        }
 
-            // Step 4: Select Room
-            System.out.println("\nAVAILABLE ROOMS:");
-            displayRooms(conn);
+        // Step 4: Select Room
+        System.out.println("\nAVAILABLE ROOMS:");
+        displayRooms(service);
 
-            System.out.print("\nEnter Room ID: ");
-            int roomId = scanner.nextInt();
-            scanner.nextLine();
+        System.out.print("\nEnter Room ID: ");
+        int roomId = MemberOperations.readInt(scanner);
 
-            // Get room capacity
-            int roomCapacity = getRoomCapacity(conn, roomId);
-            if (roomCapacity == -1) {
-                System.out.println("ERROR: Invalid room ID.");
-                return;
-            }
+        // Get room capacity
+        ServiceResult<Room> room = service.getRoom(roomId);
+        if (!room.isOk()) {
+            MemberOperations.printError(room);
+            return;
+        }
+        int roomCapacity = room.getValue().capacity();
 
-            // Check if room is available at this time
-            if (isRoomBooked(conn, roomId, classDate, startTime, endTime)) {
-                System.out.println("ERROR: Room is already booked at this time.");
-                System.out.println("Please choose a different room or time.");
-                return;
-            }
+        // Step 5: Class Capacity
+        System.out.print("\nEnter class capacity (max " + roomCapacity + "): ");
+        int capacity = MemberOperations.readInt(scanner);
 
-            // Step 5: Class Capacity
-            System.out.print("\nEnter class capacity (max " + roomCapacity + "): ");
-            int capacity = scanner.nextInt();
-            scanner.nextLine();
+        if (capacity <= 0) {
+            System.out.println("ERROR: Capacity must be positive.");
+            return;
+        }
 
-            if (capacity <= 0) {
-                System.out.println("ERROR: Capacity must be positive.");
-                return;
-            }
+        if (capacity > roomCapacity) {
+            System.out.println("ERROR: Class capacity (" + capacity + ") exceeds room capacity (" + roomCapacity + ").");
+            return;
+        }
 
-            if (capacity > roomCapacity) {
-                System.out.println("ERROR: Class capacity (" + capacity + ") exceeds room capacity (" + roomCapacity + ").");
-                return;
-            }
+        // Step 6: Select Trainer
+        System.out.println("\nAVAILABLE TRAINERS:");
+        displayTrainers(service);
 
-            // Step 6: Select Trainer
-            System.out.println("\nAVAILABLE TRAINERS:");
-            displayTrainers(conn);
+        System.out.print("\nEnter Trainer ID: ");
+        int trainerId = MemberOperations.readInt(scanner);
 
-            System.out.print("\nEnter Trainer ID: ");
-            int trainerId = scanner.nextInt();
-            scanner.nextLine();
+        // Step 7: Create the class (service checks room booking, trainer availability and conflicts)
+        ServiceResult<GroupClass> result = service.createGroupClass(new FitClubService.GroupClassRequest(
+                className, classDate, startTime, endTime, roomId, trainerId, capacity));
 
-            // Validate trainer exists
-            String trainerName = getTrainerName(conn, trainerId);
-            if (trainerName == null) {
-                System.out.println("ERROR: Invalid trainer ID.");
-                return;
-            }
-
-            // Check if trainer is available at this time
-            String dayOfWeek = getDayOfWeek(classDate);
-            if (!isTrainerAvailable(conn, trainerId, dayOfWeek, startTime, endTime)) {
-                System.out.println("ERROR: Trainer is not available at this time.");
+        if (!result.isOk()) {
+            MemberOperations.printError(result);
+            if (result.getError() == ErrorCode.ROOM_BOOKED) {
+                System.out.println("Please choose a different room or time.");
+            } else if (result.getError() == ErrorCode.TRAINER_UNAVAILABLE) {
                 System.out.println("Please choose a different trainer or check their availability.");
-                return;
             }
-
-            // Check if trainer is already teaching another class at this time
-            if (isTrainerTeaching(conn, trainerId, classDate, startTime, endTime)) {
-                System.out.println("ERROR: Trainer is already teaching another class at this time.");
-                return;
-            }
-
-            // Step 7: Create the class (triggers will validate room booking and capacity)
-            String query = "INSERT INTO GroupClass (class_name, class_date, start_time, end_time, capacity, trainer_id, room_id) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
-
-            PreparedStatement pstmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-            pstmt.setString(1, className);
-            pstmt.setDate(2, classDate);
-            pstmt.setTime(3, startTime);
-            pstmt.setTime(4, endTime);
-            pstmt.setInt(5, capacity);
-            pstmt.setInt(6, trainerId);
-            pstmt.setInt(7, roomId);
-
-            int rowsInserted = pstmt.executeUpdate();
-
-            if (rowsInserted > 0) {
-                ResultSet rs = pstmt.getGeneratedKeys();
-                int classId = -1;
-                if (rs.next()) {
-                    classId = rs.getInt(1);
-                }
-                rs.close();
-
-                System.out.println("\nSUCCESS! Group class created.");
-                System.out.println("   Class ID: " + classId);
-                System.out.println("   Class Name: " + className);
-                System.out.println("   Date: " + classDate + " (" + dayOfWeek + ")");
-                System.out.println("   Time: " + startTimeStr + " - " + endTimeStr);
-                System.out.println("   Room: Room ID " + roomId + " (Capacity: " + roomCapacity + ")");
-                System.out.println("   Trainer: " + trainerName);
-                System.out.println("   Class Capacity: " + capacity);
+            if (result.getError() == ErrorCode.ROOM_BOOKED || result.getError() == ErrorCode.TRAINER_BUSY ||
+                    result.getError() == ErrorCode.TRAINER_UNAVAILABLE) {
+                displayFreeWindows(service, roomId, trainerId, classDate,
+                        (int) Duration.between(startTime, endTime).toMinutes());
             }
+            return;
+        }
 
-            pstmt.close();
+        GroupClass created = result.getValue();
+        System.out.println("\nSUCCESS! Group class created.");
+        System.out.println("   Class ID: " + created.classId());
+        System.out.println("   Class Name: " + created.className());
+        System.out.println("   Date: " + created.classDate() + " (" + FitClubService.dayName(created.classDate().getDayOfWeek()) + ")");
+        System.out.println("   Time: " + created.startTime() + " - " + created.endTime());
+        System.out.println("   Room: Room ID " + created.room().roomId() + " (Capacity: " + created.room().capacity() + ")");
+        System.out.println("   Trainer: " + created.trainer().fullName());
+        System.out.println("   Class Capacity: " + created.capacity());
+    }
 
-        } catch (SQLException e) {
-            if (e.getMessage().contains("Room is already booked")) {
-                System.out.println("ERROR: Room is already booked at this time (trigger blocked).");
-            } else if (e.getMessage().contains("Class capacity") && e.getMessage().contains("exceeds room capacity")) {
-                System.out.println("ERROR: Class capacity exceeds room capacity (trigger blocked).");
-            } else {
-                System.out.println("ERROR: Failed to create class.");
-                System.out.println("Details: " + e.getMessage());
-            }
+    // Times on the date long enough for the class when the room is free and the trainer available
+    private static void displayFreeWindows(FitClubService service, int roomId, int trainerId, LocalDate date,
+                                           int minutes) {
+        ServiceResult<List<TimeWindow>> free = service.findFreeWindows(roomId, trainerId, date, minutes);
+        if (!free.isOk()) {
+            return;
+        }
+        if (free.getValue().isEmpty()) {
+            System.out.println("Room " + roomId + " and this trainer have no common free time of " + minutes +
+                    " minutes on " + date + ".");
+            return;
+        }
+        System.out.println("Free for room " + roomId + " and this trainer on " + date + ":");
+        for (TimeWindow window : free.getValue()) {
+            System.out.println("   " + window.startTime() + " - " +
+                    (window.endTime().equals(LocalTime.MAX) ? "24:00" : window.endTime()));
         }
     }
 
-    // Helper: Display all available rooms
-    private static void displayRooms(Connection conn) {
-        try {
-            String query = "SELECT room_id, room_name, capacity FROM Room ORDER BY room_id";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            ResultSet rs = pstmt.executeQuery();
-
-            System.out.println("\nID | Room Name     | Capacity");
-            System.out.println("---+---------------+---------");
+    // Operation: Create Recurring Class Series
+    // Admin books the same class on chosen weekdays for a whole date range (e.g. a term) in one go
+    // Edge Case -> Dates with the room booked, the trainer teaching or unavailable are listed and skipped,
+    //              the rest are created; unknown room/trainer or capacity over the room's creates nothing
+    public static void createClassSeries(FitClubService service, Scanner scanner) {
+        System.out.println("\n========================================");
+        System.out.println("      CREATE RECURRING CLASS SERIES");
+        System.out.println("========================================");
 
-            while (rs.next()) {
-                int roomId = rs.getInt("room_id");
-                String roomName = rs.getString("room_name");
-                int capacity = rs.getInt("capacity");
+        System.out.print("\nEnter class name (e.g., 'Morning Yoga'): ");
+        String className = scanner.nextLine().trim();
+        if (className.isEmpty()) {
+            System.out.println("ERROR: Class name cannot be empty.");
+            return;
+        }
 
-                System.out.printf("%-2d | %-13s | %d\n", roomId, roomName, capacity);
+        System.out.print("Enter days of the week (1 = Monday ... 7 = Sunday, e.g. 1,3,5): ");
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String day : scanner.nextLine().split(",")) {
+            try {
+                days.add(DayOfWeek.of(Integer.parseInt(day.trim())));
+            } catch (RuntimeException e) {
+                System.out.println("ERROR: Invalid day selection.");
+                return;
             }
+        }
 
-            rs.close();
-            pstmt.close();
-
-        } catch (SQLException e) {
-            System.out.println("Could not retrieve rooms.");
+        System.out.print("Enter start time (HH:MM in 24-hour format): ");
+        LocalTime startTime = readTime(scanner);
+        if (startTime == null) {
+            return;
+        }
+        System.out.print("Enter end time (HH:MM in 24-hour format): ");
+        LocalTime endTime = readTime(scanner);
+        if (endTime == null) {
+            return;
         }
-    }
 
-    // Helper: Display all trainers
-    private static void displayTrainers(Connection conn) {
-        try {
-            String query = "SELECT trainer_id, first_name, last_name FROM Trainer ORDER BY trainer_id";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            ResultSet rs = pstmt.executeQuery();
+        System.out.print("Enter first date (YYYY-MM-DD): ");
+        LocalDate firstDate = readDate(scanner);
+        if (firstDate == null) {
+            return;
+        }
+        System.out.print("Enter last date (YYYY-MM-DD): ");
+        LocalDate lastDate = readDate(scanner);
+        if (lastDate == null) {
+            return;
+        }
 
-            System.out.println("\nID | Name                ");
-            System.out.println("---+---------------------");
+        System.out.print("Enter dates to skip, comma-separated (Enter for none): ");
+        List<LocalDate> exceptDates = new ArrayList<>();
+        for (String date : scanner.nextLine().split(",")) {
+            if (date.isBlank()) {
+                continue;
+            }
+            try {
+                exceptDates.add(LocalDate.parse(date.trim()));
+            } catch (DateTimeParseException e) {
+                System.out.println("ERROR: Invalid date format. Use YYYY-MM-DD");
+                return;
+            }
+        }
 
-            while (rs.next()) {
-                int trainerId = rs.getInt("trainer_id");
-                String name = rs.getString("first_name") + " " + rs.getString("last_name");
+        System.out.println("\nAVAILABLE ROOMS:");
+        displayRooms(service);
+        System.out.print("\nEnter Room ID: ");
+        int roomId = MemberOperations.readInt(scanner);
 
-                System.out.printf("%-2d | %-19s\n", trainerId, name);
-            }
+        System.out.print("Enter class capacity: ");
+        int capacity = MemberOperations.readInt(scanner);
 
-            rs.close();
-            pstmt.close();
+        System.out.println("\nAVAILABLE TRAINERS:");
+        displayTrainers(service);
+        System.out.print("\nEnter Trainer ID: ");
+        int trainerId = MemberOperations.readInt(scanner);
 
-        } catch (SQLException e) {
-            System.out.println("Could not retrieve trainers.");
+        ServiceResult<ClassSeriesReport> result = service.createClassSeries(new FitClubService.ClassSeriesRequest(
+                className, days, startTime, endTime, firstDate, lastDate, exceptDates, roomId, trainerId, capacity));
+        if (!result.isOk()) {
+            MemberOperations.printError(result);
+            return;
         }
-    }
 
-    // Helper: Get room capacity
-    private static int getRoomCapacity(Connection conn, int roomId) {
-        try {
-            String query = "SELECT capacity FROM Room WHERE room_id = ?";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, roomId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                int capacity = rs.getInt("capacity");
-                rs.close();
-                pstmt.close();
-                return capacity;
+        ClassSeriesReport report = result.getValue();
+        System.out.println("\nSERIES COMPLETE");
+        System.out.println("   Classes created: " + report.created());
+        System.out.println("   Dates skipped:   " + report.rejected());
+        for (SeriesOccurrence occurrence : report.occurrences()) {
+            if (occurrence.isCreated()) {
+                continue;
+            }
+            String reason;
+            if (occurrence.conflict() == ErrorCode.ROOM_BOOKED) {
+                reason = "room booked (class " + occurrence.roomConflicts() + ")";
+            } else if (occurrence.conflict() == ErrorCode.TRAINER_BUSY) {
+                reason = "trainer teaching (class " + occurrence.trainerConflicts() + ")";
+            } else {
+                reason = "trainer not available";
             }
+            System.out.println("   " + occurrence.classDate() + " (" +
+                    FitClubService.dayName(occurrence.classDate().getDayOfWeek()) + "): " + reason);
+        }
+    }
 
-            rs.close();
-            pstmt.close();
+    // Operation: Find Free Rooms and Trainers
+    // Admin looks up where and when a class could go before creating it: every room seating the class with
+    // every trainer free over a date range, best fit first (fewest spare seats, then least spare time)
+    // Edge Case -> Nothing free (message), Range in the past or too long
+    public static void findFreeSlots(FitClubService service, Scanner scanner) {
+        System.out.println("\n========================================");
+        System.out.println("      FIND FREE ROOMS AND TRAINERS");
+        System.out.println("========================================");
 
-        } catch (SQLException e) {
-            // Ignore
+        System.out.print("\nEnter first date (YYYY-MM-DD): ");
+        LocalDate firstDate = readDate(scanner);
+        if (firstDate == null) {
+            return;
+        }
+        System.out.print("Enter last date (YYYY-MM-DD): ");
+        LocalDate lastDate = readDate(scanner);
+        if (lastDate == null) {
+            return;
+        }
+        System.out.print("Enter class length in minutes: ");
+        int minutes = MemberOperations.readInt(scanner);
+        System.out.print("Enter class capacity: ");
+        int capacity = MemberOperations.readInt(scanner);
+
+        ServiceResult<List<FreeSlot>> result = service.findFreeSlots(firstDate, lastDate, minutes, capacity, 20);
+        if (!result.isOk()) {
+            MemberOperations.printError(result);
+            return;
+        }
+        if (result.getValue().isEmpty()) {
+            System.out.println("No room seating " + capacity + " is free with a trainer for " + minutes +
+                    " minutes in that range.");
+            return;
         }
 
-        return -1;
+        System.out.println("\nDate       | Free          | Room (seats) | Trainer");
+        System.out.println("-----------+---------------+--------------+--------");
+        for (FreeSlot slot : result.getValue()) {
+            System.out.printf("%s | %s - %s | %-4d (%4d)  | %d\n", slot.date(), slot.startTime(),
+                    slot.endTime().equals(LocalTime.MAX) ? "24:00" : slot.endTime(), slot.roomId(),
+                    slot.roomCapacity(), slot.trainerId());
+        }
     }
 
-    // Helper: Get trainer name
-    private static String getTrainerName(Connection conn, int trainerId) {
-        try {
-            String query = "SELECT first_name, last_name FROM Trainer WHERE trainer_id = ?";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, trainerId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                String name = rs.getString("first_name") + " " + rs.getString("last_name");
-                rs.close();
-                pstmt.close();
-                return name;
-            }
-
-            rs.close();
-            pstmt.close();
+    // Operation: Bulk Import Members (CSV)
+    // Admin loads members from another system in one pass (COPY into a staging table, then merge)
+    // Edge Case -> Duplicate emails (in the file or already registered) and incomplete rows go to a
+    //              rejects file instead of aborting the import, malformed CSV aborts with the line number
+    public static void importMembers(FitClubService service, Scanner scanner) {
+        System.out.println("\n========================================");
+        System.out.println("        BULK IMPORT MEMBERS (CSV)");
+        System.out.println("========================================");
+        System.out.println("Header: first_name,last_name,email[,registration_date]");
 
-        } catch (SQLException e) {
-            // Ignore
+        System.out.print("\nEnter path of the CSV file: ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            System.out.println("ERROR: File path cannot be empty.");
+            return;
         }
 
-        return null;
-    }
+        String defaultRejects = input + ".rejects.csv";
+        System.out.print("Enter path for rejected rows (Enter for " + defaultRejects + "): ");
+        String rejects = scanner.nextLine().trim();
+        if (rejects.isEmpty()) {
+            rejects = defaultRejects;
+        }
 
-    // Helper: Check if room is already booked at given time
-    private static boolean isRoomBooked(Connection conn, int roomId, Date classDate, Time startTime, Time endTime) {
+        ServiceResult<MemberImporter.ImportReport> result;
         try {
-            String query = "SELECT 1 FROM GroupClass " +
-                    "WHERE room_id = ? AND class_date = ? " +
-                    "AND ((? >= start_time AND ? < end_time) OR " +
-                    "     (? > start_time AND ? <= end_time) OR " +
-                    "     (? <= start_time AND ? >= end_time))";
+            result = service.importMembers(Path.of(input), Path.of(rejects));
+        } catch (InvalidPathException e) {
+            System.out.println("ERROR: Invalid file path.");
+            return;
+        }
 
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, roomId);
-            pstmt.setDate(2, classDate);
-            pstmt.setTime(3, startTime);
-            pstmt.setTime(4, startTime);
-            pstmt.setTime(5, endTime);
-            pstmt.setTime(6, endTime);
-            pstmt.setTime(7, startTime);
-            pstmt.setTime(8, endTime);
+        if (!result.isOk()) {
+            MemberOperations.printError(result);
+            return;
+        }
+        MemberImporter.printReport(result.getValue(), Path.of(rejects));
+    }
 
-            ResultSet rs = pstmt.executeQuery();
-            boolean isBooked = rs.next();
+    // Operation: Publish Trainer Availability (CSV)
+    // Admin replaces the weekly availability of every trainer in the file in one transaction (each trainer
+    // gets exactly its lines; trainers not in the file keep theirs)
+    // Edge Case -> Overlapping windows anywhere in the file reject the whole file (all overlaps listed),
+    //              unknown trainer IDs, malformed lines (reported with the line number)
+    public static void publishAvailability(FitClubService service, Scanner scanner) {
+        System.out.println("\n========================================");
+        System.out.println("   PUBLISH TRAINER AVAILABILITY (CSV)");
+        System.out.println("========================================");
+        System.out.println("Header: trainer_id,day_of_week,start_time,end_time");
 
-            rs.close();
-            pstmt.close();
+        System.out.print("\nEnter path of the CSV file: ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            System.out.println("ERROR: File path cannot be empty.");
+            return;
+        }
 
-            return isBooked;
+        ServiceResult<AvailabilityUpdate> result;
+        try (BufferedReader csv = Files.newBufferedReader(Path.of(input), StandardCharsets.UTF_8)) {
+            result = service.publishAvailability(csv);
+        } catch (InvalidPathException | IOException e) {
+            System.out.println("ERROR: Cannot read " + input + ".");
+            return;
+        }
 
-        } catch (SQLException e) {
-            return false;
+        if (!result.isOk()) {
+            MemberOperations.printError(result);
+            return;
         }
+        AvailabilityUpdate update = result.getValue();
+        System.out.println("\nAVAILABILITY PUBLISHED");
+        System.out.printf("   Trainers:  %,d%n", update.trainers());
+        System.out.printf("   Windows:   %,d (%,d unchanged)%n", update.windows(), update.unchanged());
+        System.out.printf("   Added:     %,d%n", update.added());
+        System.out.printf("   Changed:   %,d%n", update.changed());
+        System.out.printf("   Removed:   %,d%n", update.removed());
     }
 
-    // Helper: Check if trainer is available at given day/time
-    private static boolean isTrainerAvailable(Connection conn, int trainerId, String dayOfWeek, Time startTime, Time endTime) {
+    // Helper: Read an HH:MM time, printing an error and returning null if invalid
+    private static LocalTime readTime(Scanner scanner) {
+        String timeStr = scanner.nextLine().trim();
         try {
-            String query = "SELECT 1 FROM TrainerAvailability " +
-                    "WHERE trainer_id = ? AND day_of_week = ? " +
-                    "AND start_time <= ? AND end_time >= ?";
-
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, trainerId);
-            pstmt.setString(2, dayOfWeek);
-            pstmt.setTime(3, startTime);
-            pstmt.setTime(4, endTime);
-
-            ResultSet rs = pstmt.executeQuery();
-            boolean isAvailable = rs.next();
-
-            rs.close();
-            pstmt.close();
-
-            return isAvailable;
-
-        } catch (SQLException e) {
-            return false;
+            return LocalTime.parse(timeStr);
+        } catch (DateTimeParseException e) {
+            System.out.println("ERROR: Invalid time format. Use HH:MM");
+            return null;
         }
     }
 
-    // Helper: Check if trainer is already teaching another class at this time
-    private static boolean isTrainerTeaching(Connection conn, int trainerId, Date classDate, Time startTime, Time endTime) {
+    // Helper: Read a YYYY-MM-DD date, printing an error and returning null if invalid
+    private static LocalDate readDate(Scanner scanner) {
+        String dateStr = scanner.nextLine().trim();
         try {
-            String query = "SELECT 1 FROM GroupClass " +
-                    "WHERE trainer_id = ? AND class_date = ? " +
-                    "AND ((? >= start_time AND ? < end_time) OR " +
-                    "     (? > start_time AND ? <= end_time) OR " +
-                    "     (? <= start_time AND ? >= end_time))";
-
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, trainerId);
-            pstmt.setDate(2, classDate);
-            pstmt.setTime(3, startTime);
-            pstmt.setTime(4, startTime);
-            pstmt.setTime(5, endTime);
-            pstmt.setTime(6, endTime);
-            pstmt.setTime(7, startTime);
-            pstmt.setTime(8, endTime);
-
-            ResultSet rs = pstmt.executeQuery();
-            boolean isTeaching = rs.next();
+            return LocalDate.parse(dateStr);
+        } catch (DateTimeParseException e) {
+            System.out.println("ERROR: Invalid date format. Use YYYY-MM-DD");
+            return null;
+        }
+    }
 
-            rs.close();
-            pstmt.close();
+    // Helper: Display all available rooms
+    private static void displayRooms(FitClubService service) {
+        ServiceResult<List<Room>> rooms = service.listRooms();
+        if (!rooms.isOk()) {
+            System.out.println("Could not retrieve rooms.");
+            return;
+        }
 
-            return isTeaching;
+        System.out.println("\nID | Room Name     | Capacity");
+        System.out.println("---+---------------+---------");
 
-        } catch (SQLException e) {
-            return false;
+        for (Room room : rooms.getValue()) {
+            System.out.printf("%-2d | %-13s | %d\n", room.roomId(), room.roomName(), room.capacity());
         }
     }
 
-    // Helper: Get day of week from date
-    private static String getDayOfWeek(Date date) {
-        java.util.Calendar cal = java.util.Calendar.getInstance();
-        cal.setTime(date);
+    // Helper: Display all trainers
+    private static void displayTrainers(FitClubService service) {
+        ServiceResult<List<TrainerInfo>> trainers = service.listTrainers();
+        if (!trainers.isOk()) {
+            System.out.println("Could not retrieve trainers.");
+            return;
+        }
+
+        System.out.println("\nID | Name                ");
+        System.out.println("---+---------------------");
 
-        String[] days = {"Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"};
-        return days[cal.get(java.util.Calendar.DAY_OF_WEEK) - 1];
+        for (TrainerInfo trainer : trainers.getValue()) {
+            System.out.printf("%-2d | %-19s\n", trainer.trainerId(), trainer.fullName());
+        }
     }
 
     // Helper method: Get admin ID by email (for login)
-    public static int getAdminIdByEmail(Connection conn, String email) {
-        try {
-            String query = "SELECT admin_id FROM Admin WHERE email = ?";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setString(1, email);
-
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                int adminId = rs.getInt("admin_id");
-                rs.close();
-                pstmt.close();
-                return adminId;
-            } else {
-                rs.close();
-                pstmt.close();
-                return -1;  // Not found
-            }
-
-        } catch (SQLException e) {
+    public static int getAdminIdByEmail(FitClubService service, String email) {
+        ServiceResult<Integer> result = service.findAdminIdByEmail(email);
+        if (result.getError() == ErrorCode.DATABASE_ERROR) {
             System.out.println("ERROR: Database error during login.");
-            return -1;
         }
+        return result.isOk() ? result.getValue() : -1;
     }
 
     // Display admin's name (used in welcome message)
-    public static String getAdminName(Connection conn, int adminId) {
-        try {
-            String query = "SELECT first_name, last_name FROM Admin WHERE admin_id = ?";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, adminId);
-
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                String name = rs.getString("first_name") + " " + rs.getString("last_name");
-                rs.close();
-                pstmt.close();
-                return name;
-            }
-
-            rs.close();
-            pstmt.close();
-
-        } catch (SQLException e) {
-            // Ignore
-        }
-
-        return "Admin";
+    public static String getAdminName(FitClubService service, int adminId) {
+        ServiceResult<String> result = service.getAdminName(adminId);
+        return result.isOk() ? result.getValue() : "Admin";
     }
 }
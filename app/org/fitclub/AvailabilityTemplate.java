@@ -0,0 +1,271 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.AvailabilityRequest;
+import org.fitclub.FitClubService.AvailabilitySlot;
+import org.fitclub.FitClubService.AvailabilityUpdate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Weekly availability published as a whole: a trainer's template, or a file with every trainer's for the term
+// The windows are checked for overlaps here (sorted by trainer, day and start, then one sweep), so a bad
+// template is rejected with every overlap listed before anything is sent. The template then replaces the
+// trainers' availability in one statement that only touches the difference: windows that are already there
+// stay (same availability_id), a window starting at the same time gets its new end, the rest are deleted or
+// inserted. The trainer_availability_no_overlap constraint is deferred until that statement is done, so the
+// order those rows are written in does not matter, only the final week.
+//
+// File: a header line naming the columns (trainer_id, day_of_week, start_time, end_time, any order), then
+// one window per line, e.g. "12,Monday,09:00,12:00". Each trainer in the file gets exactly its lines.
+public final class AvailabilityTemplate {
+
+    // 500 trainers with a few windows a day, with room to spare; bounds the arrays sent in one statement
+    static final int MAX_WINDOWS = 50_000;
+    private static final int MAX_ATTEMPTS = 3;
+    static final int MAX_REPORTED_OVERLAPS = 20;
+    private static final List<String> COLUMNS = List.of("trainer_id", "day_of_week", "start_time", "end_time");
+
+    private static final Comparator<AvailabilityRequest> BY_TRAINER_DAY_START =
+            Comparator.comparingInt(AvailabilityRequest::trainerId)
+                    .thenComparing(AvailabilityRequest::dayOfWeek)
+                    .thenComparing(AvailabilityRequest::startTime)
+                    .thenComparing(AvailabilityRequest::endTime);
+
+    // Windows are matched on (trainer, day, start): unchanged when the end is the same too, changed when only
+    // the end differs. The rows come back as what happened to them
+    private static final String APPLY_QUERY = "WITH template AS (" +
+            "    SELECT * FROM unnest(?::int[], ?::text[], ?::time[], ?::time[]) " +
+            "        AS t(trainer_id, day_of_week, start_time, end_time)" +
+            "), removed AS (" +
+            "    DELETE FROM TrainerAvailability ta " +
+            "    WHERE ta.trainer_id = ANY(?::int[]) " +
+            "      AND NOT EXISTS (SELECT 1 FROM template t WHERE t.trainer_id = ta.trainer_id " +
+            "                      AND t.day_of_week = ta.day_of_week AND t.start_time = ta.start_time) " +
+            "    RETURNING ta.availability_id, ta.trainer_id, ta.day_of_week, ta.start_time, ta.end_time" +
+            "), changed AS (" +
+            "    UPDATE TrainerAvailability ta SET end_time = t.end_time " +
+            "    FROM template t " +
+            "    WHERE t.trainer_id = ta.trainer_id AND t.day_of_week = ta.day_of_week " +
+            "      AND t.start_time = ta.start_time AND t.end_time <> ta.end_time " +
+            "    RETURNING ta.availability_id, ta.trainer_id, ta.day_of_week, ta.start_time, ta.end_time" +
+            "), added AS (" +
+            "    INSERT INTO TrainerAvailability (trainer_id, day_of_week, start_time, end_time) " +
+            "    SELECT t.trainer_id, t.day_of_week, t.start_time, t.end_time FROM template t " +
+            "    WHERE NOT EXISTS (SELECT 1 FROM TrainerAvailability ta WHERE ta.trainer_id = t.trainer_id " +
+            "                      AND ta.day_of_week = t.day_of_week AND ta.start_time = t.start_time) " +
+            "    RETURNING availability_id, trainer_id, day_of_week, start_time, end_time" +
+            ") " +
+            "SELECT 'removed' AS change, r.* FROM removed r " +
+            "UNION ALL SELECT 'changed', c.* FROM changed c " +
+            "UNION ALL SELECT 'added', a.* FROM added a";
+
+    private AvailabilityTemplate() {
+    }
+
+    // The windows read from a file (see above); throws IllegalArgumentException naming the line that is wrong
+    static List<AvailabilityRequest> parseCsv(Reader csv) throws IOException {
+        BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        int[] position = readHeader(reader.readLine());
+
+        List<AvailabilityRequest> windows = new ArrayList<>();
+        int lineNumber = 1;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != COLUMNS.size()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected " + COLUMNS.size() +
+                        " values, found " + fields.length + ".");
+            }
+            try {
+                windows.add(new AvailabilityRequest(
+                        Integer.parseInt(unquote(fields[position[0]])),
+                        FitClubService.parseDayOfWeek(unquote(fields[position[1]])),
+                        LocalTime.parse(unquote(fields[position[2]])),
+                        LocalTime.parse(unquote(fields[position[3]]))));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected a trainer ID, a day of the " +
+                        "week and HH:MM start and end times.");
+            }
+            if (windows.size() > MAX_WINDOWS) {
+                throw new IllegalArgumentException("A file can have at most " + MAX_WINDOWS + " windows.");
+            }
+        }
+        return windows;
+    }
+
+    // Each window overlapping an earlier one of the same trainer and day (touching is fine), as text; empty
+    // when none. Sorted by trainer, day and start, a window overlaps one before it exactly when it starts
+    // before the latest end seen so far that day
+    static List<String> findOverlaps(List<AvailabilityRequest> windows) {
+        List<AvailabilityRequest> sorted = new ArrayList<>(windows);
+        sorted.sort(BY_TRAINER_DAY_START);
+
+        List<String> overlaps = new ArrayList<>();
+        AvailabilityRequest latest = null;
+        for (AvailabilityRequest window : sorted) {
+            if (latest != null && latest.trainerId() == window.trainerId() &&
+                    latest.dayOfWeek() == window.dayOfWeek() && window.startTime().isBefore(latest.endTime())) {
+                overlaps.add("Trainer " + window.trainerId() + ", " + FitClubService.dayName(window.dayOfWeek()) +
+                        ": " + window.startTime() + "-" + window.endTime() + " overlaps " +
+                        latest.startTime() + "-" + latest.endTime());
+                if (window.endTime().isAfter(latest.endTime())) {
+                    latest = window;
+                }
+            } else {
+                latest = window;
+            }
+        }
+        return overlaps;
+    }
+
+    // The outcome of one attempt, and the rows to bring the schedule index to once it is committed
+    private record Applied(ServiceResult<AvailabilityUpdate> result, List<Integer> removed,
+                           List<AvailabilitySlot> written) {
+    }
+
+    // Replaces the availability of the given trainers with the windows (all of which belong to one of them),
+    // in one transaction. The windows must already be valid and free of overlaps
+    static ServiceResult<AvailabilityUpdate> apply(Connection conn, Collection<Integer> trainerIds,
+                                                   List<AvailabilityRequest> windows,
+                                                   ScheduleIndex scheduleIndex) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    Applied applied = applyOnce(conn, trainerIds, windows);
+                    if (!applied.result().isOk()) {
+                        conn.rollback();
+                        return applied.result();
+                    }
+                    conn.commit();
+                    if (scheduleIndex != null) {
+                        scheduleIndex.replaceAvailability(applied.removed(), applied.written());
+                    }
+                    return applied.result();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    // The deferred check found a window another session added meanwhile; the retry's diff removes it
+                    if (!FitClubService.isExclusionViolation(e, "trainer_availability_no_overlap")) {
+                        throw e;
+                    }
+                    if (attempt == MAX_ATTEMPTS) {
+                        return ServiceResult.error(ErrorCode.AVAILABILITY_OVERLAP,
+                                "The availability kept changing while the template was being applied. " +
+                                        "Please try again.", e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static Applied applyOnce(Connection conn, Collection<Integer> trainerIds,
+                                     List<AvailabilityRequest> windows) throws SQLException {
+        Integer[] scope = trainerIds.toArray(new Integer[0]);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT ARRAY(SELECT unnest(?::int[]) EXCEPT SELECT trainer_id FROM Trainer ORDER BY 1)")) {
+            pstmt.setArray(1, conn.createArrayOf("int4", scope));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                Integer[] unknown = (Integer[]) rs.getArray(1).getArray();
+                if (unknown.length > 0) {
+                    return new Applied(ServiceResult.error(ErrorCode.NOT_FOUND,
+                            "Invalid trainer ID" + (unknown.length > 1 ? "s: " : ": ") +
+                                    Arrays.toString(unknown).replaceAll("[\\[\\]]", "") + "."), List.of(), List.of());
+                }
+            }
+        }
+
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("SET CONSTRAINTS trainer_availability_no_overlap DEFERRED");
+        }
+
+        Integer[] trainers = new Integer[windows.size()];
+        String[] days = new String[windows.size()];
+        Time[] starts = new Time[windows.size()];
+        Time[] ends = new Time[windows.size()];
+        for (int i = 0; i < windows.size(); i++) {
+            AvailabilityRequest window = windows.get(i);
+            trainers[i] = window.trainerId();
+            days[i] = FitClubService.dayName(window.dayOfWeek());
+            starts[i] = Time.valueOf(window.startTime());
+            ends[i] = Time.valueOf(window.endTime());
+        }
+
+        List<Integer> removed = new ArrayList<>();
+        List<AvailabilitySlot> written = new ArrayList<>();
+        int changed = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(APPLY_QUERY)) {
+            pstmt.setArray(1, conn.createArrayOf("int4", trainers));
+            pstmt.setArray(2, conn.createArrayOf("text", days));
+            pstmt.setArray(3, conn.createArrayOf("time", starts));
+            pstmt.setArray(4, conn.createArrayOf("time", ends));
+            pstmt.setArray(5, conn.createArrayOf("int4", scope));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String change = rs.getString("change");
+                    if (change.equals("removed")) {
+                        removed.add(rs.getInt("availability_id"));
+                    } else {
+                        written.add(ScheduleIndex.readAvailability(rs));
+                        if (change.equals("changed")) {
+                            changed++;
+                        }
+                    }
+                }
+            }
+        }
+        // Checks the deferred constraint now, inside the retry
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("SET CONSTRAINTS trainer_availability_no_overlap IMMEDIATE");
+        }
+
+        int added = written.size() - changed;
+        return new Applied(ServiceResult.ok(new AvailabilityUpdate(trainerIds.size(), windows.size(),
+                windows.size() - added - changed, added, changed, removed.size())), removed, written);
+    }
+
+    // Position of each of COLUMNS in the file's lines
+    private static int[] readHeader(String header) {
+        if (header == null) {
+            throw new IllegalArgumentException("The file is empty.");
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : header.replace("\uFEFF", "").split(",")) {
+            names.add(unquote(name).toLowerCase(Locale.ROOT));
+        }
+        if (names.size() != COLUMNS.size() || !Set.copyOf(names).equals(Set.copyOf(COLUMNS))) {
+            throw new IllegalArgumentException("Header must name trainer_id, day_of_week, start_time and end_time.");
+        }
+        int[] position = new int[COLUMNS.size()];
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            position[i] = names.indexOf(COLUMNS.get(i));
+        }
+        return position;
+    }
+
+    private static String unquote(String value) {
+        return value.replace("\"", "").trim();
+    }
+}
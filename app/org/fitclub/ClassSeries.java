@@ -0,0 +1,204 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.ClassSeriesReport;
+import org.fitclub.FitClubService.ClassSeriesRequest;
+import org.fitclub.FitClubService.SeriesOccurrence;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Recurring classes (a term's "Spin, Mon/Wed/Fri 07:00-08:00, room 3") created in one transaction
+// The series is expanded into dates here, then every date is checked in one statement: the room's and the
+// trainer's classes overlapping it (through the exclusion constraints' GiST indexes) and the trainer's
+// availability that weekday. The dates without a conflict go in as one JDBC batch in the same transaction,
+// so a series costs three round trips however many classes it has. The others are reported with what is in
+// the way. A class booked elsewhere between the check and the insert fails the batch on its constraint; the
+// transaction is then rolled back and the series checked again.
+public final class ClassSeries {
+
+    // A term, with room to spare; keeps one series to one statement of at most a few hundred dates
+    static final int MAX_SERIES_DAYS = 366;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String CHECK_QUERY = "SELECT o.class_date, " +
+            "       (SELECT capacity FROM Room WHERE room_id = ?) AS room_capacity, " +
+            "       EXISTS (SELECT 1 FROM Trainer WHERE trainer_id = ?) AS trainer_exists, " +
+            "       EXISTS (SELECT 1 FROM TrainerAvailability ta " +
+            "               WHERE ta.trainer_id = ? AND ta.day_of_week = o.day_name " +
+            "                 AND ta.slot @> timerange(?::time, ?::time)) AS trainer_available, " +
+            "       ARRAY(SELECT gc.class_id FROM GroupClass gc " +
+            "             WHERE gc.room_id = ? " +
+            "               AND gc.class_period && tsrange(o.class_date + ?::time, o.class_date + ?::time) " +
+            "             ORDER BY gc.class_period) AS room_conflicts, " +
+            "       ARRAY(SELECT gc.class_id FROM GroupClass gc " +
+            "             WHERE gc.trainer_id = ? " +
+            "               AND gc.class_period && tsrange(o.class_date + ?::time, o.class_date + ?::time) " +
+            "             ORDER BY gc.class_period) AS trainer_conflicts " +
+            "FROM unnest(?::date[], ?::text[]) AS o(class_date, day_name) " +
+            "ORDER BY o.class_date";
+
+    private static final String INSERT_QUERY = "INSERT INTO GroupClass " +
+            "(class_name, class_date, start_time, end_time, capacity, trainer_id, room_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private ClassSeries() {
+    }
+
+    // The dates of the series: each day from firstDate to lastDate falling on one of its weekdays, except the
+    // exception dates
+    static List<LocalDate> expand(ClassSeriesRequest request) {
+        Set<DayOfWeek> days = Set.copyOf(request.daysOfWeek());
+        Set<LocalDate> skipped = request.exceptDates() == null ? Set.of() : new HashSet<>(request.exceptDates());
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = request.firstDate(); !date.isAfter(request.lastDate()); date = date.plusDays(1)) {
+            if (days.contains(date.getDayOfWeek()) && !skipped.contains(date)) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    // Checks the dates and creates the classes that fit, in one transaction
+    // Returns an error result when the room or trainer does not exist or the capacity exceeds the room's
+    static ServiceResult<ClassSeriesReport> create(Connection conn, ClassSeriesRequest request, String className,
+                                                   List<LocalDate> dates) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    ServiceResult<ClassSeriesReport> result = checkAndInsert(conn, request, className, dates);
+                    conn.commit();
+                    return result;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    ErrorCode conflict = scheduleConflict(e);
+                    if (conflict == null) {
+                        throw e;
+                    }
+                    if (attempt == MAX_ATTEMPTS) {
+                        return ServiceResult.error(conflict,
+                                "The schedule kept changing while the series was being created. Please try again.",
+                                e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static ServiceResult<ClassSeriesReport> checkAndInsert(Connection conn, ClassSeriesRequest request,
+                                                                   String className, List<LocalDate> dates)
+            throws SQLException {
+        Time startTime = Time.valueOf(request.startTime());
+        Time endTime = Time.valueOf(request.endTime());
+        List<SeriesOccurrence> occurrences = new ArrayList<>(dates.size());
+        List<LocalDate> free = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(CHECK_QUERY)) {
+            Date[] sqlDates = new Date[dates.size()];
+            String[] dayNames = new String[dates.size()];
+            for (int i = 0; i < dates.size(); i++) {
+                sqlDates[i] = Date.valueOf(dates.get(i));
+                dayNames[i] = FitClubService.dayName(dates.get(i).getDayOfWeek());
+            }
+            pstmt.setInt(1, request.roomId());
+            pstmt.setInt(2, request.trainerId());
+            pstmt.setInt(3, request.trainerId());
+            pstmt.setTime(4, startTime);
+            pstmt.setTime(5, endTime);
+            pstmt.setInt(6, request.roomId());
+            pstmt.setTime(7, startTime);
+            pstmt.setTime(8, endTime);
+            pstmt.setInt(9, request.trainerId());
+            pstmt.setTime(10, startTime);
+            pstmt.setTime(11, endTime);
+            pstmt.setArray(12, conn.createArrayOf("date", sqlDates));
+            pstmt.setArray(13, conn.createArrayOf("text", dayNames));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Integer roomCapacity = FitClubService.getNullableInt(rs, "room_capacity");
+                    if (roomCapacity == null) {
+                        return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid room ID.");
+                    }
+                    if (!rs.getBoolean("trainer_exists")) {
+                        return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid trainer ID.");
+                    }
+                    if (request.capacity() > roomCapacity) {
+                        return ServiceResult.error(ErrorCode.CAPACITY_EXCEEDS_ROOM, "Class capacity (" +
+                                request.capacity() + ") exceeds room capacity (" + roomCapacity + ").");
+                    }
+
+                    LocalDate date = FitClubService.toLocalDate(rs.getDate("class_date"));
+                    boolean trainerAvailable = rs.getBoolean("trainer_available");
+                    List<Integer> roomConflicts = readIds(rs.getArray("room_conflicts"));
+                    List<Integer> trainerConflicts = readIds(rs.getArray("trainer_conflicts"));
+                    if (trainerAvailable && roomConflicts.isEmpty() && trainerConflicts.isEmpty()) {
+                        free.add(date);
+                    } else {
+                        occurrences.add(SeriesOccurrence.conflict(date, trainerAvailable, roomConflicts, trainerConflicts));
+                    }
+                }
+            }
+        }
+
+        if (!free.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_QUERY, new String[]{"class_id"})) {
+                for (LocalDate date : free) {
+                    pstmt.setString(1, className);
+                    pstmt.setDate(2, Date.valueOf(date));
+                    pstmt.setTime(3, startTime);
+                    pstmt.setTime(4, endTime);
+                    pstmt.setInt(5, request.capacity());
+                    pstmt.setInt(6, request.trainerId());
+                    pstmt.setInt(7, request.roomId());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                // Keys come back in batch order
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    for (LocalDate date : free) {
+                        keys.next();
+                        occurrences.add(SeriesOccurrence.created(date, keys.getInt(1)));
+                    }
+                }
+            }
+        }
+
+        occurrences.sort((a, b) -> a.classDate().compareTo(b.classDate()));
+        return ServiceResult.ok(ClassSeriesReport.of(occurrences));
+    }
+
+    private static List<Integer> readIds(Array array) throws SQLException {
+        if (array == null) {
+            return List.of();
+        }
+        Integer[] ids = (Integer[]) array.getArray();
+        return ids.length == 0 ? List.of() : List.copyOf(Arrays.asList(ids));
+    }
+
+    // The error a class booked concurrently raised (23P01, possibly behind a BatchUpdateException), or null
+    private static ErrorCode scheduleConflict(SQLException e) {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            if (FitClubService.isExclusionViolation(cause, "group_class_room_no_overlap")) {
+                return ErrorCode.ROOM_BOOKED;
+            } else if (FitClubService.isExclusionViolation(cause, "group_class_trainer_no_overlap")) {
+                return ErrorCode.TRAINER_BUSY;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,595 @@
+package org.fitclub;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+// Small JDBC connection pool used behind DatabaseConnection
+// Handed-out connections are proxies: close() returns the physical connection to the pool
+// Supports min/max sizing, validation on borrow, idle eviction, max lifetime and leak detection
+// Each physical connection also carries an LRU prepared statement cache (see StatementCache)
+public class ConnectionPool implements DataSource {
+
+    // Connections used more recently than this skip validation on borrow
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long leakThresholdMillis;
+    private final boolean leakTrace;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final int serverPrepareThreshold;
+
+    // Idle connections (most recently returned first) and the lock guarding the pool state
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReturned = lock.newCondition();
+    private int totalConnections = 0;
+    private boolean closed = false;
+
+    // Counters
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsRetired = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis,
+                          long maxLifetimeMillis, long leakThresholdMillis, boolean leakTrace,
+                          long housekeepingIntervalMillis,
+                          int statementCacheSize, int serverPrepareThreshold) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.leakTrace = leakTrace;
+        this.validationTimeoutSeconds = 2;
+        this.statementCacheSize = statementCacheSize;
+        this.serverPrepareThreshold = serverPrepareThreshold;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fitclub-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                housekeepingIntervalMillis, housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Borrow a connection, waiting up to the borrow timeout if the pool is exhausted
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayCreate = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (totalConnections < maxSize) {
+                        // Reserve the slot now, open the socket outside the lock
+                        totalConnections++;
+                        mayCreate = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        borrowTimeouts.incrementAndGet();
+                        throw new SQLException("Timed out after " + borrowTimeoutMillis +
+                                " ms waiting for a database connection (pool size " + maxSize + ")");
+                    }
+                    try {
+                        connectionReturned.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (mayCreate) {
+                try {
+                    candidate = openPhysical();
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!isUsable(candidate)) {
+                retire(candidate);
+                continue;
+            }
+
+            recordBorrowWait(System.nanoTime() - start);
+            return candidate.lend();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool credentials are fixed at construction time");
+    }
+
+    // Lifetime check and validation on borrow
+    // A connection returned within the last VALIDATION_BYPASS_MILLIS is trusted without the isValid()
+    // round trip, which would otherwise cost as much as a short query on every borrow
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (isExpired(pooled, now)) {
+            return false;
+        }
+        if (now - pooled.lastUsedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            if (pooled.physical.isValid(validationTimeoutSeconds)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            // Treat as invalid
+        }
+        validationFailures.incrementAndGet();
+        return false;
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return maxLifetimeMillis > 0 && now - pooled.createdAt >= maxLifetimeMillis;
+    }
+
+    private PooledConnection openPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        connectionsCreated.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            totalConnections--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Physically close a connection and free its slot
+    private void retire(PooledConnection pooled) {
+        closeQuietly(pooled);
+        connectionsRetired.incrementAndGet();
+        releaseSlot();
+    }
+
+    // Called when a borrower closes its proxy
+    private void giveBack(PooledConnection pooled) {
+        borrowed.remove(pooled);
+
+        boolean reusable;
+        try {
+            reusable = !pooled.physical.isClosed() && !isExpired(pooled, System.currentTimeMillis());
+            if (reusable) {
+                pooled.reset();
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (!reusable) {
+            retire(pooled);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                totalConnections--;
+            } else {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.addFirst(pooled);
+                connectionReturned.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(pooled);
+    }
+
+    private void recordBorrowWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalBorrowWaitNanos.addAndGet(waitNanos);
+        maxBorrowWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    // Periodic maintenance: idle eviction, lifetime recycling, leak detection, top up to minimum size
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> toRetire = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // Oldest idle connections are at the tail
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                boolean idleTooLong = idleTimeoutMillis > 0 && now - pooled.lastUsedAt >= idleTimeoutMillis
+                        && totalConnections - toRetire.size() > minSize;
+                if (idleTooLong || isExpired(pooled, now)) {
+                    it.remove();
+                    toRetire.add(pooled);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pooled : toRetire) {
+            retire(pooled);
+        }
+
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt >= leakThresholdMillis) {
+                    pooled.leakReported = true;
+                    leaksDetected.incrementAndGet();
+                    StringBuilder warning = new StringBuilder("WARNING: Possible connection leak, borrowed " +
+                            (now - pooled.borrowedAt) + " ms ago by thread " + pooled.borrowThread);
+                    Throwable trace = pooled.borrowTrace;
+                    if (trace != null) {
+                        warning.append(", at:");
+                        for (StackTraceElement frame : trace.getStackTrace()) {
+                            warning.append(System.lineSeparator()).append("    ").append(frame);
+                        }
+                    }
+                    System.err.println(warning);
+                }
+            }
+        }
+
+        fillToMinimum();
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || totalConnections >= minSize) {
+                    return;
+                }
+                totalConnections++;
+            } finally {
+                lock.unlock();
+            }
+
+            PooledConnection pooled;
+            try {
+                pooled = openPhysical();
+            } catch (SQLException e) {
+                releaseSlot();
+                return;
+            }
+
+            lock.lock();
+            try {
+                if (!closed) {
+                    idle.addLast(pooled);
+                    connectionReturned.signal();
+                    continue;
+                }
+                totalConnections--;
+            } finally {
+                lock.unlock();
+            }
+            closeQuietly(pooled);
+            return;
+        }
+    }
+
+    // Close idle connections and stop maintenance; borrowed connections are closed when returned
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            totalConnections -= idle.size();
+            idle.clear();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        housekeeper.shutdownNow();
+        for (PooledConnection pooled : toClose) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private static void closeQuietly(PooledConnection pooled) {
+        if (pooled.statementCache != null) {
+            pooled.statementCache.clear();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    // Pool metrics
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getIdleConnections() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTotalConnections() {
+        lock.lock();
+        try {
+            return totalConnections;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getAverageBorrowWaitMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0.0 : totalBorrowWaitNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.get();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    public long getConnectionsRetired() {
+        return connectionsRetired.get();
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected.get();
+    }
+
+    public StatementCache.Stats getStatementCacheStats() {
+        return statementStats;
+    }
+
+    // One-line summary of the counters (for logs and diagnostics)
+    public String describe() {
+        return String.format("pool[active=%d, idle=%d, total=%d/%d, borrows=%d, avgWait=%.3fms, maxWait=%.3fms, " +
+                        "timeouts=%d, invalid=%d, created=%d, retired=%d, leaks=%d]",
+                getActiveConnections(), getIdleConnections(), getTotalConnections(), maxSize,
+                getBorrowCount(), getAverageBorrowWaitMillis(), getMaxBorrowWaitMillis(),
+                getBorrowTimeouts(), getValidationFailures(), getConnectionsCreated(),
+                getConnectionsRetired(), getLeaksDetected()) + " " + statementStats;
+    }
+
+    // DataSource boilerplate
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        // Not used
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        // Not used
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // A physical connection plus its bookkeeping
+    private final class PooledConnection {
+        final Connection physical;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastUsedAt = createdAt;
+        volatile long borrowedAt;
+        volatile String borrowThread;
+        volatile Throwable borrowTrace;
+        volatile boolean leakReported;
+        final StatementCache statementCache;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, serverPrepareThreshold, statementStats)
+                    : null;
+        }
+
+        Connection lend() {
+            borrowedAt = System.currentTimeMillis();
+            borrowThread = Thread.currentThread().getName();
+            // Capturing the stack costs microseconds per borrow, so only when asked for
+            borrowTrace = leakTrace && leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            leakReported = false;
+            borrowed.add(this);
+
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeasedConnectionHandler(this));
+        }
+
+        // Undo anything a borrower may have left behind
+        void reset() throws SQLException {
+            if (statementCache != null) {
+                statementCache.releaseAll();
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+        }
+    }
+
+    // Proxy handler for a single lease; close() hands the connection back exactly once
+    private final class LeasedConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        LeasedConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "prepareStatement":
+                    if (pooled.statementCache != null && !returned && isCacheable(method)) {
+                        int keys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                        return pooled.statementCache.prepare((Connection) proxy, (String) args[0], keys);
+                    }
+                    return forward(method, args);
+                case "unwrap":
+                    return pooled.physical.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return pooled.physical.isWrapperFor((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    return forward(method, args);
+            }
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // Only prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) go through the cache
+        private boolean isCacheable(Method method) {
+            Class<?>[] types = method.getParameterTypes();
+            return types.length == 1 || (types.length == 2 && types[1] == int.class);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.fitclub;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// CSV records for the importers (members, health metric batches): comma-separated, fields optionally in
+// double quotes ("" is a quote inside them), one record per line. None of the imported values can hold a
+// line break, so a quoted field left open at the end of its line is a malformed record rather than one
+// continuing on the next line: a stray quote costs one line, not the rest of the file.
+// A malformed line comes back as a record with the reason instead of throwing, so callers can reject just
+// that line. Spaces around a quoted field are ignored, blank lines are skipped and a leading byte order mark
+// is dropped.
+final class CsvReader {
+
+    // fields is null when the line is malformed, error says why; line counts from 1 (the header)
+    record Record(int line, List<String> fields, String error) {
+        boolean isValid() {
+            return error == null;
+        }
+    }
+
+    private final BufferedReader reader;
+    private int line;
+
+    CsvReader(Reader in) {
+        this.reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+    }
+
+    // The next non-blank line, null at the end of the input
+    Record next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            if (line++ == 0 && text.startsWith("\uFEFF")) {
+                text = text.substring(1);
+            }
+        } while (text.isBlank());
+        return parse(line, text);
+    }
+
+    private static Record parse(int line, String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int n = text.length();
+        while (true) {
+            field.setLength(0);
+            int start = i;
+            while (start < n && text.charAt(start) == ' ') {
+                start++;
+            }
+            if (start < n && text.charAt(start) == '"') {
+                i = start + 1;
+                while (true) {
+                    if (i >= n) {
+                        return new Record(line, null, "unterminated quoted field");
+                    }
+                    char c = text.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < n && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                while (i < n && text.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < n && text.charAt(i) != ',') {
+                    return new Record(line, null, "text after a closing quote");
+                }
+            } else {
+                while (i < n && text.charAt(i) != ',') {
+                    char c = text.charAt(i++);
+                    if (c == '"') {
+                        return new Record(line, null, "quote inside an unquoted field");
+                    }
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            if (i >= n) {
+                return new Record(line, fields, null);
+            }
+            i++;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.fitclub;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Runs a piece of work once at start and then every day at a given local time, on a daemon thread
+// A failed run (the work returns an error or throws) is logged and retried in 5 minutes
+final class DailyJob implements AutoCloseable {
+
+    private static final long RETRY_MINUTES = 5;
+
+    private final String name;
+    private final LocalTime runAt;
+    private final Supplier<? extends ServiceResult<?>> work;
+    private final ScheduledExecutorService scheduler;
+
+    // name goes into the failure warning: "<name> failed: ..."
+    DailyJob(String threadName, String name, LocalTime runAt, Supplier<? extends ServiceResult<?>> work) {
+        this.name = name;
+        this.runAt = runAt;
+        this.work = work;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        scheduler.execute(this::runAndReschedule);
+    }
+
+    private void runAndReschedule() {
+        boolean ok;
+        try {
+            ServiceResult<?> result = work.get();
+            ok = result.isOk();
+            if (!ok) {
+                System.err.println("WARNING: " + name + " failed: " + result.getMessage() +
+                        (result.getDetails() != null ? " (" + result.getDetails() + ")" : ""));
+            }
+        } catch (RuntimeException e) {
+            // Thrown out of a scheduled task it would end the schedule for good
+            ok = false;
+            System.err.println("WARNING: " + name + " failed: " + e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = ok ? LocalDate.now().plusDays(1).atTime(runAt) : now.plusMinutes(RETRY_MINUTES);
+        scheduler.schedule(this::runAndReschedule, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
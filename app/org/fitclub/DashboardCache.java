@@ -0,0 +1,200 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.MemberDashboard;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded in-process cache of member dashboards (LRU with a time-to-live), in front of getDashboard()
+// Coherence across app instances: the DDL's triggers NOTIFY 'member_dashboard' with the ids of members
+// whose dashboard changed (metrics, goals, registrations, rollover, member or class edits), and a
+// listener thread on its own connection evicts those entries in every instance. Changes the triggers
+// do not cover (room or trainer renames) are picked up when the entry expires.
+// While the listener is disconnected, notifications may be lost, so the cache is bypassed and then
+// cleared once LISTEN is re-established.
+public class DashboardCache implements AutoCloseable {
+
+    public static final String CHANNEL = "member_dashboard";
+
+    private final FitClubService service;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final NotificationListener listener;
+
+    // Access-ordered map: iteration starts at the least recently used dashboard
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Bumped on every invalidation, so a dashboard loaded while one arrived is not cached
+    private long invalidationSeq;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong totalHitAgeMillis = new AtomicLong();
+    private final AtomicLong maxHitAgeMillis = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private record Entry(MemberDashboard dashboard, long loadedAt) {
+    }
+
+    public DashboardCache(FitClubService service, int maxSize, long ttlMillis) {
+        this.service = service;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.listener = new NotificationListener("fitclub-dashboard-cache", "Dashboard cache", "bypassing cache",
+                new NotificationListener.Handler() {
+                    // Anything cached before LISTEN may have missed its notification
+                    @Override
+                    public void connected() {
+                        clear();
+                    }
+
+                    @Override
+                    public void notified(String channel, String payload) {
+                        apply(payload);
+                    }
+
+                    @Override
+                    public void disconnected() {
+                        clear();
+                    }
+                }, CHANNEL);
+    }
+
+    public void start() {
+        listener.start();
+    }
+
+    // Cached dashboard, or load it through the service; only successful results are cached
+    public ServiceResult<MemberDashboard> getDashboard(int memberId) {
+        if (!listener.isListening() || maxSize <= 0) {
+            bypasses.incrementAndGet();
+            return service.getDashboard(memberId);
+        }
+
+        long seq;
+        synchronized (this) {
+            Entry entry = entries.get(memberId);
+            long now = System.currentTimeMillis();
+            if (entry != null && now - entry.loadedAt() < ttlMillis) {
+                hits.incrementAndGet();
+                long age = now - entry.loadedAt();
+                totalHitAgeMillis.addAndGet(age);
+                maxHitAgeMillis.accumulateAndGet(age, Math::max);
+                return ServiceResult.ok(entry.dashboard());
+            }
+            if (entry != null) {
+                entries.remove(memberId);
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            seq = invalidationSeq;
+        }
+
+        ServiceResult<MemberDashboard> result = service.getDashboard(memberId);
+        if (result.isOk()) {
+            synchronized (this) {
+                if (seq == invalidationSeq && listener.isListening()) {
+                    entries.put(memberId, new Entry(result.getValue(), System.currentTimeMillis()));
+                    evictOverflow();
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void invalidate(int memberId) {
+        invalidationSeq++;
+        if (entries.remove(memberId) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        invalidationSeq++;
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Integer> eldest = entries.keySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    // ===================== Listener =====================
+
+    // Payload from dashboard_notify(): '<epoch millis at the change>:<member id>,<member id>,...'
+    // Lag is measured against the database clock, so it includes any clock skew between the hosts
+    private void apply(String payload) {
+        notifications.incrementAndGet();
+        int colon = payload.indexOf(':');
+        try {
+            long lag = Math.max(0, System.currentTimeMillis() - Long.parseLong(payload.substring(0, colon)));
+            totalLagMillis.addAndGet(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+            for (String id : payload.substring(colon + 1).split(",")) {
+                invalidate(Integer.parseInt(id));
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // Unknown payload: drop everything rather than risk serving a stale dashboard
+            clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        listener.close();
+    }
+
+    // ===================== Metrics =====================
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0.0 : (double) hits.get() / lookups;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public Map<String, Object> describe() {
+        long hitCount = hits.get();
+        long notificationCount = notifications.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("listening", listener.isListening());
+        metrics.put("size", getSize());
+        metrics.put("maxSize", maxSize);
+        metrics.put("ttlMillis", ttlMillis);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", getMisses());
+        metrics.put("hitRatio", getHitRatio());
+        metrics.put("bypasses", bypasses.get());
+        metrics.put("expirations", expirations.get());
+        metrics.put("invalidations", invalidations.get());
+        metrics.put("averageHitAgeMillis", hitCount == 0 ? 0.0 : (double) totalHitAgeMillis.get() / hitCount);
+        metrics.put("maxHitAgeMillis", maxHitAgeMillis.get());
+        metrics.put("notifications", notificationCount);
+        metrics.put("averageNotificationLagMillis",
+                notificationCount == 0 ? 0.0 : (double) totalLagMillis.get() / notificationCount);
+        metrics.put("maxNotificationLagMillis", maxLagMillis.get());
+        metrics.put("listenerReconnects", listener.getReconnects());
+        return Collections.unmodifiableMap(metrics);
+    }
+}
@@ -0,0 +1,38 @@
+package org.fitclub;
+
+import java.time.LocalTime;
+
+// Daily rollover of MemberDashboardSummary: registrations for classes that are now in the past
+// move from the upcoming to the past count (dashboard_rollover() in sql/ddl.sql)
+// Runs once at start (catches up after downtime) and then shortly after every midnight; the SQL
+// function is idempotent per day, so several app instances can run it safely
+public class DashboardRolloverJob implements AutoCloseable {
+
+    // Run a little after midnight so CURRENT_DATE on the server has moved on as well
+    private static final LocalTime RUN_AT = LocalTime.of(0, 0, 30);
+
+    private final FitClubService service;
+    private final DailyJob job;
+
+    public DashboardRolloverJob(FitClubService service) {
+        this.service = service;
+        this.job = new DailyJob("fitclub-dashboard-rollover", "Dashboard rollover", RUN_AT, this::rollover);
+    }
+
+    public void start() {
+        job.start();
+    }
+
+    private ServiceResult<Integer> rollover() {
+        ServiceResult<Integer> result = service.rolloverDashboards();
+        if (result.isOk() && result.getValue() > 0) {
+            System.out.println("Dashboard rollover: " + result.getValue() + " member summaries updated.");
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        job.close();
+    }
+}
@@ -0,0 +1,627 @@
+package org.fitclub;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Synthetic data generator for performance work (sql/dml.sql only seeds a handful of rows)
+// Produces a reproducible dataset at a given scale factor and streams it in with COPY
+//
+// One scale unit = 10,000 members, 5 trainers, 2 rooms; --scale 100 gives 1M members,
+// 500 trainers, 200 rooms. The class schedule covers --days-back/--days-ahead around today
+// and every row satisfies the rules the triggers in sql/ddl.sql enforce:
+//   - trainer availability slots never overlap (one slot per trainer per working day)
+//   - class capacity <= room capacity, registrations <= class capacity
+//   - a room holds at most one class per hour slot, a trainer teaches at most one class per hour
+//     slot, and every class lies inside its trainer's availability
+//
+// Run: java -cp ... org.fitclub.DataGenerator --scale 100 [--seed 42] [--days-back 365] [--days-ahead 365]
+//          [--metrics-per-member 30] [--keep-triggers] [--verify]
+// WARNING: truncates every table first.
+public class DataGenerator {
+
+    private static final String[] FIRST_NAMES = {"John", "Sarah", "Michael", "Emily", "David", "Jessica",
+            "Daniel", "Olivia", "James", "Sophia", "Robert", "Emma", "William", "Ava", "Joseph", "Mia",
+            "Marcus", "Lisa", "Aiden", "Chloe", "Liam", "Grace", "Noah", "Zoe", "Ethan", "Hannah",
+            "Lucas", "Nora", "Mateo", "Priya", "Wei", "Fatima", "Omar", "Yuki", "Elena", "Kwame"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Chen", "Williams", "Brown", "Martinez",
+            "Garcia", "Miller", "Davis", "Wilson", "Anderson", "Taylor", "Thomas", "Moore", "Jackson", "Patel",
+            "Thompson", "White", "Harris", "Clark", "Lewis", "Robinson", "Walker", "Young", "Allen", "King",
+            "Nguyen", "Kim", "Singh", "Lopez", "Gonzalez", "Hernandez", "Okafor", "Tanaka", "Rossi", "Kowalski"};
+    private static final String[] CLASS_TYPES = {"Yoga Flow", "Power Strength", "Spin", "HIIT", "Pilates",
+            "Boxing Fit", "Zumba", "Core Blast", "Mobility", "Kettlebells", "Barre", "Circuit Training"};
+    private static final int[] ROOM_CAPACITIES = {10, 15, 20, 25, 30, 40, 50};
+    private static final String[] GOAL_TYPES = {"Weight Loss", "Muscle Gain", "Body Fat Reduction",
+            "VO2 Max Improvement", "Weight Maintenance"};
+
+    // First and last hour a class may start; classes run for 45 or 60 minutes inside their hour
+    private static final int FIRST_CLASS_HOUR = 6;
+    private static final int LAST_CLASS_HOUR = 21;
+
+    // Rows buffered before each write to the COPY stream
+    private static final int COPY_BUFFER_CHARS = 1 << 20;
+
+    private double scale = 1.0;
+    private long seed = 42L;
+    private int daysBack = 365;
+    private int daysAhead = 365;
+    private int metricsPerMember = 30;
+    private double roomOccupancy = 0.6;
+    private boolean keepTriggers = false;
+    private boolean verify = false;
+
+    public static void main(String[] args) {
+        DataGenerator generator = new DataGenerator();
+        try {
+            generator.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Usage: DataGenerator --scale <factor> [--seed n] [--days-back n] [--days-ahead n] " +
+                    "[--metrics-per-member n] [--occupancy 0..1] [--keep-triggers] [--verify]");
+            return;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            generator.generate(conn);
+            if (generator.verify) {
+                generator.verify(conn);
+            }
+        } catch (SQLException e) {
+            System.err.println("ERROR: Data generation failed.");
+            System.err.println("Details: " + e.getMessage());
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scale": scale = Double.parseDouble(value(args, ++i)); break;
+                case "--seed": seed = Long.parseLong(value(args, ++i)); break;
+                case "--days-back": daysBack = Integer.parseInt(value(args, ++i)); break;
+                case "--days-ahead": daysAhead = Integer.parseInt(value(args, ++i)); break;
+                case "--metrics-per-member": metricsPerMember = Integer.parseInt(value(args, ++i)); break;
+                case "--occupancy": roomOccupancy = Double.parseDouble(value(args, ++i)); break;
+                case "--keep-triggers": keepTriggers = true; break;
+                case "--verify": verify = true; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (scale <= 0 || daysBack < 0 || daysAhead < 0 || metricsPerMember < 0 ||
+                roomOccupancy <= 0 || roomOccupancy > 1) {
+            throw new IllegalArgumentException("Options out of range");
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    // Builder-style setters for programmatic use (benchmarks)
+    public DataGenerator scale(double scale) {
+        this.scale = scale;
+        return this;
+    }
+
+    public DataGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public DataGenerator days(int daysBack, int daysAhead) {
+        this.daysBack = daysBack;
+        this.daysAhead = daysAhead;
+        return this;
+    }
+
+    public DataGenerator metricsPerMember(int metricsPerMember) {
+        this.metricsPerMember = metricsPerMember;
+        return this;
+    }
+
+    // Truncate all tables and load a fresh dataset
+    public void generate(Connection conn) throws SQLException {
+        int members = Math.max(1, (int) Math.round(10_000 * scale));
+        int trainers = Math.max(3, (int) Math.round(5 * scale));
+        int rooms = Math.max(1, (int) Math.round(2 * scale));
+
+        System.out.printf("Generating scale %.2f: %,d members, %,d trainers, %,d rooms, %d days of schedule%n",
+                scale, members, trainers, rooms, daysBack + daysAhead + 1);
+
+        CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        long start = System.nanoTime();
+
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("TRUNCATE ClassRegistration, HealthMetric, FitnessGoal, GroupClass, " +
+                    "TrainerAvailability, Room, Trainer, Member, MemberNameWord, Admin RESTART IDENTITY CASCADE");
+
+            if (!keepTriggers) {
+                // Rows are valid by construction, so skip the per-row trigger checks if we are allowed to
+                try {
+                    statement.execute("SET LOCAL session_replication_role = replica");
+                    System.out.println("Triggers disabled for the load (data is valid by construction).");
+                } catch (SQLException e) {
+                    conn.rollback();
+                    statement.execute("TRUNCATE ClassRegistration, HealthMetric, FitnessGoal, GroupClass, " +
+                            "TrainerAvailability, Room, Trainer, Member, MemberNameWord, Admin RESTART IDENTITY CASCADE");
+                    System.out.println("Could not disable triggers (needs superuser); loading with triggers enabled.");
+                }
+            }
+
+            LocalDate today = LocalDate.now();
+            LocalDate firstDay = today.minusDays(daysBack);
+            LocalDate lastDay = today.plusDays(daysAhead);
+
+            LocalDate earliestMember = firstDay.minusDays(365);
+            LocalDate[] memberSince = loadMembers(copyManager, members, earliestMember, today);
+            loadAdmins(copyManager);
+            TrainerShift[] shifts = loadTrainers(copyManager, trainers);
+            int[] roomCapacity = loadRooms(copyManager, rooms);
+            Schedule schedule = loadClasses(copyManager, shifts, roomCapacity, firstDay, lastDay);
+            loadRegistrations(copyManager, schedule, members, memberSince, today);
+            // HealthMetric is partitioned by month: create the months the readings span before copying them in
+            statement.execute("SELECT count(*) FROM health_metric_add_partitions('" + earliestMember + "', '" +
+                    today + "')");
+            loadHealthMetrics(copyManager, memberSince, today);
+            loadFitnessGoals(copyManager, memberSince, today);
+
+            // Explicit ids were copied in, so move every sequence past them
+            for (String[] sequence : new String[][]{
+                    {"Member", "member_id"}, {"Trainer", "trainer_id"}, {"Admin", "admin_id"}, {"Room", "room_id"},
+                    {"TrainerAvailability", "availability_id"}, {"GroupClass", "class_id"},
+                    {"ClassRegistration", "registration_id"}, {"HealthMetric", "metric_id"},
+                    {"FitnessGoal", "goal_id"}}) {
+                statement.execute("SELECT setval(pg_get_serial_sequence('" + sequence[0] + "', '" + sequence[1] +
+                        "'), COALESCE((SELECT MAX(" + sequence[1] + ") FROM " + sequence[0] + "), 0) + 1, false)");
+            }
+
+            // Triggers may have been off for the load, so derive the seat counters, the name words and the
+            // dashboard summaries in one pass each
+            statement.execute("UPDATE GroupClass gc SET registered_count = c.seats " +
+                    "FROM (SELECT class_id, COUNT(*) AS seats FROM ClassRegistration GROUP BY class_id) c " +
+                    "WHERE gc.class_id = c.class_id AND gc.registered_count <> c.seats");
+            statement.execute("INSERT INTO MemberNameWord (word) " +
+                    "SELECT DISTINCT word " +
+                    "FROM Member, regexp_split_to_table(member_search_name(first_name, last_name), '\\s+') AS word " +
+                    "WHERE word <> '' ON CONFLICT DO NOTHING");
+            statement.execute("SELECT dashboard_rebuild()");
+            // Months older than the hot ones go cold now rather than at the next app start
+            statement.execute("SELECT count(*) FROM health_metric_maintain()");
+
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    // ===================== Tables =====================
+
+    private LocalDate[] loadMembers(CopyManager copyManager, int members, LocalDate earliest, LocalDate today)
+            throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate[] memberSince = new LocalDate[members + 1];
+        int span = (int) (today.toEpochDay() - earliest.toEpochDay());
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY Member (member_id, first_name, last_name, email, registration_date) FROM STDIN (FORMAT csv)")) {
+            for (int id = 1; id <= members; id++) {
+                String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                memberSince[id] = earliest.plusDays(random.nextInt(span + 1));
+                out.row(id, first, last,
+                        first.toLowerCase(Locale.ROOT) + "." + last.toLowerCase(Locale.ROOT) + "." + id + "@example.com",
+                        memberSince[id]);
+            }
+            out.report("Member");
+        }
+        return memberSince;
+    }
+
+    private void loadAdmins(CopyManager copyManager) throws SQLException {
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY Admin (admin_id, first_name, last_name, email) FROM STDIN (FORMAT csv)")) {
+            out.row(1, "Robert", "Johnson", "robert.j@fitclub.com");
+            out.row(2, "Michelle", "Davis", "michelle.d@fitclub.com");
+            out.report("Admin");
+        }
+    }
+
+    // Each trainer works five days a week in one of three shifts (one availability slot per working day)
+    private static final class TrainerShift {
+        final int startHour;
+        final int endHour;
+        final DayOfWeek[] daysOff;
+
+        TrainerShift(int startHour, int endHour, DayOfWeek... daysOff) {
+            this.startHour = startHour;
+            this.endHour = endHour;
+            this.daysOff = daysOff;
+        }
+
+        boolean worksAt(DayOfWeek day, int hour) {
+            for (DayOfWeek off : daysOff) {
+                if (off == day) {
+                    return false;
+                }
+            }
+            return hour >= startHour && hour + 1 <= endHour;
+        }
+    }
+
+    private TrainerShift[] loadTrainers(CopyManager copyManager, int trainers) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        TrainerShift[] shifts = new TrainerShift[trainers + 1];
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY Trainer (trainer_id, first_name, last_name, email) FROM STDIN (FORMAT csv)")) {
+            for (int id = 1; id <= trainers; id++) {
+                String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                out.row(id, first, last,
+                        first.toLowerCase(Locale.ROOT) + "." + last.toLowerCase(Locale.ROOT) + "." + id + "@fitclub.com");
+
+                DayOfWeek offA = DayOfWeek.of(1 + id % 7);
+                DayOfWeek offB = offA.plus(3);
+                switch (id % 3) {
+                    case 0: shifts[id] = new TrainerShift(FIRST_CLASS_HOUR, 14, offA, offB); break;
+                    case 1: shifts[id] = new TrainerShift(14, LAST_CLASS_HOUR + 1, offA, offB); break;
+                    default: shifts[id] = new TrainerShift(10, 18, offA, offB); break;
+                }
+            }
+            out.report("Trainer");
+        }
+
+        int availabilityId = 0;
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY TrainerAvailability (availability_id, trainer_id, day_of_week, start_time, end_time) " +
+                        "FROM STDIN (FORMAT csv)")) {
+            for (int id = 1; id <= trainers; id++) {
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    TrainerShift shift = shifts[id];
+                    if (shift.worksAt(day, shift.startHour)) {
+                        out.row(++availabilityId, id, FitClubService.dayName(day),
+                                hhmm(shift.startHour, 0), hhmm(shift.endHour, 0));
+                    }
+                }
+            }
+            out.report("TrainerAvailability");
+        }
+        return shifts;
+    }
+
+    private int[] loadRooms(CopyManager copyManager, int rooms) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 2);
+        int[] capacity = new int[rooms + 1];
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY Room (room_id, room_name, capacity) FROM STDIN (FORMAT csv)")) {
+            for (int id = 1; id <= rooms; id++) {
+                capacity[id] = ROOM_CAPACITIES[random.nextInt(ROOM_CAPACITIES.length)];
+                out.row(id, "Studio " + id, capacity[id]);
+            }
+            out.report("Room");
+        }
+        return capacity;
+    }
+
+    // Generated classes, kept in parallel arrays for the registration pass
+    private static final class Schedule {
+        int count;
+        int[] capacity = new int[1 << 16];
+        long[] epochDay = new long[1 << 16];
+
+        void add(int classCapacity, long day) {
+            if (count + 1 >= capacity.length) {
+                capacity = Arrays.copyOf(capacity, capacity.length * 2);
+                epochDay = Arrays.copyOf(epochDay, epochDay.length * 2);
+            }
+            count++;
+            capacity[count] = classCapacity;
+            epochDay[count] = day;
+        }
+    }
+
+    private Schedule loadClasses(CopyManager copyManager, TrainerShift[] shifts, int[] roomCapacity,
+                                 LocalDate firstDay, LocalDate lastDay) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 3);
+        Schedule schedule = new Schedule();
+        int rooms = roomCapacity.length - 1;
+        int trainers = shifts.length - 1;
+        int[] freeTrainers = new int[trainers];
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY GroupClass (class_id, class_name, class_date, start_time, end_time, capacity, trainer_id, room_id) " +
+                        "FROM STDIN (FORMAT csv)")) {
+            for (LocalDate date = firstDay; !date.isAfter(lastDay); date = date.plusDays(1)) {
+                DayOfWeek day = date.getDayOfWeek();
+                for (int hour = FIRST_CLASS_HOUR; hour <= LAST_CLASS_HOUR; hour++) {
+                    // Trainers whose availability covers this hour, shuffled; each teaches at most one class
+                    int free = 0;
+                    for (int t = 1; t <= trainers; t++) {
+                        if (shifts[t].worksAt(day, hour)) {
+                            freeTrainers[free++] = t;
+                        }
+                    }
+                    for (int room = 1; room <= rooms && free > 0; room++) {
+                        if (random.nextDouble() >= roomOccupancy) {
+                            continue;
+                        }
+                        int pick = random.nextInt(free);
+                        int trainer = freeTrainers[pick];
+                        freeTrainers[pick] = freeTrainers[--free];
+
+                        int capacity = Math.max(1, roomCapacity[room] / 2 + random.nextInt(roomCapacity[room] / 2 + 1));
+                        int minutes = random.nextBoolean() ? 45 : 60;
+                        schedule.add(capacity, date.toEpochDay());
+                        out.row(schedule.count, CLASS_TYPES[random.nextInt(CLASS_TYPES.length)], date,
+                                hhmm(hour, 0), minutes == 60 ? hhmm(hour + 1, 0) : hhmm(hour, 45),
+                                capacity, trainer, room);
+                    }
+                }
+            }
+            out.report("GroupClass");
+        }
+        return schedule;
+    }
+
+    private void loadRegistrations(CopyManager copyManager, Schedule schedule, int members,
+                                   LocalDate[] memberSince, LocalDate today) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 4);
+        long todayEpoch = today.toEpochDay();
+        int[] chosen = new int[64];
+        long registrationId = 0;
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY ClassRegistration (registration_id, member_id, class_id, registration_date) FROM STDIN (FORMAT csv)")) {
+            for (int classId = 1; classId <= schedule.count; classId++) {
+                long classDay = schedule.epochDay[classId];
+                int capacity = schedule.capacity[classId];
+                // Past classes ran 50-100% full, upcoming ones are still filling up
+                double fill = classDay < todayEpoch ? 0.5 + random.nextDouble() * 0.5 : 0.1 + random.nextDouble() * 0.8;
+                int seats = Math.min(capacity, (int) Math.round(capacity * fill));
+                if (chosen.length < seats) {
+                    chosen = new int[seats];
+                }
+
+                int taken = 0;
+                for (int attempt = 0; taken < seats && attempt < seats * 4; attempt++) {
+                    int member = 1 + random.nextInt(members);
+                    long signUp = classDay - 1 - random.nextInt(30);
+                    if (memberSince[member].toEpochDay() > signUp || contains(chosen, taken, member)) {
+                        continue;
+                    }
+                    chosen[taken++] = member;
+                    out.row(++registrationId, member, classId, LocalDate.ofEpochDay(Math.min(signUp, todayEpoch)));
+                }
+            }
+            out.report("ClassRegistration");
+        }
+    }
+
+    private void loadHealthMetrics(CopyManager copyManager, LocalDate[] memberSince, LocalDate today)
+            throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 5);
+        long todayEpoch = today.toEpochDay();
+        long metricId = 0;
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY HealthMetric (metric_id, member_id, date_recorded, weight, resting_heart_rate, " +
+                        "body_fat_percentage, vo2_max) FROM STDIN (FORMAT csv)")) {
+            for (int member = 1; member < memberSince.length; member++) {
+                int count = metricsPerMember == 0 ? 0 : random.nextInt(2 * metricsPerMember + 1);
+                long since = memberSince[member].toEpochDay();
+                long span = Math.max(1, todayEpoch - since);
+
+                double weight = 55 + random.nextDouble() * 55;
+                double heartRate = 55 + random.nextDouble() * 30;
+                double bodyFat = 10 + random.nextDouble() * 25;
+                double vo2 = 28 + random.nextDouble() * 25;
+
+                for (int k = 0; k < count; k++) {
+                    // Evenly spaced readings with a slow drift towards fitter values
+                    long day = since + span * (k + 1) / (count + 1);
+                    weight = clamp(weight + random.nextDouble() * 1.2 - 0.7, 40, 180);
+                    heartRate = clamp(heartRate + random.nextDouble() * 1.5 - 0.9, 40, 110);
+                    bodyFat = clamp(bodyFat + random.nextDouble() * 0.6 - 0.35, 4, 60);
+                    vo2 = clamp(vo2 + random.nextDouble() * 0.8 - 0.3, 15, 85);
+
+                    // Scales report everything, wearables often only heart rate
+                    boolean scaleReading = random.nextInt(3) != 0;
+                    out.row(++metricId, member, LocalDate.ofEpochDay(day),
+                            scaleReading ? round2(weight) : null,
+                            (int) Math.round(heartRate),
+                            scaleReading ? round2(bodyFat) : null,
+                            random.nextInt(4) == 0 ? round2(vo2) : null);
+                }
+            }
+            out.report("HealthMetric");
+        }
+    }
+
+    private void loadFitnessGoals(CopyManager copyManager, LocalDate[] memberSince, LocalDate today)
+            throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 6);
+        long goalId = 0;
+
+        try (CopyWriter out = new CopyWriter(copyManager,
+                "COPY FitnessGoal (goal_id, member_id, goal_type, target_value, target_date, status) " +
+                        "FROM STDIN (FORMAT csv)")) {
+            for (int member = 1; member < memberSince.length; member++) {
+                int goals = random.nextInt(4);
+                for (int k = 0; k < goals; k++) {
+                    LocalDate target = memberSince[member].plusDays(60 + random.nextInt(400));
+                    String status = target.isAfter(today) ? "Active"
+                            : (random.nextInt(3) == 0 ? "Abandoned" : "Achieved");
+                    out.row(++goalId, member, GOAL_TYPES[random.nextInt(GOAL_TYPES.length)],
+                            round2(20 + random.nextDouble() * 70), target, status);
+                }
+            }
+            out.report("FitnessGoal");
+        }
+    }
+
+    // ===================== Verification =====================
+
+    // Set-based checks for the trigger rules; every count should be 0
+    public void verify(Connection conn) throws SQLException {
+        String[][] checks = {
+                {"Classes over room capacity",
+                        "SELECT COUNT(*) FROM GroupClass gc JOIN Room r ON gc.room_id = r.room_id WHERE gc.capacity > r.capacity"},
+                {"Classes over class capacity",
+                        "SELECT COUNT(*) FROM (SELECT cr.class_id FROM ClassRegistration cr JOIN GroupClass gc " +
+                                "ON cr.class_id = gc.class_id GROUP BY cr.class_id, gc.capacity " +
+                                "HAVING COUNT(*) > gc.capacity) overfull"},
+                {"Seat counters out of date",
+                        "SELECT COUNT(*) FROM GroupClass gc WHERE gc.registered_count <> " +
+                                "(SELECT COUNT(*) FROM ClassRegistration cr WHERE cr.class_id = gc.class_id)"},
+                {"Room double bookings",
+                        "SELECT COUNT(*) FROM GroupClass a JOIN GroupClass b ON a.room_id = b.room_id " +
+                                "AND a.class_date = b.class_date AND a.class_id < b.class_id " +
+                                "AND a.start_time < b.end_time AND b.start_time < a.end_time"},
+                {"Trainer double bookings",
+                        "SELECT COUNT(*) FROM GroupClass a JOIN GroupClass b ON a.trainer_id = b.trainer_id " +
+                                "AND a.class_date = b.class_date AND a.class_id < b.class_id " +
+                                "AND a.start_time < b.end_time AND b.start_time < a.end_time"},
+                {"Overlapping availability",
+                        "SELECT COUNT(*) FROM TrainerAvailability a JOIN TrainerAvailability b " +
+                                "ON a.trainer_id = b.trainer_id AND a.day_of_week = b.day_of_week " +
+                                "AND a.availability_id < b.availability_id " +
+                                "AND a.start_time < b.end_time AND b.start_time < a.end_time"},
+                {"Classes outside trainer availability",
+                        "SELECT COUNT(*) FROM GroupClass gc WHERE NOT EXISTS (SELECT 1 FROM TrainerAvailability ta " +
+                                "WHERE ta.trainer_id = gc.trainer_id AND ta.day_of_week = to_char(gc.class_date, 'FMDay') " +
+                                "AND ta.start_time <= gc.start_time AND ta.end_time >= gc.end_time)"}
+        };
+
+        boolean ok = true;
+        try (Statement statement = conn.createStatement()) {
+            for (String[] check : checks) {
+                try (ResultSet rs = statement.executeQuery(check[1])) {
+                    rs.next();
+                    long violations = rs.getLong(1);
+                    ok &= violations == 0;
+                    System.out.printf("   %-38s %d%n", check[0] + ":", violations);
+                }
+            }
+        }
+        System.out.println(ok ? "Verification passed." : "ERROR: Verification found violations.");
+    }
+
+    // ===================== Helpers =====================
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static String round2(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String hhmm(int hour, int minute) {
+        return String.format(Locale.ROOT, "%02d:%02d", hour, minute);
+    }
+
+    // Buffers CSV rows and streams them into one COPY ... FROM STDIN
+    static final class CopyWriter implements AutoCloseable {
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 4096);
+        private final long started = System.nanoTime();
+        private long rows = 0;
+
+        CopyWriter(CopyManager copyManager, String sql) throws SQLException {
+            this.copyIn = copyManager.copyIn(sql);
+        }
+
+        // null becomes an empty (NULL) field; strings are quoted
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                Object value = values[i];
+                if (value instanceof String) {
+                    appendQuoted((String) value);
+                } else if (value != null) {
+                    buffer.append(value);
+                }
+            }
+            buffer.append('\n');
+            rows++;
+            if (buffer.length() >= COPY_BUFFER_CHARS) {
+                flush();
+            }
+        }
+
+        private void appendQuoted(String value) {
+            buffer.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    buffer.append('"');
+                }
+                buffer.append(c);
+            }
+            buffer.append('"');
+        }
+
+        private void flush() throws SQLException {
+            if (buffer.length() > 0) {
+                byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                buffer.setLength(0);
+            }
+        }
+
+        void report(String table) {
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("   %-20s %,14d rows  %7.1f s  %,12.0f rows/s%n",
+                    table, rows, seconds, rows / Math.max(seconds, 1e-9));
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }
+    }
+}
@@ -1,45 +1,88 @@
 package org.fitclub;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
-// Manages database connection to postgres
+// Manages database connections to postgres through a shared connection pool
 public class DatabaseConnection {
 
-    // Database credentials (Hard coded with values for my setup)
-    private static final String URL = "jdbc:postgresql://localhost:5432/fitclub_db";
-    private static final String USER = "postgres";
-    private static final String PASSWORD = "birthday";
+    // Database credentials (Hard coded with values for my setup, can be overridden with -Dfitclub.db.*)
+    private static final String URL = System.getProperty("fitclub.db.url", "jdbc:postgresql://localhost:5432/fitclub_db");
+    private static final String USER = System.getProperty("fitclub.db.user", "postgres");
+    private static final String PASSWORD = System.getProperty("fitclub.db.password", "birthday");
 
-    // Establish and return connection to the database (or handle unsuccessful connection)
-    public static Connection getConnection() throws SQLException {
-        try {
-            // Upload the Driver
-            Class.forName("org.postgresql.Driver");
-            // Make connection with specified url, username, and password
-            Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+    // Pool settings (can be overridden with -Dfitclub.pool.*)
+    private static final int POOL_MIN_SIZE = Integer.getInteger("fitclub.pool.minSize", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("fitclub.pool.maxSize", 10);
+    private static final long BORROW_TIMEOUT_MS = Long.getLong("fitclub.pool.borrowTimeoutMs", 5_000L);
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("fitclub.pool.idleTimeoutMs", 10 * 60_000L);
+    private static final long MAX_LIFETIME_MS = Long.getLong("fitclub.pool.maxLifetimeMs", 30 * 60_000L);
+    private static final long LEAK_THRESHOLD_MS = Long.getLong("fitclub.pool.leakThresholdMs", 5 * 60_000L);
+    // Also report where a leaked connection was borrowed (records the stack on every borrow)
+    private static final boolean LEAK_TRACE = Boolean.getBoolean("fitclub.pool.leakTrace");
+    private static final long HOUSEKEEPING_MS = Long.getLong("fitclub.pool.housekeepingMs", 30_000L);
+
+    // Prepared statement cache per pooled connection (0 disables it), and how many reuses
+    // before a cached statement is switched to a server-side prepared statement
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("fitclub.pool.statementCacheSize", 64);
+    private static final int SERVER_PREPARE_THRESHOLD = Integer.getInteger("fitclub.pool.serverPrepareThreshold", 3);
+
+    private static ConnectionPool pool;
 
-            return connection;
+    // Return the shared pool, creating it on first use
+    public static synchronized ConnectionPool getDataSource() throws SQLException {
+        if (pool == null) {
+            try {
+                // Upload the Driver
+                Class.forName("org.postgresql.Driver");
+            } catch (ClassNotFoundException e) {
+                System.err.println("Postgres JDBC Driver not found.");
+                throw new SQLException("Driver not found", e);
+            }
+            pool = new ConnectionPool(URL, USER, PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                    BORROW_TIMEOUT_MS, IDLE_TIMEOUT_MS, MAX_LIFETIME_MS, LEAK_THRESHOLD_MS, LEAK_TRACE,
+                    HOUSEKEEPING_MS, STATEMENT_CACHE_SIZE, SERVER_PREPARE_THRESHOLD);
+        }
+        return pool;
+    }
 
-        } catch (ClassNotFoundException e) {
-            System.err.println("Postgres JDBC Driver not found.");
-            throw new SQLException("Driver not found", e);
+    // Borrow a connection from the pool (or handle unsuccessful connection)
+    // Closing the returned connection hands it back to the pool
+    public static Connection getConnection() throws SQLException {
+        DataSource dataSource = getDataSource();
+        try {
+            return dataSource.getConnection();
         } catch (SQLException e) {
             System.err.println("Failed to connect to database.");
             throw e;
         }
     }
 
-    // Closes database connection
+    // Open a connection outside the pool for long-lived sessions (e.g. LISTEN); the caller closes it
+    public static Connection openDedicatedConnection() throws SQLException {
+        getDataSource();
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+
+    // Closes (returns) a database connection
     public static void closeConnection(Connection connection) {
         if (connection != null) {
             try {
                 connection.close();
-                System.out.println("Database connection closed.");
             } catch (SQLException e) {
                 System.err.println("Error closing connection: " + e.getMessage());
             }
         }
     }
+
+    // Shut down the pool, closing all idle connections
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            System.out.println("Database connection pool closed.");
+        }
+    }
 }
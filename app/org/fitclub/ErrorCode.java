@@ -0,0 +1,18 @@
+package org.fitclub;
+
+// Reasons a FitClubService operation can fail
+public enum ErrorCode {
+    INVALID_INPUT,
+    NOT_FOUND,
+    DUPLICATE_EMAIL,
+    ALREADY_REGISTERED,
+    CLASS_FULL,
+    CLASS_NOT_AVAILABLE,
+    AVAILABILITY_OVERLAP,
+    ROOM_BOOKED,
+    CAPACITY_EXCEEDS_ROOM,
+    TRAINER_UNAVAILABLE,
+    TRAINER_BUSY,
+    DATABASE_ERROR,
+    OVERLOADED
+}
@@ -0,0 +1,1721 @@
+package org.fitclub;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Types;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+// Console-free API for all member, trainer and admin operations
+// Takes typed requests and returns ServiceResults; keeps no session state, so one instance
+// can be shared by any number of threads (every call borrows its own pooled connection)
+public class FitClubService {
+
+    private final DataSource dataSource;
+    // Answers member searches from memory once loaded; null to always search the database
+    private final MemberSearchIndex searchIndex;
+    // Answers slot checks and free windows from memory once loaded; null to always ask the database
+    private final ScheduleIndex scheduleIndex;
+
+    public FitClubService(DataSource dataSource) {
+        this(dataSource, null, null);
+    }
+
+    public FitClubService(DataSource dataSource, MemberSearchIndex searchIndex) {
+        this(dataSource, searchIndex, null);
+    }
+
+    public FitClubService(DataSource dataSource, MemberSearchIndex searchIndex, ScheduleIndex scheduleIndex) {
+        this.dataSource = dataSource;
+        this.searchIndex = searchIndex;
+        this.scheduleIndex = scheduleIndex;
+    }
+
+    // ===================== Requests =====================
+
+    public record RegisterMemberRequest(String firstName, String lastName, String email) {
+    }
+
+    public enum MemberField {
+        FIRST_NAME("first_name"),
+        LAST_NAME("last_name"),
+        EMAIL("email");
+
+        private final String column;
+
+        MemberField(String column) {
+            this.column = column;
+        }
+    }
+
+    public record UpdatePersonalInfoRequest(int memberId, MemberField field, String value) {
+    }
+
+    public record FitnessGoalRequest(int memberId, String goalType, double targetValue, LocalDate targetDate) {
+    }
+
+    // Any metric may be null (not measured), but at least one must be present
+    public record HealthMetricRequest(int memberId, Double weight, Integer restingHeartRate,
+                                      Double bodyFatPercentage, Double vo2Max) {
+    }
+
+    public record ClassRegistrationRequest(int memberId, int classId) {
+    }
+
+    public record AvailabilityRequest(int trainerId, DayOfWeek dayOfWeek, LocalTime startTime, LocalTime endTime) {
+    }
+
+    public record GroupClassRequest(String className, LocalDate classDate, LocalTime startTime, LocalTime endTime,
+                                    int roomId, int trainerId, int capacity) {
+    }
+
+    // The same class on the given weekdays from firstDate to lastDate (inclusive), except exceptDates (may be null)
+    public record ClassSeriesRequest(String className, Set<DayOfWeek> daysOfWeek, LocalTime startTime,
+                                     LocalTime endTime, LocalDate firstDate, LocalDate lastDate,
+                                     List<LocalDate> exceptDates, int roomId, int trainerId, int capacity) {
+    }
+
+    public record PreferredTime(DayOfWeek dayOfWeek, LocalTime startTime) {
+    }
+
+    // A class the term timetable should hold every week; the class capacity is the expected demand
+    public record RequestedClass(String className, int durationMinutes, int expectedDemand,
+                                 List<PreferredTime> preferredTimes) {
+    }
+
+    // Classes to place in a weekly timetable for the term firstDate - lastDate, around the classes already
+    // booked then; the search runs for timeBudgetSeconds
+    public record TimetableRequest(LocalDate firstDate, LocalDate lastDate, List<RequestedClass> classes,
+                                   int timeBudgetSeconds) {
+    }
+
+    // ===================== Results =====================
+
+    public record MemberInfo(int memberId, String firstName, String lastName, String email, LocalDate registrationDate) {
+        public String fullName() {
+            return firstName + " " + lastName;
+        }
+    }
+
+    public record FitnessGoal(int goalId, int memberId, String goalType, double targetValue,
+                              LocalDate targetDate, String status) {
+    }
+
+    public record HealthMetric(int metricId, int memberId, LocalDate dateRecorded, Double weight,
+                               Integer restingHeartRate, Double bodyFatPercentage, Double vo2Max) {
+    }
+
+    public record UpcomingClass(int classId, String className, LocalDate classDate, LocalTime startTime,
+                                LocalTime endTime, String roomName, String trainerName) {
+    }
+
+    // Latest metric fields are null when the member has not logged any metrics
+    public record MemberDashboard(int memberId, String firstName, String lastName, String email,
+                                  Double latestWeight, Integer latestHeartRate, Double latestBodyFat,
+                                  LocalDate latestMetricDate, int activeGoalsCount, int pastClassesCount,
+                                  int upcomingClassesCount, List<UpcomingClass> upcomingClasses) {
+    }
+
+    public record ClassListing(int classId, String className, LocalDate classDate, LocalTime startTime,
+                               LocalTime endTime, int capacity, int registeredCount, String roomName,
+                               String trainerName) {
+        public int availableSpots() {
+            return capacity - registeredCount;
+        }
+    }
+
+    // One page of a keyset-paginated list; nextCursor (opaque) fetches the page after it, null on the last page
+    public record Page<T>(List<T> items, String nextCursor) {
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+
+    // waitlistPosition is null when the member has a seat, otherwise their place in the class waitlist
+    public record ClassRegistration(int memberId, int classId, String className, LocalDate classDate,
+                                    Integer waitlistPosition) {
+        public boolean isWaitlisted() {
+            return waitlistPosition != null;
+        }
+    }
+
+    // wasWaitlisted: the member left the waitlist rather than giving up a seat
+    public record CancelledRegistration(int memberId, int classId, boolean wasWaitlisted) {
+    }
+
+    public record AvailabilitySlot(int availabilityId, int trainerId, DayOfWeek dayOfWeek,
+                                   LocalTime startTime, LocalTime endTime) {
+    }
+
+    // A weekly template applied: of its windows, how many were already there, new, or an existing window
+    // with a new end time; removed counts the trainers' windows the template no longer has
+    public record AvailabilityUpdate(int trainers, int windows, int unchanged, int added, int changed, int removed) {
+    }
+
+    // latestMetric is null when the member has not logged any metrics
+    public record MemberProfile(MemberInfo member, HealthMetric latestMetric, List<FitnessGoal> activeGoals,
+                                int pastClassesCount) {
+    }
+
+    public record Room(int roomId, String roomName, int capacity) {
+    }
+
+    public record TrainerInfo(int trainerId, String firstName, String lastName, String email) {
+        public String fullName() {
+            return firstName + " " + lastName;
+        }
+    }
+
+    public record GroupClass(int classId, String className, LocalDate classDate, LocalTime startTime,
+                             LocalTime endTime, int capacity, Room room, TrainerInfo trainer) {
+    }
+
+    // A class as the schedule sees it: which room and trainer it takes, and when
+    public record ScheduledClass(int classId, LocalDate classDate, LocalTime startTime, LocalTime endTime,
+                                 int roomId, int trainerId) {
+    }
+
+    // Whether a class could go in a slot, and what stands in the way if not
+    public record SlotCheck(boolean free, boolean trainerAvailable, List<ScheduledClass> roomConflicts,
+                            List<ScheduledClass> trainerConflicts) {
+        static SlotCheck of(boolean trainerAvailable, List<ScheduledClass> roomConflicts,
+                            List<ScheduledClass> trainerConflicts) {
+            return new SlotCheck(trainerAvailable && roomConflicts.isEmpty() && trainerConflicts.isEmpty(),
+                    trainerAvailable, roomConflicts, trainerConflicts);
+        }
+    }
+
+    // One date of a class series: classId when the class was created, otherwise conflict says why not
+    // (ROOM_BOOKED, TRAINER_BUSY or TRAINER_UNAVAILABLE, the first that applies) with the classes in the way
+    public record SeriesOccurrence(LocalDate classDate, Integer classId, ErrorCode conflict, boolean trainerAvailable,
+                                   List<Integer> roomConflicts, List<Integer> trainerConflicts) {
+        static SeriesOccurrence created(LocalDate classDate, int classId) {
+            return new SeriesOccurrence(classDate, classId, null, true, List.of(), List.of());
+        }
+
+        static SeriesOccurrence conflict(LocalDate classDate, boolean trainerAvailable, List<Integer> roomConflicts,
+                                         List<Integer> trainerConflicts) {
+            ErrorCode conflict = !roomConflicts.isEmpty() ? ErrorCode.ROOM_BOOKED
+                    : !trainerConflicts.isEmpty() ? ErrorCode.TRAINER_BUSY
+                    : ErrorCode.TRAINER_UNAVAILABLE;
+            return new SeriesOccurrence(classDate, null, conflict, trainerAvailable, roomConflicts, trainerConflicts);
+        }
+
+        public boolean isCreated() {
+            return classId != null;
+        }
+    }
+
+    // Every date of a series in date order
+    public record ClassSeriesReport(int created, int rejected, List<SeriesOccurrence> occurrences) {
+        static ClassSeriesReport of(List<SeriesOccurrence> occurrences) {
+            int created = (int) occurrences.stream().filter(SeriesOccurrence::isCreated).count();
+            return new ClassSeriesReport(created, occurrences.size() - created, occurrences);
+        }
+    }
+
+    // A free stretch of a day; endTime is LocalTime.MAX when it runs to midnight
+    public record TimeWindow(LocalTime startTime, LocalTime endTime) {
+    }
+
+    // A room and trainer both free from startTime to endTime (LocalTime.MAX: midnight); spareSeats and
+    // spareMinutes are what the class would leave unused of the room and the stretch
+    public record FreeSlot(LocalDate date, LocalTime startTime, LocalTime endTime, int roomId, int roomCapacity,
+                           int trainerId, int spareSeats, int spareMinutes) {
+    }
+
+    // ===================== Member operations =====================
+
+    // Registers a new member
+    // Edge Case -> Duplicate email (UNIQUE constraint violation)
+    public ServiceResult<MemberInfo> registerMember(RegisterMemberRequest request) {
+        String firstName = trimToEmpty(request.firstName());
+        String lastName = trimToEmpty(request.lastName());
+        String email = trimToEmpty(request.email());
+
+        if (firstName.isEmpty() || lastName.isEmpty() || email.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "First name, last name, and email are required.");
+        }
+
+        return execute("Registration failed.", conn -> {
+            String query = "INSERT INTO Member (first_name, last_name, email) " +
+                    "VALUES (?, ?, ?) RETURNING member_id, registration_date";
+
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+                statement.setString(1, firstName);
+                statement.setString(2, lastName);
+                statement.setString(3, email);
+
+                MemberInfo member;
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    member = new MemberInfo(rs.getInt("member_id"), firstName, lastName, email,
+                            toLocalDate(rs.getDate("registration_date")));
+                }
+                indexMember(member);
+                return ServiceResult.ok(member);
+            } catch (SQLException e) {
+                if (isDuplicateKey(e)) {
+                    return ServiceResult.error(ErrorCode.DUPLICATE_EMAIL, "This email is already registered.");
+                } else if (e.getMessage().contains("violates not-null constraint")) {
+                    return ServiceResult.error(ErrorCode.INVALID_INPUT, "Missing required field.");
+                }
+                throw e;
+            }
+        });
+    }
+
+    // Look up a member ID by email (for login)
+    public ServiceResult<Integer> findMemberIdByEmail(String email) {
+        return findIdByEmail("SELECT member_id FROM Member WHERE email = ?", email, "No Member found with that email.");
+    }
+
+    public ServiceResult<MemberInfo> getMember(int memberId) {
+        return execute("Could not retrieve member.", conn -> {
+            MemberInfo member = loadMember(conn, memberId);
+            return member == null
+                    ? ServiceResult.error(ErrorCode.NOT_FOUND, "Member not found.")
+                    : ServiceResult.ok(member);
+        });
+    }
+
+    // Update one field of the member's account information
+    // Edge Case -> New email already used by another member
+    public ServiceResult<MemberInfo> updatePersonalInfo(UpdatePersonalInfoRequest request) {
+        String value = trimToEmpty(request.value());
+        if (request.field() == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid choice.");
+        }
+        if (value.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Value cannot be empty.");
+        }
+
+        return execute("Update failed.", conn -> {
+            String updateQuery = "UPDATE Member SET " + request.field().column + " = ? WHERE member_id = ?";
+            try (PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
+                updateStmt.setString(1, value);
+                updateStmt.setInt(2, request.memberId());
+
+                if (updateStmt.executeUpdate() == 0) {
+                    return ServiceResult.error(ErrorCode.NOT_FOUND, "Member not found.");
+                }
+            } catch (SQLException e) {
+                if (isDuplicateKey(e)) {
+                    return ServiceResult.error(ErrorCode.DUPLICATE_EMAIL, "This email is already in use by another member.");
+                }
+                throw e;
+            }
+            MemberInfo member = loadMember(conn, request.memberId());
+            indexMember(member);
+            return ServiceResult.ok(member);
+        });
+    }
+
+    // Committed changes show up in this instance's search index at once; other instances (and this one,
+    // again) get them through the DDL's member_search notification
+    private void indexMember(MemberInfo member) {
+        if (searchIndex != null && member != null) {
+            searchIndex.put(member);
+        }
+    }
+
+    // Create a new active fitness goal
+    // Edge Case -> Invalid target value or date
+    public ServiceResult<FitnessGoal> createFitnessGoal(FitnessGoalRequest request) {
+        String goalType = trimToEmpty(request.goalType());
+        if (goalType.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Goal type cannot be empty.");
+        }
+        if (request.targetValue() <= 0) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Target value must be positive.");
+        }
+        if (request.targetDate() == null || !request.targetDate().isAfter(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Target date must be in the future.");
+        }
+
+        return execute("Failed to create fitness goal.", conn -> {
+            String query = "INSERT INTO FitnessGoal (member_id, goal_type, target_value, target_date, status) " +
+                    "VALUES (?, ?, ?, ?, 'Active') RETURNING goal_id";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, request.memberId());
+                pstmt.setString(2, goalType);
+                pstmt.setDouble(3, request.targetValue());
+                pstmt.setDate(4, Date.valueOf(request.targetDate()));
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    return ServiceResult.ok(new FitnessGoal(rs.getInt("goal_id"), request.memberId(), goalType,
+                            request.targetValue(), request.targetDate(), "Active"));
+                }
+            }
+        });
+    }
+
+    // Record new health measurements for today (append, not overwrite)
+    // Edge Case -> Invalid metric values (negative numbers, body fat over 100%)
+    public ServiceResult<HealthMetric> logHealthMetric(HealthMetricRequest request) {
+        ServiceResult<HealthMetric> invalid = validateHealthMetric(request);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        return execute("Failed to log health metrics.", conn -> {
+            String query = "INSERT INTO HealthMetric (member_id, date_recorded, weight, resting_heart_rate, " +
+                    "body_fat_percentage, vo2_max) " +
+                    "VALUES (?, CURRENT_DATE, ?, ?, ?, ?) RETURNING metric_id, date_recorded";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, request.memberId());
+                setNullableDouble(pstmt, 2, request.weight());
+                setNullableInt(pstmt, 3, request.restingHeartRate());
+                setNullableDouble(pstmt, 4, request.bodyFatPercentage());
+                setNullableDouble(pstmt, 5, request.vo2Max());
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    return ServiceResult.ok(new HealthMetric(rs.getInt("metric_id"), request.memberId(),
+                            toLocalDate(rs.getDate("date_recorded")), request.weight(), request.restingHeartRate(),
+                            request.bodyFatPercentage(), request.vo2Max()));
+                }
+            }
+        });
+    }
+
+    // Same rules as the console: at least one metric, all positive, body fat at most 100%
+    static <T> ServiceResult<T> validateHealthMetric(HealthMetricRequest request) {
+        if (request.weight() == null && request.restingHeartRate() == null &&
+                request.bodyFatPercentage() == null && request.vo2Max() == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Please enter at least one health metric.");
+        }
+        if ((request.weight() != null && request.weight() <= 0) ||
+                (request.restingHeartRate() != null && request.restingHeartRate() <= 0) ||
+                (request.bodyFatPercentage() != null &&
+                        (request.bodyFatPercentage() <= 0 || request.bodyFatPercentage() > 100)) ||
+                (request.vo2Max() != null && request.vo2Max() <= 0)) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "All metrics must be positive values.");
+        }
+        return null;
+    }
+
+    // Member's dashboard: latest metrics, goal and class counts, upcoming schedule
+    // One round trip: the summary row plus the upcoming classes aggregated into a JSON array
+    // The list splits on the same date as the summary's counts (DashboardRollover.as_of, which stays on
+    // yesterday until the rollover job has run), so the two always agree
+    // Edge Case -> Member has no health metrics or goals (null metrics, zero counts)
+    public ServiceResult<MemberDashboard> getDashboard(int memberId) {
+        return execute("Failed to retrieve dashboard.", conn -> {
+            String query = "SELECT d.*, COALESCE(u.classes, '[]') AS upcoming_classes " +
+                    "FROM MemberDashboard d " +
+                    "LEFT JOIN LATERAL (" +
+                    "    SELECT json_agg(json_build_object(" +
+                    "               'classId', gc.class_id, 'className', gc.class_name, 'classDate', gc.class_date, " +
+                    "               'startTime', gc.start_time, 'endTime', gc.end_time, 'roomName', r.room_name, " +
+                    "               'trainerName', t.first_name || ' ' || t.last_name) " +
+                    "           ORDER BY gc.class_date, gc.start_time) AS classes " +
+                    "    FROM ClassRegistration cr " +
+                    "    JOIN GroupClass gc ON cr.class_id = gc.class_id " +
+                    "    JOIN Room r ON gc.room_id = r.room_id " +
+                    "    JOIN Trainer t ON gc.trainer_id = t.trainer_id " +
+                    "    WHERE cr.member_id = d.member_id " +
+                    "      AND gc.class_date >= (SELECT as_of FROM DashboardRollover)" +
+                    ") u ON TRUE " +
+                    "WHERE d.member_id = ?";
+
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+                statement.setInt(1, memberId);
+
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        return ServiceResult.error(ErrorCode.NOT_FOUND, "Member not found.");
+                    }
+
+                    MemberDashboard dashboard = new MemberDashboard(memberId,
+                            rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"),
+                            getNullableDouble(rs, "latest_weight"), getNullableInt(rs, "latest_heart_rate"),
+                            getNullableDouble(rs, "latest_body_fat"), toLocalDate(rs.getDate("latest_metric_date")),
+                            rs.getInt("active_goals_count"), rs.getInt("past_classes_count"),
+                            rs.getInt("upcoming_classes_count"), parseUpcomingClasses(rs.getString("upcoming_classes")));
+                    return ServiceResult.ok(dashboard);
+                }
+            }
+        });
+    }
+
+    // Map the json_agg array of the dashboard query to UpcomingClass records
+    static List<UpcomingClass> parseUpcomingClasses(String json) {
+        List<UpcomingClass> classes = new ArrayList<>();
+        for (Object item : (List<?>) Json.parse(json)) {
+            Map<?, ?> fields = (Map<?, ?>) item;
+            classes.add(new UpcomingClass(((Number) fields.get("classId")).intValue(), (String) fields.get("className"),
+                    LocalDate.parse((String) fields.get("classDate")), LocalTime.parse((String) fields.get("startTime")),
+                    LocalTime.parse((String) fields.get("endTime")), (String) fields.get("roomName"),
+                    (String) fields.get("trainerName")));
+        }
+        return classes;
+    }
+
+    // Daily rollover of the dashboard summaries (moves yesterday's classes from upcoming to past)
+    // Returns the number of member summaries changed; 0 if it already ran today
+    public ServiceResult<Integer> rolloverDashboards() {
+        return execute("Dashboard rollover failed.", conn -> {
+            try (Statement statement = conn.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT dashboard_rollover()")) {
+                rs.next();
+                return ServiceResult.ok(rs.getInt(1));
+            }
+        });
+    }
+
+    // HealthMetric partition upkeep (health_metric_maintain() in sql/ddl.sql): months created up to monthsAhead
+    // ahead, months older than hotMonths made cold (BRIN), months older than retentionMonths detached (0: never)
+    // Returns one line per partition changed; empty when there was nothing to do
+    public ServiceResult<List<String>> maintainHealthMetricPartitions(int monthsAhead, int hotMonths,
+                                                                      int retentionMonths) {
+        if (monthsAhead < 0 || hotMonths < 0 || retentionMonths < 0 ||
+                (retentionMonths > 0 && retentionMonths <= hotMonths)) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "Months must not be negative, and retention must be longer than the hot months.");
+        }
+
+        return execute("Health metric partition maintenance failed.", conn -> {
+            List<String> changes = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM health_metric_maintain(?, ?, ?)")) {
+                pstmt.setInt(1, monthsAhead);
+                pstmt.setInt(2, hotMonths);
+                pstmt.setInt(3, retentionMonths);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        changes.add(rs.getString(1));
+                    }
+                }
+            }
+            return ServiceResult.ok(changes);
+        });
+    }
+
+    // Recount GroupClass.registered_count wherever it no longer matches the registrations
+    // Returns the number of classes corrected; normally 0, since the triggers keep the counter exact
+    public ServiceResult<Integer> reconcileSeatCounts() {
+        return execute("Seat count reconciliation failed.", conn -> {
+            try (Statement statement = conn.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT seat_count_reconcile()")) {
+                rs.next();
+                return ServiceResult.ok(rs.getInt(1));
+            }
+        });
+    }
+
+    // Upcoming classes in schedule order, a page at a time: keyset pagination on (class_date, start_time,
+    // class_id), so a deep page is one index range scan like the first. after: nextCursor of the previous
+    // page, or null for the first
+    public ServiceResult<Page<ClassListing>> listUpcomingClasses(String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "The page size must be between 1 and " + MAX_PAGE_LIMIT + ".");
+        }
+        String[] position = after == null ? null : decodeCursor(after, 3);
+        List<Object> params = new ArrayList<>();
+        if (position != null) {
+            try {
+                params.addAll(List.of(Date.valueOf(LocalDate.parse(position[0])),
+                        Time.valueOf(LocalTime.parse(position[1])), Integer.parseInt(position[2])));
+            } catch (RuntimeException e) {
+                position = null;
+            }
+        }
+        if (after != null && position == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid page cursor.");
+        }
+
+        return execute("Could not retrieve classes.", conn -> {
+            // Seats taken come from the counter the registration triggers maintain
+            String query = "SELECT gc.class_id, gc.class_name, gc.class_date, " +
+                    "gc.start_time, gc.end_time, gc.capacity, " +
+                    "gc.registered_count as current_count, " +
+                    "r.room_name, " +
+                    "t.first_name || ' ' || t.last_name as trainer_name " +
+                    "FROM GroupClass gc " +
+                    "JOIN Trainer t ON gc.trainer_id = t.trainer_id " +
+                    "JOIN Room r ON gc.room_id = r.room_id " +
+                    "WHERE gc.class_date >= CURRENT_DATE " +
+                    (params.isEmpty() ? "" : "AND (gc.class_date, gc.start_time, gc.class_id) > (?, ?, ?) ") +
+                    "ORDER BY gc.class_date, gc.start_time, gc.class_id " +
+                    "LIMIT ?";
+
+            return ServiceResult.ok(readPage(conn, query, params, limit,
+                    rs -> new ClassListing(rs.getInt("class_id"), rs.getString("class_name"),
+                            toLocalDate(rs.getDate("class_date")), toLocalTime(rs.getTime("start_time")),
+                            toLocalTime(rs.getTime("end_time")), rs.getInt("capacity"),
+                            rs.getInt("current_count"), rs.getString("room_name"), rs.getString("trainer_name")),
+                    rs -> encodeCursor(rs.getDate("class_date").toString(), rs.getTime("start_time").toString(),
+                            String.valueOf(rs.getInt("class_id")))));
+        });
+    }
+
+    // Register a member for an upcoming group class
+    // Seats of a class with a waitlist belong to the members waiting (promote_waitlist() hands them out in
+    // queue order, as SeatAllocator does), so a direct registration is refused there
+    // Edge Case -> Class is full (trigger fires) or has a waitlist, Already registered (UNIQUE constraint)
+    // or waitlisted
+    public ServiceResult<ClassRegistration> registerForGroupClass(ClassRegistrationRequest request) {
+        return execute("Registration failed.", conn -> {
+            // Check if class exists and is upcoming, and whether anyone is waiting for it
+            String validateQuery = "SELECT gc.class_name, gc.class_date, " +
+                    "EXISTS (SELECT 1 FROM ClassWaitlist w WHERE w.class_id = gc.class_id) AS has_waitlist, " +
+                    "EXISTS (SELECT 1 FROM ClassWaitlist w WHERE w.class_id = gc.class_id AND w.member_id = ?) AS waitlisted " +
+                    "FROM GroupClass gc WHERE gc.class_id = ? AND gc.class_date >= CURRENT_DATE";
+            String className;
+            LocalDate classDate;
+
+            try (PreparedStatement validateStmt = conn.prepareStatement(validateQuery)) {
+                validateStmt.setInt(1, request.memberId());
+                validateStmt.setInt(2, request.classId());
+                try (ResultSet validateRs = validateStmt.executeQuery()) {
+                    if (!validateRs.next()) {
+                        return ServiceResult.error(ErrorCode.CLASS_NOT_AVAILABLE, "Invalid class ID or class is in the past.");
+                    }
+                    if (validateRs.getBoolean("waitlisted")) {
+                        return ServiceResult.error(ErrorCode.ALREADY_REGISTERED,
+                                "You are already on the waitlist for this class.");
+                    }
+                    if (validateRs.getBoolean("has_waitlist")) {
+                        return ServiceResult.error(ErrorCode.CLASS_FULL,
+                                "This class is full and members are waiting for a seat.");
+                    }
+                    className = validateRs.getString("class_name");
+                    classDate = toLocalDate(validateRs.getDate("class_date"));
+                }
+            }
+
+            // Insert registration (trigger will check capacity); a waitlist place the member took meanwhile
+            // (through the allocator) goes with it, so they never hold both
+            String insertQuery = "WITH unqueued AS (DELETE FROM ClassWaitlist WHERE member_id = ? AND class_id = ?) " +
+                    "INSERT INTO ClassRegistration (member_id, class_id) VALUES (?, ?)";
+            try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+                insertStmt.setInt(1, request.memberId());
+                insertStmt.setInt(2, request.classId());
+                insertStmt.setInt(3, request.memberId());
+                insertStmt.setInt(4, request.classId());
+                insertStmt.executeUpdate();
+            } catch (SQLException e) {
+                ServiceResult<ClassRegistration> mapped = mapRegistrationError(e);
+                if (mapped != null) {
+                    return mapped;
+                }
+                throw e;
+            }
+
+            return ServiceResult.ok(new ClassRegistration(request.memberId(), request.classId(), className, classDate,
+                    null));
+        });
+    }
+
+    // Give up a seat in (or leave the waitlist of) an upcoming class
+    // The freed seat goes to the head of the class waitlist (waitlist_promotion trigger)
+    // Edge Case -> Member is neither registered nor waitlisted, class already took place
+    public ServiceResult<CancelledRegistration> cancelRegistration(int memberId, int classId) {
+        return execute("Cancellation failed.", conn -> {
+            String registrationQuery = "DELETE FROM ClassRegistration cr USING GroupClass gc " +
+                    "WHERE cr.class_id = gc.class_id AND cr.member_id = ? AND cr.class_id = ? " +
+                    "AND gc.class_date >= CURRENT_DATE";
+            try (PreparedStatement statement = conn.prepareStatement(registrationQuery)) {
+                statement.setInt(1, memberId);
+                statement.setInt(2, classId);
+                if (statement.executeUpdate() > 0) {
+                    return ServiceResult.ok(new CancelledRegistration(memberId, classId, false));
+                }
+            }
+
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "DELETE FROM ClassWaitlist WHERE member_id = ? AND class_id = ?")) {
+                statement.setInt(1, memberId);
+                statement.setInt(2, classId);
+                if (statement.executeUpdate() > 0) {
+                    return ServiceResult.ok(new CancelledRegistration(memberId, classId, true));
+                }
+            }
+            return ServiceResult.error(ErrorCode.NOT_FOUND, "You are not registered for this upcoming class.");
+        });
+    }
+
+    // Translate the capacity trigger and UNIQUE(member_id, class_id) violations
+    static <T> ServiceResult<T> mapRegistrationError(SQLException e) {
+        String message = String.valueOf(e.getMessage());
+        if (message.contains("Class is full")) {
+            return ServiceResult.error(ErrorCode.CLASS_FULL, "This class is already at full capacity.");
+        } else if (isDuplicateKey(e) || message.contains("already exists")) {
+            return ServiceResult.error(ErrorCode.ALREADY_REGISTERED, "You are already registered for this class.");
+        }
+        return null;
+    }
+
+    // ===================== Trainer operations =====================
+
+    // Look up a trainer ID by email (for login)
+    public ServiceResult<Integer> findTrainerIdByEmail(String email) {
+        return findIdByEmail("SELECT trainer_id FROM Trainer WHERE email = ?", email, "No Trainer found with that email.");
+    }
+
+    public ServiceResult<TrainerInfo> getTrainer(int trainerId) {
+        return execute("Could not retrieve trainer.", conn -> {
+            TrainerInfo trainer = loadTrainer(conn, trainerId);
+            return trainer == null
+                    ? ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid trainer ID.")
+                    : ServiceResult.ok(trainer);
+        });
+    }
+
+    // Trainer's weekly availability, Monday first
+    public ServiceResult<List<AvailabilitySlot>> listAvailability(int trainerId) {
+        return execute("Could not retrieve availability.", conn -> {
+            String query = "SELECT availability_id, day_of_week, start_time, end_time " +
+                    "FROM TrainerAvailability " +
+                    "WHERE trainer_id = ? " +
+                    "ORDER BY " +
+                    "  CASE day_of_week " +
+                    "    WHEN 'Monday' THEN 1 " +
+                    "    WHEN 'Tuesday' THEN 2 " +
+                    "    WHEN 'Wednesday' THEN 3 " +
+                    "    WHEN 'Thursday' THEN 4 " +
+                    "    WHEN 'Friday' THEN 5 " +
+                    "    WHEN 'Saturday' THEN 6 " +
+                    "    WHEN 'Sunday' THEN 7 " +
+                    "  END, " +
+                    "  start_time";
+
+            List<AvailabilitySlot> slots = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, trainerId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        slots.add(new AvailabilitySlot(rs.getInt("availability_id"), trainerId,
+                                parseDayOfWeek(rs.getString("day_of_week")),
+                                toLocalTime(rs.getTime("start_time")), toLocalTime(rs.getTime("end_time"))));
+                    }
+                }
+            }
+            return ServiceResult.ok(slots);
+        });
+    }
+
+    // Add a weekly availability window for a trainer
+    // Edge Case -> Overlapping time slots (exclusion constraint), Invalid time range (end before start)
+    public ServiceResult<AvailabilitySlot> setAvailability(AvailabilityRequest request) {
+        if (request.dayOfWeek() == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid day selection.");
+        }
+        if (request.startTime() == null || request.endTime() == null ||
+                !request.startTime().isBefore(request.endTime())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "End time must be after start time.");
+        }
+
+        return execute("Failed to set availability.", conn -> {
+            // Insert availability (the exclusion constraint rejects overlaps)
+            String query = "INSERT INTO TrainerAvailability (trainer_id, day_of_week, start_time, end_time) " +
+                    "VALUES (?, ?, ?, ?) RETURNING availability_id";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, request.trainerId());
+                pstmt.setString(2, dayName(request.dayOfWeek()));
+                pstmt.setTime(3, Time.valueOf(request.startTime()));
+                pstmt.setTime(4, Time.valueOf(request.endTime()));
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    AvailabilitySlot slot = new AvailabilitySlot(rs.getInt("availability_id"), request.trainerId(),
+                            request.dayOfWeek(), request.startTime(), request.endTime());
+                    if (scheduleIndex != null) {
+                        scheduleIndex.putAvailability(slot);
+                    }
+                    return ServiceResult.ok(slot);
+                }
+            } catch (SQLException e) {
+                if (isExclusionViolation(e, "trainer_availability_no_overlap")) {
+                    return ServiceResult.error(ErrorCode.AVAILABILITY_OVERLAP,
+                            "This time slot overlaps with your existing availability.");
+                } else if (e.getMessage().contains("violates check constraint")) {
+                    return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid time range or day of week.");
+                }
+                throw e;
+            }
+        });
+    }
+
+    // Replace a trainer's whole weekly availability with the windows given (an empty list clears it)
+    // Edge Case -> Overlapping windows (all of them reported), Invalid time range, Invalid trainer
+    public ServiceResult<AvailabilityUpdate> replaceAvailability(int trainerId, List<AvailabilityRequest> windows) {
+        if (windows == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The availability windows are required.");
+        }
+        for (AvailabilityRequest window : windows) {
+            if (window.trainerId() != trainerId) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                        "Every window must belong to trainer " + trainerId + ".");
+            }
+        }
+        return applyAvailabilityTemplate(Set.of(trainerId), windows);
+    }
+
+    // Bulk availability for the term from a CSV (trainer_id, day_of_week, start_time, end_time): every
+    // trainer in the file gets exactly its lines, the others are left as they are
+    public ServiceResult<AvailabilityUpdate> publishAvailability(Reader csv) {
+        List<AvailabilityRequest> windows;
+        try {
+            windows = AvailabilityTemplate.parseCsv(csv);
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, e.getMessage());
+        } catch (IOException e) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Could not read the availability file.", e.getMessage());
+        }
+        if (windows.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The file has no availability windows.");
+        }
+
+        Set<Integer> trainerIds = new TreeSet<>();
+        windows.forEach(window -> trainerIds.add(window.trainerId()));
+        return applyAvailabilityTemplate(trainerIds, windows);
+    }
+
+    // Checks the windows in memory (sort and sweep for overlaps), then writes only the difference with the
+    // trainers' current availability, in one transaction
+    private ServiceResult<AvailabilityUpdate> applyAvailabilityTemplate(Set<Integer> trainerIds,
+                                                                        List<AvailabilityRequest> windows) {
+        if (windows.size() > AvailabilityTemplate.MAX_WINDOWS) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "At most " + AvailabilityTemplate.MAX_WINDOWS + " windows can be published at once.");
+        }
+        for (AvailabilityRequest window : windows) {
+            if (window.dayOfWeek() == null) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid day selection.");
+            }
+            if (window.startTime() == null || window.endTime() == null ||
+                    !window.startTime().isBefore(window.endTime())) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "End time must be after start time (trainer " +
+                        window.trainerId() + ", " + dayName(window.dayOfWeek()) + " " + window.startTime() + ").");
+            }
+        }
+        List<String> overlaps = AvailabilityTemplate.findOverlaps(windows);
+        if (!overlaps.isEmpty()) {
+            return ServiceResult.error(ErrorCode.AVAILABILITY_OVERLAP,
+                    overlaps.size() + (overlaps.size() == 1 ? " window overlaps" : " windows overlap") +
+                            " another window of the same trainer and day. Nothing was changed.",
+                    String.join("; ", overlaps.subList(0,
+                            Math.min(overlaps.size(), AvailabilityTemplate.MAX_REPORTED_OVERLAPS))));
+        }
+
+        return execute("Failed to publish availability.", conn ->
+                AvailabilityTemplate.apply(conn, trainerIds, windows, scheduleIndex));
+    }
+
+    public static final int DEFAULT_PAGE_LIMIT = 50;
+    public static final int MAX_PAGE_LIMIT = 1_000;
+    // Rows per round trip when a page is read through a server-side cursor
+    private static final int FETCH_SIZE = Integer.getInteger("fitclub.jdbc.fetchSize", 200);
+
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    public static final int MAX_SEARCH_LIMIT = 100;
+    // Substring matches ranked per search; beyond that the best of the first candidates found are returned
+    private static final int SEARCH_CANDIDATES = 1_000;
+
+    public ServiceResult<List<MemberInfo>> searchMembers(String searchTerm) {
+        return searchMembers(searchTerm, DEFAULT_SEARCH_LIMIT);
+    }
+
+    // Case-insensitive member search on the full name (member_search_name() in the DDL), best matches first;
+    // each stage runs only while the page is not full:
+    // 1. prefixes through B-tree range scans in name order: one word starting the first name, last name or
+    //    email, or several starting the first and last name in either order ("jo smi" -> John Smith)
+    // 2. names containing the words in order ("mit" -> Smith) through the trigram GIN index, ranked by
+    //    word similarity
+    // 3. typos ("wilsno" -> Wilson): each word is replaced by the most similar word of any member's name
+    //    (MemberNameWord) and the prefixes are searched again
+    // Stages 2 and 3 need 3+ letters. Once the search index is ready it answers stages 1 and 2 from memory.
+    public ServiceResult<List<MemberInfo>> searchMembers(String searchTerm, int limit) {
+        String term = trimToEmpty(searchTerm).toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        if (term.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Please enter a search term.");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "The result limit must be between 1 and " + MAX_SEARCH_LIMIT + ".");
+        }
+        String[] words = term.split(" ");
+        boolean fuzzy = term.replace(" ", "").length() >= 3;
+
+        MemberSearchIndex index = searchIndex;
+        if (index != null && index.isReady()) {
+            List<MemberInfo> members = index.search(words, limit);
+            if (members.size() == limit || !fuzzy) {
+                return ServiceResult.ok(members);
+            }
+            return execute("Search failed.", conn -> {
+                addTypoMatches(conn, words, limit, members);
+                return ServiceResult.ok(members);
+            });
+        }
+
+        return execute("Search failed.", conn -> {
+            List<MemberInfo> members = new ArrayList<>();
+            addPrefixMatches(conn, words, limit, members);
+            if (members.size() == limit || !fuzzy) {
+                return ServiceResult.ok(members);
+            }
+
+            // The inner LIMIT bounds how many candidates are ranked
+            String substringQuery = "SELECT member_id, first_name, last_name, email, registration_date " +
+                    "FROM (SELECT member_id, first_name, last_name, email, registration_date, " +
+                    "             member_search_name(first_name, last_name) AS search_name " +
+                    "      FROM Member " +
+                    "      WHERE member_search_name(first_name, last_name) LIKE ? AND member_id <> ALL(?) " +
+                    "      LIMIT ?) candidates " +
+                    "ORDER BY word_similarity(?, search_name) DESC, last_name, first_name, member_id " +
+                    "LIMIT ?";
+            StringBuilder inOrder = new StringBuilder("%");
+            for (String word : words) {
+                inOrder.append(escapeLike(word)).append('%');
+            }
+            addMatches(conn, substringQuery, List.of(inOrder.toString(),
+                    conn.createArrayOf("integer", members.stream().map(MemberInfo::memberId).toArray()),
+                    SEARCH_CANDIDATES, term, limit - members.size()), members);
+            if (members.size() == limit) {
+                return ServiceResult.ok(members);
+            }
+
+            addTypoMatches(conn, words, limit, members);
+            return ServiceResult.ok(members);
+        });
+    }
+
+    // Stage 1 of searchMembers(): every range scan walks its index in order and stops after limit rows
+    private static void addPrefixMatches(Connection conn, String[] words, int limit, List<MemberInfo> members)
+            throws SQLException {
+        String first = words[0];
+        String last = words[words.length - 1];
+        String query;
+        List<Object> params;
+        if (words.length == 1) {
+            query = "SELECT member_id, first_name, last_name, email, registration_date " +
+                    "FROM Member " +
+                    "WHERE member_id IN (" +
+                    "    (SELECT member_id FROM Member " +
+                    "     WHERE member_search_name(first_name, last_name) COLLATE \"C\" >= ? " +
+                    "       AND member_search_name(first_name, last_name) COLLATE \"C\" < ? " +
+                    "     ORDER BY member_search_name(first_name, last_name) COLLATE \"C\", member_id LIMIT ?) " +
+                    "    UNION " +
+                    "    (SELECT member_id FROM Member " +
+                    "     WHERE lower(btrim(last_name)) COLLATE \"C\" >= ? " +
+                    "       AND lower(btrim(last_name)) COLLATE \"C\" < ? " +
+                    "     ORDER BY lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", member_id " +
+                    "     LIMIT ?) " +
+                    "    UNION " +
+                    "    (SELECT member_id FROM Member " +
+                    "     WHERE lower(email) COLLATE \"C\" >= ? AND lower(email) COLLATE \"C\" < ? " +
+                    "     ORDER BY lower(email) COLLATE \"C\", member_id LIMIT ?)) " +
+                    "ORDER BY lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", member_id " +
+                    "LIMIT ?";
+            params = List.of(first, prefixUpperBound(first), limit, first, prefixUpperBound(first), limit,
+                    first, prefixUpperBound(first), limit, limit);
+        } else {
+            // Words in between (e.g. a second first name) must start words of the name in the same order;
+            // with two words the ranges say it all, and a LIKE would draw the planner to the GIN index
+            StringBuilder wordPrefixes = new StringBuilder();
+            for (String word : words) {
+                wordPrefixes.append(wordPrefixes.length() == 0 ? "" : " ").append(escapeLike(word)).append('%');
+            }
+            query = "SELECT member_id, first_name, last_name, email, registration_date " +
+                    "FROM Member " +
+                    "WHERE member_id IN (" +
+                    "    (SELECT member_id FROM Member " +
+                    "     WHERE lower(btrim(last_name)) COLLATE \"C\" >= ? " +
+                    "       AND lower(btrim(last_name)) COLLATE \"C\" < ? " +
+                    "       AND lower(btrim(first_name)) COLLATE \"C\" >= ? " +
+                    "       AND lower(btrim(first_name)) COLLATE \"C\" < ? " +
+                    (words.length > 2 ? "       AND member_search_name(first_name, last_name) LIKE ? " : "") +
+                    "     ORDER BY lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", member_id " +
+                    "     LIMIT ?) " +
+                    "    UNION " +
+                    "    (SELECT member_id FROM Member " +
+                    "     WHERE lower(btrim(last_name)) COLLATE \"C\" >= ? " +
+                    "       AND lower(btrim(last_name)) COLLATE \"C\" < ? " +
+                    "       AND lower(btrim(first_name)) COLLATE \"C\" >= ? " +
+                    "       AND lower(btrim(first_name)) COLLATE \"C\" < ? " +
+                    "     ORDER BY lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", member_id " +
+                    "     LIMIT ?)) " +
+                    "ORDER BY lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", member_id " +
+                    "LIMIT ?";
+            params = new ArrayList<>(List.of(last, prefixUpperBound(last), first, prefixUpperBound(first)));
+            if (words.length > 2) {
+                params.add(wordPrefixes.toString());
+            }
+            params.addAll(List.of(limit, first, prefixUpperBound(first), last, prefixUpperBound(last), limit, limit));
+        }
+        addMatches(conn, query, params, members);
+    }
+
+    // Stage 3 of searchMembers(): closest name word by trigram similarity (pg_trgm.similarity_threshold, 0.3
+    // by default) for each word, then the prefixes of the corrected words
+    private static void addTypoMatches(Connection conn, String[] words, int limit, List<MemberInfo> members)
+            throws SQLException {
+        String correctionQuery = "SELECT COALESCE((SELECT d.word FROM MemberNameWord d " +
+                "                 WHERE d.word % t.word " +
+                "                 ORDER BY similarity(d.word, t.word) DESC, d.word LIMIT 1), t.word) " +
+                "FROM unnest(?::text[]) WITH ORDINALITY AS t(word, ord) " +
+                "ORDER BY t.ord";
+        String[] corrected = new String[words.length];
+        try (PreparedStatement pstmt = conn.prepareStatement(correctionQuery)) {
+            pstmt.setArray(1, conn.createArrayOf("text", words));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                for (int i = 0; rs.next(); i++) {
+                    corrected[i] = rs.getString(1);
+                }
+            }
+        }
+        if (!Arrays.equals(corrected, words)) {
+            List<MemberInfo> suggestions = new ArrayList<>();
+            addPrefixMatches(conn, corrected, limit, suggestions);
+            for (MemberInfo suggestion : suggestions) {
+                if (members.size() < limit
+                        && members.stream().noneMatch(member -> member.memberId() == suggestion.memberId())) {
+                    members.add(suggestion);
+                }
+            }
+        }
+    }
+
+    private static void addMatches(Connection conn, String query, List<Object> params, List<MemberInfo> members)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    members.add(readMember(rs));
+                }
+            }
+        }
+    }
+
+    interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    // Reads one page of a keyset query that ends in "LIMIT ?" (bound here to limit + 1: the extra row only
+    // says whether there is a next page). Streams through a server-side cursor of FETCH_SIZE rows, so the
+    // page is all that is ever held in memory; cursorOf gives each row's position for the next page.
+    static <T> Page<T> readPage(Connection conn, String query, List<Object> params, int limit,
+                                RowReader<T> reader, RowReader<String> cursorOf) throws SQLException {
+        // The driver only uses a cursor (instead of reading the whole result) inside a transaction
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setFetchSize(Math.min(FETCH_SIZE, limit + 1));
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            pstmt.setInt(params.size() + 1, limit + 1);
+            List<T> items = new ArrayList<>();
+            String position = null;
+            String next = null;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        next = position;
+                        break;
+                    }
+                    items.add(reader.read(rs));
+                    position = cursorOf.read(rs);
+                }
+            }
+            conn.commit();
+            return new Page<>(items, next);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Page cursors: the key columns of the last row, NUL-separated (text columns cannot hold NUL), in URL-safe
+    // Base64
+    static String encodeCursor(String... keys) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join("\0", keys).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The cursor's keys, or null if it is not a cursor with that many keys
+    static String[] decodeCursor(String cursor, int keys) {
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\0", -1);
+            return values.length == keys ? values : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Smallest string above every string starting with prefix, in code point (COLLATE "C") order
+    private static String prefixUpperBound(String prefix) {
+        int last = prefix.codePointBefore(prefix.length());
+        return prefix.substring(0, prefix.length() - Character.charCount(last)) +
+                new String(Character.toChars(last + 1));
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // Members whose last name starts with lastNamePrefix (all members when it is empty), a page at a time in
+    // (last name, first name, member id) order: keyset pagination on idx_member_last_first_prefix, so a deep
+    // page costs what the first does. after: nextCursor of the previous page, or null for the first
+    public ServiceResult<Page<MemberInfo>> listMembers(String lastNamePrefix, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "The page size must be between 1 and " + MAX_PAGE_LIMIT + ".");
+        }
+        String prefix = trimToEmpty(lastNamePrefix).toLowerCase(Locale.ROOT);
+        String[] position = after == null ? null : decodeCursor(after, 3);
+        List<Object> params = new ArrayList<>();
+        if (!prefix.isEmpty()) {
+            params.addAll(List.of(prefix, prefixUpperBound(prefix)));
+        }
+        if (position != null) {
+            try {
+                params.addAll(List.of(position[0], position[1], Integer.parseInt(position[2])));
+            } catch (NumberFormatException e) {
+                position = null;
+            }
+        }
+        if (after != null && position == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid page cursor.");
+        }
+        boolean hasPrefix = !prefix.isEmpty();
+        boolean hasPosition = position != null;
+
+        return execute("Could not list members.", conn -> {
+            String query = "SELECT member_id, first_name, last_name, email, registration_date, " +
+                    "       lower(btrim(last_name)) AS last_key, lower(btrim(first_name)) AS first_key " +
+                    "FROM Member " +
+                    "WHERE TRUE " +
+                    (hasPrefix ? "AND lower(btrim(last_name)) COLLATE \"C\" >= ? " +
+                            "AND lower(btrim(last_name)) COLLATE \"C\" < ? " : "") +
+                    (hasPosition ? "AND (lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", " +
+                            "member_id) > (?, ?, ?) " : "") +
+                    "ORDER BY lower(btrim(last_name)) COLLATE \"C\", lower(btrim(first_name)) COLLATE \"C\", member_id " +
+                    "LIMIT ?";
+            return ServiceResult.ok(readPage(conn, query, params, limit, FitClubService::readMember,
+                    rs -> encodeCursor(rs.getString("last_key"), rs.getString("first_key"),
+                            String.valueOf(rs.getInt("member_id")))));
+        });
+    }
+
+    // Detailed member profile for the trainer view
+    // Personal info, latest health metrics, active goals and past class count
+    // One round trip, like the dashboard: the member row with the latest metric joined in, the active goals
+    // aggregated into a JSON array and the class count as a subquery
+    public ServiceResult<MemberProfile> getMemberProfile(int memberId) {
+        return execute("Failed to retrieve member profile.", conn -> {
+            String query = "SELECT m.member_id, m.first_name, m.last_name, m.email, m.registration_date, " +
+                    "       lm.metric_id, lm.date_recorded, lm.weight, lm.resting_heart_rate, " +
+                    "       lm.body_fat_percentage, lm.vo2_max, " +
+                    "       COALESCE(g.goals, '[]') AS active_goals, " +
+                    "       (SELECT COUNT(*) FROM ClassRegistration cr " +
+                    "        JOIN GroupClass gc ON cr.class_id = gc.class_id " +
+                    "        WHERE cr.member_id = m.member_id AND gc.class_date < CURRENT_DATE) AS total_classes " +
+                    "FROM Member m " +
+                    "LEFT JOIN LATERAL (" +
+                    "    SELECT hm.metric_id, hm.date_recorded, hm.weight, hm.resting_heart_rate, " +
+                    "           hm.body_fat_percentage, hm.vo2_max " +
+                    "    FROM HealthMetric hm " +
+                    "    WHERE hm.member_id = m.member_id " +
+                    "    ORDER BY hm.date_recorded DESC, hm.metric_id DESC LIMIT 1" +
+                    ") lm ON TRUE " +
+                    "LEFT JOIN LATERAL (" +
+                    "    SELECT json_agg(json_build_object(" +
+                    "               'goalId', fg.goal_id, 'goalType', fg.goal_type, 'targetValue', fg.target_value, " +
+                    "               'targetDate', fg.target_date, 'status', fg.status) " +
+                    "           ORDER BY fg.target_date) AS goals " +
+                    "    FROM FitnessGoal fg " +
+                    "    WHERE fg.member_id = m.member_id AND fg.status = 'Active'" +
+                    ") g ON TRUE " +
+                    "WHERE m.member_id = ?";
+
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+                statement.setInt(1, memberId);
+
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        return ServiceResult.error(ErrorCode.NOT_FOUND, "Member not found.");
+                    }
+
+                    HealthMetric latestMetric = getNullableInt(rs, "metric_id") == null ? null
+                            : new HealthMetric(rs.getInt("metric_id"), memberId, toLocalDate(rs.getDate("date_recorded")),
+                            getNullableDouble(rs, "weight"), getNullableInt(rs, "resting_heart_rate"),
+                            getNullableDouble(rs, "body_fat_percentage"), getNullableDouble(rs, "vo2_max"));
+                    return ServiceResult.ok(new MemberProfile(readMember(rs), latestMetric,
+                            parseGoals(memberId, rs.getString("active_goals")), rs.getInt("total_classes")));
+                }
+            }
+        });
+    }
+
+    // Map the json_agg array of the profile query to FitnessGoal records
+    static List<FitnessGoal> parseGoals(int memberId, String json) {
+        List<FitnessGoal> goals = new ArrayList<>();
+        for (Object item : (List<?>) Json.parse(json)) {
+            Map<?, ?> fields = (Map<?, ?>) item;
+            Number targetValue = (Number) fields.get("targetValue");
+            String targetDate = (String) fields.get("targetDate");
+            goals.add(new FitnessGoal(((Number) fields.get("goalId")).intValue(), memberId,
+                    (String) fields.get("goalType"), targetValue == null ? 0 : targetValue.doubleValue(),
+                    targetDate == null ? null : LocalDate.parse(targetDate), (String) fields.get("status")));
+        }
+        return goals;
+    }
+
+    // ===================== Admin operations =====================
+
+    // Look up an admin ID by email (for login)
+    public ServiceResult<Integer> findAdminIdByEmail(String email) {
+        return findIdByEmail("SELECT admin_id FROM Admin WHERE email = ?", email, "No Admin found with that email.");
+    }
+
+    public ServiceResult<String> getAdminName(int adminId) {
+        return execute("Could not retrieve admin.", conn -> {
+            String query = "SELECT first_name, last_name FROM Admin WHERE admin_id = ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, adminId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return ServiceResult.error(ErrorCode.NOT_FOUND, "Admin not found.");
+                    }
+                    return ServiceResult.ok(rs.getString("first_name") + " " + rs.getString("last_name"));
+                }
+            }
+        });
+    }
+
+    public ServiceResult<List<Room>> listRooms() {
+        return execute("Could not retrieve rooms.", conn -> {
+            String query = "SELECT room_id, room_name, capacity FROM Room ORDER BY room_id";
+            List<Room> rooms = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(query);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rooms.add(new Room(rs.getInt("room_id"), rs.getString("room_name"), rs.getInt("capacity")));
+                }
+            }
+            return ServiceResult.ok(rooms);
+        });
+    }
+
+    public ServiceResult<Room> getRoom(int roomId) {
+        return execute("Could not retrieve room.", conn -> {
+            Room room = loadRoom(conn, roomId);
+            return room == null
+                    ? ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid room ID.")
+                    : ServiceResult.ok(room);
+        });
+    }
+
+    public ServiceResult<List<TrainerInfo>> listTrainers() {
+        return execute("Could not retrieve trainers.", conn -> {
+            String query = "SELECT trainer_id, first_name, last_name, email FROM Trainer ORDER BY trainer_id";
+            List<TrainerInfo> trainers = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(query);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    trainers.add(readTrainer(rs));
+                }
+            }
+            return ServiceResult.ok(trainers);
+        });
+    }
+
+    // Create a group class (book a room for it)
+    // Validates room availability, capacity limits, trainer availability and trainer conflicts
+    // Edge Case -> Room double-booked or trainer busy (exclusion constraints), Class capacity exceeds room
+    //              capacity (trigger fires), Trainer not available at that time (checked by the insert)
+    public ServiceResult<GroupClass> createGroupClass(GroupClassRequest request) {
+        String className = trimToEmpty(request.className());
+        if (className.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Class name cannot be empty.");
+        }
+        if (request.classDate() == null || request.classDate().isBefore(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot create class in the past.");
+        }
+        if (request.startTime() == null || request.endTime() == null ||
+                !request.startTime().isBefore(request.endTime())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "End time must be after start time.");
+        }
+        if (request.capacity() <= 0) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Capacity must be positive.");
+        }
+
+        return execute("Failed to create class.", conn -> {
+            // One statement: the class goes in only if the trainer's availability covers it; room and trainer
+            // double bookings are rejected by the exclusion constraints and room capacity by TRIGGER 2
+            String query = "WITH new_class AS (" +
+                    "    INSERT INTO GroupClass (class_name, class_date, start_time, end_time, capacity, trainer_id, room_id) " +
+                    "    SELECT ?, ?::date, ?::time, ?::time, ?, ?, ? " +
+                    "    WHERE EXISTS (SELECT 1 FROM TrainerAvailability ta " +
+                    "                  WHERE ta.trainer_id = ? AND ta.day_of_week = ? " +
+                    "                    AND ta.slot @> timerange(?::time, ?::time)) " +
+                    "    RETURNING class_id, room_id, trainer_id" +
+                    ") " +
+                    "SELECT nc.class_id, r.room_id, r.room_name, r.capacity, " +
+                    "       t.trainer_id, t.first_name, t.last_name, t.email " +
+                    "FROM new_class nc " +
+                    "JOIN Room r ON r.room_id = nc.room_id " +
+                    "JOIN Trainer t ON t.trainer_id = nc.trainer_id";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                Time startTime = Time.valueOf(request.startTime());
+                Time endTime = Time.valueOf(request.endTime());
+                pstmt.setString(1, className);
+                pstmt.setDate(2, Date.valueOf(request.classDate()));
+                pstmt.setTime(3, startTime);
+                pstmt.setTime(4, endTime);
+                pstmt.setInt(5, request.capacity());
+                pstmt.setInt(6, request.trainerId());
+                pstmt.setInt(7, request.roomId());
+                pstmt.setInt(8, request.trainerId());
+                pstmt.setString(9, dayName(request.classDate().getDayOfWeek()));
+                pstmt.setTime(10, startTime);
+                pstmt.setTime(11, endTime);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        GroupClass created = new GroupClass(rs.getInt("class_id"), className, request.classDate(),
+                                request.startTime(), request.endTime(), request.capacity(),
+                                new Room(rs.getInt("room_id"), rs.getString("room_name"), rs.getInt("capacity")),
+                                readTrainer(rs));
+                        if (scheduleIndex != null) {
+                            scheduleIndex.putClass(new ScheduledClass(created.classId(), request.classDate(),
+                                    request.startTime(), request.endTime(), request.roomId(), request.trainerId()));
+                        }
+                        return ServiceResult.ok(created);
+                    }
+                }
+            } catch (SQLException e) {
+                if (isExclusionViolation(e, "group_class_room_no_overlap")) {
+                    return ServiceResult.error(ErrorCode.ROOM_BOOKED, "Room is already booked at this time.");
+                } else if (isExclusionViolation(e, "group_class_trainer_no_overlap")) {
+                    return ServiceResult.error(ErrorCode.TRAINER_BUSY, "Trainer is already teaching another class at this time.");
+                } else if (String.valueOf(e.getMessage()).contains("exceeds room capacity")) {
+                    Room room = loadRoom(conn, request.roomId());
+                    return ServiceResult.error(ErrorCode.CAPACITY_EXCEEDS_ROOM, "Class capacity (" + request.capacity() +
+                            ") exceeds room capacity (" + (room == null ? "?" : room.capacity()) + ").");
+                } else if ("23503".equals(e.getSQLState())) {
+                    return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid room ID.");
+                }
+                throw e;
+            }
+
+            // Nothing inserted: the room or trainer does not exist, or the trainer is not available then
+            // (looked up only now, so the common path stays one round trip)
+            if (loadRoom(conn, request.roomId()) == null) {
+                return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid room ID.");
+            }
+            if (loadTrainer(conn, request.trainerId()) == null) {
+                return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid trainer ID.");
+            }
+            return ServiceResult.error(ErrorCode.TRAINER_UNAVAILABLE, "Trainer is not available at this time.");
+        });
+    }
+
+    // Create a recurring class: every date of the series is checked against room bookings, the trainer's
+    // availability and the trainer's other classes in one statement, and the dates that fit are inserted as
+    // one batch in the same transaction (see ClassSeries)
+    // Edge Case -> Dates with a conflict are reported, not created; unknown room or trainer, or a capacity
+    //              over the room's, rejects the whole series
+    public ServiceResult<ClassSeriesReport> createClassSeries(ClassSeriesRequest request) {
+        String className = trimToEmpty(request.className());
+        if (className.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Class name cannot be empty.");
+        }
+        if (request.daysOfWeek() == null || request.daysOfWeek().isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Choose at least one day of the week.");
+        }
+        if (request.firstDate() == null || request.lastDate() == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Please enter the first and last date.");
+        }
+        if (request.firstDate().isBefore(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot create class in the past.");
+        }
+        if (request.lastDate().isBefore(request.firstDate())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The last date must not be before the first.");
+        }
+        if (request.firstDate().plusDays(ClassSeries.MAX_SERIES_DAYS).isBefore(request.lastDate())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "A series can span at most " + ClassSeries.MAX_SERIES_DAYS + " days.");
+        }
+        if (request.startTime() == null || request.endTime() == null ||
+                !request.startTime().isBefore(request.endTime())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "End time must be after start time.");
+        }
+        if (request.capacity() <= 0) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Capacity must be positive.");
+        }
+
+        List<LocalDate> dates = ClassSeries.expand(request);
+        if (dates.isEmpty()) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The series has no dates in that range.");
+        }
+
+        ServiceResult<ClassSeriesReport> result = execute("Failed to create the class series.", conn ->
+                ClassSeries.create(conn, request, className, dates));
+        if (result.isOk() && scheduleIndex != null) {
+            for (SeriesOccurrence occurrence : result.getValue().occurrences()) {
+                if (occurrence.isCreated()) {
+                    scheduleIndex.putClass(new ScheduledClass(occurrence.classId(), occurrence.classDate(),
+                            request.startTime(), request.endTime(), request.roomId(), request.trainerId()));
+                }
+            }
+        }
+        return result;
+    }
+
+    public static final int DEFAULT_TIMETABLE_SECONDS = 10;
+    public static final int MAX_TIMETABLE_SECONDS = 60;
+    public static final int MAX_TIMETABLE_CLASSES = 20_000;
+
+    // Propose a weekly timetable for the term: a weekday, start, room and trainer for each requested class
+    // such that the room seats the demand, nothing is double booked and the trainer is available, filling
+    // rooms as fully as possible (see TimetableSolver). Nothing is booked; each assignment's toSeries()
+    // gives the createClassSeries() request that books it
+    // Edge Case -> Classes no room seats, or that find no free trainer and room, are listed as unassigned
+    public ServiceResult<TimetableSolver.Solution> solveTimetable(TimetableRequest request) {
+        if (request.firstDate() == null || request.lastDate() == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Please enter the first and last date.");
+        }
+        if (request.firstDate().isBefore(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot create class in the past.");
+        }
+        if (request.lastDate().isBefore(request.firstDate()) ||
+                request.firstDate().plusDays(ClassSeries.MAX_SERIES_DAYS).isBefore(request.lastDate())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "The term must end after it starts and span at most " + ClassSeries.MAX_SERIES_DAYS + " days.");
+        }
+        if (request.timeBudgetSeconds() <= 0 || request.timeBudgetSeconds() > MAX_TIMETABLE_SECONDS) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "The time budget must be 1 to " + MAX_TIMETABLE_SECONDS + " seconds.");
+        }
+        if (request.classes() == null || request.classes().isEmpty() || request.classes().size() > MAX_TIMETABLE_CLASSES) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "Request 1 to " + MAX_TIMETABLE_CLASSES + " classes.");
+        }
+        for (RequestedClass requested : request.classes()) {
+            if (trimToEmpty(requested.className()).isEmpty()) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "Class name cannot be empty.");
+            }
+            if (requested.durationMinutes() <= 0 || requested.durationMinutes() > 24 * 60 - TimetableSolver.SLOT_MINUTES) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "Invalid duration for " + requested.className() + ".");
+            }
+            if (requested.expectedDemand() <= 0) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "Capacity must be positive.");
+            }
+            if (requested.preferredTimes() != null && requested.preferredTimes().stream()
+                    .anyMatch(time -> time == null || time.dayOfWeek() == null || time.startTime() == null)) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "Preferred times need a day and a start time.");
+            }
+        }
+
+        // The connection is only held to read the schedule, not for the search
+        ServiceResult<TimetableSolver.Problem> problem = execute("Could not read the schedule.", conn ->
+                ServiceResult.ok(TimetableSolver.load(conn, request.firstDate(), request.lastDate())));
+        if (!problem.isOk()) {
+            return problem.asError();
+        }
+        try {
+            return ServiceResult.ok(TimetableSolver.solve(problem.getValue(), request.classes(),
+                    request.timeBudgetSeconds() * 1_000L, System.nanoTime()));
+        } catch (RejectedExecutionException e) {
+            return ServiceResult.error(ErrorCode.OVERLOADED, "Another timetable search is running, retry later.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR, "The timetable search was interrupted.");
+        }
+    }
+
+    // Whether a class could go in the room with the trainer at that time, and what stands in the way if not
+    // (for planning; createGroupClass() still decides, as the schedule may change in between)
+    // Edge Case -> Unknown room, Invalid time range, Date in the past
+    public ServiceResult<SlotCheck> checkClassSlot(int roomId, int trainerId, LocalDate date, LocalTime startTime,
+                                                   LocalTime endTime) {
+        if (date == null || startTime == null || endTime == null || !startTime.isBefore(endTime)) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "End time must be after start time.");
+        }
+        if (date.isBefore(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot create class in the past.");
+        }
+        return planFromSchedule("Failed to check the time slot.", roomId, trainerId, date,
+                schedule -> schedule.check(roomId, trainerId, date, startTime, endTime));
+    }
+
+    // Free stretches of at least minMinutes on the date: the room is free and, if trainerId is not null,
+    // the trainer is available and not teaching
+    // Edge Case -> Unknown room, Length not positive, Date in the past
+    public ServiceResult<List<TimeWindow>> findFreeWindows(int roomId, Integer trainerId, LocalDate date, int minMinutes) {
+        if (date == null) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Please enter a date.");
+        }
+        if (date.isBefore(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot create class in the past.");
+        }
+        if (minMinutes <= 0) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The class length must be positive.");
+        }
+        return planFromSchedule("Failed to find free times.", roomId, trainerId, date,
+                schedule -> schedule.freeWindows(roomId, trainerId, date, minMinutes));
+    }
+
+    public static final int DEFAULT_FREE_SLOT_LIMIT = 50;
+    public static final int MAX_FREE_SLOT_LIMIT = 1_000;
+    public static final int MAX_FREE_SLOT_DAYS = 92;
+
+    // Every room seating minCapacity with every trainer: the stretches from firstDate to lastDate of at least
+    // minMinutes when both are free, best fit first (fewest spare seats, then least spare time), at most limit
+    // Edge Case -> Range in the past or longer than MAX_FREE_SLOT_DAYS, Length or capacity not positive
+    public ServiceResult<List<FreeSlot>> findFreeSlots(LocalDate firstDate, LocalDate lastDate, int minMinutes,
+                                                       int minCapacity, int limit) {
+        if (firstDate == null || lastDate == null || lastDate.isBefore(firstDate)) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The last date must not be before the first.");
+        }
+        if (firstDate.isBefore(LocalDate.now())) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot create class in the past.");
+        }
+        if (firstDate.plusDays(MAX_FREE_SLOT_DAYS).isBefore(lastDate)) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Search at most " + MAX_FREE_SLOT_DAYS + " days at a time.");
+        }
+        if (minMinutes <= 0) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "The class length must be positive.");
+        }
+        if (minCapacity <= 0) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Capacity must be positive.");
+        }
+        int pageLimit = Math.max(1, Math.min(limit, MAX_FREE_SLOT_LIMIT));
+
+        ScheduleIndex index = scheduleIndex;
+        if (index != null && index.isReady()) {
+            return ServiceResult.ok(index.freeSlots(firstDate, lastDate, minMinutes, minCapacity, pageLimit));
+        }
+        return execute("Failed to find free times.", conn -> ServiceResult.ok(
+                ScheduleIndex.loadRange(conn, firstDate, lastDate, minCapacity)
+                        .freeSlots(firstDate, lastDate, minMinutes, minCapacity, pageLimit)));
+    }
+
+    // Answers from the schedule index once it is ready, otherwise from that day's schedule read from the database
+    // The index holds upcoming classes only, so the date must not be in the past
+    private <T> ServiceResult<T> planFromSchedule(String failureMessage, int roomId, Integer trainerId, LocalDate date,
+                                                  Function<ScheduleIndex.Schedule, T> query) {
+        ScheduleIndex index = scheduleIndex;
+        if (index != null && index.isReady()) {
+            if (!index.hasRoom(roomId)) {
+                return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid room ID.");
+            }
+            return ServiceResult.ok(index.read(query));
+        }
+        return execute(failureMessage, conn -> {
+            ScheduleIndex.Schedule day = ScheduleIndex.loadDay(conn, roomId, trainerId, date);
+            if (!day.hasRoom(roomId)) {
+                return ServiceResult.error(ErrorCode.NOT_FOUND, "Invalid room ID.");
+            }
+            return ServiceResult.ok(query.apply(day));
+        });
+    }
+
+    // Bulk member import: CSV streamed through COPY into a staging table, merged into Member;
+    // rows that cannot be imported (malformed lines, missing fields, duplicate emails) are written to the rejects file
+    public ServiceResult<MemberImporter.ImportReport> importMembers(Path csv, Path rejects) {
+        if (!Files.isReadable(csv)) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT, "Cannot read " + csv + ".");
+        }
+
+        return execute("Member import failed.", conn -> {
+            try {
+                return ServiceResult.ok(MemberImporter.importFile(conn, csv, rejects));
+            } catch (IllegalArgumentException e) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, e.getMessage());
+            } catch (IOException e) {
+                return ServiceResult.error(ErrorCode.INVALID_INPUT, "Could not read or write the import files.", e.getMessage());
+            } catch (SQLException e) {
+                // Class 22 = data exception; lines are checked before COPY, so only what slips past that
+                if (e.getSQLState() != null && e.getSQLState().startsWith("22")) {
+                    return ServiceResult.error(ErrorCode.INVALID_INPUT, "The file is not valid member CSV.", e.getMessage());
+                }
+                throw e;
+            }
+        });
+    }
+
+    // ===================== Shared helpers =====================
+
+    // Work done on one borrowed connection
+    interface ConnectionWork<T> {
+        ServiceResult<T> run(Connection conn) throws SQLException;
+    }
+
+    // Borrow a pooled connection, run the work and turn unexpected SQL errors into DATABASE_ERROR
+    <T> ServiceResult<T> execute(String failureMessage, ConnectionWork<T> work) {
+        try (Connection conn = dataSource.getConnection()) {
+            return work.run(conn);
+        } catch (SQLException e) {
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR, failureMessage, e.getMessage());
+        }
+    }
+
+    // Reads through one statement, for streaming whole tables into the in-process indexes
+    interface StreamWork {
+        void run(Statement statement) throws SQLException;
+    }
+
+    // Runs the work on a borrowed connection with results fetched fetchSize rows at a time; the driver only
+    // fetches in chunks (instead of the whole result) inside a transaction, so the work gets one
+    static void stream(DataSource dataSource, int fetchSize, StreamWork work) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement statement = conn.createStatement()) {
+                statement.setFetchSize(fetchSize);
+                work.run(statement);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private ServiceResult<Integer> findIdByEmail(String query, String email, String notFoundMessage) {
+        return execute("Database error during login.", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, trimToEmpty(email));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next()
+                            ? ServiceResult.ok(rs.getInt(1))
+                            : ServiceResult.error(ErrorCode.NOT_FOUND, notFoundMessage);
+                }
+            }
+        });
+    }
+
+    static MemberInfo loadMember(Connection conn, int memberId) throws SQLException {
+        String query = "SELECT member_id, first_name, last_name, email, registration_date " +
+                "FROM Member WHERE member_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readMember(rs) : null;
+            }
+        }
+    }
+
+    static MemberInfo readMember(ResultSet rs) throws SQLException {
+        return new MemberInfo(rs.getInt("member_id"), rs.getString("first_name"), rs.getString("last_name"),
+                rs.getString("email"), toLocalDate(rs.getDate("registration_date")));
+    }
+
+    static TrainerInfo loadTrainer(Connection conn, int trainerId) throws SQLException {
+        String query = "SELECT trainer_id, first_name, last_name, email FROM Trainer WHERE trainer_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, trainerId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readTrainer(rs) : null;
+            }
+        }
+    }
+
+    private static TrainerInfo readTrainer(ResultSet rs) throws SQLException {
+        return new TrainerInfo(rs.getInt("trainer_id"), rs.getString("first_name"), rs.getString("last_name"),
+                rs.getString("email"));
+    }
+
+    static Room loadRoom(Connection conn, int roomId) throws SQLException {
+        String query = "SELECT room_id, room_name, capacity FROM Room WHERE room_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, roomId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new Room(rs.getInt("room_id"), rs.getString("room_name"), rs.getInt("capacity")) : null;
+            }
+        }
+    }
+
+    // 23P01: the row conflicts with another under the named EXCLUDE constraint
+    static boolean isExclusionViolation(SQLException e, String constraint) {
+        return "23P01".equals(e.getSQLState()) && String.valueOf(e.getMessage()).contains(constraint);
+    }
+
+    static boolean isDuplicateKey(SQLException e) {
+        return "23505".equals(e.getSQLState()) ||
+                String.valueOf(e.getMessage()).contains("duplicate key value violates unique constraint");
+    }
+
+    // Day names as stored in TrainerAvailability.day_of_week ("Monday" ... "Sunday")
+    static String dayName(DayOfWeek day) {
+        return day.getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+    }
+
+    static DayOfWeek parseDayOfWeek(String day) {
+        return DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT));
+    }
+
+    static String trimToEmpty(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+
+    static LocalTime toLocalTime(Time time) {
+        return time == null ? null : time.toLocalTime();
+    }
+
+    static Double getNullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    static Integer getNullableInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    static void setNullableDouble(PreparedStatement pstmt, int index, Double value) throws SQLException {
+        if (value != null) pstmt.setDouble(index, value);
+        else pstmt.setNull(index, Types.DECIMAL);
+    }
+
+    static void setNullableInt(PreparedStatement pstmt, int index, Integer value) throws SQLException {
+        if (value != null) pstmt.setInt(index, value);
+        else pstmt.setNull(index, Types.INTEGER);
+    }
+}
@@ -0,0 +1,517 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.HealthMetricRequest;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// High-rate HealthMetric ingestion for wearables and smart scales
+// Callers submit batches of readings (NDJSON or CSV); each batch is parsed and validated with the same
+// rules as logHealthMetric, the valid readings are queued, and writer threads drain the queue in bounded
+// chunks of many batches, writing each chunk with one COPY into a staging table and one INSERT ... SELECT.
+// The queue is bounded by readings: when it is full, ingest() waits up to offerTimeoutMillis and then
+// answers OVERLOADED so producers back off. ingest() returns once its readings are committed, with the
+// rejected lines (validation failures and unknown members) for that batch.
+public class HealthMetricIngestor implements AutoCloseable {
+
+    // Column limits of HealthMetric: weight DECIMAL(5,2), body fat and VO2 max DECIMAL(4,2)
+    private static final BigDecimal MAX_WEIGHT = new BigDecimal("999.99");
+    private static final BigDecimal MAX_TWO_DIGITS = new BigDecimal("99.99");
+
+    // How long ingest() waits for its batch to be written once it is queued
+    private static final long WRITE_TIMEOUT_SECONDS = 60;
+
+    private static final String STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS health_metric_ingest (" +
+            "batch_no INT NOT NULL, line_no INT NOT NULL, member_id INT NOT NULL, date_recorded DATE NOT NULL, " +
+            "weight DECIMAL(5,2), resting_heart_rate INT, body_fat_percentage DECIMAL(4,2), vo2_max DECIMAL(4,2)" +
+            ") ON COMMIT DELETE ROWS";
+
+    public record Reject(int line, String reason) {
+    }
+
+    public record BatchReport(int received, int accepted, List<Reject> rejects) {
+    }
+
+    // One validated reading; line is the 1-based line in the submitted batch
+    record Reading(int line, int memberId, LocalDate dateRecorded, BigDecimal weight, Integer restingHeartRate,
+                   BigDecimal bodyFatPercentage, BigDecimal vo2Max) {
+    }
+
+    private static final class PendingBatch {
+        final List<Reading> readings;
+        final CompletableFuture<List<Reject>> written = new CompletableFuture<>();
+
+        PendingBatch(List<Reading> readings) {
+            this.readings = readings;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final int queueCapacity;
+    private final int writeBatchSize;
+    private final long offerTimeoutMillis;
+    private final Semaphore queueSpace;
+    private final LinkedBlockingQueue<PendingBatch> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    // Metrics
+    private final AtomicLong readingsReceived = new AtomicLong();
+    private final AtomicLong readingsWritten = new AtomicLong();
+    private final AtomicLong readingsRejected = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong overloaded = new AtomicLong();
+
+    public HealthMetricIngestor(DataSource dataSource, int queueCapacity, int writeBatchSize, int writerThreads,
+                                long offerTimeoutMillis) {
+        if (queueCapacity < 1 || writeBatchSize < 1 || writerThreads < 1) {
+            throw new IllegalArgumentException("Invalid ingestion settings");
+        }
+        this.dataSource = dataSource;
+        this.queueCapacity = queueCapacity;
+        this.writeBatchSize = writeBatchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queueSpace = new Semaphore(queueCapacity);
+
+        for (int i = 1; i <= writerThreads; i++) {
+            Thread thread = new Thread(this::writeLoop, "fitclub-metric-writer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            writers.add(thread);
+        }
+    }
+
+    // ===================== Submitting =====================
+
+    // Parse, validate and persist one batch; contentType text/csv selects CSV, anything else NDJSON
+    public ServiceResult<BatchReport> ingest(String contentType, String body) {
+        List<Reading> readings = new ArrayList<>();
+        List<Reject> rejects = new ArrayList<>();
+        int received;
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv")) {
+            received = parseCsv(body, readings, rejects);
+        } else {
+            received = parseNdjson(body, readings, rejects);
+        }
+        readingsReceived.addAndGet(received);
+        readingsRejected.addAndGet(rejects.size());
+
+        if (readings.size() > queueCapacity) {
+            return ServiceResult.error(ErrorCode.INVALID_INPUT,
+                    "Batch too large (" + readings.size() + " readings, at most " + queueCapacity + ").");
+        }
+        if (readings.isEmpty()) {
+            return ServiceResult.ok(new BatchReport(received, 0, rejects));
+        }
+
+        PendingBatch batch = new PendingBatch(readings);
+        try {
+            if (!running) {
+                return shuttingDown();
+            }
+            if (!queueSpace.tryAcquire(readings.size(), offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                overloaded.incrementAndGet();
+                return ServiceResult.error(ErrorCode.OVERLOADED, "Ingestion queue is full, retry later.");
+            }
+            queue.add(batch);
+            // close() may have run while this waited for space; a batch the writers will not see is taken back
+            if (!running && queue.remove(batch)) {
+                queueSpace.release(readings.size());
+                return shuttingDown();
+            }
+            List<Reject> unknownMembers = batch.written.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            rejects.addAll(unknownMembers);
+            rejects.sort((a, b) -> Integer.compare(a.line(), b.line()));
+            return ServiceResult.ok(new BatchReport(received, readings.size() - unknownMembers.size(), rejects));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR, "Interrupted while waiting for the write.");
+        } catch (ExecutionException e) {
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR, "Failed to store health metrics.",
+                    e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR,
+                    "Timed out waiting for the write; the readings may still be stored.");
+        }
+    }
+
+    private <T> ServiceResult<T> shuttingDown() {
+        overloaded.incrementAndGet();
+        return ServiceResult.error(ErrorCode.OVERLOADED, "Ingestion is shutting down, retry later.");
+    }
+
+    // One JSON object per line: {"memberId":1,"dateRecorded":"2025-01-31","weight":72.5,"restingHeartRate":58,
+    // "bodyFatPercentage":18.2,"vo2Max":44.1}; dateRecorded defaults to today, metrics are optional
+    static int parseNdjson(String body, List<Reading> readings, List<Reject> rejects) {
+        String[] lines = body.split("\r?\n");
+        int received = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isBlank()) {
+                continue;
+            }
+            received++;
+            try {
+                Map<String, Object> fields = Json.parseObject(lines[i]);
+                addReading(i + 1, number(fields.get("memberId"), "memberId"), (String) text(fields.get("dateRecorded")),
+                        number(fields.get("weight"), "weight"), number(fields.get("restingHeartRate"), "restingHeartRate"),
+                        number(fields.get("bodyFatPercentage"), "bodyFatPercentage"), number(fields.get("vo2Max"), "vo2Max"),
+                        readings, rejects);
+            } catch (IllegalArgumentException e) {
+                rejects.add(new Reject(i + 1, e.getMessage()));
+            }
+        }
+        return received;
+    }
+
+    // Header line with member_id and any of date_recorded, weight, resting_heart_rate,
+    // body_fat_percentage, vo2_max (any order); empty fields are not measured
+    // Read with the importers' CsvReader, so quoted fields are understood and a malformed line, or one with
+    // more or fewer fields than the header, is rejected rather than read into the wrong columns
+    static int parseCsv(String body, List<Reading> readings, List<Reject> rejects) {
+        CsvReader records = new CsvReader(new StringReader(body));
+        try {
+            CsvReader.Record header = records.next();
+            if (header == null) {
+                return 0;
+            }
+            if (!header.isValid()) {
+                throw new IllegalArgumentException("Malformed CSV header: " + header.error());
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int c = 0; c < header.fields().size(); c++) {
+                columns.put(header.fields().get(c).trim().toLowerCase(Locale.ROOT), c);
+            }
+            if (!columns.containsKey("member_id")) {
+                throw new IllegalArgumentException("CSV header must include member_id");
+            }
+
+            int received = 0;
+            for (CsvReader.Record record = records.next(); record != null; record = records.next()) {
+                received++;
+                List<String> values = record.fields();
+                if (!record.isValid()) {
+                    rejects.add(new Reject(record.line(), "malformed CSV: " + record.error()));
+                    continue;
+                }
+                if (values.size() != header.fields().size()) {
+                    rejects.add(new Reject(record.line(),
+                            "expected " + header.fields().size() + " fields, found " + values.size()));
+                    continue;
+                }
+                try {
+                    addReading(record.line(), csvNumber(values, columns, "member_id"),
+                            csvText(values, columns, "date_recorded"), csvNumber(values, columns, "weight"),
+                            csvNumber(values, columns, "resting_heart_rate"),
+                            csvNumber(values, columns, "body_fat_percentage"), csvNumber(values, columns, "vo2_max"),
+                            readings, rejects);
+                } catch (IllegalArgumentException e) {
+                    rejects.add(new Reject(record.line(), e.getMessage()));
+                }
+            }
+            return received;
+        } catch (IOException e) {
+            // Reading a String does not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addReading(int line, Number memberId, String date, Number weight, Number heartRate,
+                                   Number bodyFat, Number vo2Max, List<Reading> readings, List<Reject> rejects) {
+        if (memberId == null || memberId.doubleValue() != memberId.intValue() || memberId.intValue() <= 0) {
+            rejects.add(new Reject(line, "memberId must be a positive integer"));
+            return;
+        }
+        if (heartRate != null && heartRate.doubleValue() != heartRate.intValue()) {
+            rejects.add(new Reject(line, "restingHeartRate must be an integer"));
+            return;
+        }
+
+        LocalDate dateRecorded;
+        try {
+            dateRecorded = date == null || date.isEmpty() ? LocalDate.now() : LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            rejects.add(new Reject(line, "dateRecorded must be a date (YYYY-MM-DD)"));
+            return;
+        }
+        if (dateRecorded.isAfter(LocalDate.now())) {
+            rejects.add(new Reject(line, "dateRecorded is in the future"));
+            return;
+        }
+
+        HealthMetricRequest request = new HealthMetricRequest(memberId.intValue(),
+                weight == null ? null : weight.doubleValue(),
+                heartRate == null ? null : heartRate.intValue(),
+                bodyFat == null ? null : bodyFat.doubleValue(),
+                vo2Max == null ? null : vo2Max.doubleValue());
+        ServiceResult<Void> invalid = FitClubService.validateHealthMetric(request);
+        if (invalid != null) {
+            rejects.add(new Reject(line, invalid.getMessage()));
+            return;
+        }
+
+        BigDecimal weightValue = scaled(weight);
+        BigDecimal bodyFatValue = scaled(bodyFat);
+        BigDecimal vo2Value = scaled(vo2Max);
+        if ((weightValue != null && weightValue.compareTo(MAX_WEIGHT) > 0) ||
+                (bodyFatValue != null && bodyFatValue.compareTo(MAX_TWO_DIGITS) > 0) ||
+                (vo2Value != null && vo2Value.compareTo(MAX_TWO_DIGITS) > 0)) {
+            rejects.add(new Reject(line, "Metric value out of range"));
+            return;
+        }
+        readings.add(new Reading(line, request.memberId(), dateRecorded, weightValue,
+                request.restingHeartRate(), bodyFatValue, vo2Value));
+    }
+
+    private static BigDecimal scaled(Number value) {
+        return value == null ? null : BigDecimal.valueOf(value.doubleValue()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static Number number(Object value, String field) {
+        if (value == null || value instanceof Number) {
+            return (Number) value;
+        }
+        throw new IllegalArgumentException(field + " must be a number");
+    }
+
+    private static Object text(Object value) {
+        if (value == null || value instanceof String) {
+            return value;
+        }
+        throw new IllegalArgumentException("dateRecorded must be a string");
+    }
+
+    private static String csvText(List<String> values, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index == null ? null : values.get(index).trim();
+    }
+
+    private static Number csvNumber(List<String> values, Map<String, Integer> columns, String column) {
+        String value = csvText(values, columns, column);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " must be a number");
+        }
+    }
+
+    // ===================== Writing =====================
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            List<PendingBatch> chunk = new ArrayList<>();
+            try {
+                PendingBatch first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Take whatever else is waiting, up to writeBatchSize readings (group commit)
+                chunk.add(first);
+                int size = first.readings.size();
+                PendingBatch next;
+                while (size < writeBatchSize && (next = queue.peek()) != null
+                        && size + next.readings.size() <= writeBatchSize && queue.remove(next)) {
+                    chunk.add(next);
+                    size += next.readings.size();
+                }
+                write(chunk, size);
+            } catch (InterruptedException e) {
+                fail(chunk, e);
+                return;
+            } catch (RuntimeException e) {
+                fail(chunk, e);
+            }
+        }
+    }
+
+    private void write(List<PendingBatch> chunk, int size) {
+        long start = System.nanoTime();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement statement = conn.createStatement()) {
+                statement.execute(STAGING_TABLE);
+                copyChunk(conn, chunk);
+                // Temp tables are never auto-analyzed; row counts let the planner probe Member by index
+                statement.execute("ANALYZE health_metric_ingest");
+
+                List<List<Reject>> unknown = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    unknown.add(new ArrayList<>());
+                }
+                // Readings for unknown members become rejects; everything left is inserted
+                try (ResultSet rs = statement.executeQuery("DELETE FROM health_metric_ingest s " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM Member m WHERE m.member_id = s.member_id) " +
+                        "RETURNING batch_no, line_no, member_id")) {
+                    while (rs.next()) {
+                        unknown.get(rs.getInt("batch_no")).add(
+                                new Reject(rs.getInt("line_no"), "Member " + rs.getInt("member_id") + " not found"));
+                    }
+                }
+
+                int inserted = statement.executeUpdate("INSERT INTO HealthMetric (member_id, date_recorded, weight, " +
+                        "resting_heart_rate, body_fat_percentage, vo2_max) " +
+                        "SELECT member_id, date_recorded, weight, resting_heart_rate, body_fat_percentage, vo2_max " +
+                        "FROM health_metric_ingest ORDER BY member_id, date_recorded");
+                conn.commit();
+
+                readingsWritten.addAndGet(inserted);
+                readingsRejected.addAndGet(size - inserted);
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).written.complete(unknown.get(i));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            fail(chunk, e);
+        } finally {
+            queueSpace.release(size);
+            writes.incrementAndGet();
+            writeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private static void copyChunk(Connection conn, List<PendingBatch> chunk) throws SQLException {
+        CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY health_metric_ingest FROM STDIN (FORMAT csv)");
+        try {
+            StringBuilder rows = new StringBuilder(64 * 1024);
+            for (int batchNo = 0; batchNo < chunk.size(); batchNo++) {
+                for (Reading reading : chunk.get(batchNo).readings) {
+                    rows.append(batchNo).append(',').append(reading.line()).append(',')
+                            .append(reading.memberId()).append(',').append(reading.dateRecorded()).append(',')
+                            .append(orEmpty(reading.weight())).append(',')
+                            .append(orEmpty(reading.restingHeartRate())).append(',')
+                            .append(orEmpty(reading.bodyFatPercentage())).append(',')
+                            .append(orEmpty(reading.vo2Max())).append('\n');
+                    if (rows.length() >= 60 * 1024) {
+                        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+                        copyIn.writeToCopy(bytes, 0, bytes.length);
+                        rows.setLength(0);
+                    }
+                }
+            }
+            byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static String orEmpty(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private void fail(List<PendingBatch> chunk, Exception e) {
+        writeFailures.incrementAndGet();
+        for (PendingBatch batch : chunk) {
+            batch.written.completeExceptionally(e);
+        }
+    }
+
+    // Stop accepting batches and let the writers drain the queue; batches still queued after that
+    // (writers stuck past the 30 s wait) are failed rather than left waiting
+    @Override
+    public void close() {
+        running = false;
+        try {
+            for (Thread writer : writers) {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            List<PendingBatch> leftover = new ArrayList<>();
+            queue.drainTo(leftover);
+            for (PendingBatch batch : leftover) {
+                queueSpace.release(batch.readings.size());
+            }
+            if (!leftover.isEmpty()) {
+                fail(leftover, new IllegalStateException("Ingestion shut down before the batch was written"));
+            }
+        }
+    }
+
+    // ===================== Metrics =====================
+
+    public long getReadingsReceived() {
+        return readingsReceived.get();
+    }
+
+    public long getReadingsWritten() {
+        return readingsWritten.get();
+    }
+
+    public long getReadingsRejected() {
+        return readingsRejected.get();
+    }
+
+    public int getQueuedReadings() {
+        return queueCapacity - queueSpace.availablePermits();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    public long getOverloaded() {
+        return overloaded.get();
+    }
+
+    public double getAverageWriteMillis() {
+        long count = writes.get();
+        return count == 0 ? 0 : writeNanos.get() / 1e6 / count;
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("readingsReceived", getReadingsReceived());
+        metrics.put("readingsWritten", getReadingsWritten());
+        metrics.put("readingsRejected", getReadingsRejected());
+        metrics.put("queuedReadings", getQueuedReadings());
+        metrics.put("writes", getWrites());
+        metrics.put("averageWriteMillis", getAverageWriteMillis());
+        metrics.put("writeFailures", getWriteFailures());
+        metrics.put("overloaded", getOverloaded());
+        return Collections.unmodifiableMap(metrics);
+    }
+}
@@ -0,0 +1,46 @@
+package org.fitclub;
+
+import java.time.LocalTime;
+import java.util.List;
+
+// Daily upkeep of the monthly HealthMetric partitions (health_metric_maintain() in sql/ddl.sql): the coming
+// -Dfitclub.healthMetric.monthsAhead (default 3) months are created before any reading needs them, months
+// older than -Dfitclub.healthMetric.hotMonths (3) get a BRIN instead of their primary key, and with
+// -Dfitclub.healthMetric.retentionMonths (default 0: keep everything) older months are detached
+// Runs once at start (so a fresh database gets its months) and then shortly after every midnight
+public class HealthMetricPartitionJob implements AutoCloseable {
+
+    private static final int MONTHS_AHEAD = Integer.getInteger("fitclub.healthMetric.monthsAhead", 3);
+    private static final int HOT_MONTHS = Integer.getInteger("fitclub.healthMetric.hotMonths", 3);
+    private static final int RETENTION_MONTHS = Integer.getInteger("fitclub.healthMetric.retentionMonths", 0);
+
+    // After the dashboard rollover; nothing depends on the order
+    private static final LocalTime RUN_AT = LocalTime.of(0, 5);
+
+    private final FitClubService service;
+    private final DailyJob job;
+
+    public HealthMetricPartitionJob(FitClubService service) {
+        this.service = service;
+        this.job = new DailyJob("fitclub-health-metric-partitions", "Health metric partition maintenance", RUN_AT,
+                this::maintain);
+    }
+
+    public void start() {
+        job.start();
+    }
+
+    private ServiceResult<List<String>> maintain() {
+        ServiceResult<List<String>> result = service.maintainHealthMetricPartitions(MONTHS_AHEAD, HOT_MONTHS,
+                RETENTION_MONTHS);
+        if (result.isOk() && !result.getValue().isEmpty()) {
+            System.out.println("Health metric partitions: " + String.join(", ", result.getValue()) + ".");
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        job.close();
+    }
+}
@@ -0,0 +1,312 @@
+package org.fitclub;
+
+import java.lang.reflect.RecordComponent;
+import java.time.DayOfWeek;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal JSON support for the HTTP front end (no external dependency)
+// write() handles records, maps, collections, strings, numbers, booleans, java.time values and enums
+// parse() returns Map / List / String / Double or Long / Boolean / null
+public final class Json {
+
+    private Json() {
+    }
+
+    // ===================== Writing =====================
+
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder();
+        writeValue(out, value);
+        return out.toString();
+    }
+
+    private static void writeValue(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String || value instanceof Character) {
+            writeString(out, value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                out.append("null");
+            } else {
+                out.append(number);
+            }
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof DayOfWeek) {
+            writeString(out, FitClubService.dayName((DayOfWeek) value));
+        } else if (value instanceof Enum<?>) {
+            writeString(out, ((Enum<?>) value).name());
+        } else if (value instanceof TemporalAccessor) {
+            writeString(out, value.toString());
+        } else if (value instanceof Map<?, ?>) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                writeValue(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Collection<?>) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeValue(out, item);
+            }
+            out.append(']');
+        } else if (value.getClass().isRecord()) {
+            writeRecord(out, value);
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeRecord(StringBuilder out, Object record) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (RecordComponent component : record.getClass().getRecordComponents()) {
+            try {
+                fields.put(component.getName(), component.getAccessor().invoke(record));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot read record component " + component.getName(), e);
+            }
+        }
+        writeValue(out, fields);
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    // ===================== Parsing =====================
+
+    public static Object parse(String text) {
+        Parser parser = new Parser(text);
+        parser.skipWhitespace();
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    // Parse a JSON object (throws IllegalArgumentException for anything else)
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map<?, ?>)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        boolean atEnd() {
+            return pos >= text.length();
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        Object readValue() {
+            if (atEnd()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{': return readObject();
+                case '[': return readArray();
+                case '"': return readString();
+                case 't': return readLiteral("true", Boolean.TRUE);
+                case 'f': return readLiteral("false", Boolean.FALSE);
+                case 'n': return readLiteral("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return readNumber();
+                    }
+                    throw error("Unexpected character '" + c + "'");
+            }
+        }
+
+        Map<String, Object> readObject() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (!atEnd() && text.charAt(pos) == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                if (atEnd() || text.charAt(pos) != '"') {
+                    throw error("Expected a field name");
+                }
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                map.put(key, readValue());
+                skipWhitespace();
+                if (atEnd()) {
+                    throw error("Unterminated object");
+                }
+                char c = text.charAt(pos++);
+                if (c == '}') {
+                    return map;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        List<Object> readArray() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (!atEnd() && text.charAt(pos) == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                skipWhitespace();
+                list.add(readValue());
+                skipWhitespace();
+                if (atEnd()) {
+                    throw error("Unterminated array");
+                }
+                char c = text.charAt(pos++);
+                if (c == ']') {
+                    return list;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        String readString() {
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (atEnd()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (atEnd()) {
+                    throw error("Unterminated escape");
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Bad escape '\\" + escaped + "'");
+                }
+            }
+        }
+
+        Object readNumber() {
+            int start = pos;
+            boolean decimal = false;
+            while (!atEnd()) {
+                char c = text.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                pos++;
+            }
+            String number = text.substring(start, pos);
+            try {
+                return decimal ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                throw error("Bad number '" + number + "'");
+            }
+        }
+
+        Object readLiteral(String literal, Object value) {
+            if (!text.startsWith(literal, pos)) {
+                throw error("Unexpected token");
+            }
+            pos += literal.length();
+            return value;
+        }
+
+        void expect(char c) {
+            if (atEnd() || text.charAt(pos) != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+    }
+}
@@ -1,25 +1,43 @@
 package org.fitclub;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Scanner;
 
 // Main entry point for Health and Fitness Club Management System
+// Session state (who is signed in) lives in local variables of each menu loop, not in globals
 public class Main {
 
-    // Global variables to track current user session
-    private static int currentMemberId = -1;
-    private static int currentTrainerId = -1;
-    private static int currentAdminId = -1;
-
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        Connection conn = null;
+        DashboardRolloverJob rollover = null;
+        SeatCountReconciliationJob seatReconciliation = null;
+        HealthMetricPartitionJob metricPartitions = null;
+        MemberSearchIndex searchIndex = null;
+        ScheduleIndex scheduleIndex = null;
 
         try {
-            // Establish database connection
-            conn = DatabaseConnection.getConnection();
+            // Verify the database is reachable before showing the menu
+            Connection probe = DatabaseConnection.getConnection();
+            DatabaseConnection.closeConnection(probe);
+
+            // Trainer member search answers from memory once the index has loaded in the background
+            if (Boolean.parseBoolean(System.getProperty("fitclub.searchIndex.enabled", "true"))) {
+                searchIndex = new MemberSearchIndex(DatabaseConnection.getDataSource());
+                searchIndex.start();
+            }
+            // Class planning (free times offered when a class cannot be booked) likewise from the schedule index
+            if (Boolean.parseBoolean(System.getProperty("fitclub.scheduleIndex.enabled", "true"))) {
+                scheduleIndex = new ScheduleIndex(DatabaseConnection.getDataSource());
+                scheduleIndex.start();
+            }
+            FitClubService service = new FitClubService(DatabaseConnection.getDataSource(), searchIndex, scheduleIndex);
+            rollover = new DashboardRolloverJob(service);
+            rollover.start();
+            seatReconciliation = new SeatCountReconciliationJob(service);
+            seatReconciliation.start();
+            metricPartitions = new HealthMetricPartitionJob(service);
+            metricPartitions.start();
 
             // Main application loop
             boolean running = true;
@@ -30,17 +48,17 @@ public class Main {
 
                 switch (choice) {
                     case 1:
-                        handleMemberLogin(conn, scanner);
+                        handleMemberLogin(service, scanner);
                         break;
                     case 2:
-                        handleTrainerLogin(conn, scanner);
+                        handleTrainerLogin(service, scanner);
                         break;
                     case 3:
-                        handleAdminLogin(conn, scanner);
+                        handleAdminLogin(service, scanner);
                         break;
                     case 4:
                         // User Registration (before login)
-                        MemberOperations.registerMember(conn, scanner);
+                        MemberOperations.registerMember(service, scanner);
                         break;
                     case 5:
                         running = false;
@@ -51,10 +69,23 @@ public class Main {
             System.err.println("Database connection error: " + e.getMessage());
             System.err.println("Please ensure PostgreSQL is running and credentials are correct.");
         } finally {
-            // Close database connection
-            if (conn != null) {
-                DatabaseConnection.closeConnection(conn);
+            if (rollover != null) {
+                rollover.close();
+            }
+            if (seatReconciliation != null) {
+                seatReconciliation.close();
+            }
+            if (metricPartitions != null) {
+                metricPartitions.close();
             }
+            if (searchIndex != null) {
+                searchIndex.close();
+            }
+            if (scheduleIndex != null) {
+                scheduleIndex.close();
+            }
+            // Close pooled database connections
+            DatabaseConnection.shutdown();
             scanner.close();
         }
     }
@@ -73,21 +104,21 @@ public class Main {
     }
 
     // Handle Member login and menu
-    private static void handleMemberLogin(Connection conn, Scanner scanner) {
+    private static void handleMemberLogin(FitClubService service, Scanner scanner) {
         System.out.println("\n=== MEMBER LOGIN ===");
         System.out.print("Enter your email: ");
         String email = scanner.nextLine().trim();
 
         // Verify email exists and get member_id
-        currentMemberId = MemberOperations.getMemberIdByEmail(conn, email);
+        int memberId = MemberOperations.getMemberIdByEmail(service, email);
 
-        if (currentMemberId == -1) {
+        if (memberId == -1) {
             System.out.println("No Member found with that email.");
             return;
         }
 
         // Get member name for welcome message
-        String memberName = MemberOperations.getMemberName(conn, currentMemberId);
+        String memberName = MemberOperations.getMemberName(service, memberId);
         System.out.println("Welcome back, " + memberName + "!");
 
         // Member menu loop
@@ -99,17 +130,16 @@ public class Main {
 
             switch (choice) {
                 case 1:
-                    handleUpdateProfile(conn, scanner);
+                    handleUpdateProfile(service, memberId, scanner);
                     break;
                 case 2:
-                    MemberOperations.viewDashboard(conn, currentMemberId);
+                    MemberOperations.viewDashboard(service, memberId);
                     break;
                 case 3:
-                    MemberOperations.registerForGroupClass(conn, currentMemberId, scanner);
+                    MemberOperations.registerForGroupClass(service, memberId, scanner);
                     break;
                 case 4:
                     loggedIn = false;
-                    currentMemberId = -1;
                     System.out.println("Signed out successfully.");
                     break;
             }
@@ -129,7 +159,7 @@ public class Main {
     }
 
     // Handle Update Profile submenu
-    private static void handleUpdateProfile(Connection conn, Scanner scanner) {
+    private static void handleUpdateProfile(FitClubService service, int memberId, Scanner scanner) {
         System.out.println("\n=== UPDATE PROFILE ===");
         System.out.println("1. Update Personal Information");
         System.out.println("2. Create New Fitness Goal");
@@ -141,13 +171,13 @@ public class Main {
 
         switch (choice) {
             case 1:
-                MemberOperations.updatePersonalInfo(conn, currentMemberId, scanner);
+                MemberOperations.updatePersonalInfo(service, memberId, scanner);
                 break;
             case 2:
-                MemberOperations.createFitnessGoal(conn, currentMemberId, scanner);
+                MemberOperations.createFitnessGoal(service, memberId, scanner);
                 break;
             case 3:
-                MemberOperations.logHealthMetric(conn, currentMemberId, scanner);
+                MemberOperations.logHealthMetric(service, memberId, scanner);
                 break;
             case 4:
                 // Back to menu
@@ -156,21 +186,21 @@ public class Main {
     }
 
     // Handle Trainer login and menu
-    private static void handleTrainerLogin(Connection conn, Scanner scanner) {
+    private static void handleTrainerLogin(FitClubService service, Scanner scanner) {
         System.out.println("\n=== TRAINER LOGIN ===");
         System.out.print("Enter your email: ");
         String email = scanner.nextLine().trim();
 
         // Verify email exists and get trainer_id
-        currentTrainerId = TrainerOperations.getTrainerIdByEmail(conn, email);
+        int trainerId = TrainerOperations.getTrainerIdByEmail(service, email);
 
-        if (currentTrainerId == -1) {
+        if (trainerId == -1) {
             System.out.println("No Trainer found with that email.");
             return;
         }
 
         // Get trainer name for welcome message
-        String trainerName = TrainerOperations.getTrainerName(conn, currentTrainerId);
+        String trainerName = TrainerOperations.getTrainerName(service, trainerId);
         System.out.println("Welcome back, " + trainerName + "!");
 
         // Trainer menu loop
@@ -178,18 +208,20 @@ public class Main {
         while (loggedIn) {
             displayTrainerMenu();
 
-            int choice = getMenuChoice(scanner, 1, 3);
+            int choice = getMenuChoice(scanner, 1, 4);
 
             switch (choice) {
                 case 1:
-                    TrainerOperations.setAvailability(conn, currentTrainerId, scanner);
+                    TrainerOperations.setAvailability(service, trainerId, scanner);
                     break;
                 case 2:
-                    TrainerOperations.searchMemberByName(conn, scanner);
+                    TrainerOperations.setWeeklyAvailability(service, trainerId, scanner);
                     break;
                 case 3:
+                    TrainerOperations.searchMemberByName(service, scanner);
+                    break;
+                case 4:
                     loggedIn = false;
-                    currentTrainerId = -1;
                     System.out.println("Signed out successfully.");
                     break;
             }
@@ -202,27 +234,28 @@ public class Main {
         System.out.println("          TRAINER MENU");
         System.out.println("========================================");
         System.out.println("1. Set Availability");
-        System.out.println("2. Search Member by Name");
-        System.out.println("3. Sign Out");
+        System.out.println("2. Set Whole Week's Availability");
+        System.out.println("3. Search Member by Name");
+        System.out.println("4. Sign Out");
         System.out.println("========================================");
     }
 
     // Handle Admin login and menu
-    private static void handleAdminLogin(Connection conn, Scanner scanner) {
+    private static void handleAdminLogin(FitClubService service, Scanner scanner) {
         System.out.println("\n=== ADMIN LOGIN ===");
         System.out.print("Enter your email: ");
         String email = scanner.nextLine().trim();
 
         // Verify email exists and get admin_id
-        currentAdminId = AdminOperations.getAdminIdByEmail(conn, email);
+        int adminId = AdminOperations.getAdminIdByEmail(service, email);
 
-        if (currentAdminId == -1) {
+        if (adminId == -1) {
             System.out.println("No Admin found with that email.");
             return;
         }
 
         // Get admin name for welcome message
-        String adminName = AdminOperations.getAdminName(conn, currentAdminId);
+        String adminName = AdminOperations.getAdminName(service, adminId);
         System.out.println("Welcome back, " + adminName + "!");
 
         // Admin menu loop
@@ -230,15 +263,26 @@ public class Main {
         while (loggedIn) {
             displayAdminMenu();
 
-            int choice = getMenuChoice(scanner, 1, 2);
+            int choice = getMenuChoice(scanner, 1, 6);
 
             switch (choice) {
                 case 1:
-                    AdminOperations.createGroupClass(conn, scanner);
+                    AdminOperations.createGroupClass(service, scanner);
                     break;
                 case 2:
+                    AdminOperations.createClassSeries(service, scanner);
+                    break;
+                case 3:
+                    AdminOperations.findFreeSlots(service, scanner);
+                    break;
+                case 4:
+                    AdminOperations.importMembers(service, scanner);
+                    break;
+                case 5:
+                    AdminOperations.publishAvailability(service, scanner);
+                    break;
+                case 6:
                     loggedIn = false;
-                    currentAdminId = -1;
                     System.out.println("Signed out successfully.");
                     break;
             }
@@ -251,7 +295,11 @@ public class Main {
         System.out.println("           ADMIN MENU");
         System.out.println("========================================");
         System.out.println("1. Create New Group Class");
-        System.out.println("2. Sign Out");
+        System.out.println("2. Create Recurring Class Series");
+        System.out.println("3. Find Free Rooms and Trainers");
+        System.out.println("4. Bulk Import Members (CSV)");
+        System.out.println("5. Publish Trainer Availability (CSV)");
+        System.out.println("6. Sign Out");
         System.out.println("========================================");
     }
 
@@ -0,0 +1,257 @@
+package org.fitclub;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Bulk member onboarding (e.g. migrating another gym's members)
+// Streams a CSV through COPY into a temporary staging table, then merges it into Member with
+// set-based statements. Rows that cannot be imported go to a rejects CSV with the reason instead of
+// aborting the import:
+//   - malformed lines (a stray or unbalanced quote, the wrong number of fields; see CsvReader) and
+//     registration dates that are not YYYY-MM-DD, caught while streaming since COPY would fail on them
+//   - missing first name, last name or email, or values longer than the Member columns
+//   - an email that appears earlier in the same file
+//   - an email that is already registered (UNIQUE constraint, checked with ON CONFLICT DO NOTHING)
+//
+// Input: a header line naming the columns (first_name, last_name, email, optional registration_date
+// as YYYY-MM-DD, any order), then one member per line.
+// Run: java -cp ... org.fitclub.MemberImporter members.csv [rejects.csv]
+public final class MemberImporter {
+
+    private static final Set<String> REQUIRED_COLUMNS = Set.of("first_name", "last_name", "email");
+    private static final Set<String> KNOWN_COLUMNS = Set.of("first_name", "last_name", "email", "registration_date");
+
+    // Staged rows are sent to COPY in chunks of about this many characters
+    private static final int COPY_CHUNK_CHARS = 64 * 1024;
+
+    public record ImportReport(long rowsRead, long imported, long rejected) {
+    }
+
+    private MemberImporter() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: MemberImporter <members.csv> [rejects.csv]");
+            return;
+        }
+        Path input = Path.of(args[0]);
+        Path rejects = Path.of(args.length == 2 ? args[1] : args[0] + ".rejects.csv");
+
+        try {
+            FitClubService service = new FitClubService(DatabaseConnection.getDataSource());
+            ServiceResult<ImportReport> result = service.importMembers(input, rejects);
+            if (!result.isOk()) {
+                MemberOperations.printError(result);
+                return;
+            }
+            printReport(result.getValue(), rejects);
+        } catch (SQLException e) {
+            System.err.println("ERROR: Could not connect to the database.");
+            System.err.println("Details: " + e.getMessage());
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    static void printReport(ImportReport report, Path rejects) {
+        System.out.println("\nIMPORT COMPLETE");
+        System.out.printf("   Rows read: %,d%n", report.rowsRead());
+        System.out.printf("   Imported:  %,d%n", report.imported());
+        System.out.printf("   Rejected:  %,d%n", report.rejected());
+        if (report.rejected() > 0) {
+            System.out.println("   Rejects written to " + rejects);
+        }
+    }
+
+    // Import members from a CSV file, writing rejected rows to another CSV file
+    static ImportReport importFile(Connection conn, Path input, Path rejects) throws SQLException, IOException {
+        try (BufferedReader csv = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer out = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            return importCsv(conn, csv, out);
+        }
+    }
+
+    // Whole import runs in one transaction; the staging table is dropped at commit
+    static ImportReport importCsv(Connection conn, Reader csv, Writer rejects) throws SQLException, IOException {
+        CsvReader records = new CsvReader(csv);
+        List<String> columns = readHeader(records.next());
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement statement = conn.createStatement()) {
+            // TEXT columns so over-long values become rejects rather than COPY errors; rows rejected while
+            // streaming arrive with their reason already set
+            statement.execute("CREATE TEMP TABLE member_import (" +
+                    "line_no BIGINT, first_name TEXT, last_name TEXT, email TEXT, registration_date DATE, reason TEXT" +
+                    ") ON COMMIT DROP");
+
+            stage(conn, records, columns);
+            statement.execute("ANALYZE member_import");
+
+            statement.executeUpdate("UPDATE member_import SET " +
+                    "first_name = btrim(COALESCE(first_name, '')), " +
+                    "last_name = btrim(COALESCE(last_name, '')), " +
+                    "email = btrim(COALESCE(email, ''))");
+
+            statement.executeUpdate("UPDATE member_import SET reason = CASE " +
+                    "WHEN first_name = '' OR last_name = '' OR email = '' THEN 'missing first name, last name or email' " +
+                    "WHEN length(first_name) > 50 OR length(last_name) > 50 THEN 'name longer than 50 characters' " +
+                    "WHEN length(email) > 100 THEN 'email longer than 100 characters' END " +
+                    "WHERE reason IS NULL");
+
+            // Keep the first occurrence of each email in the file
+            statement.executeUpdate("UPDATE member_import m " +
+                    "SET reason = 'duplicate email in file (first on line ' || d.first_line || ')' " +
+                    "FROM (SELECT line_no, " +
+                    "             first_value(line_no) OVER w AS first_line, " +
+                    "             row_number() OVER w AS occurrence " +
+                    "      FROM member_import WHERE reason IS NULL " +
+                    "      WINDOW w AS (PARTITION BY email ORDER BY line_no)) d " +
+                    "WHERE m.line_no = d.line_no AND d.occurrence > 1");
+
+            // Merge; emails that hit the UNIQUE constraint were not inserted and become rejects
+            statement.executeUpdate("WITH inserted AS (" +
+                    "    INSERT INTO Member (first_name, last_name, email, registration_date) " +
+                    "    SELECT first_name, last_name, email, COALESCE(registration_date, CURRENT_DATE) " +
+                    "    FROM member_import WHERE reason IS NULL ORDER BY line_no " +
+                    "    ON CONFLICT (email) DO NOTHING " +
+                    "    RETURNING email) " +
+                    "UPDATE member_import m SET reason = 'email already registered' " +
+                    "WHERE m.reason IS NULL AND NOT EXISTS (SELECT 1 FROM inserted i WHERE i.email = m.email)");
+
+            ImportReport report = writeRejects(statement, rejects);
+            conn.commit();
+            return report;
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static List<String> readHeader(CsvReader.Record header) {
+        if (header == null) {
+            throw new IllegalArgumentException("The file is empty.");
+        }
+        if (!header.isValid()) {
+            throw new IllegalArgumentException("Malformed header: " + header.error() + ".");
+        }
+        List<String> columns = new ArrayList<>();
+        for (String name : header.fields()) {
+            String column = name.trim().toLowerCase(Locale.ROOT);
+            if (!KNOWN_COLUMNS.contains(column) || columns.contains(column)) {
+                throw new IllegalArgumentException("Unexpected column '" + column + "' in header. Expected " +
+                        "first_name, last_name, email and optionally registration_date.");
+            }
+            columns.add(column);
+        }
+        if (!columns.containsAll(REQUIRED_COLUMNS)) {
+            throw new IllegalArgumentException("Header must name first_name, last_name and email.");
+        }
+        return columns;
+    }
+
+    // COPY the records into the staging table, one row per line of the file (line numbers count the header as
+    // line 1). A line COPY could not take is staged without its values and with the reason it is rejected
+    private static void stage(Connection conn, CsvReader records, List<String> columns) throws SQLException, IOException {
+        CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                "COPY member_import (line_no, " + String.join(", ", columns) + ", reason) FROM STDIN (FORMAT csv)");
+        try {
+            int dateColumn = columns.indexOf("registration_date");
+            StringBuilder rows = new StringBuilder();
+            for (CsvReader.Record record = records.next(); record != null; record = records.next()) {
+                List<String> values = record.fields();
+                String reason = record.error();
+                if (reason == null && values.size() != columns.size()) {
+                    reason = "expected " + columns.size() + " fields, found " + values.size();
+                }
+                if (reason == null && dateColumn >= 0) {
+                    String date = values.get(dateColumn).trim();
+                    try {
+                        if (!date.isEmpty()) {
+                            LocalDate.parse(date);
+                        }
+                        values.set(dateColumn, date);
+                    } catch (DateTimeParseException e) {
+                        reason = "registration date is not YYYY-MM-DD";
+                        values.set(dateColumn, "");
+                    }
+                }
+
+                rows.append(record.line());
+                for (int c = 0; c < columns.size(); c++) {
+                    rows.append(',').append(values != null && values.size() == columns.size() ? csvField(values.get(c)) : "");
+                }
+                rows.append(',').append(csvField(reason)).append('\n');
+                if (rows.length() >= COPY_CHUNK_CHARS) {
+                    writeRows(copy, rows);
+                }
+            }
+            writeRows(copy, rows);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeRows(CopyIn copy, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    // Stream the rejects and return the totals
+    private static ImportReport writeRejects(Statement statement, Writer rejects) throws SQLException, IOException {
+        rejects.write("line,first_name,last_name,email,reason\n");
+        statement.setFetchSize(1_000);
+        try (ResultSet rs = statement.executeQuery("SELECT line_no AS line, first_name, last_name, email, reason " +
+                "FROM member_import WHERE reason IS NOT NULL ORDER BY line_no")) {
+            while (rs.next()) {
+                rejects.write(rs.getLong("line") + "," + csvField(rs.getString("first_name")) + "," +
+                        csvField(rs.getString("last_name")) + "," + csvField(rs.getString("email")) + "," +
+                        csvField(rs.getString("reason")) + "\n");
+            }
+        }
+        rejects.flush();
+
+        try (ResultSet rs = statement.executeQuery("SELECT COUNT(*), COUNT(*) FILTER (WHERE reason IS NULL) " +
+                "FROM member_import")) {
+            rs.next();
+            long read = rs.getLong(1);
+            long imported = rs.getLong(2);
+            return new ImportReport(read, imported, read - imported);
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,771 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.MemberInfo;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-process index over member names and emails, answering the prefix and substring stages of
+// FitClubService.searchMembers() without a database round trip
+// Every member is a slot: one string "first\0last\0email" plus its id and registration day. Prefix stage:
+// slot arrays sorted by (first, last), (last, first) and email, lower-cased and compared by code point like
+// the C-collated indexes, so a prefix is a binary search and a scan that stops after one page. Substring
+// stage: int posting lists of the slots whose "first last" contains each trigram, in slot order.
+// Roughly 150 bytes per member: about 150 MB per million.
+// Loaded at start by streaming the Member table. Kept current by put() from registerMember() and
+// updatePersonalInfo(), and in every app instance by the DDL's trigger that NOTIFYs 'member_search' with
+// the ids of members added, changed or deleted elsewhere (other instances, the bulk importer); the
+// listener re-reads those rows. While the listener is disconnected the index is not ready and searches
+// go to the database; it is reloaded once LISTEN is re-established.
+public class MemberSearchIndex implements AutoCloseable {
+
+    public static final String CHANNEL = "member_search";
+
+    private static final int FETCH_SIZE = 10_000;
+    // New slots are searched unsorted until this many have arrived, then merged into the sorted arrays
+    private static final int MERGE_THRESHOLD = 1_024;
+    // Substring matches ranked per search, as in FitClubService
+    private static final int SEARCH_CANDIDATES = 1_000;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int FIRST = 0;
+    private static final int LAST = 1;
+    private static final int EMAIL = 2;
+
+    // Sort orders of the slot arrays: (first, last), (last, first) and email
+    private static final int BY_FIRST = 0;
+    private static final int BY_LAST = 1;
+    private static final int BY_EMAIL = 2;
+    private static final int ORDERS = 3;
+
+    private final DataSource dataSource;
+    private final NotificationListener listener;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Index index = new Index();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong totalLookupNanos = new AtomicLong();
+    private final AtomicLong maxLookupNanos = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong lastLoadMillis = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+
+    public MemberSearchIndex(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.listener = new NotificationListener("fitclub-member-search-index", "Member search index",
+                "searching the database", new NotificationListener.Handler() {
+                    @Override
+                    public void connected() throws SQLException {
+                        load();
+                    }
+
+                    @Override
+                    public void notified(String channel, String payload) throws SQLException {
+                        apply(payload);
+                    }
+                }, CHANNEL);
+    }
+
+    // Listens for changes and loads the index in the background; searches use the database until then
+    public void start() {
+        listener.start();
+    }
+
+    // Loaded and listening; changes made elsewhere may be missing otherwise
+    public boolean isReady() {
+        return listener.isListening();
+    }
+
+    // ===================== Search =====================
+
+    // Stages 1 and 2 of FitClubService.searchMembers() for normalised (lower-case, non-empty) words:
+    // 1. prefixes: one word starting the first name, last name or email, or several starting the first and
+    //    last name in either order; best `limit` in (last, first, member id) order
+    // 2. names containing the words in order, words with 3+ letters (the trigrams) required; matches at the
+    //    start of a name word first, then shorter names, as a stand-in for word_similarity()
+    public List<MemberInfo> search(String[] words, int limit) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            Index idx = index;
+            List<Integer> slots = idx.prefixMatches(words, limit);
+            if (slots.size() < limit) {
+                idx.addSubstringMatches(words, limit, slots);
+            }
+            List<MemberInfo> members = new ArrayList<>(slots.size());
+            for (int slot : slots) {
+                members.add(idx.member(slot));
+            }
+            return members;
+        } finally {
+            lock.readLock().unlock();
+            long nanos = System.nanoTime() - start;
+            lookups.incrementAndGet();
+            totalLookupNanos.addAndGet(nanos);
+            maxLookupNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    // ===================== Updates =====================
+
+    // Adds or replaces a member (after an insert or update this instance committed)
+    public void put(MemberInfo member) {
+        lock.writeLock().lock();
+        try {
+            index.put(member);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int memberId) {
+        lock.writeLock().lock();
+        try {
+            index.remove(memberId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Streams the whole Member table into a new index and swaps it in
+    public void load() throws SQLException {
+        long start = System.currentTimeMillis();
+        Index loaded = new Index();
+        FitClubService.stream(dataSource, FETCH_SIZE, statement -> {
+            try (ResultSet rs = statement.executeQuery("SELECT member_id, first_name, last_name, email, " +
+                    "registration_date FROM Member")) {
+                while (rs.next()) {
+                    loaded.add(FitClubService.readMember(rs));
+                }
+            }
+        });
+        loaded.sortAll();
+
+        lock.writeLock().lock();
+        try {
+            index = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loads.incrementAndGet();
+        lastLoadMillis.set(System.currentTimeMillis() - start);
+    }
+
+    // ===================== Listener =====================
+
+    // Re-reads the members notified; ids no longer in the table were deleted
+    private void apply(String payload) throws SQLException {
+        notifications.incrementAndGet();
+        List<Integer> ids = NotificationListener.payloadIds(payload);
+        if (ids == null) {
+            // Unknown payload: reload rather than risk missing a change
+            load();
+            return;
+        }
+
+        Map<Integer, MemberInfo> members = new HashMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT member_id, first_name, last_name, email, " +
+                     "registration_date FROM Member WHERE member_id = ANY(?)")) {
+            statement.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    MemberInfo member = FitClubService.readMember(rs);
+                    members.put(member.memberId(), member);
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (int id : ids) {
+                MemberInfo member = members.get(id);
+                if (member != null) {
+                    index.put(member);
+                } else {
+                    index.remove(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        listener.close();
+    }
+
+    // ===================== Metrics =====================
+
+    public Map<String, Object> describe() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long lookupCount = lookups.get();
+        metrics.put("ready", isReady());
+        lock.readLock().lock();
+        try {
+            metrics.put("members", index.live);
+            metrics.put("slots", index.size);
+            metrics.put("unsortedSlots", index.pendingSize);
+            metrics.put("trigrams", index.trigrams.size());
+            metrics.put("estimatedBytes", index.estimatedBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("loads", loads.get());
+        metrics.put("lastLoadMillis", lastLoadMillis.get());
+        metrics.put("lookups", lookupCount);
+        metrics.put("averageLookupMicros", lookupCount == 0 ? 0.0 : totalLookupNanos.get() / 1_000.0 / lookupCount);
+        metrics.put("maxLookupMicros", maxLookupNanos.get() / 1_000.0);
+        metrics.put("notifications", notifications.get());
+        metrics.put("listenerReconnects", listener.getReconnects());
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    // ===================== Index =====================
+
+    // Guarded by the outer lock: read lock for searches, write lock for changes.
+    // A changed member gets a new slot and its old slot is marked removed, so a slot's record never changes
+    // and the sorted arrays stay sorted; removed slots are skipped, and dropped once enough accumulate.
+    private static final class Index {
+
+        int size;
+        int[] memberIds = new int[1_024];
+        int[] registrationDays = new int[1_024];
+        // "first\0last\0email"; PostgreSQL text cannot contain \0. Null once a removed slot is dropped.
+        String[] records = new String[1_024];
+        // slot + 1 of each member id, 0 when not indexed (member ids are dense: SERIAL)
+        int[] slotByMemberId = new int[1_024];
+        final BitSet removed = new BitSet();
+        int removedCount;
+        int live;
+        long recordChars;
+
+        // Per order, slots [0, sortedSize) in key order; slots added since the last merge are in pending
+        final int[][] sorted = new int[ORDERS][0];
+        int sortedSize;
+        int[] pending = new int[MERGE_THRESHOLD];
+        int pendingSize;
+
+        final Map<Long, Postings> trigrams = new HashMap<>();
+
+        // ----- Changes -----
+
+        void put(MemberInfo member) {
+            String record = record(member);
+            int days = member.registrationDate() == null ? NO_DATE : (int) member.registrationDate().toEpochDay();
+            int current = member.memberId() < slotByMemberId.length ? slotByMemberId[member.memberId()] - 1 : -1;
+            if (current >= 0) {
+                if (records[current].equals(record) && registrationDays[current] == days) {
+                    return;
+                }
+                markRemoved(current);
+            }
+            int slot = add(member.memberId(), record, days);
+            pending = grow(pending, pendingSize + 1);
+            pending[pendingSize++] = slot;
+            if (pendingSize >= MERGE_THRESHOLD) {
+                merge();
+            }
+            if (removedCount > Math.max(MERGE_THRESHOLD, live / 8)) {
+                compact();
+            }
+        }
+
+        void remove(int memberId) {
+            int current = memberId < slotByMemberId.length ? slotByMemberId[memberId] - 1 : -1;
+            if (current >= 0) {
+                markRemoved(current);
+                slotByMemberId[memberId] = 0;
+                if (removedCount > Math.max(MERGE_THRESHOLD, live / 8)) {
+                    compact();
+                }
+            }
+        }
+
+        // Bulk load: slots are sorted once by sortAll()
+        void add(MemberInfo member) {
+            add(member.memberId(), record(member),
+                    member.registrationDate() == null ? NO_DATE : (int) member.registrationDate().toEpochDay());
+        }
+
+        private int add(int memberId, String record, int days) {
+            int slot = size++;
+            memberIds = grow(memberIds, size);
+            registrationDays = grow(registrationDays, size);
+            if (records.length < size) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            memberIds[slot] = memberId;
+            registrationDays[slot] = days;
+            records[slot] = record;
+            slotByMemberId = grow(slotByMemberId, memberId + 1);
+            slotByMemberId[memberId] = slot + 1;
+            live++;
+            recordChars += record.length();
+            for (long trigram : trigrams(searchName(record))) {
+                trigrams.computeIfAbsent(trigram, t -> new Postings()).add(slot);
+            }
+            return slot;
+        }
+
+        private void markRemoved(int slot) {
+            removed.set(slot);
+            removedCount++;
+            live--;
+        }
+
+        void sortAll() {
+            for (int order = 0; order < ORDERS; order++) {
+                int[] slots = new int[size];
+                for (int i = 0; i < size; i++) {
+                    slots[i] = i;
+                }
+                sort(slots, size, comparator(order));
+                sorted[order] = slots;
+            }
+            sortedSize = size;
+            pendingSize = 0;
+        }
+
+        // Inserts the pending slots into each sorted array: a binary search per slot and block copies
+        private void merge() {
+            for (int order = 0; order < ORDERS; order++) {
+                SlotComparator cmp = comparator(order);
+                int[] incoming = Arrays.copyOf(pending, pendingSize);
+                sort(incoming, pendingSize, cmp);
+                int[] from = sorted[order];
+                int[] to = new int[sortedSize + pendingSize];
+                int copied = 0;
+                for (int i = 0; i < pendingSize; i++) {
+                    int at = upperBound(from, sortedSize, incoming[i], cmp);
+                    System.arraycopy(from, copied, to, copied + i, at - copied);
+                    to[at + i] = incoming[i];
+                    copied = at;
+                }
+                System.arraycopy(from, copied, to, copied + pendingSize, sortedSize - copied);
+                sorted[order] = to;
+            }
+            sortedSize += pendingSize;
+            pendingSize = 0;
+        }
+
+        // Drops removed slots from the sorted arrays and posting lists, and frees their records
+        private void compact() {
+            merge();
+            int kept = 0;
+            for (int order = 0; order < ORDERS; order++) {
+                int[] from = sorted[order];
+                int[] to = new int[sortedSize - removedCount];
+                kept = 0;
+                for (int i = 0; i < sortedSize; i++) {
+                    if (!removed.get(from[i])) {
+                        to[kept++] = from[i];
+                    }
+                }
+                sorted[order] = to;
+            }
+            sortedSize = kept;
+            trigrams.values().removeIf(postings -> postings.dropRemoved(removed) == 0);
+            for (int slot = removed.nextSetBit(0); slot >= 0; slot = removed.nextSetBit(slot + 1)) {
+                recordChars -= records[slot].length();
+                records[slot] = null;
+            }
+            removed.clear();
+            removedCount = 0;
+        }
+
+        // ----- Stage 1: prefixes -----
+
+        List<Integer> prefixMatches(String[] words, int limit) {
+            String first = words[0];
+            String last = words[words.length - 1];
+            List<Integer> slots = new ArrayList<>();
+            if (words.length == 1) {
+                slots.addAll(firstInRange(BY_FIRST, FIRST, first, limit, slot -> true));
+                slots.addAll(firstInRange(BY_LAST, LAST, first, limit, slot -> true));
+                slots.addAll(firstInRange(BY_EMAIL, EMAIL, first, limit, slot -> true));
+            } else {
+                // Words in between must start words of the name in the same order (LIKE 'w1% w2% w3%')
+                slots.addAll(firstInRange(BY_LAST, LAST, last, limit,
+                        slot -> startsWith(records[slot], FIRST, first)
+                                && (words.length == 2 || startsWithWords(searchName(records[slot]), words))));
+                slots.addAll(firstInRange(BY_LAST, LAST, first, limit,
+                        slot -> startsWith(records[slot], FIRST, last)));
+            }
+            return slots.stream().distinct().sorted(pageOrder()).limit(limit)
+                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+
+        // The first `limit` slots in sort order whose field starts with prefix and that pass the filter
+        private List<Integer> firstInRange(int order, int field, String prefix, int limit, SlotFilter filter) {
+            List<Integer> slots = new ArrayList<>();
+            int[] array = sorted[order];
+            for (int i = lowerBound(array, sortedSize, field, prefix); i < sortedSize && slots.size() < limit; i++) {
+                int slot = array[i];
+                if (!startsWith(records[slot], field, prefix)) {
+                    break;
+                }
+                if (!removed.get(slot) && filter.test(slot)) {
+                    slots.add(slot);
+                }
+            }
+            boolean pendingMatched = false;
+            for (int i = 0; i < pendingSize; i++) {
+                int slot = pending[i];
+                if (!removed.get(slot) && startsWith(records[slot], field, prefix) && filter.test(slot)) {
+                    slots.add(slot);
+                    pendingMatched = true;
+                }
+            }
+            if (pendingMatched) {
+                SlotComparator cmp = comparator(order);
+                slots.sort((a, b) -> cmp.compare(a, b));
+                return slots.subList(0, Math.min(limit, slots.size()));
+            }
+            return slots;
+        }
+
+        // ----- Stage 2: substrings -----
+
+        // Walks the shortest posting list, keeps slots in every other list and checks the words in order
+        void addSubstringMatches(String[] words, int limit, List<Integer> slots) {
+            List<Postings> lists = new ArrayList<>();
+            for (String word : words) {
+                for (long trigram : trigrams(word)) {
+                    Postings postings = trigrams.get(trigram);
+                    if (postings == null) {
+                        return;
+                    }
+                    lists.add(postings);
+                }
+            }
+            if (lists.isEmpty()) {
+                return;
+            }
+            lists.sort(Comparator.comparingInt(postings -> postings.size));
+            Postings shortest = lists.get(0);
+            int[] cursors = new int[lists.size()];
+            List<Candidate> candidates = new ArrayList<>();
+            candidateLoop:
+            for (int i = 0; i < shortest.size && candidates.size() < SEARCH_CANDIDATES; i++) {
+                int slot = shortest.slots[i];
+                if (removed.get(slot) || slots.contains(slot)) {
+                    continue;
+                }
+                for (int list = 1; list < lists.size(); list++) {
+                    Postings postings = lists.get(list);
+                    cursors[list] = postings.seek(cursors[list], slot);
+                    if (cursors[list] == postings.size || postings.slots[cursors[list]] != slot) {
+                        continue candidateLoop;
+                    }
+                }
+                String name = searchName(records[slot]);
+                int position = inOrder(name, words);
+                if (position >= 0) {
+                    int firstLength = records[slot].indexOf('\0');
+                    candidates.add(new Candidate(slot, position == 0 || name.charAt(position - 1) == ' ',
+                            name.length(), name.substring(firstLength + 1), name.substring(0, firstLength),
+                            memberIds[slot]));
+                }
+            }
+
+            candidates.stream()
+                    .sorted(Comparator.comparing((Candidate candidate) -> !candidate.wordStart())
+                            .thenComparingInt(Candidate::length)
+                            .thenComparing(Candidate::last)
+                            .thenComparing(Candidate::first)
+                            .thenComparingInt(Candidate::memberId))
+                    .limit(limit - slots.size())
+                    .forEach(candidate -> slots.add(candidate.slot()));
+        }
+
+        // ----- Keys -----
+
+        MemberInfo member(int slot) {
+            String record = records[slot];
+            int firstEnd = record.indexOf('\0');
+            int lastEnd = record.indexOf('\0', firstEnd + 1);
+            return new MemberInfo(memberIds[slot], record.substring(0, firstEnd),
+                    record.substring(firstEnd + 1, lastEnd), record.substring(lastEnd + 1),
+                    registrationDays[slot] == NO_DATE ? null : LocalDate.ofEpochDay(registrationDays[slot]));
+        }
+
+        // Ties (namesakes) by member id, as the indexes of the SQL search
+        private SlotComparator comparator(int order) {
+            return switch (order) {
+                case BY_FIRST -> (a, b) -> {
+                    int c = compareFields(records[a], FIRST, records[b], FIRST);
+                    c = c != 0 ? c : compareFields(records[a], LAST, records[b], LAST);
+                    return c != 0 ? c : Integer.compare(memberIds[a], memberIds[b]);
+                };
+                case BY_LAST -> (a, b) -> {
+                    int c = compareFields(records[a], LAST, records[b], LAST);
+                    c = c != 0 ? c : compareFields(records[a], FIRST, records[b], FIRST);
+                    return c != 0 ? c : Integer.compare(memberIds[a], memberIds[b]);
+                };
+                default -> (a, b) -> {
+                    int c = compareFields(records[a], EMAIL, records[b], EMAIL);
+                    return c != 0 ? c : Integer.compare(memberIds[a], memberIds[b]);
+                };
+            };
+        }
+
+        // Result order of stage 1, and of ties in stage 2: (last, first, member id)
+        private Comparator<Integer> pageOrder() {
+            SlotComparator byLast = comparator(BY_LAST);
+            return byLast::compare;
+        }
+
+        // First position whose field is >= prefix
+        private int lowerBound(int[] array, int length, int field, String prefix) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareField(records[array[mid]], field, prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // First position whose slot sorts after the given one
+        private static int upperBound(int[] array, int length, int slot, SlotComparator cmp) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cmp.compare(array[mid], slot) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        long estimatedBytes() {
+            long bytes = 4L * (memberIds.length + registrationDays.length + records.length + slotByMemberId.length
+                    + pending.length) + removed.size() / 8;
+            for (int[] array : sorted) {
+                bytes += 4L * array.length;
+            }
+            // String header and backing array per record, one byte per (Latin-1) character
+            bytes += 40L * live + recordChars;
+            for (Postings postings : trigrams.values()) {
+                bytes += 64 + 4L * postings.slots.length;
+            }
+            return bytes;
+        }
+    }
+
+    // ===================== Helpers =====================
+
+    private interface SlotComparator {
+        int compare(int a, int b);
+    }
+
+    private interface SlotFilter {
+        boolean test(int slot);
+    }
+
+    // A stage 2 match, with its lower-case names for the tie-break
+    private record Candidate(int slot, boolean wordStart, int length, String last, String first, int memberId) {
+    }
+
+    // Ascending slots (new slots are always the highest) containing one trigram
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            slots = grow(slots, size + 1);
+            slots[size++] = slot;
+        }
+
+        // First position from `from` on whose slot is >= slot (gallops, then binary search)
+        int seek(int from, int slot) {
+            int step = 1;
+            int high = from;
+            while (high < size && slots[high] < slot) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (from < high) {
+                int mid = (from + high) >>> 1;
+                if (slots[mid] < slot) {
+                    from = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return from;
+        }
+
+        int dropRemoved(BitSet removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.get(slots[i])) {
+                    slots[kept++] = slots[i];
+                }
+            }
+            size = kept;
+            slots = Arrays.copyOf(slots, Math.max(kept, 1));
+            return kept;
+        }
+    }
+
+    private static String record(MemberInfo member) {
+        return member.firstName() + '\0' + member.lastName() + '\0' + member.email();
+    }
+
+    // member_search_name(): 'first last', lower case (as the search term is)
+    private static String searchName(String record) {
+        return record.substring(0, record.lastIndexOf('\0')).replace('\0', ' ').toLowerCase(Locale.ROOT);
+    }
+
+    // Code points of each three-letter window, packed 21 bits apiece
+    private static long[] trigrams(String text) {
+        int[] codePoints = text.codePoints().toArray();
+        if (codePoints.length < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[codePoints.length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) codePoints[i] << 42) | ((long) codePoints[i + 1] << 21) | codePoints[i + 2];
+        }
+        return trigrams;
+    }
+
+    // Start of the first word in name, if name contains the words in order (LIKE '%w1%w2%'), else -1
+    private static int inOrder(String name, String[] words) {
+        int start = name.indexOf(words[0]);
+        int from = start;
+        for (String word : words) {
+            int at = name.indexOf(word, from);
+            if (at < 0) {
+                return -1;
+            }
+            from = at + word.length();
+        }
+        return start;
+    }
+
+    // LIKE 'w1% w2% ... wk%': starts with the first word, each later word starts a later name word
+    private static boolean startsWithWords(String name, String[] words) {
+        if (!name.startsWith(words[0])) {
+            return false;
+        }
+        int from = words[0].length();
+        for (int i = 1; i < words.length; i++) {
+            int at = name.indexOf(" " + words[i], from);
+            if (at < 0) {
+                return false;
+            }
+            from = at + 1 + words[i].length();
+        }
+        return true;
+    }
+
+    private static int fieldStart(String record, int field) {
+        int start = 0;
+        for (int i = 0; i < field; i++) {
+            start = record.indexOf('\0', start) + 1;
+        }
+        return start;
+    }
+
+    private static int fieldEnd(String record, int start) {
+        int end = record.indexOf('\0', start);
+        return end < 0 ? record.length() : end;
+    }
+
+    // Lower-cased field against lower-cased field, by code point (as COLLATE "C" on lower())
+    private static int compareFields(String a, int fieldA, String b, int fieldB) {
+        int i = fieldStart(a, fieldA);
+        int aEnd = fieldEnd(a, i);
+        int j = fieldStart(b, fieldB);
+        int bEnd = fieldEnd(b, j);
+        while (i < aEnd && j < bEnd) {
+            int ca = Character.toLowerCase(a.codePointAt(i));
+            int cb = Character.toLowerCase(b.codePointAt(j));
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(a.codePointAt(i));
+            j += Character.charCount(b.codePointAt(j));
+        }
+        return Boolean.compare(i < aEnd, j < bEnd);
+    }
+
+    // Lower-cased field against an already lower-case key, compared over the key's length at most:
+    // 0 when the field starts with the key
+    private static int compareField(String record, int field, String key) {
+        int i = fieldStart(record, field);
+        int end = fieldEnd(record, i);
+        int j = 0;
+        while (i < end && j < key.length()) {
+            int ca = Character.toLowerCase(record.codePointAt(i));
+            int cb = key.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(record.codePointAt(i));
+            j += Character.charCount(cb);
+        }
+        return j < key.length() ? -1 : 0;
+    }
+
+    private static boolean startsWith(String record, int field, String prefix) {
+        return compareField(record, field, prefix) == 0;
+    }
+
+    private static int[] grow(int[] array, int minLength) {
+        return array.length >= minLength ? array : Arrays.copyOf(array, Math.max(minLength, array.length * 2));
+    }
+
+    // Stable merge sort of slots[0, length)
+    private static void sort(int[] slots, int length, SlotComparator cmp) {
+        int[] buffer = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int low = 0; low < length - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, length);
+                if (cmp.compare(slots[mid - 1], slots[mid]) <= 0) {
+                    continue;
+                }
+                System.arraycopy(slots, low, buffer, low, high - low);
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    if (j >= high || (i < mid && cmp.compare(buffer[i], buffer[j]) <= 0)) {
+                        slots[k] = buffer[i++];
+                    } else {
+                        slots[k] = buffer[j++];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.fitclub;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// LISTEN on one or more channels over a dedicated connection (outside the pool), on a daemon thread
+// The handler hears of every (re)connection before the notifications that follow it, so it can reload or
+// clear whatever may have missed a notification meanwhile; isListening() is false until it has, and while
+// disconnected. A lost connection is re-established with exponential backoff (0.5 s doubling up to 30 s).
+final class NotificationListener implements AutoCloseable {
+
+    interface Handler {
+        // LISTEN is in place: changes committed from here on are notified
+        void connected() throws SQLException;
+
+        // Throwing drops the connection; the next connected() catches up
+        void notified(String channel, String payload) throws SQLException;
+
+        // Connection lost or closing: notifications may be missed until the next connected()
+        default void disconnected() {
+        }
+
+        // After every wait for notifications, so at least once a second while connected
+        default void polled() {
+        }
+    }
+
+    private static final int POLL_MILLIS = 1_000;
+    private static final long FIRST_RECONNECT_DELAY_MILLIS = 500L;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000L;
+
+    private final String name;
+    private final String fallback;
+    private final Handler handler;
+    private final String[] channels;
+    private final Thread thread;
+    private volatile boolean listening;
+    private volatile boolean closed;
+
+    private final AtomicLong reconnects = new AtomicLong();
+
+    // name and fallback go into the disconnect warning: "<name> listener disconnected, <fallback>: ..."
+    NotificationListener(String threadName, String name, String fallback, Handler handler, String... channels) {
+        this.name = name;
+        this.fallback = fallback;
+        this.handler = handler;
+        this.channels = channels.clone();
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean isListening() {
+        return listening;
+    }
+
+    long getReconnects() {
+        return reconnects.get();
+    }
+
+    // Ids of a notify_member_ids() / dashboard_notify() payload: '<epoch millis at the change>:<id>,<id>,...'
+    // null when it is not one
+    static List<Integer> payloadIds(String payload) {
+        List<Integer> ids = new ArrayList<>();
+        try {
+            for (String id : payload.substring(payload.indexOf(':') + 1).split(",")) {
+                ids.add(Integer.parseInt(id));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ids;
+    }
+
+    private void run() {
+        long delay = FIRST_RECONNECT_DELAY_MILLIS;
+        while (!closed) {
+            try (Connection conn = DatabaseConnection.openDedicatedConnection()) {
+                try (Statement statement = conn.createStatement()) {
+                    for (String channel : channels) {
+                        statement.execute("LISTEN " + channel);
+                    }
+                }
+                handler.connected();
+                listening = true;
+                delay = FIRST_RECONNECT_DELAY_MILLIS;
+
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                while (!closed) {
+                    // Blocks up to POLL_MILLIS; throws once the connection is gone
+                    PGNotification[] received = pgConn.getNotifications(POLL_MILLIS);
+                    if (received != null) {
+                        for (PGNotification notification : received) {
+                            handler.notified(notification.getName(), notification.getParameter());
+                        }
+                    }
+                    handler.polled();
+                }
+            } catch (SQLException e) {
+                if (!closed) {
+                    System.err.println("WARNING: " + name + " listener disconnected, " + fallback + ": " +
+                            e.getMessage());
+                }
+            } finally {
+                listening = false;
+                handler.disconnected();
+            }
+
+            if (!closed) {
+                reconnects.incrementAndGet();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        listening = false;
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,797 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.AvailabilitySlot;
+import org.fitclub.FitClubService.FreeSlot;
+import org.fitclub.FitClubService.Room;
+import org.fitclub.FitClubService.ScheduledClass;
+import org.fitclub.FitClubService.SlotCheck;
+import org.fitclub.FitClubService.TimeWindow;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// In-process copy of the schedule for class planning: when rooms and trainers are taken and when trainers
+// are available, answering slot checks, conflicts and free windows without a database round trip
+// Classes are kept per room and per trainer by day: a hash lookup finds the (room or trainer, date) plan,
+// whose classes are sorted by start. The exclusion constraints keep one room's or trainer's classes from
+// overlapping, so they are sorted by end as well, and the classes overlapping a slot are one run found by a
+// binary search (O(log k) for k classes that day). Availability windows are kept per trainer and weekday.
+// Holds upcoming classes only (planning never looks back; past days are dropped after midnight), about 200
+// bytes per class.
+// Loaded at start. Kept current by put() from createGroupClass() and setAvailability() (and
+// replaceAvailability() for weekly templates), and in every app instance by the DDL's triggers that NOTIFY
+// schedule_class, schedule_availability and schedule_room with the ids changed elsewhere; the listener
+// re-reads those rows. While the listener is disconnected the index is not ready and callers use the
+// database; it is reloaded once LISTEN is re-established.
+public class ScheduleIndex implements AutoCloseable {
+
+    public static final String CLASS_CHANNEL = "schedule_class";
+    public static final String AVAILABILITY_CHANNEL = "schedule_availability";
+    public static final String ROOM_CHANNEL = "schedule_room";
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final int DAY_SECONDS = 86_400;
+
+    private static final String CLASS_COLUMNS = "class_id, class_date, start_time, end_time, room_id, trainer_id";
+    private static final String AVAILABILITY_COLUMNS = "availability_id, trainer_id, day_of_week, start_time, end_time";
+    private static final String ROOM_COLUMNS = "room_id, room_name, capacity";
+
+    private final DataSource dataSource;
+    private final NotificationListener listener;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Schedule schedule = new Schedule();
+    // The day classes before it were last dropped; only the listener thread uses it
+    private LocalDate keptFrom = LocalDate.now();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong totalLookupNanos = new AtomicLong();
+    private final AtomicLong maxLookupNanos = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong lastLoadMillis = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+
+    public ScheduleIndex(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.listener = new NotificationListener("fitclub-schedule-index", "Schedule index",
+                "planning from the database", new NotificationListener.Handler() {
+                    @Override
+                    public void connected() throws SQLException {
+                        load();
+                        keptFrom = LocalDate.now();
+                    }
+
+                    @Override
+                    public void notified(String channel, String payload) throws SQLException {
+                        apply(channel, payload);
+                    }
+
+                    @Override
+                    public void polled() {
+                        dropPastDays();
+                    }
+                }, CLASS_CHANNEL, AVAILABILITY_CHANNEL, ROOM_CHANNEL);
+    }
+
+    // Listens for changes and loads the index in the background; callers use the database until then
+    public void start() {
+        listener.start();
+    }
+
+    // Loaded and listening; changes made elsewhere may be missing otherwise
+    public boolean isReady() {
+        return listener.isListening();
+    }
+
+    // ===================== Queries =====================
+
+    public boolean hasRoom(int roomId) {
+        return read(s -> s.hasRoom(roomId));
+    }
+
+    public boolean isRoomBooked(int roomId, LocalDate date, LocalTime start, LocalTime end) {
+        return read(s -> !s.roomConflicts(roomId, date, start, end).isEmpty());
+    }
+
+    public boolean isTrainerAvailable(int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+        return read(s -> s.isTrainerAvailable(trainerId, date, start, end));
+    }
+
+    public boolean isTrainerTeaching(int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+        return read(s -> !s.trainerConflicts(trainerId, date, start, end).isEmpty());
+    }
+
+    // Whether a class could take the slot, with the classes in the way
+    public SlotCheck check(int roomId, int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+        return read(s -> s.check(roomId, trainerId, date, start, end));
+    }
+
+    // Stretches of at least minMinutes on the date when the room is free and, unless trainerId is null, the
+    // trainer is available and not teaching
+    public List<TimeWindow> freeWindows(int roomId, Integer trainerId, LocalDate date, int minMinutes) {
+        return read(s -> s.freeWindows(roomId, trainerId, date, minMinutes));
+    }
+
+    // The best limit (room, trainer, time) combinations from firstDate to lastDate of at least minMinutes in a
+    // room seating minCapacity (see Schedule.freeSlots())
+    public List<FreeSlot> freeSlots(LocalDate firstDate, LocalDate lastDate, int minMinutes, int minCapacity, int limit) {
+        return read(s -> s.freeSlots(firstDate, lastDate, minMinutes, minCapacity, limit));
+    }
+
+    // Runs a query on the schedule under the read lock (the service runs the same ones on a loadDay() copy)
+    <T> T read(Function<Schedule, T> query) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return query.apply(schedule);
+        } finally {
+            lock.readLock().unlock();
+            long nanos = System.nanoTime() - start;
+            lookups.incrementAndGet();
+            totalLookupNanos.addAndGet(nanos);
+            maxLookupNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    // ===================== Updates =====================
+
+    // Adds or replaces a class (after an insert or update this instance committed)
+    public void putClass(ScheduledClass scheduledClass) {
+        write(s -> s.putClass(scheduledClass));
+    }
+
+    public void putAvailability(AvailabilitySlot slot) {
+        write(s -> s.putAvailability(slot));
+    }
+
+    // A trainer's week replaced: the windows deleted and the ones inserted or changed, in one step
+    public void replaceAvailability(Collection<Integer> removedIds, Collection<AvailabilitySlot> slots) {
+        write(s -> {
+            removedIds.forEach(s::removeAvailability);
+            slots.forEach(s::putAvailability);
+        });
+    }
+
+    private void write(Consumer<Schedule> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(schedule);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Reads rooms, availability and upcoming classes into a new index and swaps it in
+    public void load() throws SQLException {
+        long start = System.currentTimeMillis();
+        Schedule loaded = new Schedule();
+        FitClubService.stream(dataSource, FETCH_SIZE, statement -> {
+            try (ResultSet rs = statement.executeQuery("SELECT " + ROOM_COLUMNS + " FROM Room")) {
+                while (rs.next()) {
+                    loaded.putRoom(readRoom(rs));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT " + AVAILABILITY_COLUMNS + " FROM TrainerAvailability")) {
+                while (rs.next()) {
+                    loaded.putAvailability(readAvailability(rs));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT " + CLASS_COLUMNS + " FROM GroupClass " +
+                    "WHERE class_date >= CURRENT_DATE")) {
+                while (rs.next()) {
+                    loaded.putClass(readClass(rs));
+                }
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            schedule = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loads.incrementAndGet();
+        lastLoadMillis.set(System.currentTimeMillis() - start);
+    }
+
+    // The part of the schedule one slot check or free-window search needs, read from the database: the room,
+    // the trainer's availability that weekday and the room's and trainer's classes that day (for callers
+    // without a ready index; the answers then come from the same code)
+    static Schedule loadDay(Connection conn, int roomId, Integer trainerId, LocalDate date) throws SQLException {
+        Schedule day = new Schedule();
+        int trainer = trainerId == null ? 0 : trainerId;
+        try (PreparedStatement statement = conn.prepareStatement("SELECT " + ROOM_COLUMNS + " FROM Room WHERE room_id = ?")) {
+            statement.setInt(1, roomId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    day.putRoom(readRoom(rs));
+                }
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement("SELECT " + AVAILABILITY_COLUMNS + " " +
+                "FROM TrainerAvailability WHERE trainer_id = ? AND day_of_week = ?")) {
+            statement.setInt(1, trainer);
+            statement.setString(2, FitClubService.dayName(date.getDayOfWeek()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    day.putAvailability(readAvailability(rs));
+                }
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement("SELECT " + CLASS_COLUMNS + " FROM GroupClass " +
+                "WHERE class_date = ? AND (room_id = ? OR trainer_id = ?)")) {
+            statement.setDate(1, Date.valueOf(date));
+            statement.setInt(2, roomId);
+            statement.setInt(3, trainer);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    day.putClass(readClass(rs));
+                }
+            }
+        }
+        return day;
+    }
+
+    // The schedule a free-slot search over a date range needs, read from the database: the rooms seating
+    // minCapacity, all availability and the classes in the range
+    static Schedule loadRange(Connection conn, LocalDate firstDate, LocalDate lastDate, int minCapacity)
+            throws SQLException {
+        Schedule range = new Schedule();
+        try (PreparedStatement statement = conn.prepareStatement("SELECT " + ROOM_COLUMNS + " FROM Room WHERE capacity >= ?")) {
+            statement.setInt(1, minCapacity);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    range.putRoom(readRoom(rs));
+                }
+            }
+        }
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + AVAILABILITY_COLUMNS + " FROM TrainerAvailability")) {
+            while (rs.next()) {
+                range.putAvailability(readAvailability(rs));
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement("SELECT " + CLASS_COLUMNS + " FROM GroupClass " +
+                "WHERE class_date BETWEEN ? AND ?")) {
+            statement.setDate(1, Date.valueOf(firstDate));
+            statement.setDate(2, Date.valueOf(lastDate));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    range.putClass(readClass(rs));
+                }
+            }
+        }
+        return range;
+    }
+
+    // ===================== Listener =====================
+
+    // Once the date has changed, the classes of the days before go
+    private void dropPastDays() {
+        LocalDate today = LocalDate.now();
+        if (!today.isAfter(keptFrom)) {
+            return;
+        }
+        write(s -> s.removeClassesBefore(today));
+        keptFrom = today;
+    }
+
+    // Re-reads the rows notified; ids no longer in the table were deleted. All ids are removed before the
+    // rows are put back, so a class moved into a slot another class of the same change left never meets it
+    private void apply(String channel, String payload) throws SQLException {
+        notifications.incrementAndGet();
+        List<Integer> ids = NotificationListener.payloadIds(payload);
+        if (ids == null) {
+            // Unknown payload: reload rather than risk missing a change
+            load();
+            return;
+        }
+
+        switch (channel) {
+            case CLASS_CHANNEL: {
+                List<ScheduledClass> rows = reread("SELECT " + CLASS_COLUMNS + " FROM GroupClass WHERE class_id = ANY(?)",
+                        ids, ScheduleIndex::readClass);
+                // A past class that changed is gone from the index rather than added back
+                rows.removeIf(row -> row.classDate().isBefore(keptFrom));
+                write(s -> {
+                    ids.forEach(s::removeClass);
+                    rows.forEach(s::putClass);
+                });
+                break;
+            }
+            case AVAILABILITY_CHANNEL: {
+                List<AvailabilitySlot> rows = reread("SELECT " + AVAILABILITY_COLUMNS + " FROM TrainerAvailability " +
+                        "WHERE availability_id = ANY(?)", ids, ScheduleIndex::readAvailability);
+                write(s -> {
+                    ids.forEach(s::removeAvailability);
+                    rows.forEach(s::putAvailability);
+                });
+                break;
+            }
+            case ROOM_CHANNEL: {
+                List<Room> rows = reread("SELECT " + ROOM_COLUMNS + " FROM Room WHERE room_id = ANY(?)",
+                        ids, ScheduleIndex::readRoom);
+                write(s -> {
+                    ids.forEach(s::removeRoom);
+                    rows.forEach(s::putRoom);
+                });
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private <T> List<T> reread(String query, List<Integer> ids, FitClubService.RowReader<T> reader) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query)) {
+            statement.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(reader.read(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        listener.close();
+    }
+
+    // ===================== Metrics =====================
+
+    public Map<String, Object> describe() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long lookupCount = lookups.get();
+        metrics.put("ready", isReady());
+        lock.readLock().lock();
+        try {
+            metrics.put("rooms", schedule.rooms.size());
+            metrics.put("classes", schedule.classes.size());
+            metrics.put("availabilityWindows", schedule.availability.size());
+            metrics.put("dayPlans", schedule.roomDays.size() + schedule.trainerDays.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("loads", loads.get());
+        metrics.put("lastLoadMillis", lastLoadMillis.get());
+        metrics.put("lookups", lookupCount);
+        metrics.put("averageLookupMicros", lookupCount == 0 ? 0.0 : totalLookupNanos.get() / 1_000.0 / lookupCount);
+        metrics.put("maxLookupMicros", maxLookupNanos.get() / 1_000.0);
+        metrics.put("notifications", notifications.get());
+        metrics.put("listenerReconnects", listener.getReconnects());
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    // ===================== Schedule =====================
+
+    // Guarded by the outer lock (a loadDay() copy is confined to its caller); times are seconds of the day
+    static final class Schedule {
+        private final Map<Integer, Room> rooms = new HashMap<>();
+        private final Map<Integer, ScheduledClass> classes = new HashMap<>();
+        private final Map<Long, DayPlan> roomDays = new HashMap<>();
+        private final Map<Long, DayPlan> trainerDays = new HashMap<>();
+        private final Map<Integer, AvailabilitySlot> availability = new HashMap<>();
+        // Per trainer and weekday: the availability windows by start, as start, end pairs
+        private final Map<Long, List<AvailabilitySlot>> slotsByDay = new HashMap<>();
+        private final Map<Long, int[]> windows = new HashMap<>();
+
+        // ----- Changes -----
+
+        void putRoom(Room room) {
+            rooms.put(room.roomId(), room);
+        }
+
+        void removeRoom(int roomId) {
+            rooms.remove(roomId);
+        }
+
+        void putClass(ScheduledClass scheduledClass) {
+            removeClass(scheduledClass.classId());
+            classes.put(scheduledClass.classId(), scheduledClass);
+            long day = scheduledClass.classDate().toEpochDay();
+            roomDays.computeIfAbsent(key(scheduledClass.roomId(), day), k -> new DayPlan()).add(scheduledClass);
+            trainerDays.computeIfAbsent(key(scheduledClass.trainerId(), day), k -> new DayPlan()).add(scheduledClass);
+        }
+
+        void removeClass(int classId) {
+            ScheduledClass old = classes.remove(classId);
+            if (old != null) {
+                long day = old.classDate().toEpochDay();
+                removeFromPlan(roomDays, key(old.roomId(), day), classId);
+                removeFromPlan(trainerDays, key(old.trainerId(), day), classId);
+            }
+        }
+
+        void removeClassesBefore(LocalDate date) {
+            List<Integer> past = new ArrayList<>();
+            for (ScheduledClass scheduledClass : classes.values()) {
+                if (scheduledClass.classDate().isBefore(date)) {
+                    past.add(scheduledClass.classId());
+                }
+            }
+            past.forEach(this::removeClass);
+        }
+
+        private static void removeFromPlan(Map<Long, DayPlan> plans, long key, int classId) {
+            DayPlan plan = plans.get(key);
+            if (plan != null && plan.remove(classId) == 0) {
+                plans.remove(key);
+            }
+        }
+
+        void putAvailability(AvailabilitySlot slot) {
+            removeAvailability(slot.availabilityId());
+            availability.put(slot.availabilityId(), slot);
+            long key = key(slot.trainerId(), slot.dayOfWeek().getValue());
+            slotsByDay.computeIfAbsent(key, k -> new ArrayList<>()).add(slot);
+            rebuildWindows(key);
+        }
+
+        void removeAvailability(int availabilityId) {
+            AvailabilitySlot old = availability.remove(availabilityId);
+            if (old != null) {
+                long key = key(old.trainerId(), old.dayOfWeek().getValue());
+                slotsByDay.get(key).removeIf(slot -> slot.availabilityId() == availabilityId);
+                rebuildWindows(key);
+            }
+        }
+
+        private void rebuildWindows(long key) {
+            List<AvailabilitySlot> slots = slotsByDay.get(key);
+            if (slots.isEmpty()) {
+                slotsByDay.remove(key);
+                windows.remove(key);
+                return;
+            }
+            slots.sort((a, b) -> a.startTime().compareTo(b.startTime()));
+            int[] pairs = new int[slots.size() * 2];
+            for (int i = 0; i < slots.size(); i++) {
+                pairs[2 * i] = slots.get(i).startTime().toSecondOfDay();
+                pairs[2 * i + 1] = seconds(slots.get(i).endTime());
+            }
+            windows.put(key, pairs);
+        }
+
+        // ----- Queries -----
+
+        boolean hasRoom(int roomId) {
+            return rooms.containsKey(roomId);
+        }
+
+        List<ScheduledClass> roomConflicts(int roomId, LocalDate date, LocalTime start, LocalTime end) {
+            return overlapping(roomDays.get(key(roomId, date.toEpochDay())), start.toSecondOfDay(), seconds(end));
+        }
+
+        List<ScheduledClass> trainerConflicts(int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+            return overlapping(trainerDays.get(key(trainerId, date.toEpochDay())), start.toSecondOfDay(), seconds(end));
+        }
+
+        // One availability window covers the whole slot (as the SQL check: start <= slot start, end >= slot end)
+        boolean isTrainerAvailable(int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+            int[] pairs = windows.get(key(trainerId, date.getDayOfWeek().getValue()));
+            if (pairs == null) {
+                return false;
+            }
+            int startSecond = start.toSecondOfDay();
+            // Last window starting at or before the slot (windows do not overlap, so no earlier one reaches further)
+            int low = 0;
+            int high = pairs.length / 2 - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (pairs[2 * mid] <= startSecond) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found >= 0 && pairs[2 * found + 1] >= seconds(end);
+        }
+
+        SlotCheck check(int roomId, int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+            return SlotCheck.of(isTrainerAvailable(trainerId, date, start, end),
+                    roomConflicts(roomId, date, start, end), trainerConflicts(trainerId, date, start, end));
+        }
+
+        List<TimeWindow> freeWindows(int roomId, Integer trainerId, LocalDate date, int minMinutes) {
+            int[] base;
+            List<int[]> busy = new ArrayList<>();
+            addBusy(roomDays.get(key(roomId, date.toEpochDay())), busy);
+            if (trainerId == null) {
+                base = new int[]{0, DAY_SECONDS};
+            } else {
+                base = windows.getOrDefault(key(trainerId, date.getDayOfWeek().getValue()), new int[0]);
+                addBusy(trainerDays.get(key(trainerId, date.toEpochDay())), busy);
+            }
+            busy.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+            List<TimeWindow> free = new ArrayList<>();
+            int minSeconds = Math.max(1, minMinutes * 60);
+            int next = 0;
+            for (int w = 0; w < base.length; w += 2) {
+                int cursor = base[w];
+                int windowEnd = base[w + 1];
+                // Busy stretches ending before this window cannot matter to it or the later ones
+                while (next < busy.size() && busy.get(next)[1] <= cursor) {
+                    next++;
+                }
+                for (int b = next; b < busy.size() && busy.get(b)[0] < windowEnd; b++) {
+                    if (busy.get(b)[0] - cursor >= minSeconds) {
+                        free.add(new TimeWindow(toTime(cursor), toTime(busy.get(b)[0])));
+                    }
+                    cursor = Math.max(cursor, busy.get(b)[1]);
+                }
+                if (windowEnd - cursor >= minSeconds) {
+                    free.add(new TimeWindow(toTime(cursor), toTime(windowEnd)));
+                }
+            }
+            return free;
+        }
+
+        // Every room seating minCapacity with every trainer, on each date of the range: the stretches of at least
+        // minMinutes when the room is free and the trainer available and not teaching, best fit first (fewest
+        // spare seats, then the least time to spare around the class, then earliest) and at most limit of them.
+        // Free time is worked out once per room and date (the day less its classes) and once per trainer and
+        // date (the windows less the classes), each by a sweep over sorted intervals; a (room, trainer) pair
+        // is then one merge of the two lists. Rooms are visited smallest first, so once limit results are
+        // found the larger rooms, which can only rank lower, are not looked at
+        List<FreeSlot> freeSlots(LocalDate firstDate, LocalDate lastDate, int minMinutes, int minCapacity, int limit) {
+            int minSeconds = Math.max(1, minMinutes * 60);
+            List<Room> candidates = new ArrayList<>();
+            for (Room room : rooms.values()) {
+                if (room.capacity() >= minCapacity) {
+                    candidates.add(room);
+                }
+            }
+            candidates.sort(Comparator.comparingInt(Room::capacity).thenComparingInt(Room::roomId));
+
+            // Per date: the trainers with free time, and that time
+            List<LocalDate> dates = new ArrayList<>();
+            List<int[]> trainersByDate = new ArrayList<>();
+            List<int[][]> freeByDate = new ArrayList<>();
+            for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+                List<Integer> trainers = new ArrayList<>();
+                List<int[]> free = new ArrayList<>();
+                int weekday = date.getDayOfWeek().getValue();
+                for (Map.Entry<Long, int[]> entry : windows.entrySet()) {
+                    if ((int) (long) entry.getKey() != weekday) {
+                        continue;
+                    }
+                    int trainerId = (int) (entry.getKey() >>> 32);
+                    int[] trainerFree = subtract(entry.getValue(), trainerDays.get(key(trainerId, date.toEpochDay())), minSeconds);
+                    if (trainerFree.length > 0) {
+                        trainers.add(trainerId);
+                        free.add(trainerFree);
+                    }
+                }
+                dates.add(date);
+                trainersByDate.add(trainers.stream().mapToInt(Integer::intValue).toArray());
+                freeByDate.add(free.toArray(new int[0][]));
+            }
+
+            Comparator<FreeSlot> byFit = Comparator.comparingInt(FreeSlot::spareSeats)
+                    .thenComparingInt(FreeSlot::spareMinutes)
+                    .thenComparing(FreeSlot::date)
+                    .thenComparing(FreeSlot::startTime)
+                    .thenComparingInt(FreeSlot::roomId)
+                    .thenComparingInt(FreeSlot::trainerId);
+            // The best limit so far, worst on top
+            PriorityQueue<FreeSlot> best = new PriorityQueue<>(Math.max(1, limit), byFit.reversed());
+            int[] wholeDay = {0, DAY_SECONDS};
+            for (int i = 0; i < candidates.size(); i++) {
+                Room room = candidates.get(i);
+                // A larger room ranks below everything found so far
+                if (best.size() >= limit && room.capacity() > candidates.get(i - 1).capacity()) {
+                    break;
+                }
+                for (int d = 0; d < dates.size(); d++) {
+                    LocalDate date = dates.get(d);
+                    int[] roomFree = subtract(wholeDay, roomDays.get(key(room.roomId(), date.toEpochDay())), minSeconds);
+                    int[] trainers = trainersByDate.get(d);
+                    int[][] trainerFree = freeByDate.get(d);
+                    for (int t = 0; t < trainers.length; t++) {
+                        int trainerId = trainers[t];
+                        intersect(roomFree, trainerFree[t], minSeconds, (start, end) -> {
+                            FreeSlot slot = new FreeSlot(date, toTime(start), toTime(end), room.roomId(),
+                                    room.capacity(), trainerId, room.capacity() - minCapacity,
+                                    (end - start - minSeconds) / 60);
+                            if (best.size() < limit) {
+                                best.add(slot);
+                            } else if (byFit.compare(slot, best.peek()) < 0) {
+                                best.poll();
+                                best.add(slot);
+                            }
+                        });
+                    }
+                }
+            }
+            List<FreeSlot> found = new ArrayList<>(best);
+            found.sort(byFit);
+            return found;
+        }
+
+        // The parts of the windows (start, end pairs, sorted) that no class of the plan overlaps, and that last
+        // at least minSeconds
+        private static int[] subtract(int[] base, DayPlan plan, int minSeconds) {
+            int[] free = new int[base.length + 2 * (plan == null ? 0 : plan.size)];
+            int count = 0;
+            int next = 0;
+            for (int w = 0; w < base.length; w += 2) {
+                int cursor = base[w];
+                int windowEnd = base[w + 1];
+                while (plan != null && next < plan.size && plan.ends[next] <= cursor) {
+                    next++;
+                }
+                for (int b = next; plan != null && b < plan.size && plan.starts[b] < windowEnd; b++) {
+                    if (plan.starts[b] - cursor >= minSeconds) {
+                        free[count++] = cursor;
+                        free[count++] = plan.starts[b];
+                    }
+                    cursor = Math.max(cursor, plan.ends[b]);
+                }
+                if (windowEnd - cursor >= minSeconds) {
+                    free[count++] = cursor;
+                    free[count++] = windowEnd;
+                }
+            }
+            return Arrays.copyOf(free, count);
+        }
+
+        private interface IntervalConsumer {
+            void accept(int start, int end);
+        }
+
+        // Overlaps of two sorted interval lists lasting at least minSeconds, in order
+        private static void intersect(int[] a, int[] b, int minSeconds, IntervalConsumer out) {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                int start = Math.max(a[i], b[j]);
+                int end = Math.min(a[i + 1], b[j + 1]);
+                if (end - start >= minSeconds) {
+                    out.accept(start, end);
+                }
+                if (a[i + 1] < b[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
+            }
+        }
+
+        private static List<ScheduledClass> overlapping(DayPlan plan, int start, int end) {
+            if (plan == null) {
+                return List.of();
+            }
+            List<ScheduledClass> found = new ArrayList<>();
+            plan.overlapping(start, end, found);
+            return found;
+        }
+
+        private static void addBusy(DayPlan plan, List<int[]> busy) {
+            if (plan != null) {
+                for (int i = 0; i < plan.size; i++) {
+                    busy.add(new int[]{plan.starts[i], plan.ends[i]});
+                }
+            }
+        }
+    }
+
+    // Classes of one room or one trainer on one day, sorted by start (and so, as they cannot overlap, by end)
+    private static final class DayPlan {
+        private ScheduledClass[] classes = new ScheduledClass[4];
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int size;
+
+        void add(ScheduledClass scheduledClass) {
+            int start = scheduledClass.startTime().toSecondOfDay();
+            if (size == starts.length) {
+                classes = Arrays.copyOf(classes, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            int at = size;
+            while (at > 0 && starts[at - 1] > start) {
+                at--;
+            }
+            System.arraycopy(classes, at, classes, at + 1, size - at);
+            System.arraycopy(starts, at, starts, at + 1, size - at);
+            System.arraycopy(ends, at, ends, at + 1, size - at);
+            classes[at] = scheduledClass;
+            starts[at] = start;
+            ends[at] = seconds(scheduledClass.endTime());
+            size++;
+        }
+
+        // Returns the classes left
+        int remove(int classId) {
+            for (int i = 0; i < size; i++) {
+                if (classes[i].classId() == classId) {
+                    System.arraycopy(classes, i + 1, classes, i, size - i - 1);
+                    System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+                    System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+                    classes[--size] = null;
+                    break;
+                }
+            }
+            return size;
+        }
+
+        // From the first class ending after start, while classes start before end
+        void overlapping(int start, int end, List<ScheduledClass> found) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] <= start) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < size && starts[i] < end; i++) {
+                found.add(classes[i]);
+            }
+        }
+    }
+
+    // ===================== Helpers =====================
+
+    // Room, trainer or class id with a day number (epoch day, or ISO weekday for availability)
+    private static long key(int id, long day) {
+        return ((long) id << 32) | (day & 0xFFFFFFFFL);
+    }
+
+    // Seconds of the day; LocalTime.MAX (the end of a window that runs to midnight) is the day's last second
+    private static int seconds(LocalTime time) {
+        return time.equals(LocalTime.MAX) ? DAY_SECONDS : time.toSecondOfDay();
+    }
+
+    private static LocalTime toTime(int seconds) {
+        return seconds >= DAY_SECONDS ? LocalTime.MAX : LocalTime.ofSecondOfDay(seconds);
+    }
+
+    static ScheduledClass readClass(ResultSet rs) throws SQLException {
+        return new ScheduledClass(rs.getInt("class_id"), FitClubService.toLocalDate(rs.getDate("class_date")),
+                FitClubService.toLocalTime(rs.getTime("start_time")), FitClubService.toLocalTime(rs.getTime("end_time")),
+                rs.getInt("room_id"), rs.getInt("trainer_id"));
+    }
+
+    static AvailabilitySlot readAvailability(ResultSet rs) throws SQLException {
+        return new AvailabilitySlot(rs.getInt("availability_id"), rs.getInt("trainer_id"),
+                FitClubService.parseDayOfWeek(rs.getString("day_of_week")),
+                FitClubService.toLocalTime(rs.getTime("start_time")), FitClubService.toLocalTime(rs.getTime("end_time")));
+    }
+
+    static Room readRoom(ResultSet rs) throws SQLException {
+        return new Room(rs.getInt("room_id"), rs.getString("room_name"), rs.getInt("capacity"));
+    }
+}
@@ -0,0 +1,808 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.CancelledRegistration;
+import org.fitclub.FitClubService.ClassRegistration;
+
+import javax.sql.DataSource;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory seat allocation for classes under a registration rush (e.g. the 6am spin class opening)
+// Safe with several app instances selling seats in the same class: each instance leases blocks of free
+// seats from the database (seat_lease_acquire(), a SeatLease row with an expiry) and sells them under the
+// class's own lock without a round trip. Leased seats are not free to anyone else, so capacity holds across
+// instances. When an instance has no leased seats left (or the class already has a waitlist) the member
+// joins the class's waitlist in the database, which stays the one first-come-first-served queue: seats
+// given back by cancellations, released leases and expired leases go to its head (promote_waitlist()).
+// A writer thread persists the decisions in batches (one transaction per class per batch, turning the sold
+// leased seats back into free seats just before inserting their registrations) and callers return once
+// their change is committed. It also renews this instance's leases, reclaims expired leases of instances
+// that died, and releases the unsold seats of classes that went idle, failed a write or at close().
+public class SeatAllocator implements AutoCloseable {
+
+    // Wait before asking again for seats of a class that had none to lease
+    private static final long ACQUIRE_RETRY_MILLIS = 1_000L;
+
+    // How long a caller waits for its change to be committed
+    private static final long WRITE_TIMEOUT_SECONDS = 60;
+
+    private enum Placement { REGISTERED, WAITLISTED, NONE }
+
+    // A member's new placement in a class; done completes once it is committed, and the outcome fields are
+    // set by the writer before that
+    private static final class Change {
+        final ClassSeats seats;
+        final int memberId;
+        final Placement placement;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        // REGISTERED/WAITLISTED: false when the member already had a seat or waitlist place (another instance)
+        boolean placed = true;
+        // WAITLISTED: place in the queue, null when a free seat was found for the member right away
+        Integer position;
+        // NONE: whether there was a seat or waitlist place to give up, and which
+        boolean found;
+        boolean wasWaitlisted;
+
+        Change(ClassSeats seats, int memberId, Placement placement) {
+            this.seats = seats;
+            this.memberId = memberId;
+            this.placement = placement;
+        }
+    }
+
+    // One upcoming class; guarded by its own monitor
+    // registered and waitlist are the members this instance knows about, used to answer repeats locally
+    private static final class ClassSeats {
+        final int classId;
+        final String className;
+        final LocalDate classDate;
+        final Set<Integer> registered = new HashSet<>();
+        final LinkedHashSet<Integer> waitlist = new LinkedHashSet<>();
+        int localSeats;
+        boolean leased;
+        long leasedAt;
+        long nextAcquireAt;
+        int pendingChanges;
+        long lastUsed = System.currentTimeMillis();
+        boolean stale;
+        boolean retired;
+
+        ClassSeats(int classId, String className, LocalDate classDate) {
+            this.classId = classId;
+            this.className = className;
+            this.classDate = classDate;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final String instanceId;
+    private final int writeBatchSize;
+    private final long idleMillis;
+    private final int leaseSize;
+    private final long leaseTtlMillis;
+    private final ConcurrentHashMap<Integer, ClassSeats> classes = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Change> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Whether changes still reach the writer; guarded by the queue's monitor
+    private boolean accepting = true;
+
+    // Metrics
+    private final AtomicLong seatsGranted = new AtomicLong();
+    private final AtomicLong waitlisted = new AtomicLong();
+    private final AtomicLong promotions = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong classLoads = new AtomicLong();
+    private final AtomicLong leaseRequests = new AtomicLong();
+    private final AtomicLong seatsLeased = new AtomicLong();
+    private final AtomicLong leaseRenewals = new AtomicLong();
+    private final AtomicLong leasesLost = new AtomicLong();
+    private final AtomicLong seatsReleased = new AtomicLong();
+    private final AtomicLong seatsReclaimed = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong changesWritten = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    public SeatAllocator(DataSource dataSource, String instanceId, int writeBatchSize, long idleMillis,
+                         int leaseSize, long leaseTtlMillis) {
+        if (writeBatchSize < 1 || leaseSize < 1 || leaseTtlMillis < 3 || instanceId.isEmpty()) {
+            throw new IllegalArgumentException("Invalid seat allocator settings");
+        }
+        this.dataSource = dataSource;
+        this.instanceId = instanceId;
+        this.writeBatchSize = writeBatchSize;
+        this.idleMillis = idleMillis;
+        this.leaseSize = leaseSize;
+        this.leaseTtlMillis = leaseTtlMillis;
+        this.writer = new Thread(this::writeLoop, "fitclub-seat-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Host name and process id: unique per running instance, and recognisable in SeatLease
+    public static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    // ===================== Registering and cancelling =====================
+
+    // Seat from this instance's lease if one is left (leasing more when needed), otherwise a place on the
+    // class waitlist
+    public ServiceResult<ClassRegistration> register(int memberId, int classId) {
+        while (true) {
+            ClassSeats seats;
+            try {
+                seats = seatsFor(classId);
+            } catch (SQLException e) {
+                return ServiceResult.error(ErrorCode.DATABASE_ERROR, "Registration failed.", e.getMessage());
+            }
+            if (seats == null) {
+                return ServiceResult.error(ErrorCode.CLASS_NOT_AVAILABLE, "Invalid class ID or class is in the past.");
+            }
+
+            Change change;
+            synchronized (seats) {
+                if (seats.retired) {
+                    continue;
+                }
+                if (!running) {
+                    return shuttingDown();
+                }
+                if (seats.registered.contains(memberId)) {
+                    return ServiceResult.error(ErrorCode.ALREADY_REGISTERED, "You are already registered for this class.");
+                }
+                if (seats.waitlist.contains(memberId)) {
+                    return ServiceResult.error(ErrorCode.ALREADY_REGISTERED,
+                            "You are already on the waitlist for this class.");
+                }
+                // Once members are waiting, seats only reach them through the database's queue
+                long now = System.currentTimeMillis();
+                if (seats.localSeats == 0 && seats.waitlist.isEmpty() && now >= seats.nextAcquireAt) {
+                    try {
+                        acquire(seats, now);
+                    } catch (SQLException e) {
+                        return ServiceResult.error(ErrorCode.DATABASE_ERROR, "Registration failed.", e.getMessage());
+                    }
+                }
+                if (seats.localSeats > 0) {
+                    seats.localSeats--;
+                    seats.registered.add(memberId);
+                    change = submit(seats, memberId, Placement.REGISTERED);
+                    seatsGranted.incrementAndGet();
+                } else {
+                    seats.waitlist.add(memberId);
+                    change = submit(seats, memberId, Placement.WAITLISTED);
+                    waitlisted.incrementAndGet();
+                }
+            }
+
+            ServiceResult<ClassRegistration> failed = await(change, "Registration failed.");
+            if (failed != null) {
+                return failed;
+            }
+            if (!change.placed) {
+                return ServiceResult.error(ErrorCode.ALREADY_REGISTERED,
+                        "You are already registered or on the waitlist for this class.");
+            }
+            if (change.placement == Placement.WAITLISTED && change.position == null) {
+                // A seat was free after all (given back elsewhere while nobody was waiting)
+                synchronized (seats) {
+                    if (seats.waitlist.remove(memberId)) {
+                        seats.registered.add(memberId);
+                    }
+                }
+                promotions.incrementAndGet();
+            }
+            return ServiceResult.ok(new ClassRegistration(memberId, classId, seats.className, seats.classDate,
+                    change.position));
+        }
+    }
+
+    // Give up a seat (the database hands it to the head of the waitlist) or leave the waitlist
+    // The member may have registered through another instance, so the writer finds out which applies
+    public ServiceResult<CancelledRegistration> cancel(int memberId, int classId) {
+        while (true) {
+            ClassSeats seats;
+            try {
+                seats = seatsFor(classId);
+            } catch (SQLException e) {
+                return ServiceResult.error(ErrorCode.DATABASE_ERROR, "Cancellation failed.", e.getMessage());
+            }
+            if (seats == null) {
+                return ServiceResult.error(ErrorCode.CLASS_NOT_AVAILABLE, "Invalid class ID or class is in the past.");
+            }
+
+            Change change;
+            synchronized (seats) {
+                if (seats.retired) {
+                    continue;
+                }
+                if (!running) {
+                    return shuttingDown();
+                }
+                seats.registered.remove(memberId);
+                seats.waitlist.remove(memberId);
+                change = submit(seats, memberId, Placement.NONE);
+            }
+
+            ServiceResult<CancelledRegistration> failed = await(change, "Cancellation failed.");
+            if (failed != null) {
+                return failed;
+            }
+            if (!change.found) {
+                return ServiceResult.error(ErrorCode.NOT_FOUND, "You are not registered for this upcoming class.");
+            }
+            cancellations.incrementAndGet();
+            return ServiceResult.ok(new CancelledRegistration(memberId, classId, change.wasWaitlisted));
+        }
+    }
+
+    // Caller holds the class lock, so each class's changes reach the queue in decision order
+    // A change made while the writer was exiting is cancelled, and the class reloaded if it is used again
+    private Change submit(ClassSeats seats, int memberId, Placement placement) {
+        Change change = new Change(seats, memberId, placement);
+        seats.lastUsed = System.currentTimeMillis();
+        synchronized (queue) {
+            if (accepting) {
+                seats.pendingChanges++;
+                queue.add(change);
+                return change;
+            }
+        }
+        seats.stale = true;
+        change.done.cancel(false);
+        return change;
+    }
+
+    private static <T> ServiceResult<T> shuttingDown() {
+        return ServiceResult.error(ErrorCode.OVERLOADED, "Seat allocation is shutting down, retry later.");
+    }
+
+    // Wait for the commit; null when it succeeded, otherwise the error to return
+    private static <T> ServiceResult<T> await(Change change, String failureMessage) {
+        try {
+            change.done.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return null;
+        } catch (CancellationException e) {
+            return shuttingDown();
+        } catch (TimeoutException e) {
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR,
+                    "Timed out waiting for the write; the change may still be committed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR, "Interrupted while waiting for the write.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                ServiceResult<T> mapped = FitClubService.mapRegistrationError((SQLException) e.getCause());
+                if (mapped != null) {
+                    return mapped;
+                }
+            }
+            return ServiceResult.error(ErrorCode.DATABASE_ERROR, failureMessage, e.getCause().getMessage());
+        }
+    }
+
+    // ===================== Class state =====================
+
+    // In-memory state of an upcoming class, loaded in one statement on first use (concurrent callers for
+    // the same class wait for that one load); null if the class does not exist or is in the past
+    private ClassSeats seatsFor(int classId) throws SQLException {
+        try {
+            return classes.computeIfAbsent(classId, id -> {
+                try {
+                    return load(id);
+                } catch (SQLException e) {
+                    throw new LoadFailure(e);
+                }
+            });
+        } catch (LoadFailure e) {
+            throw e.cause;
+        }
+    }
+
+    private static final class LoadFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final SQLException cause;
+
+        LoadFailure(SQLException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    private ClassSeats load(int classId) throws SQLException {
+        String query = "SELECT gc.class_name, gc.class_date, " +
+                "ARRAY(SELECT member_id FROM ClassRegistration cr WHERE cr.class_id = gc.class_id) AS registered, " +
+                "ARRAY(SELECT member_id FROM ClassWaitlist w WHERE w.class_id = gc.class_id " +
+                "      ORDER BY w.waitlist_id) AS waitlist " +
+                "FROM GroupClass gc WHERE gc.class_id = ? AND gc.class_date >= CURRENT_DATE";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query)) {
+            statement.setInt(1, classId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                ClassSeats seats = new ClassSeats(classId, rs.getString("class_name"),
+                        FitClubService.toLocalDate(rs.getDate("class_date")));
+                Collections.addAll(seats.registered, (Integer[]) rs.getArray("registered").getArray());
+                Collections.addAll(seats.waitlist, (Integer[]) rs.getArray("waitlist").getArray());
+                classLoads.incrementAndGet();
+                return seats;
+            }
+        }
+    }
+
+    // Drop a class once nothing is pending, so the next request reloads it from the database, and give
+    // its unsold leased seats back
+    private void retireIfSettled(ClassSeats seats, long now) {
+        boolean release;
+        synchronized (seats) {
+            boolean idle = now - seats.lastUsed >= idleMillis;
+            if (seats.pendingChanges != 0 || !(seats.stale || idle || !running) || seats.retired) {
+                return;
+            }
+            seats.retired = true;
+            classes.remove(seats.classId, seats);
+            release = seats.leased;
+            seats.leased = false;
+            seats.localSeats = 0;
+        }
+        if (release) {
+            release(seats.classId);
+        }
+    }
+
+    // ===================== Leases =====================
+
+    // Caller holds the class lock: other requests for the class wait for the lease rather than lease too
+    private void acquire(ClassSeats seats, long now) throws SQLException {
+        leaseRequests.incrementAndGet();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(
+                     "SELECT seat_lease_acquire(?, ?, ?, ? * interval '1 millisecond')")) {
+            statement.setInt(1, seats.classId);
+            statement.setString(2, instanceId);
+            statement.setInt(3, leaseSize);
+            statement.setLong(4, leaseTtlMillis);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                int granted = rs.getInt(1);
+                if (granted > 0) {
+                    seats.localSeats += granted;
+                    seats.leased = true;
+                    seats.leasedAt = now;
+                    seatsLeased.addAndGet(granted);
+                } else {
+                    seats.nextAcquireAt = now + ACQUIRE_RETRY_MILLIS;
+                }
+            }
+        }
+    }
+
+    // Extend the leases still in use; a class whose lease was reclaimed (or is held back for its waitlist)
+    // stops selling leased seats, unless it leased again meanwhile
+    private void renewLeases() {
+        long start = System.currentTimeMillis();
+        List<ClassSeats> leased = new ArrayList<>();
+        for (ClassSeats seats : classes.values()) {
+            synchronized (seats) {
+                if (seats.leased) {
+                    leased.add(seats);
+                }
+            }
+        }
+        if (leased.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> renewed = new HashSet<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(
+                     "SELECT seat_lease_renew(?, ?, ? * interval '1 millisecond')")) {
+            statement.setString(1, instanceId);
+            statement.setArray(2, conn.createArrayOf("integer",
+                    leased.stream().map(seats -> seats.classId).toArray()));
+            statement.setLong(3, leaseTtlMillis);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                Collections.addAll(renewed, (Integer[]) rs.getArray(1).getArray());
+            }
+            leaseRenewals.incrementAndGet();
+        } catch (SQLException e) {
+            // Retried on the next round; the leases only lapse after the whole TTL
+            System.err.println("WARNING: Seat lease renewal failed: " + e.getMessage());
+            return;
+        }
+
+        for (ClassSeats seats : leased) {
+            if (renewed.contains(seats.classId)) {
+                continue;
+            }
+            synchronized (seats) {
+                if (seats.leased && seats.leasedAt < start) {
+                    seats.leased = false;
+                    seats.localSeats = 0;
+                    leasesLost.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void release(int classId) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT seat_lease_release(?, ?)")) {
+            statement.setInt(1, classId);
+            statement.setString(2, instanceId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                seatsReleased.addAndGet(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            // The lease expires and is reclaimed instead
+            System.err.println("WARNING: Releasing the seat lease of class " + classId + " failed: " + e.getMessage());
+        }
+    }
+
+    // Seats of leases whose instance stopped renewing them
+    private void reclaimExpired() {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT seat_lease_reclaim()");
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            seatsReclaimed.addAndGet(rs.getInt(1));
+        } catch (SQLException e) {
+            System.err.println("WARNING: Reclaiming expired seat leases failed: " + e.getMessage());
+        }
+    }
+
+    // ===================== Writing =====================
+
+    private void writeLoop() {
+        long renewEvery = Math.max(1L, leaseTtlMillis / 3);
+        long nextRenewal = System.currentTimeMillis() + renewEvery;
+        long nextReclaim = System.currentTimeMillis() + leaseTtlMillis;
+        while (running || !queue.isEmpty()) {
+            List<Change> batch = new ArrayList<>();
+            try {
+                Change first = queue.poll(Math.min(1_000L, renewEvery), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, writeBatchSize - 1);
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            long now = System.currentTimeMillis();
+            for (ClassSeats seats : classes.values()) {
+                retireIfSettled(seats, now);
+            }
+            if (now >= nextRenewal) {
+                renewLeases();
+                nextRenewal = now + renewEvery;
+            }
+            if (now >= nextReclaim) {
+                reclaimExpired();
+                nextReclaim = now + leaseTtlMillis;
+            }
+        }
+
+        // Closing: everything is written (changes that came in since are cancelled), give the unsold seats back
+        cancelQueued();
+        long now = System.currentTimeMillis();
+        for (ClassSeats seats : classes.values()) {
+            retireIfSettled(seats, now);
+        }
+    }
+
+    private void write(List<Change> batch) {
+        long start = System.nanoTime();
+        Map<ClassSeats, List<Change>> byClass = new IdentityHashMap<>();
+        for (Change change : batch) {
+            byClass.computeIfAbsent(change.seats, seats -> new ArrayList<>()).add(change);
+        }
+
+        Set<ClassSeats> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            for (Map.Entry<ClassSeats, List<Change>> entry : byClass.entrySet()) {
+                int classId = entry.getKey().classId;
+                List<Change> changes = entry.getValue();
+                try {
+                    apply(conn, classId, changes);
+                    conn.commit();
+                    changes.forEach(change -> change.done.complete(null));
+                } catch (SQLException e) {
+                    conn.rollback();
+                    failed.add(entry.getKey());
+                    // Isolate the offending change(s): replay member by member
+                    Map<Integer, List<Change>> byMember = new LinkedHashMap<>();
+                    for (Change change : changes) {
+                        byMember.computeIfAbsent(change.memberId, id -> new ArrayList<>()).add(change);
+                    }
+                    for (List<Change> memberChanges : byMember.values()) {
+                        try {
+                            apply(conn, classId, memberChanges);
+                            conn.commit();
+                            memberChanges.forEach(change -> change.done.complete(null));
+                        } catch (SQLException memberError) {
+                            conn.rollback();
+                            writeFailures.incrementAndGet();
+                            memberChanges.forEach(change -> change.done.completeExceptionally(memberError));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            writeFailures.incrementAndGet();
+            for (Change change : batch) {
+                if (change.done.completeExceptionally(e)) {
+                    failed.add(change.seats);
+                }
+            }
+        } finally {
+            byClass.forEach((seats, changes) -> settle(seats, changes.size(), failed.contains(seats)));
+            writes.incrementAndGet();
+            changesWritten.addAndGet(batch.size());
+            writeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // Bring the class in the database to the members' changes, in order: a member who gave up their place
+    // (NONE) is removed first, then their latest placement is added unless they already have one
+    private void apply(Connection conn, int classId, List<Change> changes) throws SQLException {
+        Map<Integer, List<Change>> byMember = new LinkedHashMap<>();
+        for (Change change : changes) {
+            byMember.computeIfAbsent(change.memberId, id -> new ArrayList<>()).add(change);
+        }
+        List<Integer> removed = new ArrayList<>();
+        List<Integer> registered = new ArrayList<>();
+        List<Integer> waiting = new ArrayList<>();
+        byMember.forEach((memberId, memberChanges) -> {
+            if (memberChanges.stream().anyMatch(change -> change.placement == Placement.NONE)) {
+                removed.add(memberId);
+            }
+            switch (memberChanges.get(memberChanges.size() - 1).placement) {
+                case REGISTERED: registered.add(memberId); break;
+                case WAITLISTED: waiting.add(memberId); break;
+                default: break;
+            }
+        });
+
+        // Locks the class row first, like every seat trigger and lease function, then turns the leased seats
+        // sold here into free seats for the inserts below
+        int consumed;
+        try (PreparedStatement statement = conn.prepareStatement("SELECT seat_lease_consume(?, ?, ?)")) {
+            statement.setInt(1, classId);
+            statement.setString(2, instanceId);
+            statement.setInt(3, registered.size());
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                consumed = rs.getInt(1);
+            }
+        }
+
+        // Leavers go first so the promotion trigger only promotes members still waiting
+        Set<Integer> leftWaitlist = memberIds(conn,
+                "DELETE FROM ClassWaitlist WHERE class_id = ? AND member_id = ANY(?) RETURNING member_id",
+                classId, removed);
+        Set<Integer> leftSeat = memberIds(conn,
+                "DELETE FROM ClassRegistration WHERE class_id = ? AND member_id = ANY(?) RETURNING member_id",
+                classId, removed);
+        Set<Integer> seated = memberIds(conn, "INSERT INTO ClassRegistration (class_id, member_id) " +
+                "SELECT c.class_id, t.member_id " +
+                "FROM (SELECT ?::int AS class_id) c, unnest(?::int[]) WITH ORDINALITY AS t(member_id, ord) " +
+                "WHERE NOT EXISTS (SELECT 1 FROM ClassRegistration cr " +
+                "                  WHERE cr.class_id = c.class_id AND cr.member_id = t.member_id) " +
+                "  AND NOT EXISTS (SELECT 1 FROM ClassWaitlist w " +
+                "                  WHERE w.class_id = c.class_id AND w.member_id = t.member_id) " +
+                "ORDER BY t.ord RETURNING member_id", classId, registered);
+        Set<Integer> queued = memberIds(conn, "INSERT INTO ClassWaitlist (class_id, member_id) " +
+                "SELECT c.class_id, t.member_id " +
+                "FROM (SELECT ?::int AS class_id) c, unnest(?::int[]) WITH ORDINALITY AS t(member_id, ord) " +
+                "WHERE NOT EXISTS (SELECT 1 FROM ClassRegistration cr " +
+                "                  WHERE cr.class_id = c.class_id AND cr.member_id = t.member_id) " +
+                "  AND NOT EXISTS (SELECT 1 FROM ClassWaitlist w " +
+                "                  WHERE w.class_id = c.class_id AND w.member_id = t.member_id) " +
+                "ORDER BY t.ord RETURNING member_id", classId, waiting);
+
+        // A seat may have been given back while nobody was waiting, or a seat consumed above was not taken
+        // (the member got one elsewhere meanwhile); either goes to the head of the queue
+        if (!queued.isEmpty() || seated.size() < consumed) {
+            try (PreparedStatement statement = conn.prepareStatement("SELECT promote_waitlist(ARRAY[?])")) {
+                statement.setInt(1, classId);
+                statement.executeQuery().close();
+            }
+        }
+
+        Map<Integer, Integer> positions = new HashMap<>();
+        if (!queued.isEmpty()) {
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT member_id, place FROM (" +
+                    "  SELECT member_id, row_number() OVER (ORDER BY waitlist_id) AS place " +
+                    "  FROM ClassWaitlist WHERE class_id = ?) w " +
+                    "WHERE member_id = ANY(?)")) {
+                statement.setInt(1, classId);
+                statement.setArray(2, conn.createArrayOf("integer", queued.toArray()));
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        positions.put(rs.getInt("member_id"), rs.getInt("place"));
+                    }
+                }
+            }
+        }
+
+        byMember.forEach((memberId, memberChanges) -> {
+            Placement current = leftSeat.contains(memberId) ? Placement.REGISTERED
+                    : leftWaitlist.contains(memberId) ? Placement.WAITLISTED : Placement.NONE;
+            for (Change change : memberChanges) {
+                if (change.placement == Placement.NONE) {
+                    change.found = current != Placement.NONE;
+                    change.wasWaitlisted = current == Placement.WAITLISTED;
+                }
+                current = change.placement;
+            }
+            Change last = memberChanges.get(memberChanges.size() - 1);
+            if (last.placement == Placement.REGISTERED) {
+                last.placed = seated.contains(memberId);
+            } else if (last.placement == Placement.WAITLISTED) {
+                last.placed = queued.contains(memberId);
+                last.position = positions.get(memberId);
+            }
+        });
+    }
+
+    // Runs a statement binding the class id and member ids; returns the member ids it reports back
+    private static Set<Integer> memberIds(Connection conn, String sql, int classId, List<Integer> memberIds)
+            throws SQLException {
+        Set<Integer> returned = new HashSet<>();
+        if (memberIds.isEmpty()) {
+            return returned;
+        }
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            Array ids = conn.createArrayOf("integer", memberIds.toArray());
+            statement.setInt(1, classId);
+            statement.setArray(2, ids);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    returned.add(rs.getInt(1));
+                }
+            }
+        }
+        return returned;
+    }
+
+    // After a write: a class whose write failed no longer matches the database and is reloaded
+    private void settle(ClassSeats seats, int written, boolean failed) {
+        synchronized (seats) {
+            seats.pendingChanges -= written;
+            seats.stale |= failed;
+        }
+        retireIfSettled(seats, System.currentTimeMillis());
+    }
+
+    // Stop taking changes and cancel the ones still queued, so no caller waits for a writer that is gone
+    private void cancelQueued() {
+        List<Change> leftover = new ArrayList<>();
+        synchronized (queue) {
+            accepting = false;
+            queue.drainTo(leftover);
+        }
+        for (Change change : leftover) {
+            change.done.cancel(false);
+            settle(change.seats, 1, true);
+        }
+    }
+
+    // Stop accepting changes, let the writer drain the queue and release this instance's leases; changes
+    // still queued after the 30 s wait are cancelled
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cancelQueued();
+        }
+    }
+
+    // ===================== Metrics =====================
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public int getHotClasses() {
+        return classes.size();
+    }
+
+    public long getSeatsGranted() {
+        return seatsGranted.get();
+    }
+
+    public long getWaitlisted() {
+        return waitlisted.get();
+    }
+
+    public long getPromotions() {
+        return promotions.get();
+    }
+
+    public long getSeatsLeased() {
+        return seatsLeased.get();
+    }
+
+    public double getAverageWriteMillis() {
+        long count = writes.get();
+        return count == 0 ? 0.0 : writeNanos.get() / 1_000_000.0 / count;
+    }
+
+    public Map<String, Object> describe() {
+        int unsold = 0;
+        for (ClassSeats seats : classes.values()) {
+            synchronized (seats) {
+                unsold += seats.localSeats;
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("instanceId", instanceId);
+        metrics.put("hotClasses", getHotClasses());
+        metrics.put("classLoads", classLoads.get());
+        metrics.put("seatsGranted", getSeatsGranted());
+        metrics.put("waitlisted", getWaitlisted());
+        metrics.put("promotedOnWrite", getPromotions());
+        metrics.put("cancellations", cancellations.get());
+        metrics.put("leaseSize", leaseSize);
+        metrics.put("leaseTtlMillis", leaseTtlMillis);
+        metrics.put("leaseRequests", leaseRequests.get());
+        metrics.put("seatsLeased", getSeatsLeased());
+        metrics.put("unsoldLeasedSeats", unsold);
+        metrics.put("leaseRenewals", leaseRenewals.get());
+        metrics.put("leasesLost", leasesLost.get());
+        metrics.put("seatsReleased", seatsReleased.get());
+        metrics.put("seatsReclaimed", seatsReclaimed.get());
+        metrics.put("queuedChanges", queue.size());
+        metrics.put("writes", writes.get());
+        metrics.put("changesWritten", changesWritten.get());
+        metrics.put("averageWriteMillis", getAverageWriteMillis());
+        metrics.put("writeFailures", writeFailures.get());
+        return Collections.unmodifiableMap(metrics);
+    }
+}
@@ -0,0 +1,45 @@
+package org.fitclub;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodic check of the seat counters (GroupClass.registered_count) against the registrations
+// (seat_count_reconcile() in sql/ddl.sql). The registration triggers keep the counters exact, so this
+// only corrects drift from loads or manual edits made with triggers disabled, and reports it
+// Runs once at start and then every -Dfitclub.seats.reconcileIntervalMinutes (default 60)
+public class SeatCountReconciliationJob implements AutoCloseable {
+
+    private static final long INTERVAL_MINUTES = Long.getLong("fitclub.seats.reconcileIntervalMinutes", 60L);
+
+    private final FitClubService service;
+    private final ScheduledExecutorService scheduler;
+
+    public SeatCountReconciliationJob(FitClubService service) {
+        this.service = service;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fitclub-seat-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::run, 0, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void run() {
+        ServiceResult<Integer> result = service.reconcileSeatCounts();
+        if (!result.isOk()) {
+            System.err.println("WARNING: Seat count reconciliation failed: " + result.getMessage() +
+                    (result.getDetails() != null ? " (" + result.getDetails() + ")" : ""));
+        } else if (result.getValue() > 0) {
+            System.err.println("WARNING: Corrected the seat count of " + result.getValue() + " classes.");
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
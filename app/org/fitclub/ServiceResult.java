@@ -0,0 +1,63 @@
+package org.fitclub;
+
+// Outcome of a FitClubService operation: either a value or an error code with a readable message
+public final class ServiceResult<T> {
+
+    private final T value;
+    private final ErrorCode error;
+    private final String message;
+    private final String details;
+
+    private ServiceResult(T value, ErrorCode error, String message, String details) {
+        this.value = value;
+        this.error = error;
+        this.message = message;
+        this.details = details;
+    }
+
+    public static <T> ServiceResult<T> ok(T value) {
+        return new ServiceResult<>(value, null, null, null);
+    }
+
+    public static <T> ServiceResult<T> error(ErrorCode error, String message) {
+        return new ServiceResult<>(null, error, message, null);
+    }
+
+    // details carries the underlying database message, if any
+    public static <T> ServiceResult<T> error(ErrorCode error, String message, String details) {
+        return new ServiceResult<>(null, error, message, details);
+    }
+
+    // Re-type a failed result so it can be returned from a method with a different result type
+    public <U> ServiceResult<U> asError() {
+        if (isOk()) {
+            throw new IllegalStateException("Result is not an error");
+        }
+        return new ServiceResult<>(null, error, message, details);
+    }
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public ErrorCode getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    @Override
+    public String toString() {
+        return isOk() ? "OK(" + value + ")" : error + ": " + message + (details == null ? "" : " (" + details + ")");
+    }
+}
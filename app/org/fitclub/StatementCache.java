@@ -0,0 +1,257 @@
+package org.fitclub;
+
+import org.postgresql.PGStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// LRU cache of prepared statements for a single physical connection, keyed by SQL text
+// Callers keep using prepareStatement()/close() as before: close() on a cached statement
+// just hands it back to the cache so the next caller with the same SQL reuses it
+public class StatementCache {
+
+    private final Connection physical;
+    private final int maxSize;
+    private final int serverPrepareThreshold;
+    private final Stats stats;
+
+    // Access-ordered map: iteration starts at the least recently used statement
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    public StatementCache(Connection physical, int maxSize, int serverPrepareThreshold, Stats stats) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.serverPrepareThreshold = serverPrepareThreshold;
+        this.stats = stats;
+    }
+
+    // Return a cached statement for this SQL, preparing (and caching) it on a miss
+    // owner is the connection the caller sees, returned from getConnection() on the statement
+    public PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "N:" + sql;
+
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.inUse) {
+            // Same SQL already open on this connection (nested use): fall back to a plain statement
+            stats.bypasses.incrementAndGet();
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        if (cached == null) {
+            stats.misses.incrementAndGet();
+            cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+            evictOverflow();
+        } else {
+            stats.hits.incrementAndGet();
+        }
+
+        cached.inUse = true;
+        cached.uses++;
+        if (cached.uses == serverPrepareThreshold) {
+            promoteToServerPrepared(cached);
+        }
+        return cached.lend(owner);
+    }
+
+    // Hot statements switch to a named server-side prepared statement on their next execution
+    private void promoteToServerPrepared(CachedStatement cached) {
+        try {
+            if (cached.statement.isWrapperFor(PGStatement.class)) {
+                cached.statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+                stats.serverPrepared.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            // Driver keeps its default threshold
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            stats.evictions.incrementAndGet();
+            if (eldest.inUse) {
+                // Closed for real when the current borrower is done with it
+                eldest.evicted = true;
+            } else {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    // Called when the connection goes back to the pool: statements the borrower forgot to close become reusable
+    public void releaseAll() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            if (cached.inUse) {
+                cached.release();
+            }
+        }
+    }
+
+    // Close every cached statement (connection is being retired)
+    public void clear() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            closeQuietly(cached.statement);
+        }
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    // Counters shared by every cache in a pool
+    public static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong bypasses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong serverPrepared = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getBypasses() {
+            return bypasses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public long getServerPrepared() {
+            return serverPrepared.get();
+        }
+
+        public double getHitRatio() {
+            long lookups = hits.get() + misses.get();
+            return lookups == 0 ? 0.0 : hits.get() / (double) lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("statements[hits=%d, misses=%d, hitRatio=%.2f, bypasses=%d, evictions=%d, serverPrepared=%d]",
+                    getHits(), getMisses(), getHitRatio(), getBypasses(), getEvictions(), getServerPrepared());
+        }
+    }
+
+    // A physical prepared statement plus its cache state
+    private final class CachedStatement {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+        int uses;
+        // Identifies the current lease so a stale proxy cannot close a later borrower's statement
+        Object lease;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement lend(Connection owner) {
+            Object token = new Object();
+            lease = token;
+            return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new LeasedStatementHandler(this, token, owner));
+        }
+
+        void release() {
+            lease = null;
+            inUse = false;
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                // Back to the driver defaults so a page size or limit set by one borrower never leaks into the next
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+                statement.setQueryTimeout(0);
+            } catch (SQLException e) {
+                // Broken statement: drop it from the cache
+                evicted = true;
+            }
+            if (evicted) {
+                statements.values().remove(this);
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    // Proxy handler for one use of a cached statement
+    private final class LeasedStatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Object token;
+        private final Connection owner;
+
+        LeasedStatementHandler(CachedStatement cached, Object token, Connection owner) {
+            this.cached = cached;
+            this.token = token;
+            this.owner = owner;
+        }
+
+        private boolean isCurrent() {
+            return cached.lease == token;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (isCurrent()) {
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return !isCurrent() || cached.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "unwrap":
+                    return cached.statement.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return cached.statement.isWrapperFor((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return cached.statement.toString();
+                default:
+                    if (!isCurrent()) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(cached.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
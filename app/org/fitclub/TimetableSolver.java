@@ -0,0 +1,656 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.ClassSeriesRequest;
+import org.fitclub.FitClubService.PreferredTime;
+import org.fitclub.FitClubService.RequestedClass;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Term timetable: places requested classes in a weekly template (weekday, start, room, trainer) so that the
+// schedule rules hold - the room seats the expected demand, neither room nor trainer is double booked (also
+// against the classes already booked in the term), and the class lies inside one of the trainer's
+// availability windows - while filling rooms as fully as possible.
+// The week is a grid of 15-minute slots. Rooms and trainers keep an owner per slot (free, booked before,
+// or the request placed there), so a placement is checked, and whoever is in its way found, in O(length).
+// Availability windows are rounded inwards and existing classes outwards to the grid, so a plan that fits
+// the grid fits the database.
+// Search: a greedy start, then simulated annealing over moves that place a class at another time, room or
+// trainer, evicting the classes in the way when that pays. Independent searches with different seeds run
+// on every core until the time budget is spent, and the best plan wins. The searches run on one shared pool
+// and at most -Dfitclub.timetable.maxSolves (1) solves run at once; solve() refuses any more.
+// Score per placed class: ASSIGN_SCORE + UTILIZATION_SCORE * demand / room capacity (+ PREFERENCE_SCORE
+// at a preferred time), so placing a class always beats a better fit for another.
+public final class TimetableSolver {
+
+    static final int SLOT_MINUTES = 15;
+    static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    static final int WEEK_SLOTS = 7 * SLOTS_PER_DAY;
+
+    private static final int FREE = -1;
+    private static final int BOOKED = -2;
+
+    private static final double ASSIGN_SCORE = 1_000.0;
+    private static final double UTILIZATION_SCORE = 1_000.0;
+    private static final double PREFERENCE_SCORE = 200.0;
+    // Annealing temperature from the start to the end of the budget
+    private static final double START_TEMPERATURE = 300.0;
+    private static final double END_TEMPERATURE = 1.0;
+    // Fitting rooms (smallest first) a move may evict classes from, and tries to place a class greedily
+    private static final int EVICTION_ROOMS = 8;
+    private static final int GREEDY_TRIES = 200;
+
+    private static final int THREADS = Math.max(1, Integer.getInteger("fitclub.timetable.threads",
+            Runtime.getRuntime().availableProcessors()));
+    // Concurrent solves share the threads between them
+    private static final int MAX_SOLVES = Math.max(1, Integer.getInteger("fitclub.timetable.maxSolves", 1));
+    private static final int SEARCHES_PER_SOLVE = Math.max(1, THREADS / MAX_SOLVES);
+    private static final Semaphore SOLVES = new Semaphore(MAX_SOLVES);
+    private static final AtomicInteger SEARCH_THREADS = new AtomicInteger();
+    private static final ExecutorService SEARCHES = Executors.newFixedThreadPool(SEARCHES_PER_SOLVE * MAX_SOLVES,
+            runnable -> {
+                Thread thread = new Thread(runnable, "fitclub-timetable-" + SEARCH_THREADS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // One class of the plan; it runs every week of the term at this time (see toSeries())
+    public record Assignment(int request, String className, DayOfWeek dayOfWeek, LocalTime startTime,
+                             LocalTime endTime, int roomId, int roomCapacity, int trainerId, int capacity,
+                             boolean preferredTime) {
+        public ClassSeriesRequest toSeries(LocalDate firstDate, LocalDate lastDate) {
+            return new ClassSeriesRequest(className, Set.of(dayOfWeek), startTime, endTime, firstDate,
+                    lastDate, List.of(), roomId, trainerId, capacity);
+        }
+    }
+
+    // unassignedRequests: indexes of the requests that could not be placed; roomUtilization: seats taken by
+    // the expected demand over the seats of the rooms used
+    public record Solution(int assigned, int unassigned, double roomUtilization, double score, int threads,
+                           long moves, long searchMillis, List<Assignment> assignments,
+                           List<Integer> unassignedRequests) {
+    }
+
+    private TimetableSolver() {
+    }
+
+    // ===================== Problem =====================
+
+    // What the plan must fit around, read from the database: rooms by capacity, the trainers' availability and
+    // the term's existing classes, all on the week grid. Read-only once loaded; shared by the searches
+    static final class Problem {
+        final int[] roomIds;
+        final int[] roomCapacities;
+        final int[] trainerIds;
+        // Per trainer and week slot: the availability window covering it, or FREE
+        final int[] trainerWindows;
+        // Per room / trainer and week slot: BOOKED where a class of the term already is, otherwise FREE
+        final int[] bookedRooms;
+        final int[] bookedTrainers;
+        // Per week slot: the trainers with a window there; per trainer: their available slots
+        final int[][] trainersAt;
+        final int[][] trainerSlots;
+
+        private Problem(int[] roomIds, int[] roomCapacities, int[] trainerIds, int[] trainerWindows,
+                        int[] bookedRooms, int[] bookedTrainers) {
+            this.roomIds = roomIds;
+            this.roomCapacities = roomCapacities;
+            this.trainerIds = trainerIds;
+            this.trainerWindows = trainerWindows;
+            this.bookedRooms = bookedRooms;
+            this.bookedTrainers = bookedTrainers;
+
+            int[] counts = new int[WEEK_SLOTS];
+            trainerSlots = new int[trainerIds.length][];
+            for (int t = 0; t < trainerIds.length; t++) {
+                int available = 0;
+                for (int s = 0; s < WEEK_SLOTS; s++) {
+                    if (trainerWindows[t * WEEK_SLOTS + s] != FREE) {
+                        counts[s]++;
+                        available++;
+                    }
+                }
+                trainerSlots[t] = new int[available];
+            }
+            trainersAt = new int[WEEK_SLOTS][];
+            for (int s = 0; s < WEEK_SLOTS; s++) {
+                trainersAt[s] = new int[counts[s]];
+                counts[s] = 0;
+            }
+            for (int t = 0; t < trainerIds.length; t++) {
+                int available = 0;
+                for (int s = 0; s < WEEK_SLOTS; s++) {
+                    if (trainerWindows[t * WEEK_SLOTS + s] != FREE) {
+                        trainersAt[s][counts[s]++] = t;
+                        trainerSlots[t][available++] = s;
+                    }
+                }
+            }
+        }
+
+        // Index of the smallest room seating demand, or roomIds.length when none does
+        int firstFittingRoom(int demand) {
+            int low = 0;
+            int high = roomCapacities.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (roomCapacities[mid] < demand) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // The slots [start, start + length) lie in one of the trainer's windows, on one day
+        boolean fitsWindow(int trainer, int start, int length) {
+            if (start % SLOTS_PER_DAY + length > SLOTS_PER_DAY) {
+                return false;
+            }
+            int window = trainerWindows[trainer * WEEK_SLOTS + start];
+            if (window == FREE) {
+                return false;
+            }
+            for (int s = start + 1; s < start + length; s++) {
+                if (trainerWindows[trainer * WEEK_SLOTS + s] != window) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Reads rooms, all availability and the classes booked between firstDate and lastDate (each distinct
+    // weekday and time once) in three queries
+    static Problem load(Connection conn, LocalDate firstDate, LocalDate lastDate) throws SQLException {
+        List<int[]> rooms = new ArrayList<>();
+        Map<Integer, List<int[]>> windows = new HashMap<>();
+        try (Statement statement = conn.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT room_id, capacity FROM Room")) {
+                while (rs.next()) {
+                    rooms.add(new int[]{rs.getInt("room_id"), rs.getInt("capacity")});
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT trainer_id, day_of_week, start_time, end_time " +
+                    "FROM TrainerAvailability")) {
+                while (rs.next()) {
+                    int day = FitClubService.parseDayOfWeek(rs.getString("day_of_week")).getValue() - 1;
+                    // Inwards: the first whole slot after the start, up to the last slot ending by the end
+                    int start = day * SLOTS_PER_DAY + ceilSlot(rs.getTime("start_time").toLocalTime());
+                    int end = day * SLOTS_PER_DAY + floorSlot(rs.getTime("end_time").toLocalTime());
+                    if (start < end) {
+                        windows.computeIfAbsent(rs.getInt("trainer_id"), k -> new ArrayList<>()).add(new int[]{start, end});
+                    }
+                }
+            }
+        }
+        rooms.sort(Comparator.<int[]>comparingInt(room -> room[1]).thenComparingInt(room -> room[0]));
+
+        int[] roomIds = new int[rooms.size()];
+        int[] roomCapacities = new int[rooms.size()];
+        Map<Integer, Integer> roomIndex = new HashMap<>();
+        for (int r = 0; r < rooms.size(); r++) {
+            roomIds[r] = rooms.get(r)[0];
+            roomCapacities[r] = rooms.get(r)[1];
+            roomIndex.put(roomIds[r], r);
+        }
+
+        int[] trainerIds = windows.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Map<Integer, Integer> trainerIndex = new HashMap<>();
+        int[] trainerWindows = new int[trainerIds.length * WEEK_SLOTS];
+        Arrays.fill(trainerWindows, FREE);
+        int windowId = 0;
+        for (int t = 0; t < trainerIds.length; t++) {
+            trainerIndex.put(trainerIds[t], t);
+            for (int[] window : windows.get(trainerIds[t])) {
+                Arrays.fill(trainerWindows, t * WEEK_SLOTS + window[0], t * WEEK_SLOTS + window[1], windowId++);
+            }
+        }
+
+        int[] bookedRooms = new int[roomIds.length * WEEK_SLOTS];
+        int[] bookedTrainers = new int[trainerIds.length * WEEK_SLOTS];
+        Arrays.fill(bookedRooms, FREE);
+        Arrays.fill(bookedTrainers, FREE);
+        String query = "SELECT DISTINCT extract(isodow FROM class_date)::int AS day, start_time, end_time, room_id, trainer_id " +
+                "FROM GroupClass WHERE class_date BETWEEN ? AND ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setDate(1, Date.valueOf(firstDate));
+            pstmt.setDate(2, Date.valueOf(lastDate));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int day = (rs.getInt("day") - 1) * SLOTS_PER_DAY;
+                    // Outwards: every slot the class touches
+                    int start = day + floorSlot(rs.getTime("start_time").toLocalTime());
+                    int end = day + ceilSlot(rs.getTime("end_time").toLocalTime());
+                    Integer room = roomIndex.get(rs.getInt("room_id"));
+                    if (room != null) {
+                        Arrays.fill(bookedRooms, room * WEEK_SLOTS + start, room * WEEK_SLOTS + end, BOOKED);
+                    }
+                    Integer trainer = trainerIndex.get(rs.getInt("trainer_id"));
+                    if (trainer != null) {
+                        Arrays.fill(bookedTrainers, trainer * WEEK_SLOTS + start, trainer * WEEK_SLOTS + end, BOOKED);
+                    }
+                }
+            }
+        }
+        return new Problem(roomIds, roomCapacities, trainerIds, trainerWindows, bookedRooms, bookedTrainers);
+    }
+
+    // ===================== Solving =====================
+
+    // The requested classes on the grid: length in slots, demand, the smallest fitting room, preferred slots
+    private record Request(int length, int demand, int firstRoom, int[] preferred) {
+    }
+
+    // Runs its share of the searches for budgetMillis and returns the best plan
+    // Throws RejectedExecutionException when MAX_SOLVES solves are already running
+    static Solution solve(Problem problem, List<RequestedClass> classes, long budgetMillis, long seed)
+            throws InterruptedException {
+        if (!SOLVES.tryAcquire()) {
+            throw new RejectedExecutionException("Timetable searches are all busy");
+        }
+        try {
+            return search(problem, classes, budgetMillis, seed);
+        } finally {
+            SOLVES.release();
+        }
+    }
+
+    private static Solution search(Problem problem, List<RequestedClass> classes, long budgetMillis, long seed)
+            throws InterruptedException {
+        Request[] requests = new Request[classes.size()];
+        for (int i = 0; i < requests.length; i++) {
+            RequestedClass requested = classes.get(i);
+            List<PreferredTime> times = requested.preferredTimes() == null ? List.of() : requested.preferredTimes();
+            int[] preferred = new int[times.size()];
+            for (int p = 0; p < preferred.length; p++) {
+                preferred[p] = (times.get(p).dayOfWeek().getValue() - 1) * SLOTS_PER_DAY + floorSlot(times.get(p).startTime());
+            }
+            requests[i] = new Request((requested.durationMinutes() + SLOT_MINUTES - 1) / SLOT_MINUTES,
+                    requested.expectedDemand(), problem.firstFittingRoom(requested.expectedDemand()), preferred);
+        }
+
+        int threads = SEARCHES_PER_SOLVE;
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        long started = System.nanoTime();
+        Search best = null;
+        long moves = 0;
+        List<Future<Search>> searches = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                Search search = new Search(problem, requests, new Random(seed + i));
+                searches.add(SEARCHES.submit(() -> search.run(deadline)));
+            }
+            for (Future<Search> future : searches) {
+                Search search = future.get();
+                moves += search.moves;
+                if (best == null || search.bestScore > best.bestScore) {
+                    best = search;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Timetable search failed", e.getCause());
+        } finally {
+            // Stops the searches still running when this one was interrupted or failed
+            searches.forEach(future -> future.cancel(true));
+        }
+        return best.toSolution(classes, threads, moves, (System.nanoTime() - started) / 1_000_000L);
+    }
+
+    // One independent search; confined to its thread
+    private static final class Search {
+        private final Problem problem;
+        private final Request[] requests;
+        private final Random random;
+
+        private final int[] roomOwner;
+        private final int[] trainerOwner;
+        private final int[] room;
+        private final int[] trainer;
+        private final int[] start;
+        private final double[] value;
+        private double score;
+        // The classes that fit some room but are not placed, and where each is in that list
+        private final int[] unplaced;
+        private final int[] unplacedAt;
+        private int unplacedCount;
+
+        private int[] bestRoom;
+        private int[] bestTrainer;
+        private int[] bestStart;
+        private double bestScore = -1;
+        private long moves;
+
+        // Classes in the way of a move, and the chosen room for it
+        private final int[] evicted = new int[64];
+        private int evictedCount;
+
+        Search(Problem problem, Request[] requests, Random random) {
+            this.problem = problem;
+            this.requests = requests;
+            this.random = random;
+            this.roomOwner = problem.bookedRooms.clone();
+            this.trainerOwner = problem.bookedTrainers.clone();
+            this.room = new int[requests.length];
+            this.trainer = new int[requests.length];
+            this.start = new int[requests.length];
+            this.value = new double[requests.length];
+            this.unplaced = new int[requests.length];
+            this.unplacedAt = new int[requests.length];
+            Arrays.fill(room, FREE);
+            Arrays.fill(unplacedAt, FREE);
+            for (int c = 0; c < requests.length; c++) {
+                if (requests[c].firstRoom() < problem.roomIds.length) {
+                    unplacedAt[c] = unplacedCount;
+                    unplaced[unplacedCount++] = c;
+                }
+            }
+        }
+
+        Search run(long deadline) {
+            greedy();
+            saveBest();
+            long begin = System.nanoTime();
+            double span = Math.max(1, deadline - begin);
+            double temperature = START_TEMPERATURE;
+            boolean movable = problem.trainerIds.length > 0 && unplacedCount + placedCount() > 0;
+            while (movable) {
+                if ((moves & 1023) == 0) {
+                    long now = System.nanoTime();
+                    if (now >= deadline || Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    double progress = (now - begin) / span;
+                    temperature = START_TEMPERATURE * (1 - progress) + END_TEMPERATURE * progress;
+                }
+                moves++;
+                int c = pick();
+                if (c >= 0) {
+                    move(c, temperature);
+                }
+            }
+            return this;
+        }
+
+        // Largest demand first: those have the fewest rooms to choose from
+        private void greedy() {
+            Integer[] order = new Integer[requests.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Collections.shuffle(Arrays.asList(order), random);
+            Arrays.sort(order, (a, b) -> Integer.compare(requests[b].demand(), requests[a].demand()));
+            for (int c : order) {
+                Request request = requests[c];
+                if (request.firstRoom() >= problem.roomIds.length) {
+                    continue;
+                }
+                boolean done = false;
+                for (int slot : request.preferred()) {
+                    int[] trainers = problem.trainersAt[slot];
+                    for (int k = 0; k < trainers.length && k < GREEDY_TRIES && !done; k++) {
+                        done = placeIfFree(c, trainers[(k + random.nextInt(trainers.length)) % trainers.length], slot);
+                    }
+                    if (done) {
+                        break;
+                    }
+                }
+                for (int k = 0; k < GREEDY_TRIES && !done && problem.trainerIds.length > 0; k++) {
+                    int t = random.nextInt(problem.trainerIds.length);
+                    int[] slots = problem.trainerSlots[t];
+                    done = slots.length > 0 && placeIfFree(c, t, slots[random.nextInt(slots.length)]);
+                }
+            }
+        }
+
+        private boolean placeIfFree(int c, int t, int slot) {
+            Request request = requests[c];
+            if (!problem.fitsWindow(t, slot, request.length()) || !free(trainerOwner, t, slot, request.length(), c)) {
+                return false;
+            }
+            for (int r = request.firstRoom(); r < problem.roomIds.length; r++) {
+                if (free(roomOwner, r, slot, request.length(), c)) {
+                    place(c, r, t, slot);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Half the time one of the classes not placed yet, otherwise any class that could be placed
+        private int pick() {
+            if (unplacedCount > 0 && random.nextBoolean()) {
+                return unplaced[random.nextInt(unplacedCount)];
+            }
+            int c = random.nextInt(requests.length);
+            return requests[c].firstRoom() < problem.roomIds.length ? c : -1;
+        }
+
+        private int placedCount() {
+            int count = 0;
+            for (int r : room) {
+                count += r == FREE ? 0 : 1;
+            }
+            return count;
+        }
+
+        // A new time and trainer for c (a preferred time, the same trainer at another time, or anyone), the
+        // best free room there or else a fitting room with classes to evict; accepted by the annealing rule
+        private void move(int c, double temperature) {
+            Request request = requests[c];
+            int t;
+            int slot;
+            int choice = random.nextInt(3);
+            if (choice == 0 && request.preferred().length > 0) {
+                slot = request.preferred()[random.nextInt(request.preferred().length)];
+                int[] trainers = problem.trainersAt[slot];
+                if (trainers.length == 0) {
+                    return;
+                }
+                t = trainers[random.nextInt(trainers.length)];
+            } else {
+                t = choice == 1 && room[c] != FREE ? trainer[c] : random.nextInt(problem.trainerIds.length);
+                int[] slots = problem.trainerSlots[t];
+                if (slots.length == 0) {
+                    return;
+                }
+                slot = slots[random.nextInt(slots.length)];
+            }
+            int length = request.length();
+            if (!problem.fitsWindow(t, slot, length)) {
+                return;
+            }
+
+            evictedCount = 0;
+            if (!collect(trainerOwner, t, slot, length, c)) {
+                return;
+            }
+            int trainerEvictions = evictedCount;
+            int target = FREE;
+            for (int r = request.firstRoom(); r < problem.roomIds.length; r++) {
+                if (free(roomOwner, r, slot, length, c)) {
+                    target = r;
+                    break;
+                }
+            }
+            if (target == FREE) {
+                int fitting = problem.roomIds.length - request.firstRoom();
+                int r = request.firstRoom() + random.nextInt(Math.min(EVICTION_ROOMS, fitting));
+                if (!collect(roomOwner, r, slot, length, c)) {
+                    return;
+                }
+                target = r;
+            }
+            if (evictedCount == 0 && trainerEvictions == 0 && target == room[c] && slot == start[c] && t == trainer[c]) {
+                return;
+            }
+
+            double delta = valueOf(c, target, slot) - value[c];
+            for (int i = 0; i < evictedCount; i++) {
+                delta -= value[evicted[i]];
+            }
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                for (int i = 0; i < evictedCount; i++) {
+                    unplace(evicted[i]);
+                }
+                unplace(c);
+                place(c, target, t, slot);
+                if (score > bestScore) {
+                    saveBest();
+                }
+            }
+        }
+
+        // Adds the classes other than c holding the slots to evicted; false when a slot was booked before
+        // the plan (or too many classes are in the way)
+        private boolean collect(int[] owners, int owner, int slot, int length, int c) {
+            int base = owner * WEEK_SLOTS + slot;
+            for (int s = base; s < base + length; s++) {
+                int holder = owners[s];
+                if (holder == BOOKED) {
+                    return false;
+                }
+                if (holder >= 0 && holder != c && !contains(evicted, evictedCount, holder)) {
+                    if (evictedCount == evicted.length) {
+                        return false;
+                    }
+                    evicted[evictedCount++] = holder;
+                }
+            }
+            return true;
+        }
+
+        private static boolean contains(int[] values, int count, int value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean free(int[] owners, int owner, int slot, int length, int c) {
+            int base = owner * WEEK_SLOTS + slot;
+            for (int s = base; s < base + length; s++) {
+                if (owners[s] != FREE && owners[s] != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double valueOf(int c, int r, int slot) {
+            Request request = requests[c];
+            double value = ASSIGN_SCORE + UTILIZATION_SCORE * request.demand() / problem.roomCapacities[r];
+            for (int preferred : request.preferred()) {
+                if (preferred == slot) {
+                    return value + PREFERENCE_SCORE;
+                }
+            }
+            return value;
+        }
+
+        private void place(int c, int r, int t, int slot) {
+            int length = requests[c].length();
+            Arrays.fill(roomOwner, r * WEEK_SLOTS + slot, r * WEEK_SLOTS + slot + length, c);
+            Arrays.fill(trainerOwner, t * WEEK_SLOTS + slot, t * WEEK_SLOTS + slot + length, c);
+            room[c] = r;
+            trainer[c] = t;
+            start[c] = slot;
+            value[c] = valueOf(c, r, slot);
+            score += value[c];
+            // Swap c out of the unplaced list
+            int at = unplacedAt[c];
+            int last = unplaced[--unplacedCount];
+            unplaced[at] = last;
+            unplacedAt[last] = at;
+            unplacedAt[c] = FREE;
+        }
+
+        private void unplace(int c) {
+            if (room[c] == FREE) {
+                return;
+            }
+            int length = requests[c].length();
+            Arrays.fill(roomOwner, room[c] * WEEK_SLOTS + start[c], room[c] * WEEK_SLOTS + start[c] + length, FREE);
+            Arrays.fill(trainerOwner, trainer[c] * WEEK_SLOTS + start[c], trainer[c] * WEEK_SLOTS + start[c] + length, FREE);
+            room[c] = FREE;
+            score -= value[c];
+            value[c] = 0;
+            unplacedAt[c] = unplacedCount;
+            unplaced[unplacedCount++] = c;
+        }
+
+        private void saveBest() {
+            bestRoom = room.clone();
+            bestTrainer = trainer.clone();
+            bestStart = start.clone();
+            bestScore = score;
+        }
+
+        Solution toSolution(List<RequestedClass> classes, int threads, long totalMoves, long millis) {
+            List<Assignment> assignments = new ArrayList<>();
+            List<Integer> unassigned = new ArrayList<>();
+            long demand = 0;
+            long seats = 0;
+            for (int c = 0; c < requests.length; c++) {
+                if (bestRoom[c] == FREE) {
+                    unassigned.add(c);
+                    continue;
+                }
+                RequestedClass requested = classes.get(c);
+                int slot = bestStart[c];
+                LocalTime startTime = LocalTime.of(0, 0).plusMinutes((long) (slot % SLOTS_PER_DAY) * SLOT_MINUTES);
+                int capacity = problem.roomCapacities[bestRoom[c]];
+                boolean preferred = false;
+                for (int p : requests[c].preferred()) {
+                    preferred |= p == slot;
+                }
+                assignments.add(new Assignment(c, FitClubService.trimToEmpty(requested.className()),
+                        DayOfWeek.of(slot / SLOTS_PER_DAY + 1), startTime, startTime.plusMinutes(requested.durationMinutes()),
+                        problem.roomIds[bestRoom[c]], capacity, problem.trainerIds[bestTrainer[c]],
+                        requested.expectedDemand(), preferred));
+                demand += requested.expectedDemand();
+                seats += capacity;
+            }
+            assignments.sort(Comparator.comparing(Assignment::dayOfWeek).thenComparing(Assignment::startTime)
+                    .thenComparingInt(Assignment::roomId));
+            return new Solution(assignments.size(), unassigned.size(), seats == 0 ? 0.0 : (double) demand / seats,
+                    bestScore, threads, totalMoves, millis, assignments, unassigned);
+        }
+    }
+
+    // ===================== Helpers =====================
+
+    private static int floorSlot(LocalTime time) {
+        return time.toSecondOfDay() / (SLOT_MINUTES * 60);
+    }
+
+    private static int ceilSlot(LocalTime time) {
+        return (time.toSecondOfDay() + SLOT_MINUTES * 60 - 1) / (SLOT_MINUTES * 60);
+    }
+}
@@ -0,0 +1,47 @@
+package org.fitclub;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executors that run every task on its own virtual thread when the JVM has them (Java 21+)
+// The build still targets Java 17, so the factory is looked up reflectively and older
+// runtimes fall back to a bounded pool of platform threads
+public final class VirtualThreads {
+
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findFactory();
+
+    private VirtualThreads() {
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return VIRTUAL_EXECUTOR_FACTORY != null;
+    }
+
+    // One virtual thread per task, or fallbackThreads named daemon platform threads
+    public static ExecutorService newPerTaskExecutor(String name, int fallbackThreads) {
+        if (VIRTUAL_EXECUTOR_FACTORY != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Fall through to platform threads
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(fallbackThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
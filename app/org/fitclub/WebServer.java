@@ -0,0 +1,645 @@
+package org.fitclub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// HTTP/JSON entry point for the member, trainer and admin operations (second entry point next to Main)
+// Uses the JDK's built-in HttpServer; each request runs on its own virtual thread when available
+//
+// Run: java -cp ... org.fitclub.WebServer   (port from -Dfitclub.http.port, default 8080)
+public class WebServer {
+
+    private static final int PORT = Integer.getInteger("fitclub.http.port", 8080);
+    private static final int BACKLOG = Integer.getInteger("fitclub.http.backlog", 1024);
+    private static final int FALLBACK_THREADS = Integer.getInteger("fitclub.http.threads", 64);
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    // A term's availability for every trainer as CSV (PUT /api/availability), about 30 bytes a window
+    private static final int AVAILABILITY_MAX_BODY_BYTES = 4 << 20;
+
+    // Health metric ingestion (POST /api/metrics/ingest)
+    private static final int INGEST_MAX_BODY_BYTES = Integer.getInteger("fitclub.ingest.maxBodyBytes", 16 << 20);
+    private static final int INGEST_QUEUE_CAPACITY = Integer.getInteger("fitclub.ingest.queueCapacity", 200_000);
+    private static final int INGEST_WRITE_BATCH_SIZE = Integer.getInteger("fitclub.ingest.writeBatchSize", 20_000);
+    private static final int INGEST_WRITERS = Integer.getInteger("fitclub.ingest.writers", 2);
+    private static final long INGEST_OFFER_TIMEOUT_MILLIS = Long.getLong("fitclub.ingest.offerTimeoutMillis", 2_000L);
+
+    // Member dashboard cache (GET /api/members/{id}/dashboard), invalidated through LISTEN/NOTIFY
+    private static final int DASHBOARD_CACHE_MAX_SIZE = Integer.getInteger("fitclub.dashboardCache.maxSize", 10_000);
+    private static final long DASHBOARD_CACHE_TTL_MILLIS = Long.getLong("fitclub.dashboardCache.ttlMillis", 60_000L);
+
+    // In-memory seat allocation for class registrations and cancellations
+    private static final int SEATS_WRITE_BATCH_SIZE = Integer.getInteger("fitclub.seats.writeBatchSize", 500);
+    private static final long SEATS_IDLE_MILLIS = Long.getLong("fitclub.seats.idleMillis", 30_000L);
+    // Seats each instance leases at a time, and how long an unrenewed lease lasts
+    private static final int SEATS_LEASE_SIZE = Integer.getInteger("fitclub.seats.leaseSize", 10);
+    private static final long SEATS_LEASE_TTL_MILLIS = Long.getLong("fitclub.seats.leaseTtlMillis", 15_000L);
+    private static final String INSTANCE_ID = System.getProperty("fitclub.instanceId", SeatAllocator.defaultInstanceId());
+
+    // In-memory member search index (GET /api/members), kept current through LISTEN/NOTIFY
+    private static final boolean SEARCH_INDEX_ENABLED =
+            Boolean.parseBoolean(System.getProperty("fitclub.searchIndex.enabled", "true"));
+    // In-memory schedule (GET /api/rooms/{id}/schedule/...), kept current through LISTEN/NOTIFY
+    private static final boolean SCHEDULE_INDEX_ENABLED =
+            Boolean.parseBoolean(System.getProperty("fitclub.scheduleIndex.enabled", "true"));
+
+    private final FitClubService service;
+    private final ConnectionPool pool;
+    private final HealthMetricIngestor ingestor;
+    private final DashboardCache dashboardCache;
+    private final SeatAllocator seatAllocator;
+    private final MemberSearchIndex searchIndex;
+    private final ScheduleIndex scheduleIndex;
+    private final List<Route> routes = new ArrayList<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // searchIndex, scheduleIndex: the indexes service answers from, or null
+    public WebServer(FitClubService service, ConnectionPool pool, MemberSearchIndex searchIndex,
+                     ScheduleIndex scheduleIndex) {
+        this.service = service;
+        this.pool = pool;
+        this.searchIndex = searchIndex;
+        this.scheduleIndex = scheduleIndex;
+        this.ingestor = new HealthMetricIngestor(pool, INGEST_QUEUE_CAPACITY, INGEST_WRITE_BATCH_SIZE,
+                INGEST_WRITERS, INGEST_OFFER_TIMEOUT_MILLIS);
+        this.dashboardCache = new DashboardCache(service, DASHBOARD_CACHE_MAX_SIZE, DASHBOARD_CACHE_TTL_MILLIS);
+        this.seatAllocator = new SeatAllocator(pool, INSTANCE_ID, SEATS_WRITE_BATCH_SIZE, SEATS_IDLE_MILLIS,
+                SEATS_LEASE_SIZE, SEATS_LEASE_TTL_MILLIS);
+        registerRoutes();
+    }
+
+    public static void main(String[] args) {
+        try {
+            ConnectionPool pool = DatabaseConnection.getDataSource();
+            MemberSearchIndex searchIndex = SEARCH_INDEX_ENABLED ? new MemberSearchIndex(pool) : null;
+            ScheduleIndex scheduleIndex = SCHEDULE_INDEX_ENABLED ? new ScheduleIndex(pool) : null;
+            FitClubService service = new FitClubService(pool, searchIndex, scheduleIndex);
+            WebServer webServer = new WebServer(service, pool, searchIndex, scheduleIndex);
+            webServer.start(PORT);
+
+            DashboardRolloverJob rollover = new DashboardRolloverJob(service);
+            rollover.start();
+            SeatCountReconciliationJob seatReconciliation = new SeatCountReconciliationJob(service);
+            seatReconciliation.start();
+            HealthMetricPartitionJob metricPartitions = new HealthMetricPartitionJob(service);
+            metricPartitions.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                rollover.close();
+                seatReconciliation.close();
+                metricPartitions.close();
+                webServer.stop();
+                DatabaseConnection.shutdown();
+            }));
+        } catch (SQLException | IOException e) {
+            System.err.println("Could not start HTTP server: " + e.getMessage());
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        executor = VirtualThreads.newPerTaskExecutor("fitclub-http", FALLBACK_THREADS);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+        dashboardCache.start();
+        if (searchIndex != null) {
+            searchIndex.start();
+        }
+        if (scheduleIndex != null) {
+            scheduleIndex.start();
+        }
+
+        System.out.println("FitClub HTTP server listening on port " + server.getAddress().getPort() +
+                (VirtualThreads.isSupported() ? " (virtual threads)" : " (" + FALLBACK_THREADS + " worker threads)"));
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+        }
+        ingestor.close();
+        dashboardCache.close();
+        seatAllocator.close();
+        if (searchIndex != null) {
+            searchIndex.close();
+        }
+        if (scheduleIndex != null) {
+            scheduleIndex.close();
+        }
+    }
+
+    // ===================== Routes =====================
+
+    private void registerRoutes() {
+        // Login by email
+        route("POST", "/api/login/member", 200, (params, body) ->
+                idResult(service.findMemberIdByEmail(requireString(body, "email")), "memberId"));
+        route("POST", "/api/login/trainer", 200, (params, body) ->
+                idResult(service.findTrainerIdByEmail(requireString(body, "email")), "trainerId"));
+        route("POST", "/api/login/admin", 200, (params, body) ->
+                idResult(service.findAdminIdByEmail(requireString(body, "email")), "adminId"));
+
+        // Members
+        route("POST", "/api/members", (params, body) ->
+                service.registerMember(new FitClubService.RegisterMemberRequest(
+                        requireString(body, "firstName"), requireString(body, "lastName"), requireString(body, "email"))));
+        // ?search= gives the best matches for a name or email; otherwise members in name order, optionally
+        // by ?lastName= prefix, a page at a time (?after= takes the previous page's nextCursor)
+        route("GET", "/api/members", (params, body) -> params.query("search") != null
+                ? service.searchMembers(params.query("search"),
+                        params.intQuery("limit", FitClubService.DEFAULT_SEARCH_LIMIT))
+                : service.listMembers(params.query("lastName"), params.query("after"),
+                        params.intQuery("limit", FitClubService.DEFAULT_PAGE_LIMIT)));
+        route("GET", "/api/members/(\\d+)/dashboard", (params, body) ->
+                dashboardCache.getDashboard(params.intGroup(1)));
+        route("GET", "/api/members/(\\d+)/profile", (params, body) ->
+                service.getMemberProfile(params.intGroup(1)));
+        route("POST", "/api/members/(\\d+)/registrations", (params, body) ->
+                seatAllocator.register(params.intGroup(1), requireInt(body, "classId")));
+        route("DELETE", "/api/members/(\\d+)/registrations/(\\d+)", (params, body) ->
+                seatAllocator.cancel(params.intGroup(1), params.intGroup(2)));
+        route("POST", "/api/members/(\\d+)/metrics", (params, body) ->
+                service.logHealthMetric(new FitClubService.HealthMetricRequest(params.intGroup(1),
+                        optionalDouble(body, "weight"), optionalInt(body, "restingHeartRate"),
+                        optionalDouble(body, "bodyFatPercentage"), optionalDouble(body, "vo2Max"))));
+        route("POST", "/api/members/(\\d+)/goals", (params, body) ->
+                service.createFitnessGoal(new FitClubService.FitnessGoalRequest(params.intGroup(1),
+                        requireString(body, "goalType"), requireDouble(body, "targetValue"),
+                        requireDate(body, "targetDate"))));
+
+        // Wearable / smart scale readings: NDJSON (default) or CSV (Content-Type: text/csv) batches
+        rawRoute("POST", "/api/metrics/ingest", INGEST_MAX_BODY_BYTES, (params, contentType, body) ->
+                ingestor.ingest(contentType, body));
+
+        // Class catalogue and creation
+        route("GET", "/api/classes", (params, body) ->
+                service.listUpcomingClasses(params.query("after"),
+                        params.intQuery("limit", FitClubService.DEFAULT_PAGE_LIMIT)));
+        route("POST", "/api/classes", (params, body) ->
+                service.createGroupClass(new FitClubService.GroupClassRequest(
+                        requireString(body, "className"), requireDate(body, "classDate"),
+                        requireTime(body, "startTime"), requireTime(body, "endTime"),
+                        requireInt(body, "roomId"), requireInt(body, "trainerId"), requireInt(body, "capacity"))));
+        // A recurring class: the dates that fit are created, the others reported with what is in the way
+        route("POST", "/api/classes/series", (params, body) ->
+                service.createClassSeries(new FitClubService.ClassSeriesRequest(
+                        requireString(body, "className"), requireDays(body, "daysOfWeek"),
+                        requireTime(body, "startTime"), requireTime(body, "endTime"),
+                        requireDate(body, "firstDate"), requireDate(body, "lastDate"),
+                        optionalDates(body, "exceptDates"), requireInt(body, "roomId"),
+                        requireInt(body, "trainerId"), requireInt(body, "capacity"))));
+        // A proposed weekly timetable for the term (nothing is booked)
+        route("POST", "/api/timetable/solve", 200, (params, body) ->
+                service.solveTimetable(new FitClubService.TimetableRequest(requireDate(body, "firstDate"),
+                        requireDate(body, "lastDate"), requestedClasses(body, "classes"),
+                        body.get("timeBudgetSeconds") == null ? FitClubService.DEFAULT_TIMETABLE_SECONDS
+                                : requireInt(body, "timeBudgetSeconds"))));
+        route("GET", "/api/rooms", (params, body) -> service.listRooms());
+        // Planning: ?trainerId=&date=&startTime=&endTime= checked against the schedule, and the free stretches
+        // of a day lasting ?minutes= (with the trainer available too when ?trainerId= is given)
+        route("GET", "/api/rooms/(\\d+)/schedule/check", (params, body) ->
+                service.checkClassSlot(params.intGroup(1), params.requireIntQuery("trainerId"),
+                        params.dateQuery("date"), params.timeQuery("startTime"), params.timeQuery("endTime")));
+        route("GET", "/api/rooms/(\\d+)/schedule/free", (params, body) ->
+                service.findFreeWindows(params.intGroup(1), params.optionalIntQuery("trainerId"),
+                        params.dateQuery("date"), params.requireIntQuery("minutes")));
+        // Every room (seating ?minCapacity=) and trainer free together for ?minutes= between ?from= and ?to=,
+        // best fit first
+        route("GET", "/api/schedule/free", (params, body) ->
+                service.findFreeSlots(params.dateQuery("from"), params.dateQuery("to"), params.requireIntQuery("minutes"),
+                        params.intQuery("minCapacity", 1), params.intQuery("limit", FitClubService.DEFAULT_FREE_SLOT_LIMIT)));
+        route("GET", "/api/trainers", (params, body) -> service.listTrainers());
+
+        // Trainer availability
+        route("GET", "/api/trainers/(\\d+)/availability", (params, body) ->
+                service.listAvailability(params.intGroup(1)));
+        route("POST", "/api/trainers/(\\d+)/availability", (params, body) ->
+                service.setAvailability(new FitClubService.AvailabilityRequest(params.intGroup(1),
+                        requireDay(body, "dayOfWeek"), requireTime(body, "startTime"), requireTime(body, "endTime"))));
+        // The trainer's whole week: {"windows": [{"dayOfWeek", "startTime", "endTime"}]} replaces what is there
+        route("PUT", "/api/trainers/(\\d+)/availability", (params, body) ->
+                service.replaceAvailability(params.intGroup(1),
+                        availabilityWindows(body, "windows", params.intGroup(1))));
+        // Every trainer's week from a CSV (trainer_id,day_of_week,start_time,end_time); trainers not in it keep theirs
+        rawRoute("PUT", "/api/availability", AVAILABILITY_MAX_BODY_BYTES, (params, contentType, body) ->
+                service.publishAvailability(new StringReader(body)));
+
+        // Pool, statement cache, ingestion, dashboard cache, seat allocation and index counters
+        route("GET", "/api/metrics", (params, body) -> ServiceResult.ok(metrics()));
+    }
+
+    private Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeConnections", pool.getActiveConnections());
+        metrics.put("idleConnections", pool.getIdleConnections());
+        metrics.put("totalConnections", pool.getTotalConnections());
+        metrics.put("borrowCount", pool.getBorrowCount());
+        metrics.put("averageBorrowWaitMillis", pool.getAverageBorrowWaitMillis());
+        metrics.put("maxBorrowWaitMillis", pool.getMaxBorrowWaitMillis());
+        metrics.put("borrowTimeouts", pool.getBorrowTimeouts());
+        metrics.put("leaksDetected", pool.getLeaksDetected());
+        metrics.put("statementCacheHits", pool.getStatementCacheStats().getHits());
+        metrics.put("statementCacheMisses", pool.getStatementCacheStats().getMisses());
+        metrics.put("statementCacheHitRatio", pool.getStatementCacheStats().getHitRatio());
+        metrics.put("ingest", ingestor.describe());
+        metrics.put("dashboardCache", dashboardCache.describe());
+        metrics.put("seats", seatAllocator.describe());
+        if (searchIndex != null) {
+            metrics.put("searchIndex", searchIndex.describe());
+        }
+        if (scheduleIndex != null) {
+            metrics.put("scheduleIndex", scheduleIndex.describe());
+        }
+        return metrics;
+    }
+
+    private static ServiceResult<Map<String, Object>> idResult(ServiceResult<Integer> result, String field) {
+        if (!result.isOk()) {
+            return result.asError();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put(field, result.getValue());
+        return ServiceResult.ok(body);
+    }
+
+    // ===================== Dispatch =====================
+
+    private interface RouteHandler {
+        ServiceResult<?> handle(RequestParams params, Map<String, Object> body);
+    }
+
+    // Route that takes the request body as text instead of a JSON object
+    private interface RawRouteHandler {
+        ServiceResult<?> handle(RequestParams params, String contentType, String body);
+    }
+
+    private record Route(String method, Pattern pattern, RouteHandler handler, RawRouteHandler rawHandler,
+                         int maxBodyBytes, int successStatus) {
+    }
+
+    // Success is 201 Created for POST and 200 otherwise
+    private void route(String method, String path, RouteHandler handler) {
+        route(method, path, "POST".equals(method) ? 201 : 200, handler);
+    }
+
+    // For a POST that creates nothing, pass 200
+    private void route(String method, String path, int successStatus, RouteHandler handler) {
+        routes.add(new Route(method, Pattern.compile(path), handler, null, MAX_BODY_BYTES, successStatus));
+    }
+
+    private void rawRoute(String method, String path, int maxBodyBytes, RawRouteHandler handler) {
+        routes.add(new Route(method, Pattern.compile(path), null, handler, maxBodyBytes,
+                "POST".equals(method) ? 201 : 200));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            boolean pathMatched = false;
+
+            for (Route route : routes) {
+                Matcher matcher = route.pattern().matcher(path);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                pathMatched = true;
+                if (!route.method().equals(method)) {
+                    continue;
+                }
+
+                RequestParams params = new RequestParams(matcher, exchange.getRequestURI().getRawQuery());
+                ServiceResult<?> result;
+                if (route.rawHandler() != null) {
+                    result = route.rawHandler().handle(params, exchange.getRequestHeaders().getFirst("Content-Type"),
+                            readText(exchange, route.maxBodyBytes()));
+                } else {
+                    String text = "POST".equals(method) || "PUT".equals(method)
+                            ? readText(exchange, route.maxBodyBytes()).trim() : "";
+                    result = route.handler().handle(params, text.isEmpty() ? Map.of() : Json.parseObject(text));
+                }
+                if (result.isOk()) {
+                    send(exchange, route.successStatus(), result.getValue());
+                } else {
+                    if (result.getError() == ErrorCode.OVERLOADED) {
+                        exchange.getResponseHeaders().set("Retry-After", "1");
+                    }
+                    sendError(exchange, statusFor(result.getError()), result.getError().name(),
+                            result.getMessage(), result.getDetails());
+                }
+                return;
+            }
+
+            if (pathMatched) {
+                sendError(exchange, 405, "METHOD_NOT_ALLOWED", "Method " + method + " not allowed", null);
+            } else {
+                sendError(exchange, 404, "NOT_FOUND", "No such endpoint", null);
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, ErrorCode.INVALID_INPUT.name(), e.getMessage(), null);
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "INTERNAL_ERROR", "Unexpected error", e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static int statusFor(ErrorCode error) {
+        switch (error) {
+            case INVALID_INPUT:
+                return 400;
+            case NOT_FOUND:
+            case CLASS_NOT_AVAILABLE:
+                return 404;
+            case DATABASE_ERROR:
+            case OVERLOADED:
+                return 503;
+            default:
+                // Duplicates, full classes and scheduling conflicts
+                return 409;
+        }
+    }
+
+    private static String readText(HttpExchange exchange, int maxBodyBytes) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(maxBodyBytes + 1);
+            if (bytes.length > maxBodyBytes) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] bytes = Json.write(value).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message, String details)
+            throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", code);
+        error.put("message", message);
+        if (details != null) {
+            error.put("details", details);
+        }
+        send(exchange, status, error);
+    }
+
+    // ===================== Request parsing =====================
+
+    // Path groups and query string of a matched request
+    private static final class RequestParams {
+        private final Matcher matcher;
+        private final Map<String, String> query = new LinkedHashMap<>();
+
+        RequestParams(Matcher matcher, String rawQuery) {
+            this.matcher = matcher;
+            if (rawQuery != null) {
+                for (String pair : rawQuery.split("&")) {
+                    int eq = pair.indexOf('=');
+                    String key = eq < 0 ? pair : pair.substring(0, eq);
+                    String value = eq < 0 ? "" : pair.substring(eq + 1);
+                    query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        int intGroup(int group) {
+            try {
+                return Integer.parseInt(matcher.group(group));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid id in path");
+            }
+        }
+
+        String query(String name) {
+            return query.get(name);
+        }
+
+        int intQuery(String name, int defaultValue) {
+            Integer value = optionalIntQuery(name);
+            return value == null ? defaultValue : value;
+        }
+
+        Integer optionalIntQuery(String name) {
+            String value = query.get(name);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid '" + name + "' parameter");
+            }
+        }
+
+        int requireIntQuery(String name) {
+            Integer value = optionalIntQuery(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Parameter '" + name + "' is required");
+            }
+            return value;
+        }
+
+        LocalDate dateQuery(String name) {
+            try {
+                return LocalDate.parse(requireQuery(name));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Parameter '" + name + "' must be a date (YYYY-MM-DD)");
+            }
+        }
+
+        LocalTime timeQuery(String name) {
+            try {
+                return LocalTime.parse(requireQuery(name));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Parameter '" + name + "' must be a time (HH:MM)");
+            }
+        }
+
+        private String requireQuery(String name) {
+            String value = query.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Parameter '" + name + "' is required");
+            }
+            return value;
+        }
+    }
+
+    private static String requireString(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Field '" + field + "' is required and must be a string");
+        }
+        return (String) value;
+    }
+
+    private static int requireInt(Map<String, Object> body, String field) {
+        Integer value = optionalInt(body, field);
+        if (value == null) {
+            throw new IllegalArgumentException("Field '" + field + "' is required");
+        }
+        return value;
+    }
+
+    private static double requireDouble(Map<String, Object> body, String field) {
+        Double value = optionalDouble(body, field);
+        if (value == null) {
+            throw new IllegalArgumentException("Field '" + field + "' is required");
+        }
+        return value;
+    }
+
+    private static Integer optionalInt(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Long && (Long) value == ((Long) value).intValue()) {
+            return ((Long) value).intValue();
+        }
+        throw new IllegalArgumentException("Field '" + field + "' must be an integer");
+    }
+
+    private static Double optionalDouble(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        throw new IllegalArgumentException("Field '" + field + "' must be a number");
+    }
+
+    private static LocalDate requireDate(Map<String, Object> body, String field) {
+        try {
+            return LocalDate.parse(requireString(body, field));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a date (YYYY-MM-DD)");
+        }
+    }
+
+    private static LocalTime requireTime(Map<String, Object> body, String field) {
+        try {
+            return LocalTime.parse(requireString(body, field));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a time (HH:MM)");
+        }
+    }
+
+    private static DayOfWeek requireDay(Map<String, Object> body, String field) {
+        try {
+            return FitClubService.parseDayOfWeek(requireString(body, field));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a day of the week");
+        }
+    }
+
+    private static Set<DayOfWeek> requireDays(Map<String, Object> body, String field) {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (Object day : requireList(body, field)) {
+            try {
+                days.add(FitClubService.parseDayOfWeek(String.valueOf(day)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Field '" + field + "' must list days of the week");
+            }
+        }
+        return days;
+    }
+
+    private static List<LocalDate> optionalDates(Map<String, Object> body, String field) {
+        List<LocalDate> dates = new ArrayList<>();
+        if (body.get(field) != null) {
+            for (Object date : requireList(body, field)) {
+                try {
+                    dates.add(LocalDate.parse(String.valueOf(date)));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Field '" + field + "' must list dates (YYYY-MM-DD)");
+                }
+            }
+        }
+        return dates;
+    }
+
+    // [{"dayOfWeek", "startTime", "endTime"}] for one trainer
+    @SuppressWarnings("unchecked")
+    private static List<FitClubService.AvailabilityRequest> availabilityWindows(Map<String, Object> body, String field,
+                                                                                int trainerId) {
+        List<FitClubService.AvailabilityRequest> windows = new ArrayList<>();
+        for (Object item : requireList(body, field)) {
+            if (!(item instanceof Map<?, ?>)) {
+                throw new IllegalArgumentException("Field '" + field + "' must list {dayOfWeek, startTime, endTime}");
+            }
+            Map<String, Object> window = (Map<String, Object>) item;
+            windows.add(new FitClubService.AvailabilityRequest(trainerId, requireDay(window, "dayOfWeek"),
+                    requireTime(window, "startTime"), requireTime(window, "endTime")));
+        }
+        return windows;
+    }
+
+    // [{"className", "durationMinutes", "expectedDemand", "preferredTimes": [{"dayOfWeek", "startTime"}]}]
+    @SuppressWarnings("unchecked")
+    private static List<FitClubService.RequestedClass> requestedClasses(Map<String, Object> body, String field) {
+        List<FitClubService.RequestedClass> classes = new ArrayList<>();
+        for (Object item : requireList(body, field)) {
+            if (!(item instanceof Map<?, ?>)) {
+                throw new IllegalArgumentException("Field '" + field + "' must list class objects");
+            }
+            Map<String, Object> requested = (Map<String, Object>) item;
+            List<FitClubService.PreferredTime> times = new ArrayList<>();
+            if (requested.get("preferredTimes") != null) {
+                for (Object time : requireList(requested, "preferredTimes")) {
+                    if (!(time instanceof Map<?, ?>)) {
+                        throw new IllegalArgumentException("Field 'preferredTimes' must list {dayOfWeek, startTime}");
+                    }
+                    Map<String, Object> preferred = (Map<String, Object>) time;
+                    times.add(new FitClubService.PreferredTime(requireDay(preferred, "dayOfWeek"),
+                            requireTime(preferred, "startTime")));
+                }
+            }
+            classes.add(new FitClubService.RequestedClass(requireString(requested, "className"),
+                    requireInt(requested, "durationMinutes"), requireInt(requested, "expectedDemand"), times));
+        }
+        return classes;
+    }
+
+    private static List<?> requireList(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (!(value instanceof List<?>)) {
+            throw new IllegalArgumentException("Field '" + field + "' is required and must be an array");
+        }
+        return (List<?>) value;
+    }
+}
@@ -0,0 +1,171 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.AvailabilityRequest;
+import org.fitclub.FitClubService.AvailabilitySlot;
+import org.fitclub.FitClubService.AvailabilityUpdate;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Check for weekly availability templates on the generated trainers:
+// 1. publishes a new term for every trainer with availability as one CSV (windows kept, shortened, moved
+//    later, dropped, and an early window added on some days) and times it; TrainerAvailability must then hold
+//    exactly the file's windows, and the counts must match what was changed
+// 2. publishing the same file again must change nothing
+// 3. a template with two overlapping windows must be rejected with nothing written
+// 4. times a few trainers' weeks rebuilt the old way (one setAvailability() per window), for comparison
+// The original availability is published back afterwards (availability ids of changed windows differ).
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.AvailabilityTemplateCheck
+public final class AvailabilityTemplateCheck {
+
+    private static final int ONE_AT_A_TIME_TRAINERS = 20;
+
+    private static final Comparator<AvailabilityRequest> ORDER = Comparator.comparingInt(AvailabilityRequest::trainerId)
+            .thenComparing(AvailabilityRequest::dayOfWeek).thenComparing(AvailabilityRequest::startTime);
+
+    private AvailabilityTemplateCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService service = new FitClubService(pool);
+        boolean ok = true;
+        List<AvailabilityRequest> original = read(pool);
+        try {
+            if (original.isEmpty()) {
+                throw new IllegalStateException("No availability; run DataGenerator first");
+            }
+            Map<Integer, List<AvailabilityRequest>> byTrainer = new TreeMap<>();
+            original.forEach(w -> byTrainer.computeIfAbsent(w.trainerId(), id -> new ArrayList<>()).add(w));
+
+            Random random = new Random(42);
+            List<AvailabilityRequest> term = new ArrayList<>();
+            int kept = 0;
+            int shortened = 0;
+            int dropped = 0;
+            int moved = 0;
+            int early = 0;
+            for (List<AvailabilityRequest> week : byTrainer.values()) {
+                DayOfWeek lastDay = null;
+                for (AvailabilityRequest w : week) {
+                    boolean longEnough = w.endTime().minusMinutes(30).isAfter(w.startTime());
+                    // Every new window lies inside an old one, so the term has no overlaps either
+                    if (w.dayOfWeek() != lastDay && w.startTime().isAfter(LocalTime.of(6, 30)) && random.nextInt(4) == 0) {
+                        term.add(new AvailabilityRequest(w.trainerId(), w.dayOfWeek(), LocalTime.of(6, 0), LocalTime.of(6, 30)));
+                        early++;
+                    }
+                    lastDay = w.dayOfWeek();
+                    switch (longEnough ? random.nextInt(4) : 0) {
+                        case 0 -> {
+                            term.add(w);
+                            kept++;
+                        }
+                        case 1 -> {
+                            term.add(new AvailabilityRequest(w.trainerId(), w.dayOfWeek(), w.startTime(),
+                                    w.endTime().minusMinutes(15)));
+                            shortened++;
+                        }
+                        case 2 -> {
+                            term.add(new AvailabilityRequest(w.trainerId(), w.dayOfWeek(), w.startTime().plusMinutes(15),
+                                    w.endTime()));
+                            moved++;
+                        }
+                        default -> dropped++;
+                    }
+                }
+            }
+
+            long start = System.nanoTime();
+            AvailabilityUpdate update = publish(service, term);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("Term for %,d trainers (%,d windows) published in %,d ms: %s%n",
+                    update.trainers(), update.windows(), millis, update);
+            ok &= update.unchanged() == kept && update.changed() == shortened && update.added() == moved + early &&
+                    update.removed() == moved + dropped;
+            boolean stored = sorted(read(pool)).equals(sorted(term));
+            System.out.println("TrainerAvailability holds exactly the file: " + stored);
+            ok &= stored;
+
+            start = System.nanoTime();
+            AvailabilityUpdate again = publish(service, term);
+            System.out.printf("Published again in %,d ms: %s%n", (System.nanoTime() - start) / 1_000_000, again);
+            ok &= again.unchanged() == term.size() && again.added() + again.changed() + again.removed() == 0;
+
+            AvailabilityRequest first = term.get(0);
+            ServiceResult<AvailabilityUpdate> overlapping = service.replaceAvailability(first.trainerId(), List.of(
+                    new AvailabilityRequest(first.trainerId(), DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(12, 0)),
+                    new AvailabilityRequest(first.trainerId(), DayOfWeek.MONDAY, LocalTime.of(11, 0), LocalTime.of(13, 0))));
+            System.out.println("Overlapping template: " + overlapping);
+            ok &= overlapping.getError() == ErrorCode.AVAILABILITY_OVERLAP && sorted(read(pool)).equals(sorted(term));
+
+            // The old way: clear the trainer's week, then one insert per window
+            int windows = 0;
+            start = System.nanoTime();
+            for (List<AvailabilityRequest> week : byTrainer.values().stream().limit(ONE_AT_A_TIME_TRAINERS).toList()) {
+                service.replaceAvailability(week.get(0).trainerId(), List.of());
+                for (AvailabilityRequest w : week) {
+                    ServiceResult<AvailabilitySlot> result = service.setAvailability(w);
+                    ok &= result.isOk();
+                    windows++;
+                }
+            }
+            double perWindow = (System.nanoTime() - start) / 1_000_000.0 / Math.max(1, windows);
+            System.out.printf("One at a time: %.2f ms per window (%,d windows), against %.3f ms in a template%n",
+                    perWindow, windows, (double) millis / Math.max(1, term.size()));
+        } finally {
+            if (!original.isEmpty()) {
+                publish(service, original);
+            }
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: the published availability is exactly the template." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static AvailabilityUpdate publish(FitClubService service, List<AvailabilityRequest> windows) {
+        StringBuilder csv = new StringBuilder("trainer_id,day_of_week,start_time,end_time\n");
+        for (AvailabilityRequest w : windows) {
+            csv.append(w.trainerId()).append(',').append(FitClubService.dayName(w.dayOfWeek())).append(',')
+                    .append(w.startTime()).append(',').append(w.endTime()).append('\n');
+        }
+        ServiceResult<AvailabilityUpdate> result = service.publishAvailability(new StringReader(csv.toString()));
+        if (!result.isOk()) {
+            throw new IllegalStateException("Publish failed: " + result);
+        }
+        return result.getValue();
+    }
+
+    private static List<AvailabilityRequest> read(ConnectionPool pool) throws SQLException {
+        List<AvailabilityRequest> windows = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT trainer_id, day_of_week, start_time, end_time " +
+                     "FROM TrainerAvailability")) {
+            while (rs.next()) {
+                windows.add(new AvailabilityRequest(rs.getInt("trainer_id"),
+                        FitClubService.parseDayOfWeek(rs.getString("day_of_week")),
+                        rs.getTime("start_time").toLocalTime(), rs.getTime("end_time").toLocalTime()));
+            }
+        }
+        return sorted(windows);
+    }
+
+    private static List<AvailabilityRequest> sorted(List<AvailabilityRequest> windows) {
+        List<AvailabilityRequest> copy = new ArrayList<>(windows);
+        copy.sort(ORDER);
+        return copy;
+    }
+}
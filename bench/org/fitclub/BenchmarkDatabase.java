@@ -0,0 +1,38 @@
+package org.fitclub;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Recreates the schema from sql/ddl.sql and seeds it at a given scale for the benchmarks
+// Seeding goes through DataGenerator (one scale unit = 10,000 members, 5 trainers, 2 rooms)
+public final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    public static void recreateSchema(Connection conn) throws SQLException, IOException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(Files.readString(Path.of("sql", "ddl.sql")));
+        }
+    }
+
+    // Benchmarks use two months of schedule either side of today and fewer metrics per member
+    public static void seed(Connection conn, int scale) throws SQLException, IOException {
+        recreateSchema(conn);
+        new DataGenerator().scale(scale).seed(42L).days(60, 60).metricsPerMember(10).generate(conn);
+    }
+
+    // Largest id in a table (ids are dense after seeding)
+    public static int maxId(Connection conn, String table, String column) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.ClassSeriesReport;
+import org.fitclub.FitClubService.ClassSeriesRequest;
+import org.fitclub.FitClubService.SeriesOccurrence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Check for createClassSeries on a term well past the existing schedule:
+// 1. builds a term of weekly series (one per random trainer availability window, in a random room), so some
+//    series run into each other and must report it, and times it
+// 2. every created class must be in GroupClass, and every reported date must really be in the way of an
+//    earlier class (checked again through checkClassSlot on the database)
+// 3. times the first few series again a year later one createGroupClass() at a time, for comparison
+// The classes it creates are deleted afterwards. Arguments: [series] [weeks] (default 300 15, about 4,500 dates)
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.ClassSeriesCheck
+public final class ClassSeriesCheck {
+
+    private static final String CLASS_NAME = "Series Check";
+    private static final int START_DAYS_AHEAD = 3 * 365;
+    private static final int SINGLE_SERIES = 10;
+
+    private ClassSeriesCheck() {
+    }
+
+    private record Window(int trainerId, DayOfWeek day, LocalTime start, LocalTime end) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seriesCount = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int weeks = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService service = new FitClubService(pool);
+        boolean ok = true;
+        try {
+            List<ClassSeriesRequest> term = term(pool, seriesCount, weeks, LocalDate.now().plusDays(START_DAYS_AHEAD));
+
+            long start = System.nanoTime();
+            List<ClassSeriesReport> reports = new ArrayList<>();
+            for (ClassSeriesRequest series : term) {
+                ServiceResult<ClassSeriesReport> result = service.createClassSeries(series);
+                if (!result.isOk()) {
+                    throw new IllegalStateException("Series failed: " + result);
+                }
+                reports.add(result.getValue());
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            int created = reports.stream().mapToInt(ClassSeriesReport::created).sum();
+            int rejected = reports.stream().mapToInt(ClassSeriesReport::rejected).sum();
+            System.out.printf("Term of %d series: %,d classes created, %,d dates in conflict, in %,d ms%n",
+                    term.size(), created, rejected, millis);
+
+            long stored = count(pool, "SELECT count(*) FROM GroupClass WHERE class_name = '" + CLASS_NAME + "'");
+            System.out.printf("Classes stored: %,d%n", stored);
+            ok &= stored == created;
+
+            int wrong = 0;
+            for (int i = 0; i < term.size(); i++) {
+                ClassSeriesRequest series = term.get(i);
+                for (SeriesOccurrence occurrence : reports.get(i).occurrences()) {
+                    if (occurrence.isCreated()) {
+                        continue;
+                    }
+                    FitClubService.SlotCheck check = service.checkClassSlot(series.roomId(), series.trainerId(),
+                            occurrence.classDate(), series.startTime(), series.endTime()).getValue();
+                    if (check.free() || !check.roomConflicts().isEmpty() != !occurrence.roomConflicts().isEmpty() ||
+                            !check.trainerConflicts().isEmpty() != !occurrence.trainerConflicts().isEmpty()) {
+                        if (wrong++ < 3) {
+                            System.out.println("   DIFFERENT: " + occurrence + " database: " + check);
+                        }
+                    }
+                }
+            }
+            System.out.println("Conflicts not confirmed by the database: " + wrong);
+            ok &= wrong == 0;
+
+            int singles = 0;
+            start = System.nanoTime();
+            for (ClassSeriesRequest series : term.subList(0, Math.min(SINGLE_SERIES, term.size()))) {
+                for (LocalDate date : ClassSeries.expand(series)) {
+                    service.createGroupClass(new FitClubService.GroupClassRequest(CLASS_NAME, date.plusYears(1),
+                            series.startTime(), series.endTime(), series.roomId(), series.trainerId(), series.capacity()));
+                    singles++;
+                }
+            }
+            double perClass = (System.nanoTime() - start) / 1_000_000.0 / Math.max(1, singles);
+            System.out.printf("One at a time: %.2f ms per class (%,d classes), against %.2f ms in a series%n",
+                    perClass, singles, (double) millis / Math.max(1, created + rejected));
+        } finally {
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement statement = conn.prepareStatement("DELETE FROM GroupClass WHERE class_name = ?")) {
+                statement.setString(1, CLASS_NAME);
+                statement.executeUpdate();
+            }
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: every date was created or reported with a real conflict." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    // Weekly series on random availability windows (the first hour of each), in random rooms
+    private static List<ClassSeriesRequest> term(ConnectionPool pool, int seriesCount, int weeks, LocalDate first)
+            throws SQLException {
+        List<Window> windows = new ArrayList<>();
+        List<int[]> rooms = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT trainer_id, day_of_week, start_time, end_time " +
+                    "FROM TrainerAvailability WHERE end_time - start_time >= interval '1 hour'")) {
+                while (rs.next()) {
+                    windows.add(new Window(rs.getInt("trainer_id"), FitClubService.parseDayOfWeek(rs.getString("day_of_week")),
+                            rs.getTime("start_time").toLocalTime(), rs.getTime("end_time").toLocalTime()));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT room_id, capacity FROM Room")) {
+                while (rs.next()) {
+                    rooms.add(new int[]{rs.getInt("room_id"), rs.getInt("capacity")});
+                }
+            }
+        }
+        if (windows.isEmpty() || rooms.isEmpty()) {
+            throw new IllegalStateException("No availability or rooms; run DataGenerator first");
+        }
+
+        Random random = new Random(42);
+        List<ClassSeriesRequest> term = new ArrayList<>();
+        for (int i = 0; i < seriesCount; i++) {
+            Window window = windows.get(random.nextInt(windows.size()));
+            int[] room = rooms.get(random.nextInt(rooms.size()));
+            term.add(new ClassSeriesRequest(CLASS_NAME, Set.of(window.day()), window.start(),
+                    window.start().plusHours(1), first, first.plusWeeks(weeks).minusDays(1),
+                    List.of(first.plusWeeks(weeks / 2)), room[0], window.trainerId(), Math.min(room[1], 20)));
+        }
+        return term;
+    }
+
+    private static long count(ConnectionPool pool, String query) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
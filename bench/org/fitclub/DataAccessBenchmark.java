@@ -0,0 +1,258 @@
+package org.fitclub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput and latency percentiles (SampleTime mode) for the data-access hot paths:
+// the MemberDashboard view, viewDashboard, the class catalogue, member search and
+// the createGroupClass validation chain
+//
+// mvn -Pbenchmark compile exec:exec -Djmh.args="-p scale=10 -p seed=true"
+// Point at another database with -Djmh.args="-jvmArgsAppend -Dfitclub.db.url=..."
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DataAccessBenchmark {
+
+    private static final String[] SEARCH_TERMS = {"smi", "john", "chen", "wil", "mar", "pat", "an", "son",
+            "jo smi", "wilsno"};
+
+    // Seed scale (see DataGenerator) and whether to rebuild the schema before measuring
+    @Param("1")
+    public int scale;
+
+    @Param("false")
+    public boolean seed;
+
+    private ConnectionPool pool;
+    private FitClubService service;
+    private int maxMemberId;
+    private int maxRoomId;
+    private int maxTrainerId;
+    private List<TakenSlot> takenSlots;
+
+    // Room, trainer and time of an upcoming class
+    private record TakenSlot(LocalDate classDate, LocalTime startTime, LocalTime endTime, int roomId, int trainerId) {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pool = DatabaseConnection.getDataSource();
+        service = new FitClubService(pool);
+
+        try (Connection conn = pool.getConnection()) {
+            if (seed) {
+                BenchmarkDatabase.seed(conn, scale);
+            }
+            maxMemberId = BenchmarkDatabase.maxId(conn, "Member", "member_id");
+            maxRoomId = BenchmarkDatabase.maxId(conn, "Room", "room_id");
+            maxTrainerId = BenchmarkDatabase.maxId(conn, "Trainer", "trainer_id");
+            takenSlots = new ArrayList<>();
+            try (Statement statement = conn.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT class_date, start_time, end_time, room_id, trainer_id " +
+                         "FROM GroupClass WHERE class_date > CURRENT_DATE ORDER BY random() LIMIT 10000")) {
+                while (rs.next()) {
+                    takenSlots.add(new TakenSlot(rs.getDate(1).toLocalDate(), rs.getTime(2).toLocalTime(),
+                            rs.getTime(3).toLocalTime(), rs.getInt(4), rs.getInt(5)));
+                }
+            }
+        }
+        if (maxMemberId == 0) {
+            throw new IllegalStateException("Database is empty; run with -p seed=true");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println("\n" + pool.describe());
+        DatabaseConnection.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    // The MemberDashboard view on its own (one row: Member joined to MemberDashboardSummary by primary key)
+    @Benchmark
+    public void dashboardView(ThreadState state, Blackhole blackhole) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT * FROM MemberDashboard WHERE member_id = ?")) {
+            statement.setInt(1, 1 + state.random.nextInt(maxMemberId));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    blackhole.consume(rs.getInt("upcoming_classes_count"));
+                }
+            }
+        }
+    }
+
+    // Full viewDashboard path: summary and upcoming schedule in one statement (one round trip)
+    @Benchmark
+    public Object viewDashboard(ThreadState state) {
+        return service.getDashboard(1 + state.random.nextInt(maxMemberId));
+    }
+
+    // Baseline for viewDashboard: the previous two-statement path (view, then the upcoming-class join)
+    @Benchmark
+    public void viewDashboardTwoRoundTrips(ThreadState state, Blackhole blackhole) throws SQLException {
+        int memberId = 1 + state.random.nextInt(maxMemberId);
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement statement = conn.prepareStatement("SELECT * FROM MemberDashboard WHERE member_id = ?")) {
+                statement.setInt(1, memberId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next() || rs.getInt("upcoming_classes_count") == 0) {
+                        return;
+                    }
+                    blackhole.consume(rs.getString("email"));
+                }
+            }
+            try (PreparedStatement statement = conn.prepareStatement("SELECT gc.class_id, gc.class_name, gc.class_date, " +
+                    "gc.start_time, gc.end_time, r.room_name, t.first_name || ' ' || t.last_name as trainer_name " +
+                    "FROM ClassRegistration cr " +
+                    "JOIN GroupClass gc ON cr.class_id = gc.class_id " +
+                    "JOIN Room r ON gc.room_id = r.room_id " +
+                    "JOIN Trainer t ON gc.trainer_id = t.trainer_id " +
+                    "WHERE cr.member_id = ? AND gc.class_date >= CURRENT_DATE " +
+                    "ORDER BY gc.class_date, gc.start_time")) {
+                statement.setInt(1, memberId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        blackhole.consume(rs.getString("trainer_name"));
+                    }
+                }
+            }
+        }
+    }
+
+    // Trainer's member profile: member, latest metric, active goals and past class count in one statement
+    @Benchmark
+    public Object viewMemberProfile(ThreadState state) {
+        return service.getMemberProfile(1 + state.random.nextInt(maxMemberId));
+    }
+
+    // Baseline for viewMemberProfile: the previous path of four statements, one round trip each
+    @Benchmark
+    public void viewMemberProfileFourRoundTrips(ThreadState state, Blackhole blackhole) throws SQLException {
+        int memberId = 1 + state.random.nextInt(maxMemberId);
+        try (Connection conn = pool.getConnection()) {
+            for (String query : new String[]{
+                    "SELECT member_id, first_name, last_name, email, registration_date FROM Member WHERE member_id = ?",
+                    "SELECT metric_id, date_recorded, weight, resting_heart_rate, body_fat_percentage, vo2_max " +
+                            "FROM HealthMetric WHERE member_id = ? ORDER BY date_recorded DESC LIMIT 1",
+                    "SELECT goal_id, goal_type, target_value, target_date, status FROM FitnessGoal " +
+                            "WHERE member_id = ? AND status = 'Active' ORDER BY target_date",
+                    "SELECT COUNT(*) FROM ClassRegistration cr JOIN GroupClass gc ON cr.class_id = gc.class_id " +
+                            "WHERE cr.member_id = ? AND gc.class_date < CURRENT_DATE"}) {
+                try (PreparedStatement statement = conn.prepareStatement(query)) {
+                    statement.setInt(1, memberId);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            blackhole.consume(rs.getObject(1));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // registerForGroupClass's catalogue query
+    @Benchmark
+    public Object classCatalogue() {
+        return service.listUpcomingClasses(null, FitClubService.DEFAULT_PAGE_LIMIT);
+    }
+
+    // searchMemberByName's browse by last name: the first page and the two after it, following the cursors
+    @Benchmark
+    public Object memberBrowse(ThreadState state) {
+        String prefix = SEARCH_TERMS[state.random.nextInt(SEARCH_TERMS.length)].split(" ")[0];
+        FitClubService.Page<FitClubService.MemberInfo> page = null;
+        String after = null;
+        for (int i = 0; i < 3 && (i == 0 || after != null); i++) {
+            page = service.listMembers(prefix, after, MemberOperations.CONSOLE_PAGE_SIZE).getValue();
+            after = page.nextCursor();
+        }
+        return page;
+    }
+
+    // searchMemberByName
+    @Benchmark
+    public Object searchMemberByName(ThreadState state) {
+        return service.searchMembers(SEARCH_TERMS[state.random.nextInt(SEARCH_TERMS.length)]);
+    }
+
+    // createGroupClass for a slot that is already taken (an upcoming class's own room, trainer and time): the
+    // single insert, rejected by the exclusion constraints through their GiST indexes
+    @Benchmark
+    public ServiceResult<FitClubService.GroupClass> createGroupClassConflict(ThreadState state) {
+        TakenSlot taken = takenSlots.get(state.random.nextInt(takenSlots.size()));
+        return service.createGroupClass(new FitClubService.GroupClassRequest("Benchmark", taken.classDate(),
+                taken.startTime(), taken.endTime(), taken.roomId(), taken.trainerId(), 1));
+    }
+
+    // Baseline for createGroupClassConflict: the previous validation chain (room, room booking, trainer,
+    // availability, teaching) of five statements with three-way OR overlap predicates, without the insert
+    @Benchmark
+    public void createGroupClassValidationFiveRoundTrips(ThreadState state, Blackhole blackhole) throws SQLException {
+        TakenSlot taken = takenSlots.get(state.random.nextInt(takenSlots.size()));
+        Date classDate = Date.valueOf(taken.classDate());
+        Time startTime = Time.valueOf(taken.startTime());
+        Time endTime = Time.valueOf(taken.endTime());
+        String overlap = "AND ((? >= start_time AND ? < end_time) OR (? > start_time AND ? <= end_time) OR " +
+                "(? <= start_time AND ? >= end_time))";
+        Object[][] statements = {
+                {"SELECT room_id, room_name, capacity FROM Room WHERE room_id = ?", taken.roomId()},
+                {"SELECT 1 FROM GroupClass WHERE room_id = ? AND class_date = ? " + overlap, taken.roomId(),
+                        classDate, startTime, startTime, endTime, endTime, startTime, endTime},
+                {"SELECT trainer_id, first_name, last_name, email FROM Trainer WHERE trainer_id = ?",
+                        taken.trainerId()},
+                {"SELECT 1 FROM TrainerAvailability WHERE trainer_id = ? AND day_of_week = ? " +
+                        "AND start_time <= ? AND end_time >= ?", taken.trainerId(),
+                        FitClubService.dayName(taken.classDate().getDayOfWeek()), startTime, endTime},
+                {"SELECT 1 FROM GroupClass WHERE trainer_id = ? AND class_date = ? " + overlap, taken.trainerId(),
+                        classDate, startTime, startTime, endTime, endTime, startTime, endTime}};
+        try (Connection conn = pool.getConnection()) {
+            for (Object[] statement : statements) {
+                try (PreparedStatement pstmt = conn.prepareStatement((String) statement[0])) {
+                    for (int i = 1; i < statement.length; i++) {
+                        pstmt.setObject(i, statement[i]);
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        blackhole.consume(rs.next());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.HealthMetric;
+import org.fitclub.FitClubService.HealthMetricRequest;
+import org.fitclub.FitClubService.MemberDashboard;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Check for the monthly HealthMetric partitions on a generated database (DataGenerator):
+// 1. maintenance is idempotent: a second run right after the first changes nothing; reports the hot and cold
+//    months and what the cold months' BRIN indexes take against the primary keys they replaced
+// 2. EXPLAIN: a one-month date range reads only that month's partition, planned with the dates as literals
+//    and as a generic prepared plan (pruned at executor start); a member's readings in a date range likewise
+// 3. EXPLAIN: the profile's latest-metric lookup (no date range, so every month) probes each month's member
+//    index rather than scanning any month
+// 4. logHealthMetric() lands in the current month; the dashboard and the profile show it, and deleting it
+//    gives the previous latest metric back
+// 5. retention detaches the oldest month (and only that one); it is attached back afterwards
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.HealthMetricPartitionCheck
+public final class HealthMetricPartitionCheck {
+
+    private static final int MONTHS_AHEAD = 3;
+    private static final int HOT_MONTHS = 3;
+    private static final Pattern RELATION = Pattern.compile("\"Relation Name\": \"(healthmetric[a-z0-9_]*)\"");
+    private static final Pattern SUBPLANS_REMOVED = Pattern.compile("\"Subplans Removed\": (\\d+)");
+    private static final Pattern NODE_ON_METRICS = Pattern.compile(
+            "\"Node Type\": \"([A-Za-z ]+)\",[^{}]*?\"Relation Name\": \"healthmetric");
+
+    private HealthMetricPartitionCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService service = new FitClubService(pool);
+        boolean ok = true;
+        try {
+            List<String> first = maintain(service, 0);
+            List<String> second = maintain(service, 0);
+            System.out.println("Maintenance: " + (first.isEmpty() ? "nothing to do" : first) +
+                    "; run again: " + (second.isEmpty() ? "nothing to do" : second));
+            ok &= second.isEmpty();
+
+            LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+            LocalDate lastMonth = thisMonth.minusMonths(1);
+            int memberId;
+            try (Connection conn = pool.getConnection()) {
+                int partitions = reportPartitions(conn);
+
+                // 2. Pruning on a month's date range
+                String monthRange = "SELECT count(*), avg(weight) FROM HealthMetric " +
+                        "WHERE date_recorded >= '" + lastMonth + "' AND date_recorded < '" + thisMonth + "'";
+                Set<String> scanned = relations(explain(conn, monthRange));
+                System.out.println("Last month, literal dates, partitions read: " + scanned);
+                ok &= scanned.equals(Set.of(partition(lastMonth)));
+
+                try (Statement statement = conn.createStatement()) {
+                    statement.execute("SET plan_cache_mode = force_generic_plan");
+                    statement.execute("PREPARE month_range(date, date) AS SELECT count(*) FROM HealthMetric " +
+                            "WHERE date_recorded >= $1 AND date_recorded < $2");
+                    String plan = explain(conn, "EXECUTE month_range('" + lastMonth + "', '" + thisMonth + "')");
+                    Matcher removed = SUBPLANS_REMOVED.matcher(plan);
+                    int removedCount = removed.find() ? Integer.parseInt(removed.group(1)) : 0;
+                    System.out.printf("Last month, generic plan: %d of %d partitions removed at executor start, " +
+                            "read: %s%n", removedCount, partitions, relations(plan));
+                    ok &= removedCount == partitions - 1 && relations(plan).equals(Set.of(partition(lastMonth)));
+                    statement.execute("DEALLOCATE month_range");
+                    statement.execute("RESET plan_cache_mode");
+                }
+
+                memberId = busiestMember(conn, lastMonth, thisMonth);
+                String memberRange = "SELECT * FROM HealthMetric WHERE member_id = " + memberId +
+                        " AND date_recorded >= '" + lastMonth + "' AND date_recorded < '" + thisMonth + "'";
+                scanned = relations(explain(conn, memberRange));
+                System.out.println("Member " + memberId + " last month, partitions read: " + scanned);
+                ok &= scanned.equals(Set.of(partition(lastMonth)));
+
+                // 3. The profile's lookup probes every month's index
+                String latest = "SELECT hm.metric_id FROM HealthMetric hm WHERE hm.member_id = " + memberId +
+                        " ORDER BY hm.date_recorded DESC, hm.metric_id DESC LIMIT 1";
+                Set<String> nodes = new TreeSet<>();
+                Matcher node = NODE_ON_METRICS.matcher(explain(conn, latest));
+                while (node.find()) {
+                    nodes.add(node.group(1));
+                }
+                System.out.println("Latest metric of member " + memberId + ", scans: " + nodes);
+                ok &= !nodes.isEmpty() && !nodes.contains("Seq Scan");
+            }
+
+            // 4. A reading logged today, through the service
+            HealthMetric before = service.getMemberProfile(memberId).getValue().latestMetric();
+            HealthMetric logged = service.logHealthMetric(new HealthMetricRequest(memberId, 77.7, 61, null, null))
+                    .getValue();
+            try (Connection conn = pool.getConnection()) {
+                String stored = storedIn(conn, logged.metricId());
+                MemberDashboard dashboard = service.getDashboard(memberId).getValue();
+                HealthMetric profile = service.getMemberProfile(memberId).getValue().latestMetric();
+                System.out.println("Logged metric " + logged.metricId() + " stored in " + stored +
+                        "; dashboard " + dashboard.latestMetricDate() + " " + dashboard.latestWeight() +
+                        " kg; profile latest " + profile.metricId());
+                ok &= partition(thisMonth).equals(stored) && LocalDate.now().equals(dashboard.latestMetricDate()) &&
+                        Double.valueOf(77.7).equals(dashboard.latestWeight()) && profile.metricId() == logged.metricId();
+
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "DELETE FROM HealthMetric WHERE metric_id = ? AND date_recorded = ?")) {
+                    pstmt.setInt(1, logged.metricId());
+                    pstmt.setObject(2, logged.dateRecorded());
+                    pstmt.executeUpdate();
+                }
+                HealthMetric after = service.getMemberProfile(memberId).getValue().latestMetric();
+                MemberDashboard restored = service.getDashboard(memberId).getValue();
+                System.out.println("Deleted again; profile latest " + (after == null ? null : after.metricId()) +
+                        ", dashboard " + restored.latestMetricDate());
+                ok &= (before == null ? after == null : after != null && after.metricId() == before.metricId()) &&
+                        (before == null ? restored.latestMetricDate() == null
+                                : before.dateRecorded().equals(restored.latestMetricDate()));
+            }
+
+            // 5. Retention of all but the oldest month
+            ok &= checkRetention(pool, service, thisMonth);
+        } finally {
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: readings are pruned to their months and every read works unchanged." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static boolean checkRetention(ConnectionPool pool, FitClubService service, LocalDate thisMonth)
+            throws SQLException {
+        LocalDate oldest;
+        long oldestRows;
+        long totalRows;
+        // The oldest month created, whether or not it has readings
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT min(c.relname) FROM pg_inherits inh " +
+                     "JOIN pg_class c ON c.oid = inh.inhrelid " +
+                     "WHERE inh.inhparent = 'healthmetric'::regclass AND c.relname ~ '^healthmetric_[0-9]{4}_[0-9]{2}$'")) {
+            rs.next();
+            if (rs.getString(1) == null) {
+                System.out.println("Retention: no months, skipped");
+                return true;
+            }
+            oldest = LocalDate.parse(rs.getString(1).substring("healthmetric_".length()) + "_01",
+                    DateTimeFormatter.ofPattern("yyyy_MM_dd"));
+            totalRows = count(conn, "SELECT count(*) FROM HealthMetric WHERE tableoid <> 'healthmetric_default'::regclass");
+            oldestRows = count(conn, "SELECT count(*) FROM " + partition(oldest));
+        }
+        int retention = (int) ChronoUnit.MONTHS.between(oldest, thisMonth) - 1;
+        if (retention <= HOT_MONTHS) {
+            System.out.println("Retention: fewer than " + (HOT_MONTHS + 2) + " months, skipped");
+            return true;
+        }
+
+        List<String> detached = maintain(service, retention);
+        String archive = "healthmetric_archive_" + oldest.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement()) {
+            long remaining = count(conn, "SELECT count(*) FROM HealthMetric WHERE tableoid <> 'healthmetric_default'::regclass");
+            long archived = count(conn, "SELECT count(*) FROM " + archive);
+            System.out.printf("Retention of %d months: %s; %,d readings left of %,d, %,d in %s%n",
+                    retention, detached, remaining, totalRows, archived, archive);
+
+            statement.execute("ALTER TABLE " + archive + " RENAME TO " + partition(oldest));
+            statement.execute("ALTER TABLE HealthMetric ATTACH PARTITION " + partition(oldest) +
+                    " FOR VALUES FROM ('" + oldest + "') TO ('" + oldest.plusMonths(1) + "')");
+            System.out.println("Attached " + partition(oldest) + " back");
+            return detached.equals(List.of("detached " + partition(oldest))) &&
+                    remaining == totalRows - oldestRows && archived == oldestRows;
+        }
+    }
+
+    private static List<String> maintain(FitClubService service, int retentionMonths) {
+        ServiceResult<List<String>> result = service.maintainHealthMetricPartitions(MONTHS_AHEAD, HOT_MONTHS,
+                retentionMonths);
+        if (!result.isOk()) {
+            throw new IllegalStateException("Maintenance failed: " + result);
+        }
+        return result.getValue();
+    }
+
+    // Months hot and cold with their sizes; returns the number of partitions
+    private static int reportPartitions(Connection conn) throws SQLException {
+        String query = "SELECT count(*) AS partitions, " +
+                "       count(*) FILTER (WHERE pk IS NOT NULL) AS hot, " +
+                "       count(*) FILTER (WHERE brin IS NOT NULL) AS cold, " +
+                "       sum(rows) FILTER (WHERE pk IS NOT NULL) AS hot_rows, " +
+                "       sum(rows) FILTER (WHERE brin IS NOT NULL) AS cold_rows, " +
+                "       sum(pg_relation_size(pk)) AS pk_bytes, " +
+                "       sum(pg_relation_size(brin)) AS brin_bytes " +
+                "FROM (SELECT greatest(c.reltuples, 0) AS rows, " +
+                "             (SELECT i.indexrelid FROM pg_index i WHERE i.indrelid = c.oid AND i.indisprimary) AS pk, " +
+                "             (SELECT i.indexrelid FROM pg_index i JOIN pg_class ic ON ic.oid = i.indexrelid " +
+                "              JOIN pg_am am ON am.oid = ic.relam " +
+                "              WHERE i.indrelid = c.oid AND am.amname = 'brin') AS brin " +
+                "      FROM pg_inherits inh JOIN pg_class c ON c.oid = inh.inhrelid " +
+                "      WHERE inh.inhparent = 'healthmetric'::regclass) p";
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("ANALYZE HealthMetric");
+            try (ResultSet rs = statement.executeQuery(query)) {
+                rs.next();
+                double hotRows = Math.max(1, rs.getDouble("hot_rows"));
+                double coldRows = rs.getDouble("cold_rows");
+                System.out.printf("Partitions: %d, the default included (%d with a primary key, %d cold)%n", rs.getInt("partitions"),
+                        rs.getInt("hot"), rs.getInt("cold"));
+                System.out.printf("Cold months: %,.0f readings, BRIN %,d kB where primary keys would take about %,.0f kB%n",
+                        coldRows, rs.getLong("brin_bytes") / 1024, rs.getLong("pk_bytes") / hotRows * coldRows / 1024);
+                return rs.getInt("partitions");
+            }
+        }
+    }
+
+    private static int busiestMember(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT member_id FROM HealthMetric " +
+                     "WHERE date_recorded >= '" + from + "' AND date_recorded < '" + to + "' " +
+                     "GROUP BY member_id ORDER BY count(*) DESC, member_id LIMIT 1")) {
+            if (!rs.next()) {
+                throw new IllegalStateException("No readings last month; run DataGenerator first");
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    private static String storedIn(Connection conn, int metricId) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT tableoid::regclass FROM HealthMetric WHERE metric_id = " +
+                     metricId)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static String explain(Connection conn, String query) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN (ANALYZE, FORMAT JSON) " + query)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static Set<String> relations(String plan) {
+        Set<String> names = new TreeSet<>();
+        Matcher matcher = RELATION.matcher(plan);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+
+    private static String partition(LocalDate month) {
+        return "healthmetric_" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+    }
+
+    private static long count(Connection conn, String query) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.MemberInfo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+// Check for MemberSearchIndex against the database it indexes:
+// 1. loads the index (through its listener) and reports the load time and heap taken per million members
+// 2. searches each term through the index and through SQL; prefix terms must return the same page
+// 3. times index lookups (p50/p99 in microseconds)
+// 4. a member registered through this service is found at once; renamed and then deleted through a
+//    service without the index (as another app instance would), the change must arrive by notification
+// Run against a large Member table (e.g. DataGenerator --scale 50) to see the memory per member:
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.MemberSearchIndexCheck -Djmh.args="j smi jo smi"
+public final class MemberSearchIndexCheck {
+
+    private static final List<String> PREFIX_TERMS = List.of("j", "jo", "smi", "smith", "an", "wil", "jo smi");
+    private static final List<String> OTHER_TERMS = List.of("mit", "son", "ara", "wilsno", "brwon");
+    private static final int WARMUP_LOOKUPS = 10_000;
+    private static final int LOOKUPS = 2_000;
+    private static final long LOAD_TIMEOUT_MILLIS = 600_000L;
+    private static final long NOTIFY_TIMEOUT_MILLIS = 10_000L;
+
+    private MemberSearchIndexCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService database = new FitClubService(pool);
+        MemberSearchIndex index = new MemberSearchIndex(pool);
+        FitClubService indexed = new FitClubService(pool, index);
+        boolean ok = true;
+        Integer memberId = null;
+        try {
+            long heapBefore = usedHeap();
+            index.start();
+            if (!await(index::isReady, LOAD_TIMEOUT_MILLIS)) {
+                throw new IllegalStateException("Index did not load within " + LOAD_TIMEOUT_MILLIS + " ms");
+            }
+            long heapBytes = usedHeap() - heapBefore;
+            Map<String, Object> stats = index.describe();
+            long members = ((Number) stats.get("members")).longValue();
+            System.out.printf("Loaded %,d members in %d ms; heap %,d MB (%,d bytes per member, estimated %,d)%n",
+                    members, stats.get("lastLoadMillis"), heapBytes >> 20, members == 0 ? 0 : heapBytes / members,
+                    members == 0 ? 0 : ((Number) stats.get("estimatedBytes")).longValue() / members);
+
+            System.out.println("Index vs database (first 3 of each page):");
+            for (String term : PREFIX_TERMS) {
+                ok &= compare(term, indexed, database, true);
+            }
+            for (String term : OTHER_TERMS) {
+                compare(term, indexed, database, false);
+            }
+            for (String term : args) {
+                compare(term, indexed, database, false);
+            }
+
+            System.out.println("Index lookups:");
+            for (String term : PREFIX_TERMS.subList(0, 3)) {
+                time(index, term);
+            }
+            for (String term : OTHER_TERMS.subList(0, 3)) {
+                time(index, term);
+            }
+
+            String tag = "Zq" + Long.toString(System.currentTimeMillis(), 36);
+            MemberInfo member = indexed.registerMember(new FitClubService.RegisterMemberRequest(tag, "Quixote",
+                    tag.toLowerCase() + "@indexcheck.example")).getValue();
+            memberId = member.memberId();
+            boolean registered = found(indexed, tag.toLowerCase() + " quix", memberId);
+            System.out.println("Registered here, found at once:        " + registered);
+            ok &= registered;
+
+            database.updatePersonalInfo(new FitClubService.UpdatePersonalInfoRequest(memberId,
+                    FitClubService.MemberField.LAST_NAME, "Quimby"));
+            long start = System.currentTimeMillis();
+            int id = memberId;
+            boolean renamed = await(() -> found(indexed, tag.toLowerCase() + " quim", id), NOTIFY_TIMEOUT_MILLIS);
+            System.out.println("Renamed elsewhere, found after:        " + (System.currentTimeMillis() - start) +
+                    " ms" + (renamed ? "" : " (timed out)"));
+            ok &= renamed && !found(indexed, tag.toLowerCase() + " quix", memberId);
+
+            delete(pool, memberId);
+            memberId = null;
+            start = System.currentTimeMillis();
+            boolean deleted = await(() -> !found(indexed, tag.toLowerCase(), id), NOTIFY_TIMEOUT_MILLIS);
+            System.out.println("Deleted elsewhere, gone after:         " + (System.currentTimeMillis() - start) +
+                    " ms" + (deleted ? "" : " (timed out)"));
+            ok &= deleted;
+            System.out.println(index.describe());
+        } finally {
+            if (memberId != null) {
+                delete(pool, memberId);
+            }
+            index.close();
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: index agrees with the database and follows its changes." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static boolean compare(String term, FitClubService indexed, FitClubService database, boolean required) {
+        List<MemberInfo> fromIndex = indexed.searchMembers(term).getValue();
+        List<MemberInfo> fromDatabase = database.searchMembers(term).getValue();
+        boolean same = ids(fromIndex).equals(ids(fromDatabase));
+        long shared = fromIndex.stream().filter(member -> ids(fromDatabase).contains(member.memberId())).count();
+        System.out.printf("   %-10s %-9s %2d/%2d shared  index: %s | database: %s%n", term,
+                same ? "same" : required ? "DIFFERENT" : "differs", shared, fromDatabase.size(),
+                names(fromIndex), names(fromDatabase));
+        return same;
+    }
+
+    // After WARMUP_LOOKUPS unmeasured ones, so the JIT has compiled the search
+    private static void time(MemberSearchIndex index, String term) {
+        String[] words = term.split(" ");
+        for (int i = 0; i < WARMUP_LOOKUPS; i++) {
+            index.search(words, FitClubService.DEFAULT_SEARCH_LIMIT);
+        }
+        long[] nanos = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            long start = System.nanoTime();
+            index.search(words, FitClubService.DEFAULT_SEARCH_LIMIT);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("   %-10s p50 %7.1f us   p99 %7.1f us%n", term, nanos[LOOKUPS / 2] / 1_000.0,
+                nanos[LOOKUPS * 99 / 100] / 1_000.0);
+    }
+
+    private static boolean found(FitClubService service, String term, int memberId) {
+        return ids(service.searchMembers(term).getValue()).contains(memberId);
+    }
+
+    private static List<Integer> ids(List<MemberInfo> members) {
+        return members.stream().map(MemberInfo::memberId).collect(Collectors.toList());
+    }
+
+    private static String names(List<MemberInfo> members) {
+        return members.stream().limit(3).map(MemberInfo::fullName).collect(Collectors.joining(", "));
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void delete(ConnectionPool pool, int memberId) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("DELETE FROM Member WHERE member_id = ?")) {
+            statement.setInt(1, memberId);
+            statement.executeUpdate();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,297 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.FreeSlot;
+import org.fitclub.FitClubService.GroupClass;
+import org.fitclub.FitClubService.ScheduledClass;
+import org.fitclub.FitClubService.SlotCheck;
+import org.fitclub.FitClubService.TimeWindow;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+// Check for ScheduleIndex against the database it copies:
+// 1. loads the index (through its listener) and reports the load time and heap taken
+// 2. checks random slots (room, trainer, date, time) through the index and through SQL on the exclusion
+//    constraints' ranges; the conflicts and the trainer's availability must agree, as must the free windows
+//    found from the index and from the day's schedule read from the database
+// 3. times slot checks and free-window searches (p50/p99 in microseconds), from memory and from the database
+// 4. a one-month free-slot search over all rooms and trainers must give the same answer from the index and
+//    from the month's schedule read from the database, and is timed both ways
+// 5. a class created, moved and deleted through a service without the index (as another app instance
+//    would) must arrive by notification
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.ScheduleIndexCheck
+public final class ScheduleIndexCheck {
+
+    private static final int PROBES = 2_000;
+    private static final int DAYS_AHEAD = 60;
+    private static final int WARMUP_LOOKUPS = 20_000;
+    private static final int LOOKUPS = 5_000;
+    private static final int DATABASE_LOOKUPS = 500;
+    private static final long LOAD_TIMEOUT_MILLIS = 600_000L;
+    private static final long NOTIFY_TIMEOUT_MILLIS = 10_000L;
+
+    private ScheduleIndexCheck() {
+    }
+
+    private record Probe(int roomId, int trainerId, LocalDate date, LocalTime start, LocalTime end) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService database = new FitClubService(pool);
+        ScheduleIndex index = new ScheduleIndex(pool);
+        FitClubService indexed = new FitClubService(pool, null, index);
+        boolean ok = true;
+        Integer classId = null;
+        try {
+            long heapBefore = usedHeap();
+            index.start();
+            if (!await(index::isReady, LOAD_TIMEOUT_MILLIS)) {
+                throw new IllegalStateException("Index did not load within " + LOAD_TIMEOUT_MILLIS + " ms");
+            }
+            long heapBytes = usedHeap() - heapBefore;
+            Map<String, Object> stats = index.describe();
+            long classes = ((Number) stats.get("classes")).longValue();
+            System.out.printf("Loaded %,d upcoming classes, %s availability windows in %d ms; heap %,d KB " +
+                            "(%,d bytes per class)%n", classes, stats.get("availabilityWindows"),
+                    stats.get("lastLoadMillis"), heapBytes >> 10, classes == 0 ? 0 : heapBytes / classes);
+
+            List<Probe> probes = probes(pool);
+            int checkMismatches = 0;
+            int windowMismatches = 0;
+            int free = 0;
+            try (Connection conn = pool.getConnection()) {
+                for (Probe probe : probes) {
+                    SlotCheck fromIndex = index.check(probe.roomId(), probe.trainerId(), probe.date(), probe.start(), probe.end());
+                    if (!fromIndex.equals(checkInDatabase(conn, probe))) {
+                        if (checkMismatches++ < 3) {
+                            System.out.println("   DIFFERENT: " + probe + " index: " + fromIndex + " database: " +
+                                    checkInDatabase(conn, probe));
+                        }
+                    }
+                    free += fromIndex.free() ? 1 : 0;
+                    List<TimeWindow> windows = indexed.findFreeWindows(probe.roomId(), probe.trainerId(), probe.date(), 30).getValue();
+                    if (!windows.equals(database.findFreeWindows(probe.roomId(), probe.trainerId(), probe.date(), 30).getValue())) {
+                        windowMismatches++;
+                    }
+                }
+            }
+            System.out.printf("Index vs database over %d random slots (%d free): %d check and %d free-window " +
+                    "mismatches%n", probes.size(), free, checkMismatches, windowMismatches);
+            ok &= checkMismatches == 0 && windowMismatches == 0;
+
+            System.out.println("Lookups:");
+            time("check, index", probes, LOOKUPS, WARMUP_LOOKUPS, probe ->
+                    indexed.checkClassSlot(probe.roomId(), probe.trainerId(), probe.date(), probe.start(), probe.end()));
+            time("check, database", probes, DATABASE_LOOKUPS, DATABASE_LOOKUPS, probe ->
+                    database.checkClassSlot(probe.roomId(), probe.trainerId(), probe.date(), probe.start(), probe.end()));
+            time("free, index", probes, LOOKUPS, WARMUP_LOOKUPS, probe ->
+                    indexed.findFreeWindows(probe.roomId(), probe.trainerId(), probe.date(), 45));
+            time("free, database", probes, DATABASE_LOOKUPS, DATABASE_LOOKUPS, probe ->
+                    database.findFreeWindows(probe.roomId(), probe.trainerId(), probe.date(), 45));
+
+            LocalDate monthStart = LocalDate.now().plusDays(1);
+            LocalDate monthEnd = monthStart.plusDays(30);
+            for (int minCapacity : new int[]{1, 20}) {
+                long start = System.nanoTime();
+                List<FreeSlot> fromIndex = indexed.findFreeSlots(monthStart, monthEnd, 60, minCapacity, 200).getValue();
+                long indexMicros = (System.nanoTime() - start) / 1_000;
+                start = System.nanoTime();
+                List<FreeSlot> fromDatabase = database.findFreeSlots(monthStart, monthEnd, 60, minCapacity, 200).getValue();
+                long databaseMicros = (System.nanoTime() - start) / 1_000;
+                boolean same = fromIndex.equals(fromDatabase);
+                System.out.printf("Free slots for a month, capacity %d: %d found, index %,d us, database %,d us%s%n",
+                        minCapacity, fromIndex.size(), indexMicros, databaseMicros, same ? "" : " (DIFFERENT)");
+                ok &= same;
+            }
+
+            // A free hour found through the index, booked elsewhere
+            GroupClass created = null;
+            for (Probe probe : probes) {
+                List<TimeWindow> windows = index.freeWindows(probe.roomId(), probe.trainerId(), probe.date(), 60);
+                if (!windows.isEmpty() && probe.date().isAfter(LocalDate.now())) {
+                    LocalTime start = windows.get(0).startTime();
+                    created = database.createGroupClass(new FitClubService.GroupClassRequest("Schedule Check",
+                            probe.date(), start, start.plusMinutes(30), probe.roomId(), probe.trainerId(), 1)).getValue();
+                    break;
+                }
+            }
+            if (created == null) {
+                throw new IllegalStateException("No free hour found to book");
+            }
+            classId = created.classId();
+            GroupClass booked = created;
+            long start = System.currentTimeMillis();
+            boolean arrived = await(() -> index.isRoomBooked(booked.room().roomId(), booked.classDate(),
+                    booked.startTime(), booked.endTime()), NOTIFY_TIMEOUT_MILLIS);
+            System.out.println("Created elsewhere, seen after:  " + (System.currentTimeMillis() - start) + " ms" +
+                    (arrived ? "" : " (timed out)"));
+            ok &= arrived;
+
+            LocalTime movedStart = booked.startTime().plusMinutes(30);
+            execute(pool, "UPDATE GroupClass SET start_time = ?, end_time = ? WHERE class_id = ?",
+                    Time.valueOf(movedStart), Time.valueOf(movedStart.plusMinutes(30)), classId);
+            start = System.currentTimeMillis();
+            boolean moved = await(() -> !index.isRoomBooked(booked.room().roomId(), booked.classDate(),
+                    booked.startTime(), booked.endTime()), NOTIFY_TIMEOUT_MILLIS);
+            System.out.println("Moved elsewhere, seen after:    " + (System.currentTimeMillis() - start) + " ms" +
+                    (moved ? "" : " (timed out)"));
+            ok &= moved && index.isTrainerTeaching(booked.trainer().trainerId(), booked.classDate(), movedStart,
+                    movedStart.plusMinutes(30));
+
+            execute(pool, "DELETE FROM GroupClass WHERE class_id = ?", classId);
+            classId = null;
+            start = System.currentTimeMillis();
+            boolean deleted = await(() -> !index.isTrainerTeaching(booked.trainer().trainerId(), booked.classDate(),
+                    movedStart, movedStart.plusMinutes(30)), NOTIFY_TIMEOUT_MILLIS);
+            System.out.println("Deleted elsewhere, gone after:  " + (System.currentTimeMillis() - start) + " ms" +
+                    (deleted ? "" : " (timed out)"));
+            ok &= deleted;
+            System.out.println(index.describe());
+        } finally {
+            if (classId != null) {
+                execute(pool, "DELETE FROM GroupClass WHERE class_id = ?", classId);
+            }
+            index.close();
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: index agrees with the database and follows its changes." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    // Random rooms and trainers, dates over the coming weeks and quarter-hour starts from 06:00, 30-120 minutes
+    private static List<Probe> probes(ConnectionPool pool) throws SQLException {
+        List<Integer> rooms = ids(pool, "SELECT room_id FROM Room");
+        List<Integer> trainers = ids(pool, "SELECT trainer_id FROM Trainer");
+        Random random = new Random(42);
+        List<Probe> probes = new ArrayList<>();
+        for (int i = 0; i < PROBES; i++) {
+            LocalTime start = LocalTime.of(6, 0).plusMinutes(15L * random.nextInt(60));
+            probes.add(new Probe(rooms.get(random.nextInt(rooms.size())), trainers.get(random.nextInt(trainers.size())),
+                    LocalDate.now().plusDays(random.nextInt(DAYS_AHEAD)), start,
+                    start.plusMinutes(30L + 15L * random.nextInt(7))));
+        }
+        return probes;
+    }
+
+    // The same answer straight from SQL, on the ranges the exclusion constraints compare
+    private static SlotCheck checkInDatabase(Connection conn, Probe probe) throws SQLException {
+        String conflicts = "SELECT class_id, class_date, start_time, end_time, room_id, trainer_id FROM GroupClass " +
+                "WHERE %s = ? AND class_period && tsrange(?::date + ?::time, ?::date + ?::time) ORDER BY start_time";
+        boolean available;
+        try (PreparedStatement statement = conn.prepareStatement("SELECT EXISTS (SELECT 1 FROM TrainerAvailability " +
+                "WHERE trainer_id = ? AND day_of_week = ? AND slot @> timerange(?::time, ?::time))")) {
+            statement.setInt(1, probe.trainerId());
+            statement.setString(2, FitClubService.dayName(probe.date().getDayOfWeek()));
+            statement.setTime(3, Time.valueOf(probe.start()));
+            statement.setTime(4, Time.valueOf(probe.end()));
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                available = rs.getBoolean(1);
+            }
+        }
+        return SlotCheck.of(available, classes(conn, String.format(conflicts, "room_id"), probe.roomId(), probe),
+                classes(conn, String.format(conflicts, "trainer_id"), probe.trainerId(), probe));
+    }
+
+    private static List<ScheduledClass> classes(Connection conn, String query, int id, Probe probe) throws SQLException {
+        List<ScheduledClass> classes = new ArrayList<>();
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            statement.setInt(1, id);
+            statement.setDate(2, Date.valueOf(probe.date()));
+            statement.setTime(3, Time.valueOf(probe.start()));
+            statement.setDate(4, Date.valueOf(probe.date()));
+            statement.setTime(5, Time.valueOf(probe.end()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    classes.add(ScheduleIndex.readClass(rs));
+                }
+            }
+        }
+        return classes;
+    }
+
+    private interface Lookup {
+        ServiceResult<?> run(Probe probe);
+    }
+
+    // After warm-up lookups that are not measured, so the JIT has compiled the path
+    private static void time(String label, List<Probe> probes, int lookups, int warmup, Lookup lookup) {
+        for (int i = 0; i < warmup; i++) {
+            lookup.run(probes.get(i % probes.size()));
+        }
+        long[] nanos = new long[lookups];
+        for (int i = 0; i < lookups; i++) {
+            Probe probe = probes.get(i % probes.size());
+            long start = System.nanoTime();
+            ServiceResult<?> result = lookup.run(probe);
+            nanos[i] = System.nanoTime() - start;
+            if (!result.isOk()) {
+                throw new IllegalStateException(label + " failed: " + result.getMessage());
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("   %-16s p50 %8.1f us   p99 %8.1f us%n", label, nanos[lookups / 2] / 1_000.0,
+                nanos[lookups * 99 / 100] / 1_000.0);
+    }
+
+    private static List<Integer> ids(ConnectionPool pool, String query) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No rows for " + query + "; run DataGenerator first");
+        }
+        return ids;
+    }
+
+    private static void execute(ConnectionPool pool, String update, Object... params) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement(update)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,262 @@
+package org.fitclub;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+// Concurrency check for the seat counter: N members race for the seats of one class through
+// FitClubService.registerForGroupClass, then some seats are cancelled and everyone races again.
+// Passes when each round fills exactly the free seats, registered_count matches the registrations, and
+// every other attempt was refused as full (or already registered).
+// With the third argument "allocator" the race goes through SeatAllocator instead: the losers must be
+// waitlisted in arrival order, and cancelling seats must promote the head of the waitlist.
+// Creates its own room, trainer, class and members (dropped again at the end), so it can run against
+// any database with the current schema. Size the pool so the registrations really overlap:
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.SeatContentionCheck -Djmh.args="500 50 [allocator]" \
+//       -Dbench.jvmArgs="-Dfitclub.pool.maxSize=60"
+public final class SeatContentionCheck {
+
+    private SeatContentionCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int registrants = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        boolean allocator = args.length > 2 && args[2].equals("allocator");
+        String tag = "seatcheck" + System.currentTimeMillis();
+
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService service = new FitClubService(pool);
+        int[] fixture = null;
+        boolean ok = false;
+        try {
+            fixture = createFixture(pool, tag, registrants, capacity);
+            int classId = fixture[0];
+            List<Integer> members = new ArrayList<>();
+            for (int i = 3; i < fixture.length; i++) {
+                members.add(fixture[i]);
+            }
+
+            System.out.printf("%d registrants for %d seats%s (pool max %s connections)%n", registrants, capacity,
+                    allocator ? " through SeatAllocator" : "", System.getProperty("fitclub.pool.maxSize", "10"));
+            if (allocator) {
+                ok = raceAllocator(pool, classId, members, capacity);
+                return;
+            }
+            Outcome first = race(members, memberId -> service.registerForGroupClass(
+                    new FitClubService.ClassRegistrationRequest(memberId, classId)));
+            ok = report("Round 1", first, capacity) & checkCounts(pool, classId, capacity);
+
+            // Free a fifth of the seats and let everyone race again; earlier winners are refused with
+            // ALREADY_REGISTERED, or CLASS_FULL once the freed seats are gone (the seat is claimed first)
+            int freed = Math.max(1, capacity / 5);
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement statement = conn.prepareStatement("DELETE FROM ClassRegistration " +
+                         "WHERE registration_id IN (SELECT registration_id FROM ClassRegistration " +
+                         "WHERE class_id = ? ORDER BY registration_id LIMIT ?)")) {
+                statement.setInt(1, classId);
+                statement.setInt(2, freed);
+                statement.executeUpdate();
+            }
+            Outcome second = race(members, memberId -> service.registerForGroupClass(
+                    new FitClubService.ClassRegistrationRequest(memberId, classId)));
+            ok &= report("Round 2 (" + freed + " seats cancelled)", second, freed)
+                    & checkCounts(pool, classId, capacity);
+
+            ServiceResult<Integer> reconciled = service.reconcileSeatCounts();
+            System.out.println("   seat_count_reconcile() corrected: " +
+                    (reconciled.isOk() ? reconciled.getValue() : reconciled.getMessage()));
+        } finally {
+            if (fixture != null) {
+                dropFixture(pool, tag, fixture);
+            }
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: no overbooking." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static boolean raceAllocator(ConnectionPool pool, int classId, List<Integer> members, int capacity)
+            throws SQLException, InterruptedException {
+        try (SeatAllocator allocator = new SeatAllocator(pool, "seat-contention-check", 500, 30_000L, 10, 15_000L)) {
+            Outcome first = race(members, memberId -> allocator.register(memberId, classId));
+            int expectedWaiting = members.size() - capacity;
+            boolean ok = report("Round 1", first, capacity) && first.waitlisted() == expectedWaiting;
+            ok &= checkCounts(pool, classId, capacity) & checkWaitlist(pool, classId, expectedWaiting);
+
+            // Cancel a fifth of the seats at once: the same number of members must move up, in queue order
+            int freed = Math.max(1, capacity / 5);
+            List<Integer> holders = queryIds(pool, "SELECT member_id FROM ClassRegistration WHERE class_id = ? " +
+                    "ORDER BY registration_id LIMIT " + freed, classId);
+            List<Integer> nextInLine = queryIds(pool, "SELECT member_id FROM ClassWaitlist WHERE class_id = ? " +
+                    "ORDER BY waitlist_id LIMIT " + freed, classId);
+            Outcome cancelled = race(holders, memberId -> allocator.cancel(memberId, classId));
+            ok &= report("Round 2 (" + freed + " seats cancelled)", cancelled, freed);
+            ok &= checkCounts(pool, classId, capacity) & checkWaitlist(pool, classId, expectedWaiting - freed);
+            List<Integer> seated = queryIds(pool, "SELECT member_id FROM ClassRegistration WHERE class_id = ?", classId);
+            boolean promotedInOrder = seated.containsAll(nextInLine);
+            System.out.println("   head of the waitlist promoted: " + promotedInOrder);
+
+            // Everyone again: all are already seated or waiting
+            Outcome repeat = race(members, memberId -> allocator.register(memberId, classId));
+            System.out.println("Round 3 (repeat): refused " + repeat.refused());
+            return ok && promotedInOrder && repeat.refused().getOrDefault(ErrorCode.ALREADY_REGISTERED, 0)
+                    == members.size() - freed;
+        }
+    }
+
+    record Outcome(int registered, int waitlisted, Map<ErrorCode, Integer> refused, long millis) {
+    }
+
+    // One thread per registrant, released together
+    static Outcome race(List<Integer> members, IntFunction<ServiceResult<?>> attempt)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Map<ErrorCode, AtomicInteger> outcomes = new EnumMap<>(ErrorCode.class);
+        AtomicInteger registered = new AtomicInteger();
+        AtomicInteger waitlisted = new AtomicInteger();
+        for (ErrorCode code : ErrorCode.values()) {
+            outcomes.put(code, new AtomicInteger());
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int memberId : members) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ServiceResult<?> result = attempt.apply(memberId);
+                if (result.isOk() && result.getValue() instanceof FitClubService.ClassRegistration registration
+                        && registration.isWaitlisted()) {
+                    waitlisted.incrementAndGet();
+                } else if (result.isOk()) {
+                    registered.incrementAndGet();
+                } else {
+                    outcomes.get(result.getError()).incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<ErrorCode, Integer> refused = new EnumMap<>(ErrorCode.class);
+        outcomes.forEach((code, count) -> {
+            if (count.get() > 0) {
+                refused.put(code, count.get());
+            }
+        });
+        return new Outcome(registered.get(), waitlisted.get(), refused, (System.nanoTime() - began) / 1_000_000);
+    }
+
+    // Exactly the free seats are taken, and every other attempt is refused as full or duplicate
+    private static boolean report(String round, Outcome outcome, int freeSeats) {
+        System.out.println(round + ": registered " + outcome.registered() + ", waitlisted " + outcome.waitlisted() +
+                ", refused " + outcome.refused() + " in " + outcome.millis() + " ms");
+        Map<ErrorCode, Integer> unexpected = new EnumMap<>(outcome.refused());
+        unexpected.remove(ErrorCode.CLASS_FULL);
+        unexpected.remove(ErrorCode.ALREADY_REGISTERED);
+        boolean ok = outcome.registered() == freeSeats && unexpected.isEmpty();
+        if (!ok) {
+            System.out.println("   expected " + freeSeats + " registered and only CLASS_FULL/ALREADY_REGISTERED refusals");
+        }
+        return ok;
+    }
+
+    private static boolean checkCounts(ConnectionPool pool, int classId, int capacity) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT gc.registered_count, " +
+                     "(SELECT COUNT(*) FROM ClassRegistration cr WHERE cr.class_id = gc.class_id) " +
+                     "FROM GroupClass gc WHERE gc.class_id = ?")) {
+            statement.setInt(1, classId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                int counter = rs.getInt(1);
+                int rows = rs.getInt(2);
+                System.out.println("   registrations: " + rows + ", registered_count: " + counter);
+                return rows == capacity && counter == capacity;
+            }
+        }
+    }
+
+    private static boolean checkWaitlist(ConnectionPool pool, int classId, int expected) throws SQLException {
+        int waiting = queryIds(pool, "SELECT member_id FROM ClassWaitlist WHERE class_id = ?", classId).size();
+        System.out.println("   waitlist: " + waiting);
+        return waiting == expected;
+    }
+
+    static List<Integer> queryIds(ConnectionPool pool, String sql, int classId) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setInt(1, classId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Returns class id, room id, trainer id, then the member ids
+    static int[] createFixture(ConnectionPool pool, String tag, int registrants, int capacity)
+            throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement()) {
+            List<Integer> ids = new ArrayList<>();
+            int roomId = insertId(statement, "INSERT INTO Room (room_name, capacity) VALUES ('" + tag + "', " +
+                    capacity + ") RETURNING room_id");
+            int trainerId = insertId(statement, "INSERT INTO Trainer (first_name, last_name, email) " +
+                    "VALUES ('Seat', 'Check', '" + tag + "@example.com') RETURNING trainer_id");
+            int classId = insertId(statement, "INSERT INTO GroupClass (class_name, class_date, start_time, end_time, " +
+                    "capacity, trainer_id, room_id) VALUES ('" + tag + "', CURRENT_DATE + 1, '09:00', '10:00', " +
+                    capacity + ", " + trainerId + ", " + roomId + ") RETURNING class_id");
+            ids.add(classId);
+            ids.add(roomId);
+            ids.add(trainerId);
+            try (ResultSet rs = statement.executeQuery("INSERT INTO Member (first_name, last_name, email) " +
+                    "SELECT 'Seat', 'Check' || i, '" + tag + "-' || i || '@example.com' " +
+                    "FROM generate_series(1, " + registrants + ") i RETURNING member_id")) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int insertId(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    static void dropFixture(ConnectionPool pool, String tag, int[] fixture) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement()) {
+            statement.executeUpdate("DELETE FROM GroupClass WHERE class_id = " + fixture[0]);
+            statement.executeUpdate("DELETE FROM Member WHERE email LIKE '" + tag + "-%@example.com'");
+            statement.executeUpdate("DELETE FROM Trainer WHERE trainer_id = " + fixture[2]);
+            statement.executeUpdate("DELETE FROM Room WHERE room_id = " + fixture[1]);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.fitclub;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Multi-instance check for seat leasing: several JVMs, each with its own SeatAllocator and connection pool,
+// race members for the seats of one class against the same database.
+// Phase 1: N registrants spread over K instances for `capacity` seats. Passes when the class ends up with
+// exactly `capacity` registrations, everyone else on the waitlist, registered_count in step and no seats
+// still leased once the instances have closed.
+// Phase 2: an instance sells a few seats of its lease and halts without releasing it; another instance
+// fills the rest of the class. Passes when the halted instance's unsold seats stay leased until the lease
+// expires, and seat_lease_reclaim() then hands them to the head of the waitlist.
+// Creates its own fixtures (dropped again at the end); the child JVMs get this JVM's class path and its
+// -Dfitclub.* settings:
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.SeatLeaseCheck -Djmh.args="4 400 50"
+public final class SeatLeaseCheck {
+
+    private static final String RESULT = "RESULT ";
+
+    private SeatLeaseCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--node")) {
+            runNode(args);
+            return;
+        }
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int registrants = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        String tag = "leasecheck" + System.currentTimeMillis();
+
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        List<int[]> fixtures = new ArrayList<>();
+        boolean ok = false;
+        try {
+            // Phase 1: small leases, so every instance comes back for more while the others sell
+            int[] fixture = SeatContentionCheck.createFixture(pool, tag + "a", registrants, capacity);
+            fixtures.add(fixture);
+            int classId = fixture[0];
+            List<List<Integer>> shares = new ArrayList<>();
+            for (int node = 0; node < nodes; node++) {
+                shares.add(new ArrayList<>());
+            }
+            for (int i = 3; i < fixture.length; i++) {
+                shares.get((i - 3) % nodes).add(fixture[i]);
+            }
+
+            System.out.printf("Phase 1: %d registrants over %d instances for %d seats%n", registrants, nodes, capacity);
+            long startAt = System.currentTimeMillis() + 3_000L;
+            List<Process> processes = new ArrayList<>();
+            for (int node = 0; node < nodes; node++) {
+                processes.add(launch(classId, "node" + node, 5, 15_000L, startAt, "close", shares.get(node)));
+            }
+            int[] totals = collect(processes);
+            System.out.println("   answered: registered " + totals[0] + ", waitlisted " + totals[1] +
+                    ", refused " + totals[2]);
+            ok = totals[0] <= capacity && totals[0] + totals[1] == registrants && totals[2] == 0;
+            ok &= checkClass(pool, classId, capacity, registrants - capacity, 0);
+
+            // Phase 2: node "crashed" keeps 7 of its 10 leased seats when it halts
+            int crashCapacity = 20;
+            int later = 30;
+            int[] crashFixture = SeatContentionCheck.createFixture(pool, tag + "b", 3 + later, crashCapacity);
+            fixtures.add(crashFixture);
+            int crashClassId = crashFixture[0];
+            List<Integer> members = Arrays.stream(crashFixture, 3, crashFixture.length).boxed()
+                    .collect(Collectors.toList());
+            long ttl = 3_000L;
+
+            System.out.println("Phase 2: an instance halts holding a lease (TTL " + ttl + " ms)");
+            collect(List.of(launch(crashClassId, "crashed", 10, ttl, 0L, "halt", members.subList(0, 3))));
+            ok &= checkClass(pool, crashClassId, 3, 0, 7);
+            collect(List.of(launch(crashClassId, "survivor", 10, 15_000L, 0L, "close",
+                    members.subList(3, members.size()))));
+            ok &= checkClass(pool, crashClassId, crashCapacity - 7, later - (crashCapacity - 10), 7);
+
+            Thread.sleep(ttl + 500L);
+            int reclaimed = scalar(pool, "SELECT seat_lease_reclaim()", 0);
+            System.out.println("   seat_lease_reclaim() after expiry: " + reclaimed + " seats");
+            ok &= reclaimed == 7;
+            ok &= checkClass(pool, crashClassId, crashCapacity, later - (crashCapacity - 3), 0);
+        } finally {
+            for (int i = 0; i < fixtures.size(); i++) {
+                SeatContentionCheck.dropFixture(pool, tag + (char) ('a' + i), fixtures.get(i));
+            }
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: capacity held across instances." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    // ===================== Instances =====================
+
+    private static Process launch(int classId, String instanceId, int leaseSize, long leaseTtlMillis, long startAt,
+                                  String ending, List<Integer> members) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("fitclub."))
+                .forEach(name -> command.add("-D" + name + "=" + System.getProperty(name)));
+        command.add("-Dfitclub.pool.maxSize=" + Math.min(members.size() + 2, 40));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SeatLeaseCheck.class.getName());
+        command.addAll(List.of("--node", String.valueOf(classId), instanceId, String.valueOf(leaseSize),
+                String.valueOf(leaseTtlMillis), String.valueOf(startAt), ending,
+                members.stream().map(String::valueOf).collect(Collectors.joining(","))));
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    // Echoes each instance's output and sums their RESULT lines: registered, waitlisted, refused
+    private static int[] collect(List<Process> processes) throws IOException, InterruptedException {
+        int[] totals = new int[3];
+        for (Process process : processes) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.out.println("   | " + line);
+                    if (line.startsWith(RESULT)) {
+                        String[] counts = line.substring(RESULT.length()).split(" ");
+                        for (int i = 0; i < totals.length; i++) {
+                            totals[i] += Integer.parseInt(counts[i]);
+                        }
+                    }
+                }
+            }
+            process.waitFor();
+        }
+        return totals;
+    }
+
+    // One instance: register its members concurrently (at startAt, so the instances overlap), then close
+    // the allocator or halt the JVM without releasing anything
+    private static void runNode(String[] args) throws Exception {
+        int classId = Integer.parseInt(args[1]);
+        String instanceId = args[2];
+        int leaseSize = Integer.parseInt(args[3]);
+        long leaseTtlMillis = Long.parseLong(args[4]);
+        long startAt = Long.parseLong(args[5]);
+        boolean halt = args[6].equals("halt");
+        List<Integer> members = Arrays.stream(args[7].split(",")).map(Integer::valueOf).collect(Collectors.toList());
+
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        SeatAllocator allocator = new SeatAllocator(pool, instanceId, 500, 30_000L, leaseSize, leaseTtlMillis);
+        Thread.sleep(Math.max(0L, startAt - System.currentTimeMillis()));
+        SeatContentionCheck.Outcome outcome = SeatContentionCheck.race(members,
+                memberId -> allocator.register(memberId, classId));
+        int refused = outcome.refused().values().stream().mapToInt(Integer::intValue).sum();
+        System.out.println(instanceId + ": registered " + outcome.registered() + ", waitlisted " +
+                outcome.waitlisted() + ", refused " + outcome.refused() + " in " + outcome.millis() + " ms, " +
+                allocator.describe().get("leaseRequests") + " lease requests");
+        System.out.println(RESULT + outcome.registered() + " " + outcome.waitlisted() + " " + refused);
+        System.out.flush();
+        if (halt) {
+            Runtime.getRuntime().halt(0);
+        }
+        allocator.close();
+        DatabaseConnection.shutdown();
+    }
+
+    // ===================== Database state =====================
+
+    private static boolean checkClass(ConnectionPool pool, int classId, int seated, int waiting, int leased)
+            throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT gc.registered_count, gc.leased_seats, " +
+                     "(SELECT COUNT(*) FROM ClassRegistration cr WHERE cr.class_id = gc.class_id), " +
+                     "(SELECT COUNT(*) FROM ClassWaitlist w WHERE w.class_id = gc.class_id), " +
+                     "(SELECT COALESCE(SUM(seats), 0) FROM SeatLease l WHERE l.class_id = gc.class_id) " +
+                     "FROM GroupClass gc WHERE gc.class_id = ?")) {
+            statement.setInt(1, classId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                int counter = rs.getInt(1);
+                int leasedSeats = rs.getInt(2);
+                int rows = rs.getInt(3);
+                int waitlist = rs.getInt(4);
+                int leaseRows = rs.getInt(5);
+                System.out.printf("   registrations: %d (registered_count %d), waitlist: %d, leased: %d " +
+                        "(SeatLease %d)%n", rows, counter, waitlist, leasedSeats, leaseRows);
+                boolean ok = rows == seated && counter == seated && waitlist == waiting
+                        && leasedSeats == leased && leaseRows == leased;
+                if (!ok) {
+                    System.out.printf("   expected %d registrations, %d waiting, %d leased%n", seated, waiting, leased);
+                }
+                return ok;
+            }
+        }
+    }
+
+    private static int scalar(ConnectionPool pool, String sql, int fallback) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql);
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : fallback;
+        }
+    }
+}
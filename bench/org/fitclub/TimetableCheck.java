@@ -0,0 +1,110 @@
+package org.fitclub;
+
+import org.fitclub.FitClubService.ClassSeriesReport;
+import org.fitclub.FitClubService.PreferredTime;
+import org.fitclub.FitClubService.RequestedClass;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Check for solveTimetable on a term well past the existing schedule:
+// 1. requests random classes (30-120 minutes, demand up to the largest room, half with a preferred time)
+//    and reports how many were placed, the room utilization and the search time
+// 2. books every assignment with createClassSeries: the database must accept every date, i.e. the plan
+//    keeps the room capacity, double booking and availability rules as the constraints check them
+// The classes it creates are deleted afterwards. Arguments: [classes] [budget seconds] [weeks]
+// (default 2000 20 4). Threads: -Dfitclub.timetable.threads (default: all cores)
+//   mvn -Pbenchmark compile exec:exec -Dbench.main=org.fitclub.TimetableCheck -Djmh.args="2000 20 4"
+public final class TimetableCheck {
+
+    private static final String CLASS_NAME = "Timetable Check";
+    private static final int START_DAYS_AHEAD = 4 * 365;
+
+    private TimetableCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int budgetSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int weeks = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        ConnectionPool pool = DatabaseConnection.getDataSource();
+        FitClubService service = new FitClubService(pool);
+        boolean ok = true;
+        try {
+            LocalDate first = LocalDate.now().plusDays(START_DAYS_AHEAD);
+            LocalDate last = first.plusWeeks(weeks).minusDays(1);
+            int largestRoom = (int) count(pool, "SELECT max(capacity) FROM Room");
+            Random random = new Random(42);
+            List<RequestedClass> classes = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                List<PreferredTime> preferred = random.nextBoolean()
+                        ? List.of(new PreferredTime(DayOfWeek.of(1 + random.nextInt(7)), LocalTime.of(6 + random.nextInt(14), 0)))
+                        : List.of();
+                classes.add(new RequestedClass(CLASS_NAME, 30 + 15 * random.nextInt(7),
+                        1 + random.nextInt(largestRoom), preferred));
+            }
+
+            long start = System.nanoTime();
+            ServiceResult<TimetableSolver.Solution> result = service.solveTimetable(
+                    new FitClubService.TimetableRequest(first, last, classes, budgetSeconds));
+            if (!result.isOk()) {
+                throw new IllegalStateException("Solve failed: " + result);
+            }
+            TimetableSolver.Solution solution = result.getValue();
+            System.out.printf("%,d of %,d classes placed (%,d at a preferred time), room utilization %.1f%%, " +
+                            "%d threads, %,d moves, %,d ms search, %,d ms in all%n",
+                    solution.assigned(), count,
+                    solution.assignments().stream().filter(TimetableSolver.Assignment::preferredTime).count(),
+                    100 * solution.roomUtilization(), solution.threads(), solution.moves(), solution.searchMillis(),
+                    (System.nanoTime() - start) / 1_000_000);
+
+            int booked = 0;
+            int rejected = 0;
+            for (TimetableSolver.Assignment assignment : solution.assignments()) {
+                ServiceResult<ClassSeriesReport> series = service.createClassSeries(assignment.toSeries(first, last));
+                if (!series.isOk()) {
+                    if (rejected++ < 3) {
+                        System.out.println("   REJECTED: " + assignment + ": " + series);
+                    }
+                    continue;
+                }
+                booked += series.getValue().created();
+                if (series.getValue().rejected() > 0 && rejected++ < 3) {
+                    System.out.println("   CONFLICT: " + assignment + ": " + series.getValue().occurrences());
+                }
+            }
+            System.out.printf("Booked %,d classes, %d assignments rejected by the database%n", booked, rejected);
+            ok = rejected == 0;
+        } finally {
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement statement = conn.prepareStatement("DELETE FROM GroupClass WHERE class_name = ?")) {
+                statement.setString(1, CLASS_NAME);
+                statement.executeUpdate();
+            }
+            DatabaseConnection.shutdown();
+            System.out.println(ok ? "PASS: the database accepted the whole timetable." : "FAIL");
+            if (!ok) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static long count(ConnectionPool pool, String query) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -1,4 +1,9 @@
 -- Drop tables if they exist
+DROP TABLE IF EXISTS DashboardRollover CASCADE;
+DROP TABLE IF EXISTS MemberDashboardSummary CASCADE;
+DROP TABLE IF EXISTS MemberNameWord CASCADE;
+DROP TABLE IF EXISTS SeatLease CASCADE;
+DROP TABLE IF EXISTS ClassWaitlist CASCADE;
 DROP TABLE IF EXISTS ClassRegistration CASCADE;
 DROP TABLE IF EXISTS HealthMetric CASCADE;
 DROP TABLE IF EXISTS FitnessGoal CASCADE;
@@ -8,6 +13,21 @@ DROP TABLE IF EXISTS Room CASCADE;
 DROP TABLE IF EXISTS Trainer CASCADE;
 DROP TABLE IF EXISTS Member CASCADE;
 DROP TABLE IF EXISTS Admin CASCADE;
+DROP TYPE IF EXISTS timerange CASCADE;
+
+-- Trigram matching for member search
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+-- Plain equality (trainer_id, room_id) next to ranges in the GiST exclusion constraints
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- Time-of-day ranges, for the weekly availability windows
+CREATE OR REPLACE FUNCTION time_subtype_diff(x TIME, y TIME)
+RETURNS FLOAT8
+LANGUAGE sql
+IMMUTABLE STRICT
+AS 'SELECT EXTRACT(EPOCH FROM (x - y))::FLOAT8';
+
+CREATE TYPE timerange AS RANGE (subtype = TIME, subtype_diff = time_subtype_diff);
 
 -- 1. MEMBER TABLE
 CREATE TABLE Member (
@@ -48,8 +68,13 @@ CREATE TABLE TrainerAvailability (
     day_of_week VARCHAR(10) NOT NULL CHECK (day_of_week IN ('Monday', 'Tuesday', 'Wednesday', 'Thursday', 'Friday', 'Saturday', 'Sunday')),
     start_time TIME NOT NULL,
     end_time TIME NOT NULL,
+    slot timerange GENERATED ALWAYS AS (timerange(start_time, end_time)) STORED,
     FOREIGN KEY (trainer_id) REFERENCES Trainer(trainer_id) ON DELETE CASCADE,
-    CHECK (start_time < end_time)
+    CHECK (start_time < end_time),
+    -- No overlapping windows for a trainer on the same day (windows may touch: 9-12 and 12-17)
+    -- Deferrable so a weekly template can move windows past each other in one statement (AvailabilityTemplate)
+    CONSTRAINT trainer_availability_no_overlap
+        EXCLUDE USING gist (trainer_id WITH =, day_of_week WITH =, slot WITH &&) DEFERRABLE INITIALLY IMMEDIATE
 );
 
 -- 6. GROUP CLASS TABLE
@@ -60,11 +85,18 @@ CREATE TABLE GroupClass (
     start_time TIME NOT NULL,
     end_time TIME NOT NULL,
     capacity INT NOT NULL CHECK (capacity > 0),
+    registered_count INT NOT NULL DEFAULT 0 CHECK (registered_count >= 0), -- Seats taken, kept by TRIGGER 3
+    leased_seats INT NOT NULL DEFAULT 0 CHECK (leased_seats >= 0),          -- Seats held by SeatLease rows
     trainer_id INT NOT NULL,
     room_id INT NOT NULL,
+    class_period tsrange GENERATED ALWAYS AS (tsrange(class_date + start_time, class_date + end_time)) STORED,
     FOREIGN KEY (trainer_id) REFERENCES Trainer(trainer_id),
     FOREIGN KEY (room_id) REFERENCES Room(room_id),
-    CHECK (start_time < end_time)
+    CHECK (start_time < end_time),
+    -- A room hosts, and a trainer teaches, one class at a time (back-to-back classes are fine); checked
+    -- through the GiST index on insert, so concurrent bookings cannot both get in
+    CONSTRAINT group_class_room_no_overlap EXCLUDE USING gist (room_id WITH =, class_period WITH &&),
+    CONSTRAINT group_class_trainer_no_overlap EXCLUDE USING gist (trainer_id WITH =, class_period WITH &&)
 );
 
 -- 7. CLASS REGISTRATION TABLE (From M:N relationship)
@@ -78,9 +110,35 @@ CREATE TABLE ClassRegistration (
     UNIQUE (member_id, class_id)  -- Prevent duplicate registrations
 );
 
+-- 7b. CLASS WAITLIST (members waiting for a seat in a full class, first come first served)
+CREATE TABLE ClassWaitlist (
+    waitlist_id SERIAL PRIMARY KEY,  -- Queue order
+    class_id INT NOT NULL,
+    member_id INT NOT NULL,
+    waitlisted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (member_id) REFERENCES Member(member_id) ON DELETE CASCADE,
+    FOREIGN KEY (class_id) REFERENCES GroupClass(class_id) ON DELETE CASCADE,
+    UNIQUE (class_id, member_id)
+);
+
+-- 7c. SEAT LEASE (unsold seats an app instance holds for a class and sells without a round trip)
+-- Leases expire unless renewed; seat_lease_reclaim() gives expired seats back to the class
+CREATE TABLE SeatLease (
+    class_id INT NOT NULL,
+    instance_id VARCHAR(100) NOT NULL,
+    seats INT NOT NULL CHECK (seats >= 0),
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (class_id, instance_id),
+    FOREIGN KEY (class_id) REFERENCES GroupClass(class_id) ON DELETE CASCADE
+);
+
 -- 8. HEALTH METRIC TABLE
+-- Append-only and the table that grows without bound once wearables feed it, so it is range partitioned by
+-- date_recorded, one partition per month (HEALTH METRIC PARTITIONS below). There is no primary key on the
+-- whole table: it would have to include date_recorded and keep a B-tree in every month. Each month has its
+-- own on metric_id until it goes cold
 CREATE TABLE HealthMetric (
-    metric_id SERIAL PRIMARY KEY,
+    metric_id SERIAL NOT NULL,
     member_id INT NOT NULL,
     date_recorded DATE NOT NULL DEFAULT CURRENT_DATE,
     weight DECIMAL(5,2),
@@ -88,7 +146,11 @@ CREATE TABLE HealthMetric (
     body_fat_percentage DECIMAL(4,2),
     vo2_max DECIMAL(4,2),
     FOREIGN KEY (member_id) REFERENCES Member(member_id) ON DELETE CASCADE
-);
+) PARTITION BY RANGE (date_recorded);
+
+-- Readings for a month with no partition yet (backdated, or far ahead); health_metric_maintain() moves them
+-- into their month's partition when it creates it
+CREATE TABLE HealthMetric_default PARTITION OF HealthMetric (PRIMARY KEY (metric_id)) DEFAULT;
 
 -- 9. FITNESS GOAL TABLE
 CREATE TABLE FitnessGoal (
@@ -101,35 +163,7 @@ CREATE TABLE FitnessGoal (
     FOREIGN KEY (member_id) REFERENCES Member(member_id) ON DELETE CASCADE
 );
 
--- TRIGGER 1: Prevent Overlapping Trainer Availability
-CREATE OR REPLACE FUNCTION check_trainer_availability_overlap()
-RETURNS TRIGGER
-LANGUAGE plpgsql
-AS
-$$
-BEGIN
-    IF EXISTS (
-        SELECT 1
-        FROM TrainerAvailability
-        WHERE trainer_id = NEW.trainer_id
-          AND day_of_week = NEW.day_of_week
-          AND availability_id != COALESCE(NEW.availability_id, -1)
-          AND (
-              (NEW.start_time >= start_time AND NEW.start_time < end_time) OR
-              (NEW.end_time > start_time AND NEW.end_time <= end_time) OR
-              (NEW.start_time <= start_time AND NEW.end_time >= end_time)
-          )
-    ) THEN
-        RAISE EXCEPTION 'Trainer availability overlaps with existing time slot on %', NEW.day_of_week;
-    END IF;
-    RETURN NEW;
-END;
-$$;
-
-CREATE TRIGGER prevent_trainer_availability_overlap
-BEFORE INSERT OR UPDATE ON TrainerAvailability
-FOR EACH ROW
-EXECUTE PROCEDURE check_trainer_availability_overlap();
+-- TRIGGER 1: Overlapping trainer availability is the trainer_availability_no_overlap constraint (table 5)
 
 -- TRIGGER 2: Prevent Class Capacity > Room Capacity
 CREATE OR REPLACE FUNCTION check_class_capacity()
@@ -152,127 +186,1051 @@ END;
 $$;
 
 CREATE TRIGGER enforce_class_capacity_limit
-BEFORE INSERT OR UPDATE ON GroupClass
+BEFORE INSERT OR UPDATE OF capacity, room_id ON GroupClass
 FOR EACH ROW
 EXECUTE PROCEDURE check_class_capacity();
 
 -- TRIGGER 3: Prevent Class Registration if Full
+-- Seats are claimed on GroupClass.registered_count with one conditional UPDATE: the row lock it takes
+-- serialises concurrent registrations for the same class, so two inserts can no longer both see a free seat
+-- Seats leased to app instances are not free: instances turn them back into free seats (seat_lease_consume)
+-- in the same transaction as the registrations they sold them to
+-- A row repeating an existing registration claims no seat: UNIQUE (member_id, class_id) refuses it, or
+-- ON CONFLICT DO NOTHING skips it (BEFORE triggers fire before that check)
 CREATE OR REPLACE FUNCTION check_class_full()
 RETURNS TRIGGER
 LANGUAGE plpgsql
 AS
 $$
-DECLARE
-    class_cap INT;
-    current_count INT;
 BEGIN
-    SELECT capacity INTO class_cap
-    FROM GroupClass
-    WHERE class_id = NEW.class_id;
-    
-    SELECT COUNT(*) INTO current_count
-    FROM ClassRegistration
-    WHERE class_id = NEW.class_id;
-    
-    IF current_count >= class_cap THEN
-        RAISE EXCEPTION 'Class is full. Cannot register more members.';
+    IF TG_OP = 'UPDATE' AND NEW.class_id = OLD.class_id THEN
+        RETURN NEW;
+    END IF;
+    IF EXISTS (SELECT 1 FROM ClassRegistration WHERE member_id = NEW.member_id AND class_id = NEW.class_id) THEN
+        RETURN NEW;
+    END IF;
+
+    UPDATE GroupClass
+    SET registered_count = registered_count + 1
+    WHERE class_id = NEW.class_id
+      AND registered_count + leased_seats < capacity;
+
+    IF NOT FOUND THEN
+        IF EXISTS (SELECT 1 FROM GroupClass WHERE class_id = NEW.class_id) THEN
+            RAISE EXCEPTION 'Class is full. Cannot register more members.';
+        END IF;
+        -- Unknown class: leave it to the foreign key
+        RETURN NEW;
+    END IF;
+
+    IF TG_OP = 'UPDATE' THEN
+        UPDATE GroupClass SET registered_count = registered_count - 1 WHERE class_id = OLD.class_id;
     END IF;
-    
     RETURN NEW;
 END;
 $$;
 
 CREATE TRIGGER prevent_class_overfill
-BEFORE INSERT ON ClassRegistration
+BEFORE INSERT OR UPDATE OF class_id ON ClassRegistration
 FOR EACH ROW
 EXECUTE PROCEDURE check_class_full();
 
--- TRIGGER 4: Prevent Double Booking Room
-CREATE OR REPLACE FUNCTION check_room_double_booking()
+-- Cancelled registrations give their seats back
+CREATE OR REPLACE FUNCTION release_class_seats()
 RETURNS TRIGGER
 LANGUAGE plpgsql
 AS
 $$
 BEGIN
-    IF EXISTS (
-    SELECT 1 FROM GroupClass
-    WHERE room_id = NEW.room_id
-      AND class_date = NEW.class_date
-      AND (
-        (NEW.start_time >= start_time AND NEW.start_time < end_time) OR
-        (NEW.end_time > start_time AND NEW.end_time <= end_time) OR
-        (NEW.start_time <= start_time AND NEW.end_time >= end_time)
-      )
-  ) THEN RAISE EXCEPTION 'Room is already booked at this time';
+    UPDATE GroupClass gc
+    SET registered_count = gc.registered_count - d.seats
+    FROM (SELECT class_id, COUNT(*) AS seats FROM old_rows GROUP BY class_id) d
+    WHERE gc.class_id = d.class_id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER release_class_seats
+AFTER DELETE ON ClassRegistration
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE release_class_seats();
+
+-- Free seats of the given classes go to the heads of their waitlists, in queue order
+-- Callers hold the GroupClass row locks (release_class_seats, seat_lease_release, seat_lease_reclaim)
+-- A member at the head who is already registered just leaves the queue; the seat stays free, so the queue
+-- moves on until every dequeued member got a seat (or it is empty)
+CREATE OR REPLACE FUNCTION promote_waitlist(class_ids INT[])
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    dequeued INT;
+    inserted INT;
+    promoted_count INT := 0;
+BEGIN
+    LOOP
+        WITH promoted AS (
+            DELETE FROM ClassWaitlist
+            WHERE waitlist_id IN (
+                SELECT w.waitlist_id
+                FROM (SELECT waitlist_id, class_id,
+                             row_number() OVER (PARTITION BY class_id ORDER BY waitlist_id) AS place
+                      FROM ClassWaitlist
+                      WHERE class_id = ANY(class_ids)) w
+                JOIN GroupClass gc ON gc.class_id = w.class_id
+                WHERE gc.class_date >= CURRENT_DATE
+                  AND w.place <= gc.capacity - gc.registered_count - gc.leased_seats)
+            RETURNING waitlist_id, class_id, member_id
+        ), registered AS (
+            INSERT INTO ClassRegistration (member_id, class_id)
+            SELECT member_id, class_id FROM promoted ORDER BY class_id, waitlist_id
+            ON CONFLICT (member_id, class_id) DO NOTHING
+            RETURNING 1
+        )
+        SELECT (SELECT COUNT(*) FROM promoted), (SELECT COUNT(*) FROM registered) INTO dequeued, inserted;
+        promoted_count := promoted_count + inserted;
+        EXIT WHEN dequeued = inserted;
+    END LOOP;
+    RETURN promoted_count;
+END;
+$$;
+
+-- Seats given back by a cancellation go to the head of the class waitlist
+-- (fires after release_class_seats, so registered_count already reflects the cancellation)
+CREATE OR REPLACE FUNCTION promote_class_waitlist()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM promote_waitlist(ARRAY(SELECT DISTINCT class_id FROM old_rows));
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER waitlist_promotion
+AFTER DELETE ON ClassRegistration
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE promote_class_waitlist();
+
+-- SEAT LEASES: every function locks the GroupClass row before the SeatLease row, like the triggers
+
+-- Lease up to wanted free seats of an upcoming class to an instance (added to any lease it holds)
+-- Returns the seats granted; 0 when the class is sold out or members are already waiting for seats
+CREATE OR REPLACE FUNCTION seat_lease_acquire(lease_class INT, lease_instance VARCHAR, wanted INT, ttl INTERVAL)
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    granted INT;
+BEGIN
+    SELECT LEAST(wanted, capacity - registered_count - leased_seats) INTO granted
+    FROM GroupClass
+    WHERE class_id = lease_class AND class_date >= CURRENT_DATE
+    FOR NO KEY UPDATE;
+
+    IF granted IS NULL OR granted <= 0 OR EXISTS (SELECT 1 FROM ClassWaitlist WHERE class_id = lease_class) THEN
+        RETURN 0;
     END IF;
 
-    RETURN NEW;
+    UPDATE GroupClass SET leased_seats = leased_seats + granted WHERE class_id = lease_class;
+    INSERT INTO SeatLease (class_id, instance_id, seats, expires_at)
+    VALUES (lease_class, lease_instance, granted, clock_timestamp() + ttl)
+    ON CONFLICT (class_id, instance_id)
+    DO UPDATE SET seats = SeatLease.seats + EXCLUDED.seats, expires_at = EXCLUDED.expires_at;
+    RETURN granted;
+END;
+$$;
+
+-- Turn up to sold leased seats back into free seats, just before inserting the registrations they were
+-- sold to; returns how many the lease still covered
+CREATE OR REPLACE FUNCTION seat_lease_consume(lease_class INT, lease_instance VARCHAR, sold INT)
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    consumed INT;
+BEGIN
+    PERFORM 1 FROM GroupClass WHERE class_id = lease_class FOR NO KEY UPDATE;
+    SELECT LEAST(seats, sold) INTO consumed
+    FROM SeatLease
+    WHERE class_id = lease_class AND instance_id = lease_instance
+    FOR UPDATE;
+
+    IF consumed IS NULL OR consumed <= 0 THEN
+        RETURN 0;
+    END IF;
+
+    UPDATE SeatLease SET seats = seats - consumed WHERE class_id = lease_class AND instance_id = lease_instance;
+    UPDATE GroupClass SET leased_seats = leased_seats - consumed WHERE class_id = lease_class;
+    RETURN consumed;
 END;
 $$;
 
-CREATE TRIGGER prevent_room_double_booking
-BEFORE INSERT OR UPDATE ON GroupClass
+-- Extend an instance's leases; returns the classes it may keep selling leased seats for. Leases that were
+-- reclaimed are gone, and leases of classes with a waitlist are left to expire so their seats reach it
+-- The class rows are locked in class_id order, as seat_lease_reclaim() takes them
+CREATE OR REPLACE FUNCTION seat_lease_renew(lease_instance VARCHAR, class_ids INT[], ttl INTERVAL)
+RETURNS INT[]
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    renewed_classes INT[];
+BEGIN
+    PERFORM 1 FROM GroupClass WHERE class_id = ANY(class_ids) ORDER BY class_id FOR NO KEY UPDATE;
+
+    WITH renewed AS (
+        UPDATE SeatLease l SET expires_at = clock_timestamp() + ttl
+        WHERE l.instance_id = lease_instance AND l.class_id = ANY(class_ids)
+          AND NOT EXISTS (SELECT 1 FROM ClassWaitlist w WHERE w.class_id = l.class_id)
+        RETURNING l.class_id
+    )
+    SELECT COALESCE(array_agg(class_id), '{}') INTO renewed_classes FROM renewed;
+    RETURN renewed_classes;
+END;
+$$;
+
+-- Give an instance's unsold seats back to the class (and its waitlist); returns the seats returned
+CREATE OR REPLACE FUNCTION seat_lease_release(lease_class INT, lease_instance VARCHAR)
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    returned INT;
+BEGIN
+    PERFORM 1 FROM GroupClass WHERE class_id = lease_class FOR NO KEY UPDATE;
+    DELETE FROM SeatLease WHERE class_id = lease_class AND instance_id = lease_instance
+    RETURNING seats INTO returned;
+
+    IF returned IS NULL THEN
+        RETURN 0;
+    END IF;
+    UPDATE GroupClass SET leased_seats = leased_seats - returned WHERE class_id = lease_class;
+    PERFORM promote_waitlist(ARRAY[lease_class]);
+    RETURN returned;
+END;
+$$;
+
+-- Give the seats of expired leases (crashed or stalled instances) back; safe to run from every instance
+CREATE OR REPLACE FUNCTION seat_lease_reclaim()
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    expired_class INT;
+    returned INT;
+    reclaimed INT := 0;
+BEGIN
+    FOR expired_class IN
+        SELECT DISTINCT class_id FROM SeatLease WHERE expires_at < clock_timestamp() ORDER BY class_id
+    LOOP
+        PERFORM 1 FROM GroupClass WHERE class_id = expired_class FOR NO KEY UPDATE;
+
+        WITH expired AS (
+            DELETE FROM SeatLease
+            WHERE class_id = expired_class AND expires_at < clock_timestamp()
+            RETURNING seats
+        )
+        SELECT COALESCE(SUM(seats), 0) INTO returned FROM expired;
+
+        IF returned > 0 THEN
+            UPDATE GroupClass SET leased_seats = leased_seats - returned WHERE class_id = expired_class;
+            PERFORM promote_waitlist(ARRAY[expired_class]);
+            reclaimed := reclaimed + returned;
+        END IF;
+    END LOOP;
+    RETURN reclaimed;
+END;
+$$;
+
+-- Reset registered_count and leased_seats to the actual registrations and leases wherever they drifted
+-- apart (e.g. after a load with triggers disabled); returns the number of classes corrected
+-- Each class row is locked before it is recounted, so registrations in flight are either counted or wait
+CREATE OR REPLACE FUNCTION seat_count_reconcile()
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    drifted INT;
+    corrected INT := 0;
+BEGIN
+    FOR drifted IN
+        SELECT gc.class_id
+        FROM GroupClass gc
+        LEFT JOIN (SELECT class_id, COUNT(*) AS seats FROM ClassRegistration GROUP BY class_id) c
+               ON c.class_id = gc.class_id
+        LEFT JOIN (SELECT class_id, SUM(seats) AS seats FROM SeatLease GROUP BY class_id) l
+               ON l.class_id = gc.class_id
+        WHERE gc.registered_count <> COALESCE(c.seats, 0) OR gc.leased_seats <> COALESCE(l.seats, 0)
+        ORDER BY gc.class_id
+    LOOP
+        PERFORM 1 FROM GroupClass WHERE class_id = drifted FOR UPDATE;
+
+        UPDATE GroupClass gc
+        SET registered_count = c.seats, leased_seats = l.seats
+        FROM (SELECT COUNT(*) AS seats FROM ClassRegistration WHERE class_id = drifted) c,
+             (SELECT COALESCE(SUM(seats), 0) AS seats FROM SeatLease WHERE class_id = drifted) l
+        WHERE gc.class_id = drifted AND (gc.registered_count <> c.seats OR gc.leased_seats <> l.seats);
+
+        IF FOUND THEN
+            corrected := corrected + 1;
+        END IF;
+    END LOOP;
+    RETURN corrected;
+END;
+$$;
+
+-- TRIGGER 4: Room (and trainer) double booking is the group_class_*_no_overlap constraints (table 6)
+
+-- MEMBER DASHBOARD SUMMARY: one row per member, maintained incrementally by the triggers below,
+-- so a dashboard read is a primary-key lookup instead of seven correlated subqueries
+CREATE TABLE MemberDashboardSummary (
+    member_id INT PRIMARY KEY,
+    latest_metric_id INT,
+    latest_weight DECIMAL(5,2),
+    latest_heart_rate INT,
+    latest_body_fat DECIMAL(4,2),
+    latest_metric_date DATE,
+    active_goals_count INT NOT NULL DEFAULT 0,
+    past_classes_count INT NOT NULL DEFAULT 0,
+    upcoming_classes_count INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (member_id) REFERENCES Member(member_id) ON DELETE CASCADE
+);
+
+-- Date the past/upcoming class split is computed for (single row, advanced by dashboard_rollover())
+CREATE TABLE DashboardRollover (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    as_of DATE NOT NULL
+);
+
+INSERT INTO DashboardRollover (as_of) VALUES (CURRENT_DATE);
+
+-- Recompute the summary rows of the given members from the base tables
+-- (used where a delta is not enough: metric/registration updates and deletes, class date changes)
+CREATE OR REPLACE FUNCTION dashboard_refresh_members(ids INT[])
+RETURNS VOID
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    cutoff DATE;
+BEGIN
+    -- Lock the rows first so the recompute below sees every change committed before it
+    PERFORM 1 FROM MemberDashboardSummary WHERE member_id = ANY(ids) ORDER BY member_id FOR UPDATE;
+    SELECT as_of INTO cutoff FROM DashboardRollover;
+
+    INSERT INTO MemberDashboardSummary (member_id, latest_metric_id, latest_weight, latest_heart_rate,
+                                        latest_body_fat, latest_metric_date, active_goals_count,
+                                        past_classes_count, upcoming_classes_count)
+    SELECT m.member_id, lm.metric_id, lm.weight, lm.resting_heart_rate, lm.body_fat_percentage, lm.date_recorded,
+           (SELECT COUNT(*) FROM FitnessGoal fg WHERE fg.member_id = m.member_id AND fg.status = 'Active'),
+           rc.past, rc.upcoming
+    FROM Member m
+    LEFT JOIN LATERAL (
+        SELECT hm.metric_id, hm.weight, hm.resting_heart_rate, hm.body_fat_percentage, hm.date_recorded
+        FROM HealthMetric hm
+        WHERE hm.member_id = m.member_id
+        ORDER BY hm.date_recorded DESC, hm.metric_id DESC
+        LIMIT 1
+    ) lm ON TRUE
+    CROSS JOIN LATERAL (
+        SELECT COUNT(*) FILTER (WHERE gc.class_date < cutoff) AS past,
+               COUNT(*) FILTER (WHERE gc.class_date >= cutoff) AS upcoming
+        FROM ClassRegistration cr
+        JOIN GroupClass gc ON cr.class_id = gc.class_id
+        WHERE cr.member_id = m.member_id
+    ) rc
+    WHERE m.member_id = ANY(ids)
+    ON CONFLICT (member_id) DO UPDATE SET
+        latest_metric_id = EXCLUDED.latest_metric_id,
+        latest_weight = EXCLUDED.latest_weight,
+        latest_heart_rate = EXCLUDED.latest_heart_rate,
+        latest_body_fat = EXCLUDED.latest_body_fat,
+        latest_metric_date = EXCLUDED.latest_metric_date,
+        active_goals_count = EXCLUDED.active_goals_count,
+        past_classes_count = EXCLUDED.past_classes_count,
+        upcoming_classes_count = EXCLUDED.upcoming_classes_count;
+END;
+$$;
+
+-- Rebuild every summary row in one set-based pass (after bulk loads that bypass the triggers)
+CREATE OR REPLACE FUNCTION dashboard_rebuild()
+RETURNS VOID
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    UPDATE DashboardRollover SET as_of = CURRENT_DATE;
+    TRUNCATE MemberDashboardSummary;
+
+    INSERT INTO MemberDashboardSummary (member_id, latest_metric_id, latest_weight, latest_heart_rate,
+                                        latest_body_fat, latest_metric_date, active_goals_count,
+                                        past_classes_count, upcoming_classes_count)
+    SELECT m.member_id, lm.metric_id, lm.weight, lm.resting_heart_rate, lm.body_fat_percentage, lm.date_recorded,
+           COALESCE(g.active, 0), COALESCE(r.past, 0), COALESCE(r.upcoming, 0)
+    FROM Member m
+    LEFT JOIN (
+        SELECT DISTINCT ON (member_id) member_id, metric_id, weight, resting_heart_rate, body_fat_percentage, date_recorded
+        FROM HealthMetric
+        ORDER BY member_id, date_recorded DESC, metric_id DESC
+    ) lm ON lm.member_id = m.member_id
+    LEFT JOIN (
+        SELECT member_id, COUNT(*) AS active
+        FROM FitnessGoal
+        WHERE status = 'Active'
+        GROUP BY member_id
+    ) g ON g.member_id = m.member_id
+    LEFT JOIN (
+        SELECT cr.member_id,
+               COUNT(*) FILTER (WHERE gc.class_date < CURRENT_DATE) AS past,
+               COUNT(*) FILTER (WHERE gc.class_date >= CURRENT_DATE) AS upcoming
+        FROM ClassRegistration cr
+        JOIN GroupClass gc ON cr.class_id = gc.class_id
+        GROUP BY cr.member_id
+    ) r ON r.member_id = m.member_id;
+END;
+$$;
+
+-- Daily rollover: registrations for classes dated before today move from upcoming to past
+-- Returns the number of summary rows changed; a no-op if it already ran today
+CREATE OR REPLACE FUNCTION dashboard_rollover()
+RETURNS INT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    previous DATE;
+    changed INT;
+BEGIN
+    -- FOR UPDATE waits for registrations in flight (they hold FOR KEY SHARE on this row)
+    SELECT as_of INTO previous FROM DashboardRollover FOR UPDATE;
+    IF previous >= CURRENT_DATE THEN
+        RETURN 0;
+    END IF;
+
+    UPDATE MemberDashboardSummary s
+    SET past_classes_count = s.past_classes_count + moved.n,
+        upcoming_classes_count = s.upcoming_classes_count - moved.n
+    FROM (
+        SELECT cr.member_id, COUNT(*) AS n
+        FROM ClassRegistration cr
+        JOIN GroupClass gc ON cr.class_id = gc.class_id
+        WHERE gc.class_date >= previous AND gc.class_date < CURRENT_DATE
+        GROUP BY cr.member_id
+    ) moved
+    WHERE s.member_id = moved.member_id;
+    GET DIAGNOSTICS changed = ROW_COUNT;
+
+    UPDATE DashboardRollover SET as_of = CURRENT_DATE;
+    RETURN changed;
+END;
+$$;
+
+-- TRIGGER 5: New members get an empty summary row
+CREATE OR REPLACE FUNCTION dashboard_track_member()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    INSERT INTO MemberDashboardSummary (member_id)
+    SELECT member_id FROM new_rows
+    ON CONFLICT (member_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER maintain_dashboard_member
+AFTER INSERT ON Member
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_member();
+
+-- TRIGGER 6: Latest health metric (statement-level, so bulk inserts update each member once)
+CREATE OR REPLACE FUNCTION dashboard_track_health_metric()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        -- Lock in member order so concurrent bulk inserts cannot deadlock on the summary rows
+        PERFORM 1 FROM MemberDashboardSummary
+        WHERE member_id IN (SELECT member_id FROM new_rows)
+        ORDER BY member_id
+        FOR UPDATE;
+
+        UPDATE MemberDashboardSummary s
+        SET latest_metric_id = n.metric_id,
+            latest_weight = n.weight,
+            latest_heart_rate = n.resting_heart_rate,
+            latest_body_fat = n.body_fat_percentage,
+            latest_metric_date = n.date_recorded
+        FROM (
+            SELECT DISTINCT ON (member_id) member_id, metric_id, weight, resting_heart_rate,
+                   body_fat_percentage, date_recorded
+            FROM new_rows
+            ORDER BY member_id, date_recorded DESC, metric_id DESC
+        ) n
+        WHERE s.member_id = n.member_id
+          AND (s.latest_metric_date IS NULL OR
+               (n.date_recorded, n.metric_id) > (s.latest_metric_date, s.latest_metric_id));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM dashboard_refresh_members(ARRAY(SELECT member_id FROM old_rows UNION SELECT member_id FROM new_rows));
+    ELSE
+        PERFORM dashboard_refresh_members(ARRAY(SELECT DISTINCT member_id FROM old_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER maintain_dashboard_metric_insert
+AFTER INSERT ON HealthMetric
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_health_metric();
+
+CREATE TRIGGER maintain_dashboard_metric_update
+AFTER UPDATE ON HealthMetric
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_health_metric();
+
+CREATE TRIGGER maintain_dashboard_metric_delete
+AFTER DELETE ON HealthMetric
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_health_metric();
+
+-- TRIGGER 7: Active goal count (a delta is always enough here)
+CREATE OR REPLACE FUNCTION dashboard_track_fitness_goal()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE MemberDashboardSummary s
+        SET active_goals_count = s.active_goals_count + d.n
+        FROM (SELECT member_id, COUNT(*) AS n FROM new_rows WHERE status = 'Active' GROUP BY member_id) d
+        WHERE s.member_id = d.member_id;
+    ELSIF TG_OP = 'UPDATE' THEN
+        UPDATE MemberDashboardSummary s
+        SET active_goals_count = s.active_goals_count + d.n
+        FROM (
+            SELECT member_id, SUM(delta) AS n
+            FROM (SELECT member_id, 1 AS delta FROM new_rows WHERE status = 'Active'
+                  UNION ALL
+                  SELECT member_id, -1 AS delta FROM old_rows WHERE status = 'Active') changes
+            GROUP BY member_id
+        ) d
+        WHERE s.member_id = d.member_id AND d.n <> 0;
+    ELSE
+        UPDATE MemberDashboardSummary s
+        SET active_goals_count = s.active_goals_count - d.n
+        FROM (SELECT member_id, COUNT(*) AS n FROM old_rows WHERE status = 'Active' GROUP BY member_id) d
+        WHERE s.member_id = d.member_id;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER maintain_dashboard_goal_insert
+AFTER INSERT ON FitnessGoal
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_fitness_goal();
+
+CREATE TRIGGER maintain_dashboard_goal_update
+AFTER UPDATE ON FitnessGoal
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_fitness_goal();
+
+CREATE TRIGGER maintain_dashboard_goal_delete
+AFTER DELETE ON FitnessGoal
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_fitness_goal();
+
+-- TRIGGER 8: Past/upcoming class counts, split at DashboardRollover.as_of
+CREATE OR REPLACE FUNCTION dashboard_track_registration()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    cutoff DATE;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        -- KEY SHARE keeps dashboard_rollover() from moving the cutoff under us
+        SELECT as_of INTO cutoff FROM DashboardRollover FOR KEY SHARE;
+
+        UPDATE MemberDashboardSummary s
+        SET past_classes_count = s.past_classes_count + d.past,
+            upcoming_classes_count = s.upcoming_classes_count + d.upcoming
+        FROM (
+            SELECT n.member_id,
+                   COUNT(*) FILTER (WHERE gc.class_date < cutoff) AS past,
+                   COUNT(*) FILTER (WHERE gc.class_date >= cutoff) AS upcoming
+            FROM new_rows n
+            JOIN GroupClass gc ON n.class_id = gc.class_id
+            GROUP BY n.member_id
+        ) d
+        WHERE s.member_id = d.member_id;
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM dashboard_refresh_members(ARRAY(SELECT member_id FROM old_rows UNION SELECT member_id FROM new_rows));
+    ELSE
+        -- Recompute rather than subtract: on a cascaded class delete the GroupClass row is already gone
+        PERFORM dashboard_refresh_members(ARRAY(SELECT DISTINCT member_id FROM old_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER maintain_dashboard_registration_insert
+AFTER INSERT ON ClassRegistration
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_registration();
+
+CREATE TRIGGER maintain_dashboard_registration_update
+AFTER UPDATE ON ClassRegistration
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_registration();
+
+CREATE TRIGGER maintain_dashboard_registration_delete
+AFTER DELETE ON ClassRegistration
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_track_registration();
+
+-- TRIGGER 9: Moving a class to another date can move its registrations between past and upcoming
+CREATE OR REPLACE FUNCTION dashboard_track_class_date()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM dashboard_refresh_members(ARRAY(
+        SELECT member_id FROM ClassRegistration WHERE class_id = NEW.class_id));
+    RETURN NULL;
+END;
+$$;
+
+-- Row level with a column list (transition tables are not allowed with one), so other
+-- GroupClass updates do not pay for it
+CREATE TRIGGER maintain_dashboard_class_date
+AFTER UPDATE OF class_date ON GroupClass
+FOR EACH ROW
+WHEN (OLD.class_date IS DISTINCT FROM NEW.class_date)
+EXECUTE PROCEDURE dashboard_track_class_date();
+
+-- CHANGE NOTIFICATIONS: NOTIFY a channel with '<epoch millis>:<id>,<id>,...' so app instances
+-- can refresh what they hold in memory (payloads are chunked under the 8000-byte limit)
+CREATE OR REPLACE FUNCTION notify_member_ids(channel TEXT, ids INT[])
+RETURNS VOID
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM pg_notify(channel,
+                      (extract(epoch FROM clock_timestamp()) * 1000)::BIGINT || ':' || string_agg(id::TEXT, ','))
+    FROM (SELECT DISTINCT id, dense_rank() OVER (ORDER BY id) / 500 AS chunk FROM unnest(ids) AS id) members
+    GROUP BY chunk;
+END;
+$$;
+
+-- DASHBOARD CHANGE NOTIFICATIONS: on member_dashboard, so app instances can invalidate cached dashboards
+CREATE OR REPLACE FUNCTION dashboard_notify(ids INT[])
+RETURNS VOID
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM notify_member_ids('member_dashboard', ids);
+END;
+$$;
+
+-- TRIGGER 10: Any summary change (metrics, goals, registrations, rollover, member delete) notifies
+CREATE OR REPLACE FUNCTION dashboard_notify_summary()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM dashboard_notify(ARRAY(SELECT member_id FROM old_rows));
+    ELSE
+        PERFORM dashboard_notify(ARRAY(SELECT member_id FROM new_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notify_dashboard_summary_insert
+AFTER INSERT ON MemberDashboardSummary
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_notify_summary();
+
+CREATE TRIGGER notify_dashboard_summary_update
+AFTER UPDATE ON MemberDashboardSummary
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_notify_summary();
+
+CREATE TRIGGER notify_dashboard_summary_delete
+AFTER DELETE ON MemberDashboardSummary
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_notify_summary();
+
+-- TRIGGER 11: Name/email changes and class changes (the dashboard lists upcoming class details)
+CREATE OR REPLACE FUNCTION dashboard_notify_member()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM dashboard_notify(ARRAY(SELECT member_id FROM new_rows));
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notify_dashboard_member_update
+AFTER UPDATE ON Member
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE dashboard_notify_member();
+
+CREATE OR REPLACE FUNCTION dashboard_notify_class()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM dashboard_notify(ARRAY(SELECT member_id FROM ClassRegistration WHERE class_id = NEW.class_id));
+    RETURN NULL;
+END;
+$$;
+
+-- Row level so seat counter updates (registered_count) do not notify every registered member
+CREATE TRIGGER notify_dashboard_class_update
+AFTER UPDATE ON GroupClass
 FOR EACH ROW
-EXECUTE PROCEDURE check_room_double_booking();
+WHEN ((OLD.class_name, OLD.class_date, OLD.start_time, OLD.end_time, OLD.room_id, OLD.trainer_id)
+      IS DISTINCT FROM (NEW.class_name, NEW.class_date, NEW.start_time, NEW.end_time, NEW.room_id, NEW.trainer_id))
+EXECUTE PROCEDURE dashboard_notify_class();
 
--- VIEW: Member Dashboard
+-- VIEW: Member Dashboard (primary-key lookups on Member and MemberDashboardSummary)
 CREATE VIEW MemberDashboard AS
-SELECT 
+SELECT
     m.member_id,
     m.first_name,
     m.last_name,
     m.email,
-    
-    -- Latest health metrics
-    (SELECT hm.weight 
-     FROM HealthMetric hm 
-     WHERE hm.member_id = m.member_id 
-     ORDER BY hm.date_recorded DESC 
-     LIMIT 1) AS latest_weight,
-    
-    (SELECT hm.resting_heart_rate 
-     FROM HealthMetric hm 
-     WHERE hm.member_id = m.member_id 
-     ORDER BY hm.date_recorded DESC 
-     LIMIT 1) AS latest_heart_rate,
-    
-    (SELECT hm.body_fat_percentage 
-     FROM HealthMetric hm 
-     WHERE hm.member_id = m.member_id 
-     ORDER BY hm.date_recorded DESC 
-     LIMIT 1) AS latest_body_fat,
-    
-    (SELECT hm.date_recorded 
-     FROM HealthMetric hm 
-     WHERE hm.member_id = m.member_id 
-     ORDER BY hm.date_recorded DESC 
-     LIMIT 1) AS latest_metric_date,
-    
-    -- Active fitness goals
-    (SELECT COUNT(*) 
-     FROM FitnessGoal fg 
-     WHERE fg.member_id = m.member_id 
-       AND fg.status = 'Active') AS active_goals_count,
-    
-    -- Total past classes attended
-    (SELECT COUNT(*) 
-     FROM ClassRegistration cr 
-     JOIN GroupClass gc ON cr.class_id = gc.class_id 
-     WHERE cr.member_id = m.member_id 
-       AND gc.class_date < CURRENT_DATE) AS past_classes_count,
-    
-    -- Upcoming classes
-    (SELECT COUNT(*) 
-     FROM ClassRegistration cr 
-     JOIN GroupClass gc ON cr.class_id = gc.class_id 
-     WHERE cr.member_id = m.member_id 
-       AND gc.class_date >= CURRENT_DATE) AS upcoming_classes_count
-
-FROM Member m;
+    s.latest_weight,
+    s.latest_heart_rate,
+    s.latest_body_fat,
+    s.latest_metric_date,
+    s.active_goals_count,
+    s.past_classes_count,
+    s.upcoming_classes_count
+FROM Member m
+JOIN MemberDashboardSummary s ON s.member_id = m.member_id;
 
 -- INDEX: Speed up member email lookups
 CREATE INDEX idx_member_email ON Member(email);
 CREATE INDEX idx_class_registration_member ON ClassRegistration(member_id);
 CREATE INDEX idx_class_registration_class ON ClassRegistration(class_id);
-CREATE INDEX idx_health_metric_member_date ON HealthMetric(member_id, date_recorded DESC);
-CREATE INDEX idx_group_class_date ON GroupClass(class_date);
+CREATE INDEX idx_class_waitlist_member ON ClassWaitlist(member_id);
+-- Partitioned: created in every month, hot or cold (the latest metric per member is looked up in each)
+CREATE INDEX idx_health_metric_member_date ON HealthMetric(member_id, date_recorded DESC, metric_id DESC);
+CREATE INDEX idx_fitness_goal_member_active ON FitnessGoal(member_id, target_date) WHERE status = 'Active';
+-- Class catalogue in schedule order: listUpcomingClasses() pages through it by (date, start, id)
+CREATE INDEX idx_group_class_date ON GroupClass(class_date, start_time, class_id);
+
+-- MEMBER SEARCH: the normalised full name ('first last', lower case) that searchMembers() matches against
+CREATE OR REPLACE FUNCTION member_search_name(first_name VARCHAR, last_name VARCHAR)
+RETURNS TEXT
+LANGUAGE sql
+IMMUTABLE PARALLEL SAFE
+AS
+$$
+    SELECT lower(btrim(first_name) || ' ' || btrim(last_name));
+$$;
+
+-- Substring matches (LIKE '%..%') through trigrams
+CREATE INDEX idx_member_search_name_trgm ON Member USING GIN (member_search_name(first_name, last_name) gin_trgm_ops);
+-- First-name, last-name, last+first and email prefixes in order, so prefix searches stop after one page
+-- (namesakes by member id, so a page is the same whichever plan or in-memory index answers it)
+CREATE INDEX idx_member_search_name_prefix ON Member ((member_search_name(first_name, last_name)) COLLATE "C",
+                                                      member_id);
+CREATE INDEX idx_member_last_first_prefix ON Member ((lower(btrim(last_name))) COLLATE "C",
+                                                     (lower(btrim(first_name))) COLLATE "C", member_id);
+CREATE INDEX idx_member_email_prefix ON Member ((lower(email)) COLLATE "C");
+
+-- MEMBER NAME WORDS: the distinct words of member names, for typo correction in searchMembers()
+-- A similarity search over a few thousand distinct words stays cheap where one over millions of full names
+-- would read the long posting lists of common trigrams. Words are only ever added: one no longer used just
+-- finds no members.
+CREATE TABLE MemberNameWord (
+    word TEXT PRIMARY KEY
+);
+
+CREATE INDEX idx_member_name_word_trgm ON MemberNameWord USING GIN (word gin_trgm_ops);
+
+-- TRIGGER 12: Record the name words of new and renamed members
+CREATE OR REPLACE FUNCTION member_name_words_add()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    -- In word order, so concurrent inserts of the same new words cannot deadlock
+    INSERT INTO MemberNameWord (word)
+    SELECT DISTINCT w.word
+    FROM new_rows n,
+         regexp_split_to_table(member_search_name(n.first_name, n.last_name), '\s+') AS w(word)
+    WHERE w.word <> ''
+    ORDER BY w.word
+    ON CONFLICT (word) DO NOTHING;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER maintain_member_name_words_insert
+AFTER INSERT ON Member
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE member_name_words_add();
+
+CREATE TRIGGER maintain_member_name_words_update
+AFTER UPDATE ON Member
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE member_name_words_add();
+
+-- TRIGGER 13: NOTIFY member_search with the members added, changed or deleted, so every app instance's
+-- in-memory search index (MemberSearchIndex) re-reads them
+CREATE OR REPLACE FUNCTION member_search_notify()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM notify_member_ids('member_search', ARRAY(SELECT member_id FROM old_rows));
+    ELSE
+        PERFORM notify_member_ids('member_search', ARRAY(SELECT member_id FROM new_rows));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notify_member_search_insert
+AFTER INSERT ON Member
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE member_search_notify();
+
+CREATE TRIGGER notify_member_search_update
+AFTER UPDATE ON Member
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE member_search_notify();
+
+CREATE TRIGGER notify_member_search_delete
+AFTER DELETE ON Member
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE member_search_notify();
+
+-- TRIGGER 14: NOTIFY schedule_class, schedule_availability and schedule_room with the classes, availability
+-- windows and rooms added, changed or deleted, so every app instance's in-memory schedule (ScheduleIndex)
+-- re-reads them. Arguments: the channel and the id column
+CREATE OR REPLACE FUNCTION schedule_notify()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_LEVEL = 'ROW' THEN
+        PERFORM notify_member_ids(TG_ARGV[0], ARRAY[(to_jsonb(NEW) ->> TG_ARGV[1])::INT]);
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM notify_member_ids(TG_ARGV[0], ARRAY(SELECT (to_jsonb(r) ->> TG_ARGV[1])::INT FROM old_rows r));
+    ELSE
+        PERFORM notify_member_ids(TG_ARGV[0], ARRAY(SELECT (to_jsonb(r) ->> TG_ARGV[1])::INT FROM new_rows r));
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER notify_schedule_class_insert
+AFTER INSERT ON GroupClass
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_class', 'class_id');
+
+-- Row level so seat counter updates (registered_count) do not notify
+CREATE TRIGGER notify_schedule_class_update
+AFTER UPDATE ON GroupClass
+FOR EACH ROW
+WHEN ((OLD.class_date, OLD.start_time, OLD.end_time, OLD.room_id, OLD.trainer_id)
+      IS DISTINCT FROM (NEW.class_date, NEW.start_time, NEW.end_time, NEW.room_id, NEW.trainer_id))
+EXECUTE PROCEDURE schedule_notify('schedule_class', 'class_id');
+
+CREATE TRIGGER notify_schedule_class_delete
+AFTER DELETE ON GroupClass
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_class', 'class_id');
+
+CREATE TRIGGER notify_schedule_availability_insert
+AFTER INSERT ON TrainerAvailability
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_availability', 'availability_id');
+
+CREATE TRIGGER notify_schedule_availability_update
+AFTER UPDATE ON TrainerAvailability
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_availability', 'availability_id');
+
+CREATE TRIGGER notify_schedule_availability_delete
+AFTER DELETE ON TrainerAvailability
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_availability', 'availability_id');
+
+CREATE TRIGGER notify_schedule_room_insert
+AFTER INSERT ON Room
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_room', 'room_id');
+
+CREATE TRIGGER notify_schedule_room_update
+AFTER UPDATE ON Room
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_room', 'room_id');
+
+CREATE TRIGGER notify_schedule_room_delete
+AFTER DELETE ON Room
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE PROCEDURE schedule_notify('schedule_room', 'room_id');
+
+-- HEALTH METRIC PARTITIONS: HealthMetric_2026_10 holds the readings of October 2026, and so on.
+-- health_metric_maintain() runs at app start and daily (HealthMetricPartitionJob):
+--   - creates the months from the current one to months_ahead ahead, and the past months that readings
+--     waiting in the default partition belong to
+--   - makes months older than hot_months cold: the metric_id primary key B-tree is replaced by a BRIN on
+--     (date_recorded, metric_id). A month's rows arrive roughly in date and id order, so the BRIN stays a few
+--     pages and still narrows date ranges and id lookups. The member index stays in every month, since the
+--     profile's latest metric is one probe per month
+--   - with retention_months > 0, detaches the months older than that and renames them
+--     HealthMetric_archive_YYYY_MM, for the admin to dump or drop. Their readings then only show in the
+--     dashboard summaries that already hold them; readings for those months arriving later stay in the
+--     default partition
+-- Several app instances may run it; an advisory lock makes them take turns
+
+-- Creates the month partitions from first_month to last_month that do not exist yet. A month's readings in
+-- the default partition are moved into the new table before it is attached (attaching checks that the
+-- default partition has none left). Returns the partitions created
+CREATE OR REPLACE FUNCTION health_metric_add_partitions(first_month DATE, last_month DATE)
+RETURNS SETOF TEXT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part_month DATE := date_trunc('month', first_month)::DATE;
+    next_month DATE;
+    part_name TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('health_metric_partitions'));
+    WHILE part_month <= last_month LOOP
+        next_month := (part_month + INTERVAL '1 month')::DATE;
+        part_name := 'healthmetric_' || to_char(part_month, 'YYYY"_"MM');
+        IF to_regclass(part_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE HealthMetric INCLUDING DEFAULTS, PRIMARY KEY (metric_id))',
+                           part_name);
+            EXECUTE format('WITH moved AS (DELETE FROM HealthMetric_default '
+                           '               WHERE date_recorded >= $1 AND date_recorded < $2 RETURNING *) '
+                           'INSERT INTO %I SELECT * FROM moved', part_name)
+                USING part_month, next_month;
+            EXECUTE format('ALTER TABLE HealthMetric ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           part_name, part_month, next_month);
+            RETURN NEXT part_name;
+        END IF;
+        part_month := next_month;
+    END LOOP;
+END;
+$$;
+
+-- Returns what it did, one line per partition ('created ...', 'cold ...', 'detached ...')
+CREATE OR REPLACE FUNCTION health_metric_maintain(months_ahead INT DEFAULT 3, hot_months INT DEFAULT 3,
+                                                  retention_months INT DEFAULT 0)
+RETURNS SETOF TEXT
+LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    this_month DATE := date_trunc('month', CURRENT_DATE)::DATE;
+    retained_from DATE := CASE WHEN retention_months > 0
+                               THEN (this_month - make_interval(months => retention_months))::DATE END;
+    part_name TEXT;
+    part_month DATE;
+    pkey TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('health_metric_partitions'));
+
+    -- The months ahead, and the past months of backdated readings waiting in the default partition (unless
+    -- past retention already)
+    FOR part_name IN
+        SELECT health_metric_add_partitions(this_month, (this_month + make_interval(months => months_ahead))::DATE)
+        UNION ALL
+        SELECT health_metric_add_partitions(m.first_day, m.first_day)
+        FROM (SELECT DISTINCT date_trunc('month', date_recorded)::DATE AS first_day
+              FROM HealthMetric_default
+              WHERE date_recorded < this_month AND (retained_from IS NULL OR date_recorded >= retained_from)) m
+    LOOP
+        RETURN NEXT 'created ' || part_name;
+    END LOOP;
+
+    FOR part_name, part_month, pkey IN
+        SELECT c.relname, make_date(substr(c.relname, 14, 4)::INT, right(c.relname, 2)::INT, 1), pk.conname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        LEFT JOIN pg_constraint pk ON pk.conrelid = c.oid AND pk.contype = 'p'
+        WHERE i.inhparent = 'healthmetric'::regclass AND c.relname ~ '^healthmetric_[0-9]{4}_[0-9]{2}$'
+        ORDER BY c.relname
+    LOOP
+        IF part_month < retained_from THEN
+            EXECUTE format('ALTER TABLE HealthMetric DETACH PARTITION %I', part_name);
+            EXECUTE format('ALTER TABLE %I RENAME TO %I', part_name,
+                           'healthmetric_archive_' || to_char(part_month, 'YYYY"_"MM'));
+            RETURN NEXT 'detached ' || part_name;
+        ELSIF pkey IS NOT NULL AND part_month < (this_month - make_interval(months => hot_months))::DATE THEN
+            EXECUTE format('CREATE INDEX %I ON %I USING brin (date_recorded, metric_id)',
+                           part_name || '_brin', part_name);
+            EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', part_name, pkey);
+            RETURN NEXT 'cold ' || part_name;
+        END IF;
+    END LOOP;
+END;
+$$;
+
+SELECT health_metric_maintain();